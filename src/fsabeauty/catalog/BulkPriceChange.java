@@ -0,0 +1,100 @@
+package fsabeauty.catalog;
+
+/**
+ * Immutable description of a category-wide price or sale change.
+ * The target products are selected with a {@link CatalogQuery}; the change is
+ * either a percentage or absolute price adjustment, or starting/ending a sale.
+ */
+public final class BulkPriceChange {
+
+    /**
+     * Kind of change applied to every selected product.
+     */
+    public enum Mode {
+        PERCENTAGE,
+        ABSOLUTE,
+        START_SALE,
+        END_SALE
+    }
+
+    private final CatalogQuery target;
+    private final Mode mode;
+    private final double amount;
+
+    private BulkPriceChange(CatalogQuery target, Mode mode, double amount) {
+        this.target = target;
+        this.mode = mode;
+        this.amount = amount;
+    }
+
+    /**
+     * Changes prices by a percentage, e.g. -20 for twenty percent off.
+     *
+     * @param target the products to change
+     * @param percent signed percentage applied to the current price
+     * @return the bulk change
+     */
+    public static BulkPriceChange percentage(CatalogQuery target, double percent) {
+        if (percent <= -100) {
+            throw new IllegalArgumentException("A price cannot be reduced by 100% or more");
+        }
+        return new BulkPriceChange(target, Mode.PERCENTAGE, percent);
+    }
+
+    /**
+     * Changes prices by a fixed amount; results below zero are clamped to zero.
+     *
+     * @param target the products to change
+     * @param delta signed amount added to the current price
+     * @return the bulk change
+     */
+    public static BulkPriceChange absolute(CatalogQuery target, double delta) {
+        return new BulkPriceChange(target, Mode.ABSOLUTE, delta);
+    }
+
+    /**
+     * Puts the selected products on sale.
+     *
+     * @param target the products to change
+     * @param discountPercentage the advertised sale discount
+     * @return the bulk change
+     */
+    public static BulkPriceChange startSale(CatalogQuery target, double discountPercentage) {
+        if (discountPercentage <= 0 || discountPercentage >= 100) {
+            throw new IllegalArgumentException("Sale discount must be between 0 and 100 percent");
+        }
+        return new BulkPriceChange(target, Mode.START_SALE, discountPercentage);
+    }
+
+    /**
+     * Ends the sale on the selected products.
+     *
+     * @param target the products to change
+     * @return the bulk change
+     */
+    public static BulkPriceChange endSale(CatalogQuery target) {
+        return new BulkPriceChange(target, Mode.END_SALE, 0);
+    }
+
+    /** @return the query selecting the products to change */
+    public CatalogQuery getTarget() { return target; }
+
+    /** @return the kind of change */
+    public Mode getMode() { return mode; }
+
+    /** @return the percentage, delta or sale discount depending on the mode */
+    public double getAmount() { return amount; }
+
+    /**
+     * Computes the new price for a price-adjusting change, rounded to cents.
+     *
+     * @param currentPrice the price before the change
+     * @return the price after the change
+     */
+    public double adjust(double currentPrice) {
+        double adjusted = mode == Mode.PERCENTAGE
+                ? currentPrice * (1 + amount / 100)
+                : currentPrice + amount;
+        return Math.max(0, Math.round(adjusted * 100) / 100.0);
+    }
+}
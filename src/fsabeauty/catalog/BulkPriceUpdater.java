@@ -0,0 +1,103 @@
+package fsabeauty.catalog;
+
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import fsabeauty.observer.ProductSubscription;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Applies a {@link BulkPriceChange} to every matching product of the catalog.
+ * Products are updated in parallel inside one catalog transaction, so readers
+ * switch from the old prices to the new ones in a single version. Per-product
+ * notifications are held back until the new version has been published, then the
+ * whole change goes to the product event streams and, as one batch, to the installed
+ * dispatchers, which by default merge it into one digest per watching customer.
+ */
+public class BulkPriceUpdater {
+    private final CatalogStore catalog;
+
+    /**
+     * Constructs an updater for the given catalog.
+     *
+     * @param catalog the catalog whose products are changed
+     */
+    public BulkPriceUpdater(CatalogStore catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Applies the change and publishes it.
+     *
+     * @param change what to change and on which products
+     * @return counts of matched and changed products and addressed customers
+     */
+    public BulkUpdateResult apply(BulkPriceChange change) {
+        ConcurrentLinkedQueue<ProductEvent> events = new ConcurrentLinkedQueue<>();
+        int[] matched = new int[1];
+
+        CatalogSnapshot published = catalog.update(tx -> {
+            List<ProductSnapshot> targets = new ArrayList<>();
+            catalog.snapshot().stream(change.getTarget()).forEach(targets::add);
+            matched[0] = targets.size();
+
+            targets.parallelStream().forEach(target -> {
+                ProductEvent event = applyTo(target.getProduct(), change);
+                if (event != null) {
+                    events.add(event);
+                }
+            });
+        });
+
+        Map<Product, List<ProductEvent>> changes = byProduct(events, published);
+        int recipients = countRecipients(changes);
+        Product.publishBatch(changes);
+        return new BulkUpdateResult(matched[0], events.size(), recipients, published.getVersion());
+    }
+
+    private static ProductEvent applyTo(Product product, BulkPriceChange change) {
+        switch (change.getMode()) {
+            case START_SALE:
+                return product.setOnSaleDeferred(true, change.getAmount());
+            case END_SALE:
+                return product.setOnSaleDeferred(false, 0.0);
+            default:
+                return product.adjustPriceDeferred(change::adjust);
+        }
+    }
+
+    private static Map<Product, List<ProductEvent>> byProduct(
+            ConcurrentLinkedQueue<ProductEvent> events, CatalogSnapshot catalog) {
+        List<ProductEvent> ordered = new ArrayList<>(events);
+        ordered.sort(Comparator.comparing(ProductEvent::getProductId));
+
+        Map<Product, List<ProductEvent>> changes = new LinkedHashMap<>();
+        for (ProductEvent event : ordered) {
+            ProductSnapshot product = catalog.get(event.getProductId());
+            if (product != null) {
+                changes.computeIfAbsent(product.getProduct(), p -> new ArrayList<>()).add(event);
+            }
+        }
+        return changes;
+    }
+
+    private static int countRecipients(Map<Product, List<ProductEvent>> changes) {
+        Set<CustomerObserver> recipients = new HashSet<>();
+        for (Map.Entry<Product, List<ProductEvent>> change : changes.entrySet()) {
+            for (ProductSubscription subscription : change.getKey().getSubscriptions()) {
+                if (!recipients.contains(subscription.getObserver())
+                        && !subscription.accepted(change.getValue()).isEmpty()) {
+                    recipients.add(subscription.getObserver());
+                }
+            }
+        }
+        return recipients.size();
+    }
+}
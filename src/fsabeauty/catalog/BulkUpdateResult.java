@@ -0,0 +1,38 @@
+package fsabeauty.catalog;
+
+/**
+ * Outcome of a bulk price or sale change.
+ */
+public final class BulkUpdateResult {
+    private final int matchedProducts;
+    private final int changedProducts;
+    private final int notifiedCustomers;
+    private final long catalogVersion;
+
+    BulkUpdateResult(int matchedProducts, int changedProducts, int notifiedCustomers, long catalogVersion) {
+        this.matchedProducts = matchedProducts;
+        this.changedProducts = changedProducts;
+        this.notifiedCustomers = notifiedCustomers;
+        this.catalogVersion = catalogVersion;
+    }
+
+    /** @return number of products selected by the change's query */
+    public int getMatchedProducts() { return matchedProducts; }
+
+    /** @return number of products whose change produced a notification */
+    public int getChangedProducts() { return changedProducts; }
+
+    /** @return number of customers the change was addressed to (dispatchers may still hold or merge it) */
+    public int getNotifiedCustomers() { return notifiedCustomers; }
+
+    /** @return the catalog version that contains the whole change */
+    public long getCatalogVersion() { return catalogVersion; }
+
+    /**
+     * @return one-line human readable summary
+     */
+    public String getSummary() {
+        return String.format("Matched: %d | Changed: %d | Customers notified: %d | Catalog version: %d",
+                matchedProducts, changedProducts, notifiedCustomers, catalogVersion);
+    }
+}
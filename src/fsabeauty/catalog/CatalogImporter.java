@@ -0,0 +1,259 @@
+package fsabeauty.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming importer for merchandising catalog feeds (CSV or JSON Lines).
+ * The file is read through a FileChannel in fixed-size chunks and decoded
+ * incrementally, so only one chunk, the current line and one batch of rows are
+ * held in memory at any time. A line longer than the maximum line length is not
+ * buffered past that limit; its row is rejected. Valid rows are handed to a {@link CatalogUpsertSink}
+ * in batches; rows that repeat a product ID already seen in the same feed are
+ * reported as duplicates instead of silently overwriting the earlier row.
+ * The set of seen IDs grows with the number of distinct products, i.e. with the
+ * catalog itself, never with the size of the file.
+ */
+public class CatalogImporter {
+
+    /**
+     * Supported feed formats.
+     */
+    public enum Format {
+        CSV,
+        JSONL;
+
+        /**
+         * Picks the format from the file extension (.csv, .jsonl or .ndjson).
+         *
+         * @param file the feed file
+         * @return the matching format
+         * @throws IllegalArgumentException if the extension is not recognised
+         */
+        public static Format fromFileName(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSONL;
+            }
+            throw new IllegalArgumentException("Unsupported catalog feed: " + name);
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_MAX_LINE_LENGTH = 64 * 1024;
+
+    private final CatalogUpsertSink sink;
+    private final int chunkSize;
+    private final int batchSize;
+    private final int maxLineLength;
+
+    /**
+     * Constructs an importer with default chunk and batch sizes.
+     *
+     * @param sink the catalog that receives the validated rows
+     */
+    public CatalogImporter(CatalogUpsertSink sink) {
+        this(sink, DEFAULT_CHUNK_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs an importer with explicit chunk and batch sizes.
+     *
+     * @param sink the catalog that receives the validated rows
+     * @param chunkSize number of bytes read from the file per I/O call
+     * @param batchSize number of rows applied to the catalog at once
+     */
+    public CatalogImporter(CatalogUpsertSink sink, int chunkSize, int batchSize) {
+        this(sink, chunkSize, batchSize, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * Constructs an importer with explicit chunk, batch and line sizes.
+     *
+     * @param sink the catalog that receives the validated rows
+     * @param chunkSize number of bytes read from the file per I/O call
+     * @param batchSize number of rows applied to the catalog at once
+     * @param maxLineLength longest line, in characters, that is buffered and parsed
+     */
+    public CatalogImporter(CatalogUpsertSink sink, int chunkSize, int batchSize, int maxLineLength) {
+        if (chunkSize < 16 || batchSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 16 bytes and batch size at least 1");
+        }
+        if (maxLineLength < 1) {
+            throw new IllegalArgumentException("Maximum line length must be positive");
+        }
+        this.sink = sink;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Imports a feed, detecting its format from the file extension.
+     *
+     * @param file the feed to import
+     * @return the report of the import run
+     * @throws IOException if the file cannot be read
+     */
+    public ImportReport importFile(Path file) throws IOException {
+        return importFile(file, Format.fromFileName(file));
+    }
+
+    /**
+     * Imports a feed in the given format.
+     *
+     * @param file the feed to import
+     * @param format the feed format
+     * @return the report of the import run
+     * @throws IOException if the file cannot be read or the CSV header is invalid
+     */
+    public ImportReport importFile(Path file, Format format) throws IOException {
+        ImportRun run = new ImportRun(format);
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(chunkSize);
+        CharBuffer chars = CharBuffer.allocate(chunkSize);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, endOfInput);
+                    drain(chars, run);
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+            while (decoder.flush(chars).isOverflow()) {
+                drain(chars, run);
+            }
+            drain(chars, run);
+        }
+        run.finish();
+        return run.report;
+    }
+
+    private void drain(CharBuffer chars, ImportRun run) throws IOException {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            run.accept(chars.get());
+        }
+        chars.clear();
+    }
+
+    /**
+     * Mutable state of a single import: the partial line, the current batch
+     * and the IDs already seen.
+     */
+    private class ImportRun {
+        private final CatalogRowParser parser;
+        private final ImportReport report = new ImportReport();
+        private final StringBuilder line = new StringBuilder();
+        private final List<CatalogRow> batch = new ArrayList<>(batchSize);
+        private final Set<String> seenIds = new HashSet<>();
+        private long lineNumber;
+        private boolean overlong; // the current line passed maxLineLength; its tail is dropped
+
+        ImportRun(Format format) {
+            this.parser = new CatalogRowParser(format);
+        }
+
+        void accept(char c) throws IOException {
+            if (c == '\n') {
+                endLine();
+            } else if (c != '\r') {
+                if (line.length() < maxLineLength) {
+                    line.append(c);
+                } else {
+                    overlong = true;
+                }
+            }
+        }
+
+        void endLine() throws IOException {
+            lineNumber++;
+            if (overlong) {
+                overlong = false;
+                line.setLength(0);
+                if (parser.needsHeader()) {
+                    throw new IOException("Invalid catalog feed: header longer than " + maxLineLength + " characters");
+                }
+                report.recordRowRead();
+                report.recordRejected(lineNumber, "line longer than " + maxLineLength + " characters");
+                return;
+            }
+            String text = line.toString();
+            line.setLength(0);
+
+            if (lineNumber == 1 && !text.isEmpty() && text.charAt(0) == '\uFEFF') {
+                text = text.substring(1);
+            }
+            if (text.trim().isEmpty()) {
+                return;
+            }
+            if (parser.needsHeader()) {
+                try {
+                    parser.readHeader(text);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid catalog feed: " + e.getMessage(), e);
+                }
+                return;
+            }
+
+            report.recordRowRead();
+            CatalogRow row;
+            try {
+                row = parser.parse(text, lineNumber);
+            } catch (IllegalArgumentException e) {
+                report.recordRejected(lineNumber, e.getMessage());
+                return;
+            }
+
+            if (!seenIds.add(row.getProductId())) {
+                report.recordDuplicate(lineNumber, row.getProductId());
+                return;
+            }
+
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (line.length() > 0 || overlong) {
+                endLine();
+            }
+            flush();
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            sink.upsertBatch(new ArrayList<>(batch), report);
+            report.recordBatch();
+            batch.clear();
+        }
+    }
+}
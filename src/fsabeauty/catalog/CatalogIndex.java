@@ -0,0 +1,260 @@
+package fsabeauty.catalog;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Sorted indexes over one immutable {@link CatalogSnapshot}.
+ * Index arrays are built lazily, the first time a listing needs a given sort
+ * order (optionally within one brand), and are then shared by every request
+ * against the same catalog version. Range filters on the sort key (price range
+ * when sorting by price, in-stock when sorting by stock) and cursor positions
+ * are resolved by binary search, so a page request only visits the items it
+ * returns plus any that fail the remaining filters.
+ * A new catalog version inherits the arrays of the previous one together with
+ * the IDs of the products that changed in between; its arrays are then derived by
+ * dropping the changed products and merging their new states back in, which costs
+ * a linear copy plus sorting only the changes instead of re-sorting the catalog.
+ */
+final class CatalogIndex {
+    private static final char SEPARATOR = '\u0000';
+    private static final int MIN_REBASE_CHANGES = 64;
+
+    private final CatalogSnapshot snapshot;
+    private final Map<String, ProductSnapshot[]> sortedArrays = new ConcurrentHashMap<>();
+    private final Map<String, Inherited> inherited;
+    private volatile Map<String, List<ProductSnapshot>> productsByBrand;
+
+    CatalogIndex(CatalogSnapshot snapshot) {
+        this(snapshot, new ConcurrentHashMap<>());
+    }
+
+    private CatalogIndex(CatalogSnapshot snapshot, Map<String, Inherited> inherited) {
+        this.snapshot = snapshot;
+        this.inherited = inherited;
+    }
+
+    /**
+     * Creates the index of the next catalog version, carrying this index's sorted
+     * arrays forward. Arrays that would need too many changes merged back are dropped
+     * and sorted from scratch when first needed.
+     *
+     * @param next the next version
+     * @param changedIds IDs of the products added, changed or removed since this version
+     * @return the index of the next version
+     */
+    CatalogIndex derive(CatalogSnapshot next, Collection<String> changedIds) {
+        int limit = Math.max(MIN_REBASE_CHANGES, next.size() / 8);
+        Map<String, Inherited> carried = new ConcurrentHashMap<>();
+        if (changedIds.size() <= limit) {
+            inherited.forEach((key, pending) -> {
+                Set<String> changes = new HashSet<>(pending.changedIds);
+                changes.addAll(changedIds);
+                if (changes.size() <= limit) {
+                    carried.put(key, new Inherited(pending.sorted, changes));
+                }
+            });
+            Set<String> changes = new HashSet<>(changedIds);
+            sortedArrays.forEach((key, sorted) -> carried.put(key, new Inherited(sorted, changes)));
+        }
+        return new CatalogIndex(next, carried);
+    }
+
+    /**
+     * Streams the products of a listing lazily, starting after the cursor.
+     */
+    Stream<ProductSnapshot> stream(CatalogQuery query, String cursor) {
+        CatalogSortOrder order = query.getSortOrder();
+        ProductSnapshot[] sorted = sortedBy(order, query.getBrand());
+        int lo = 0;
+        int hi = sorted.length;
+
+        if (order == CatalogSortOrder.PRICE && query.hasPriceFilter()) {
+            lo = firstIndex(sorted, p -> p.getPrice() >= query.getMinPrice());
+            hi = firstIndex(sorted, p -> p.getPrice() > query.getMaxPrice());
+        }
+        if (order == CatalogSortOrder.STOCK && query.isInStockOnly()) {
+            lo = Math.max(lo, firstIndex(sorted, ProductSnapshot::isAvailable));
+        }
+        if (cursor != null) {
+            String[] position = decodeCursor(cursor, query);
+            if (query.isDescending()) {
+                hi = Math.min(hi, firstIndex(sorted, p -> order.compareToCursor(p, position[0], position[1]) >= 0));
+            } else {
+                lo = Math.max(lo, firstIndex(sorted, p -> order.compareToCursor(p, position[0], position[1]) > 0));
+            }
+        }
+        if (lo >= hi) {
+            return Stream.empty();
+        }
+
+        final int from = lo;
+        final int to = hi;
+        IntStream positions = query.isDescending()
+                ? IntStream.range(0, to - from).map(i -> to - 1 - i)
+                : IntStream.range(from, to);
+        return positions.mapToObj(i -> sorted[i]).filter(query::matches);
+    }
+
+    /**
+     * Reads one page of a listing.
+     */
+    CatalogPage page(CatalogQuery query, String cursor, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        List<ProductSnapshot> items = stream(query, cursor)
+                .limit(pageSize + 1L)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items.remove(pageSize);
+            nextCursor = encodeCursor(query, items.get(pageSize - 1));
+        }
+        return new CatalogPage(items, nextCursor, snapshot.getVersion());
+    }
+
+    private ProductSnapshot[] sortedBy(CatalogSortOrder order, String brand) {
+        String key = brand == null ? order.name() : order.name() + SEPARATOR + brand.toLowerCase(Locale.ROOT);
+        return sortedArrays.computeIfAbsent(key, k -> {
+            Inherited pending = inherited.remove(k);
+            if (pending != null) {
+                return pending.rebase(snapshot, order, brand);
+            }
+            ProductSnapshot[] products;
+            if (brand == null) {
+                products = new ProductSnapshot[snapshot.size()];
+                int i = 0;
+                for (ProductSnapshot product : snapshot.products()) {
+                    products[i++] = product;
+                }
+            } else {
+                products = brandIndex()
+                        .getOrDefault(brand.toLowerCase(Locale.ROOT), new ArrayList<>())
+                        .toArray(new ProductSnapshot[0]);
+            }
+            Arrays.sort(products, order::compare);
+            return products;
+        });
+    }
+
+    private static boolean hasBrand(ProductSnapshot product, String brand) {
+        return brand == null || product.getBrand().toLowerCase(Locale.ROOT).equals(brand.toLowerCase(Locale.ROOT));
+    }
+
+    private Map<String, List<ProductSnapshot>> brandIndex() {
+        Map<String, List<ProductSnapshot>> index = productsByBrand;
+        if (index == null) {
+            index = new HashMap<>();
+            for (ProductSnapshot product : snapshot.products()) {
+                index.computeIfAbsent(product.getBrand().toLowerCase(Locale.ROOT), b -> new ArrayList<>()).add(product);
+            }
+            productsByBrand = index;
+        }
+        return index;
+    }
+
+    /**
+     * Binary search for the first position whose product satisfies a predicate
+     * that is false for a prefix of the array and true for the rest.
+     */
+    private static int firstIndex(ProductSnapshot[] sorted, Predicate<ProductSnapshot> predicate) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (predicate.test(sorted[mid])) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    static String encodeCursor(CatalogQuery query, ProductSnapshot last) {
+        String raw = query.getSortOrder().name() + SEPARATOR + (query.isDescending() ? "D" : "A") + SEPARATOR
+                + query.getSortOrder().encodeValue(last) + SEPARATOR + last.getProductId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the cursor's encoded sort value and product ID
+     */
+    private static String[] decodeCursor(String cursor, CatalogQuery query) {
+        String[] parts;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            parts = raw.split(String.valueOf(SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed catalog cursor", e);
+        }
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed catalog cursor");
+        }
+        String direction = query.isDescending() ? "D" : "A";
+        if (!parts[0].equals(query.getSortOrder().name()) || !parts[1].equals(direction)) {
+            throw new IllegalArgumentException("Cursor belongs to a listing with a different sort order");
+        }
+        return new String[]{parts[2], parts[3]};
+    }
+
+    /**
+     * A sorted array of an earlier version and the products changed since.
+     */
+    private static final class Inherited {
+        private final ProductSnapshot[] sorted;
+        private final Set<String> changedIds;
+
+        Inherited(ProductSnapshot[] sorted, Set<String> changedIds) {
+            this.sorted = sorted;
+            this.changedIds = changedIds;
+        }
+
+        /**
+         * Drops the changed products from the old array and merges their current states back in.
+         */
+        ProductSnapshot[] rebase(CatalogSnapshot snapshot, CatalogSortOrder order, String brand) {
+            List<ProductSnapshot> changed = new ArrayList<>(changedIds.size());
+            for (String id : changedIds) {
+                ProductSnapshot product = snapshot.get(id);
+                if (product != null && hasBrand(product, brand)) {
+                    changed.add(product);
+                }
+            }
+            changed.sort(order::compare);
+
+            ProductSnapshot[] merged = new ProductSnapshot[sorted.length + changed.size()];
+            int size = 0;
+            int next = 0;
+            for (ProductSnapshot product : sorted) {
+                if (changedIds.contains(product.getProductId())) {
+                    continue;
+                }
+                while (next < changed.size() && order.compare(changed.get(next), product) < 0) {
+                    merged[size++] = changed.get(next++);
+                }
+                merged[size++] = product;
+            }
+            while (next < changed.size()) {
+                merged[size++] = changed.get(next++);
+            }
+            return size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+    }
+}
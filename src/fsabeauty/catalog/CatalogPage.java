@@ -0,0 +1,36 @@
+package fsabeauty.catalog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a catalog listing plus the cursor for the following page.
+ * The cursor encodes the sort position of the last item rather than an offset,
+ * so paging stays stable while products are added, removed or repriced.
+ */
+public final class CatalogPage {
+    private final List<ProductSnapshot> items;
+    private final String nextCursor;
+    private final long catalogVersion;
+
+    CatalogPage(List<ProductSnapshot> items, String nextCursor, long catalogVersion) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.catalogVersion = catalogVersion;
+    }
+
+    /** @return the products on this page, in listing order */
+    public List<ProductSnapshot> getItems() { return new ArrayList<>(items); }
+
+    /** @return the cursor of the next page, or null if this is the last page */
+    public String getNextCursor() { return nextCursor; }
+
+    /** @return true if another page follows */
+    public boolean hasNext() { return nextCursor != null; }
+
+    /** @return the catalog version this page was read from */
+    public long getCatalogVersion() { return catalogVersion; }
+
+    /** @return number of products on this page */
+    public int size() { return items.size(); }
+}
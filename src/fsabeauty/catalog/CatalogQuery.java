@@ -0,0 +1,123 @@
+package fsabeauty.catalog;
+
+/**
+ * Immutable description of a catalog listing: sort order, direction and filters.
+ * Each method returns a new query, so queries can be shared and reused freely.
+ * <pre>
+ *   CatalogQuery.all().sortedBy(CatalogSortOrder.PRICE).priceBetween(10, 25).inStockOnly()
+ * </pre>
+ */
+public final class CatalogQuery {
+    private final CatalogSortOrder sortOrder;
+    private final boolean descending;
+    private final String brand;
+    private final double minPrice;
+    private final double maxPrice;
+    private final boolean inStockOnly;
+    private final boolean onSaleOnly;
+
+    private CatalogQuery(CatalogSortOrder sortOrder, boolean descending, String brand,
+                         double minPrice, double maxPrice, boolean inStockOnly, boolean onSaleOnly) {
+        this.sortOrder = sortOrder;
+        this.descending = descending;
+        this.brand = brand;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStockOnly = inStockOnly;
+        this.onSaleOnly = onSaleOnly;
+    }
+
+    /**
+     * Creates an unfiltered query sorted by product ID.
+     *
+     * @return the base query
+     */
+    public static CatalogQuery all() {
+        return new CatalogQuery(CatalogSortOrder.ID, false, null, 0, Double.MAX_VALUE, false, false);
+    }
+
+    /**
+     * @param order the sort order of the listing
+     * @return a copy of this query sorted ascending by the given order
+     */
+    public CatalogQuery sortedBy(CatalogSortOrder order) {
+        return new CatalogQuery(order, false, brand, minPrice, maxPrice, inStockOnly, onSaleOnly);
+    }
+
+    /**
+     * @param order the sort order of the listing
+     * @return a copy of this query sorted descending by the given order
+     */
+    public CatalogQuery sortedByDescending(CatalogSortOrder order) {
+        return new CatalogQuery(order, true, brand, minPrice, maxPrice, inStockOnly, onSaleOnly);
+    }
+
+    /**
+     * @param brand the brand to keep, compared case-insensitively
+     * @return a copy of this query restricted to one brand
+     */
+    public CatalogQuery brand(String brand) {
+        return new CatalogQuery(sortOrder, descending, brand, minPrice, maxPrice, inStockOnly, onSaleOnly);
+    }
+
+    /**
+     * @param min lowest price to include
+     * @param max highest price to include
+     * @return a copy of this query restricted to a price range (inclusive)
+     */
+    public CatalogQuery priceBetween(double min, double max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Minimum price must not exceed maximum price");
+        }
+        return new CatalogQuery(sortOrder, descending, brand, min, max, inStockOnly, onSaleOnly);
+    }
+
+    /** @return a copy of this query that skips sold-out products */
+    public CatalogQuery inStockOnly() {
+        return new CatalogQuery(sortOrder, descending, brand, minPrice, maxPrice, true, onSaleOnly);
+    }
+
+    /** @return a copy of this query that keeps only products on sale */
+    public CatalogQuery onSaleOnly() {
+        return new CatalogQuery(sortOrder, descending, brand, minPrice, maxPrice, inStockOnly, true);
+    }
+
+    /** @return the sort order */
+    public CatalogSortOrder getSortOrder() { return sortOrder; }
+
+    /** @return true for descending listings */
+    public boolean isDescending() { return descending; }
+
+    /** @return the brand filter or null */
+    public String getBrand() { return brand; }
+
+    /** @return the lowest included price */
+    public double getMinPrice() { return minPrice; }
+
+    /** @return the highest included price */
+    public double getMaxPrice() { return maxPrice; }
+
+    /** @return true if sold-out products are skipped */
+    public boolean isInStockOnly() { return inStockOnly; }
+
+    /** @return true if only products on sale are kept */
+    public boolean isOnSaleOnly() { return onSaleOnly; }
+
+    /**
+     * Evaluates all filters of this query against one product.
+     *
+     * @param product the product to test
+     * @return true if the product belongs to the listing
+     */
+    public boolean matches(ProductSnapshot product) {
+        return (brand == null || brand.equalsIgnoreCase(product.getBrand()))
+                && product.getPrice() >= minPrice
+                && product.getPrice() <= maxPrice
+                && (!inStockOnly || product.isAvailable())
+                && (!onSaleOnly || product.isOnSale());
+    }
+
+    boolean hasPriceFilter() {
+        return minPrice > 0 || maxPrice < Double.MAX_VALUE;
+    }
+}
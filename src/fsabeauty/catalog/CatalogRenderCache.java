@@ -0,0 +1,202 @@
+package fsabeauty.catalog;
+
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of rendered catalog text, per product line and per listing page.
+ * Every entry remembers the exact {@link ProductSnapshot} objects it was rendered
+ * from. Snapshots are immutable and replaced only when their product changes, so
+ * a cheap identity check proves an entry is current. In addition the cache listens
+ * to product mutations and drops the affected line and every page containing that
+ * product right away, so stale text never occupies cache capacity.
+ */
+public class CatalogRenderCache implements ProductChangeListener {
+    public static final int DEFAULT_MAX_LINES = 10_000;
+    public static final int DEFAULT_MAX_PAGES = 512;
+
+    private final Function<ProductSnapshot, String> lineRenderer;
+    private final LruCache<String, LineEntry> lines;
+    private final LruCache<String, PageEntry> pages;
+    private final Map<String, Set<String>> pagesByProduct = new HashMap<>();
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs a cache with default capacities.
+     *
+     * @param lineRenderer formats one catalog line for a product
+     */
+    public CatalogRenderCache(Function<ProductSnapshot, String> lineRenderer) {
+        this(lineRenderer, DEFAULT_MAX_LINES, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * Constructs a cache with explicit capacities.
+     *
+     * @param lineRenderer formats one catalog line for a product
+     * @param maxLines maximum number of cached product lines
+     * @param maxPages maximum number of cached pages
+     */
+    public CatalogRenderCache(Function<ProductSnapshot, String> lineRenderer, int maxLines, int maxPages) {
+        this.lineRenderer = lineRenderer;
+        this.lines = new LruCache<>(maxLines);
+        this.pages = new LruCache<>(maxPages, (key, page) -> unindexPage(key, page));
+    }
+
+    /**
+     * Returns the rendered line for a product, formatting it only on a miss.
+     *
+     * @param product the product state to render
+     * @return the rendered line
+     */
+    public String renderLine(ProductSnapshot product) {
+        synchronized (this) {
+            LineEntry cached = lines.get(product.getProductId());
+            if (cached != null && cached.source == product) {
+                hits++;
+                return cached.text;
+            }
+            misses++;
+        }
+        String text = lineRenderer.apply(product);
+        synchronized (this) {
+            lines.put(product.getProductId(), new LineEntry(product, text));
+        }
+        return text;
+    }
+
+    /**
+     * Returns a rendered page of a listing, re-rendering it only if its members changed.
+     *
+     * @param pageKey identifies the listing and page, e.g. "catalog#0"
+     * @param members the product states shown on the page, in display order
+     * @return the page text, one line per product
+     */
+    public String renderPage(String pageKey, List<ProductSnapshot> members) {
+        synchronized (this) {
+            PageEntry cached = pages.get(pageKey);
+            if (cached != null && cached.matches(members)) {
+                hits++;
+                return cached.text;
+            }
+            misses++;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (ProductSnapshot product : members) {
+            text.append(renderLine(product)).append(System.lineSeparator());
+        }
+        PageEntry entry = new PageEntry(new ArrayList<>(members), text.toString());
+
+        synchronized (this) {
+            PageEntry previous = pages.remove(pageKey);
+            if (previous != null) {
+                unindexPage(pageKey, previous);
+            }
+            pages.put(pageKey, entry);
+            for (ProductSnapshot product : members) {
+                pagesByProduct.computeIfAbsent(product.getProductId(), id -> new HashSet<>()).add(pageKey);
+            }
+        }
+        return entry.text;
+    }
+
+    /**
+     * Drops the cached line of a product and every cached page that shows it.
+     *
+     * @param productId the product that changed
+     */
+    public synchronized void invalidateProduct(String productId) {
+        lines.remove(productId);
+        Set<String> pageKeys = pagesByProduct.remove(productId);
+        if (pageKeys == null) {
+            return;
+        }
+        for (String pageKey : pageKeys) {
+            PageEntry page = pages.remove(pageKey);
+            if (page != null) {
+                unindexPage(pageKey, page);
+            }
+        }
+    }
+
+    /** Drops all cached pages, e.g. after products were added or removed. */
+    public synchronized void invalidatePages() {
+        pages.clear();
+        pagesByProduct.clear();
+    }
+
+    /**
+     * Mutation hook: called for price, stock and sale changes of catalog products.
+     *
+     * @param product the product that changed
+     */
+    @Override
+    public void productChanged(Product product) {
+        invalidateProduct(product.getProductId());
+    }
+
+    /** @return number of lookups answered from the cache */
+    public synchronized long getHits() { return hits; }
+
+    /** @return number of lookups that required formatting */
+    public synchronized long getMisses() { return misses; }
+
+    /** @return number of cached product lines */
+    public synchronized int getCachedLineCount() { return lines.size(); }
+
+    /** @return number of cached pages */
+    public synchronized int getCachedPageCount() { return pages.size(); }
+
+    private void unindexPage(String pageKey, PageEntry page) {
+        for (ProductSnapshot product : page.sources) {
+            Set<String> pageKeys = pagesByProduct.get(product.getProductId());
+            if (pageKeys != null) {
+                pageKeys.remove(pageKey);
+                if (pageKeys.isEmpty()) {
+                    pagesByProduct.remove(product.getProductId());
+                }
+            }
+        }
+    }
+
+    private static final class LineEntry {
+        final ProductSnapshot source;
+        final String text;
+
+        LineEntry(ProductSnapshot source, String text) {
+            this.source = source;
+            this.text = text;
+        }
+    }
+
+    private static final class PageEntry {
+        final List<ProductSnapshot> sources;
+        final String text;
+
+        PageEntry(List<ProductSnapshot> sources, String text) {
+            this.sources = sources;
+            this.text = text;
+        }
+
+        boolean matches(List<ProductSnapshot> members) {
+            if (members.size() != sources.size()) {
+                return false;
+            }
+            for (int i = 0; i < members.size(); i++) {
+                if (members.get(i) != sources.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
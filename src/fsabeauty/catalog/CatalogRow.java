@@ -0,0 +1,51 @@
+package fsabeauty.catalog;
+
+/**
+ * Immutable, already validated row of a merchandising catalog feed.
+ * One row describes the desired state of a single product after the import.
+ */
+public class CatalogRow {
+    private final String productId;
+    private final String name;
+    private final String brand;
+    private final double price;
+    private final int stock;
+    private final long lineNumber;
+
+    /**
+     * Constructs a catalog row with the values read from the feed.
+     *
+     * @param productId the unique product identifier
+     * @param name the display name of the product
+     * @param brand the product brand
+     * @param price the new unit price
+     * @param stock the new stock quantity
+     * @param lineNumber the 1-based line of the feed the row was read from
+     */
+    public CatalogRow(String productId, String name, String brand, double price, int stock, long lineNumber) {
+        this.productId = productId;
+        this.name = name;
+        this.brand = brand;
+        this.price = price;
+        this.stock = stock;
+        this.lineNumber = lineNumber;
+    }
+
+    /** @return the unique product identifier */
+    public String getProductId() { return productId; }
+
+    /** @return the display name of the product */
+    public String getName() { return name; }
+
+    /** @return the product brand */
+    public String getBrand() { return brand; }
+
+    /** @return the new unit price */
+    public double getPrice() { return price; }
+
+    /** @return the new stock quantity */
+    public int getStock() { return stock; }
+
+    /** @return the 1-based feed line this row came from */
+    public long getLineNumber() { return lineNumber; }
+}
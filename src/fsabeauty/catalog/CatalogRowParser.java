@@ -0,0 +1,259 @@
+package fsabeauty.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns single feed lines into validated {@link CatalogRow} objects.
+ * Supports CSV with a header line (quoted fields allowed) and JSON Lines where
+ * every line is a flat JSON object. Invalid rows are reported by throwing
+ * IllegalArgumentException with a short reason.
+ */
+public class CatalogRowParser {
+    public static final String[] REQUIRED_COLUMNS = {"productId", "name", "brand", "price", "stock"};
+
+    private final CatalogImporter.Format format;
+    private String[] header;
+
+    /**
+     * Constructs a parser for the given feed format.
+     *
+     * @param format the feed format of every line handed to this parser
+     */
+    public CatalogRowParser(CatalogImporter.Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Reports whether the parser still waits for the CSV header line.
+     *
+     * @return true if the next line is expected to be a header
+     */
+    public boolean needsHeader() {
+        return format == CatalogImporter.Format.CSV && header == null;
+    }
+
+    /**
+     * Reads the CSV header and checks that all required columns are present.
+     *
+     * @param line the first non-empty line of a CSV feed
+     * @throws IllegalArgumentException if a required column is missing
+     */
+    public void readHeader(String line) {
+        List<String> columns = splitCsv(line);
+        for (String required : REQUIRED_COLUMNS) {
+            if (!columns.contains(required)) {
+                throw new IllegalArgumentException("CSV header is missing column '" + required + "'");
+            }
+        }
+        this.header = columns.toArray(new String[0]);
+    }
+
+    /**
+     * Parses and validates one data line.
+     *
+     * @param line the raw line without its line terminator
+     * @param lineNumber the 1-based line number for error reporting
+     * @return the validated catalog row
+     * @throws IllegalArgumentException if the line is malformed or fails validation
+     */
+    public CatalogRow parse(String line, long lineNumber) {
+        Map<String, String> fields = format == CatalogImporter.Format.CSV ? csvFields(line) : jsonFields(line);
+
+        String productId = required(fields, "productId");
+        String name = required(fields, "name");
+        String brand = required(fields, "brand");
+        double price = parsePrice(required(fields, "price"));
+        int stock = parseStock(required(fields, "stock"));
+        return new CatalogRow(productId, name, brand, price, stock, lineNumber);
+    }
+
+    private Map<String, String> csvFields(String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " columns but found " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            fields.put(header[i], values.get(i));
+        }
+        return fields;
+    }
+
+    private static String required(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("missing value for '" + key + "'");
+        }
+        return value.trim();
+    }
+
+    private static double parsePrice(String value) {
+        double price;
+        try {
+            price = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("price is not a number: " + value);
+        }
+        if (Double.isNaN(price) || Double.isInfinite(price) || price < 0) {
+            throw new IllegalArgumentException("price must be a non-negative amount: " + value);
+        }
+        return price;
+    }
+
+    private static int parseStock(String value) {
+        int stock;
+        try {
+            stock = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("stock is not a whole number: " + value);
+        }
+        if (stock < 0) {
+            throw new IllegalArgumentException("stock must not be negative: " + value);
+        }
+        return stock;
+    }
+
+    /**
+     * Splits a CSV line into fields, honouring double-quoted fields and "" escapes.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    /**
+     * Reads a flat JSON object into a key/value map. Nested objects and arrays are
+     * not part of the feed format and are rejected.
+     */
+    static Map<String, String> jsonFields(String line) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipWhitespace(line, 0)};
+        expect(line, pos, '{');
+
+        if (peek(line, pos) == '}') {
+            pos[0]++;
+            return fields;
+        }
+        while (true) {
+            String key = readJsonString(line, pos);
+            expect(line, pos, ':');
+            fields.put(key, readJsonValue(line, pos));
+
+            char next = peek(line, pos);
+            pos[0]++;
+            if (next == '}') {
+                break;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("malformed JSON object");
+            }
+        }
+        if (skipWhitespace(line, pos[0]) != line.length()) {
+            throw new IllegalArgumentException("unexpected content after JSON object");
+        }
+        return fields;
+    }
+
+    private static String readJsonValue(String line, int[] pos) {
+        char c = peek(line, pos);
+        if (c == '"') {
+            return readJsonString(line, pos);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("nested JSON values are not supported");
+        }
+        int start = pos[0];
+        while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) {
+            pos[0]++;
+        }
+        String literal = line.substring(start, pos[0]);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static String readJsonString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+        while (pos[0] < line.length()) {
+            char c = line.charAt(pos[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (pos[0] >= line.length()) {
+                break;
+            }
+            char escaped = line.charAt(pos[0]++);
+            switch (escaped) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (pos[0] + 4 > line.length()) {
+                        throw new IllegalArgumentException("truncated unicode escape");
+                    }
+                    value.append((char) Integer.parseInt(line.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default: value.append(escaped);
+            }
+        }
+        throw new IllegalArgumentException("unterminated JSON string");
+    }
+
+    private static void expect(String line, int[] pos, char expected) {
+        if (peek(line, pos) != expected) {
+            throw new IllegalArgumentException("expected '" + expected + "' at column " + (pos[0] + 1));
+        }
+        pos[0]++;
+    }
+
+    private static char peek(String line, int[] pos) {
+        pos[0] = skipWhitespace(line, pos[0]);
+        if (pos[0] >= line.length()) {
+            throw new IllegalArgumentException("unexpected end of JSON line");
+        }
+        return line.charAt(pos[0]);
+    }
+
+    private static int skipWhitespace(String line, int pos) {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
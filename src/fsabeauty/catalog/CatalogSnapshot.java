@@ -0,0 +1,141 @@
+package fsabeauty.catalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * One immutable, versioned state of the whole catalog.
+ * A snapshot never changes after it has been published; newer versions are
+ * derived from it by structural sharing in the underlying {@link PersistentHashTrie}.
+ */
+public final class CatalogSnapshot {
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, PersistentHashTrie.empty());
+
+    private final long version;
+    private final PersistentHashTrie<String, ProductSnapshot> entries;
+    private volatile CatalogIndex index;
+
+    CatalogSnapshot(long version, PersistentHashTrie<String, ProductSnapshot> entries) {
+        this.version = version;
+        this.entries = entries;
+    }
+
+    /**
+     * Derives the next version. Listing indexes already built for this version are
+     * carried over and updated with just the changed products.
+     *
+     * @param entries the products of the next version
+     * @param changedIds IDs of the products added, changed or removed
+     * @return the next snapshot
+     */
+    CatalogSnapshot next(PersistentHashTrie<String, ProductSnapshot> entries, Collection<String> changedIds) {
+        CatalogSnapshot next = new CatalogSnapshot(version + 1, entries);
+        CatalogIndex built = index;
+        if (built != null) {
+            next.index = built.derive(next, changedIds);
+        }
+        return next;
+    }
+
+    /** @return the monotonically increasing version number of this snapshot */
+    public long getVersion() { return version; }
+
+    /**
+     * Looks up a product by ID.
+     *
+     * @param productId the product identifier
+     * @return the product state in this version, or null if absent
+     */
+    public ProductSnapshot get(String productId) {
+        return entries.get(productId);
+    }
+
+    /**
+     * Checks whether the product exists in this version.
+     *
+     * @param productId the product identifier
+     * @return true if the product is part of this snapshot
+     */
+    public boolean contains(String productId) {
+        return entries.containsKey(productId);
+    }
+
+    /** @return number of products in this version */
+    public int size() { return entries.size(); }
+
+    /**
+     * Lists the product identifiers of this version.
+     *
+     * @return a new list of product IDs
+     */
+    public List<String> getProductIds() {
+        List<String> ids = new ArrayList<>(entries.size());
+        entries.forEach((id, product) -> ids.add(id));
+        return ids;
+    }
+
+    /**
+     * Lists the product states of this version.
+     *
+     * @return a new list of product snapshots
+     */
+    public List<ProductSnapshot> getProducts() {
+        List<ProductSnapshot> products = new ArrayList<>(entries.size());
+        entries.forEach((id, product) -> products.add(product));
+        return products;
+    }
+
+    /**
+     * Provides lazy iteration over the products without copying them.
+     *
+     * @return iterable view of the product snapshots
+     */
+    public Iterable<ProductSnapshot> products() {
+        return () -> new Iterator<ProductSnapshot>() {
+            private final Iterator<Map.Entry<String, ProductSnapshot>> it = entries.iterator();
+
+            @Override public boolean hasNext() { return it.hasNext(); }
+            @Override public ProductSnapshot next() { return it.next().getValue(); }
+        };
+    }
+
+    /**
+     * Streams a sorted, filtered listing of this version lazily.
+     *
+     * @param query sort order and filters
+     * @return lazily evaluated stream of matching products
+     */
+    public Stream<ProductSnapshot> stream(CatalogQuery query) {
+        return index().stream(query, null);
+    }
+
+    /**
+     * Reads one page of a sorted, filtered listing of this version.
+     *
+     * @param query sort order and filters
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param pageSize maximum number of products on the page
+     * @return the page and the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order
+     */
+    public CatalogPage page(CatalogQuery query, String cursor, int pageSize) {
+        return index().page(query, cursor, pageSize);
+    }
+
+    private CatalogIndex index() {
+        CatalogIndex result = index;
+        if (result == null) {
+            result = new CatalogIndex(this);
+            index = result;
+        }
+        return result;
+    }
+
+    PersistentHashTrie<String, ProductSnapshot> entries() {
+        return entries;
+    }
+}
@@ -0,0 +1,104 @@
+package fsabeauty.catalog;
+
+/**
+ * Stable sort orders for catalog listings.
+ * Every order breaks ties by product ID, so a listing has one well-defined
+ * sequence and a cursor (sort value + product ID) identifies a unique position in it.
+ */
+public enum CatalogSortOrder {
+    ID {
+        @Override
+        int compareValues(ProductSnapshot a, ProductSnapshot b) {
+            return 0;
+        }
+
+        @Override
+        String encodeValue(ProductSnapshot product) {
+            return "";
+        }
+
+        @Override
+        int compareToValue(ProductSnapshot product, String value) {
+            return 0;
+        }
+    },
+    NAME {
+        @Override
+        int compareValues(ProductSnapshot a, ProductSnapshot b) {
+            return a.getName().compareTo(b.getName());
+        }
+
+        @Override
+        String encodeValue(ProductSnapshot product) {
+            return product.getName();
+        }
+
+        @Override
+        int compareToValue(ProductSnapshot product, String value) {
+            return product.getName().compareTo(value);
+        }
+    },
+    PRICE {
+        @Override
+        int compareValues(ProductSnapshot a, ProductSnapshot b) {
+            return Double.compare(a.getPrice(), b.getPrice());
+        }
+
+        @Override
+        String encodeValue(ProductSnapshot product) {
+            return Double.toString(product.getPrice());
+        }
+
+        @Override
+        int compareToValue(ProductSnapshot product, String value) {
+            return Double.compare(product.getPrice(), Double.parseDouble(value));
+        }
+    },
+    STOCK {
+        @Override
+        int compareValues(ProductSnapshot a, ProductSnapshot b) {
+            return Integer.compare(a.getStock(), b.getStock());
+        }
+
+        @Override
+        String encodeValue(ProductSnapshot product) {
+            return Integer.toString(product.getStock());
+        }
+
+        @Override
+        int compareToValue(ProductSnapshot product, String value) {
+            return Integer.compare(product.getStock(), Integer.parseInt(value));
+        }
+    };
+
+    abstract int compareValues(ProductSnapshot a, ProductSnapshot b);
+
+    abstract String encodeValue(ProductSnapshot product);
+
+    abstract int compareToValue(ProductSnapshot product, String value);
+
+    /**
+     * Compares two products in ascending order of this sort, tie-broken by product ID.
+     *
+     * @param a first product
+     * @param b second product
+     * @return negative, zero or positive like a Comparator
+     */
+    public int compare(ProductSnapshot a, ProductSnapshot b) {
+        int result = compareValues(a, b);
+        return result != 0 ? result : a.getProductId().compareTo(b.getProductId());
+    }
+
+    /**
+     * Compares a product with a cursor position of this sort.
+     *
+     * @param product the product
+     * @param value the encoded sort value of the cursor
+     * @param productId the product ID of the cursor
+     * @return negative if the product sorts before the cursor, zero if equal, positive after
+     */
+    int compareToCursor(ProductSnapshot product, String value, String productId) {
+        int result = compareToValue(product, value);
+        return result != 0 ? result : product.getProductId().compareTo(productId);
+    }
+}
@@ -0,0 +1,231 @@
+package fsabeauty.catalog;
+
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductChangeListener;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Multi-version catalog store.
+ * Readers call {@link #snapshot()} and get the latest published {@link CatalogSnapshot}
+ * with a single volatile read - they never lock and never see a partial update.
+ * Writers are serialised by a lock and publish a new version built by structural
+ * sharing from the previous one. A {@link Transaction} groups any number of
+ * changes, including mutations of live products made while it is open, into
+ * exactly one new version. Registered listeners (e.g. render caches) hear about
+ * every product that changed once the version containing the change is published.
+ */
+public class CatalogStore implements ProductChangeListener {
+    private volatile CatalogSnapshot current = CatalogSnapshot.EMPTY;
+    private volatile Transaction openTransaction;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<ProductChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+
+    /**
+     * Registers a listener that is told about each changed, added or removed product
+     * after the new catalog version has been published.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(ProductChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the index of which customers watch which catalog products.
+     *
+     * @return the subscription index kept in sync with every stored product
+     */
+    public SubscriptionIndex subscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Returns the latest published catalog version. Lock-free.
+     *
+     * @return the current snapshot
+     */
+    public CatalogSnapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Adds or replaces a single product and publishes a new version.
+     *
+     * @param product the live product to store
+     */
+    public void put(Product product) {
+        update(tx -> tx.put(product));
+    }
+
+    /**
+     * Removes a product and publishes a new version.
+     *
+     * @param productId the product to remove
+     */
+    public void remove(String productId) {
+        update(tx -> tx.remove(productId));
+    }
+
+    /**
+     * Applies a group of changes atomically.
+     * Live products that change while the transaction is open (from any thread)
+     * are re-captured at commit, so readers observe the whole group as one version.
+     *
+     * @param changes callback that performs the changes
+     * @return the snapshot published by this transaction
+     */
+    public CatalogSnapshot update(Consumer<Transaction> changes) {
+        writeLock.lock();
+        try {
+            Transaction tx = new Transaction(current.entries());
+            openTransaction = tx;
+            try {
+                changes.accept(tx);
+            } finally {
+                openTransaction = null;
+            }
+            CatalogSnapshot published = publish(tx.commit(), tx.touchedIds());
+            for (Product product : tx.touched) {
+                fireChanged(product);
+            }
+            return published;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Re-captures a live product after it changed outside of a transaction.
+     * Inside an open transaction the product is only marked dirty and captured at commit.
+     *
+     * @param product the product that changed
+     */
+    @Override
+    public void productChanged(Product product) {
+        Transaction tx = openTransaction;
+        if (tx != null && tx.markDirty(product)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            ProductSnapshot stored = current.get(product.getProductId());
+            if (stored != null && stored.getProduct() == product) {
+                publish(current.entries().put(product.getProductId(), ProductSnapshot.of(product)),
+                        Collections.singleton(product.getProductId()));
+                fireChanged(product);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void fireChanged(Product product) {
+        for (ProductChangeListener listener : listeners) {
+            listener.productChanged(product);
+        }
+    }
+
+    private CatalogSnapshot publish(PersistentHashTrie<String, ProductSnapshot> entries, Collection<String> changedIds) {
+        if (entries != current.entries()) {
+            current = current.next(entries, changedIds);
+        }
+        return current;
+    }
+
+    /**
+     * Pending changes of one write. Only the thread holding the write lock adds or
+     * removes entries; other threads may concurrently mark products dirty.
+     */
+    public class Transaction {
+        private PersistentHashTrie<String, ProductSnapshot> entries;
+        private final Set<Product> dirty = ConcurrentHashMap.newKeySet();
+        private final Set<Product> touched = new LinkedHashSet<>();
+        private boolean closed;
+
+        Transaction(PersistentHashTrie<String, ProductSnapshot> entries) {
+            this.entries = entries;
+        }
+
+        /**
+         * Adds or replaces a product in this transaction.
+         *
+         * @param product the live product to store
+         */
+        public void put(Product product) {
+            ProductSnapshot previous = entries.get(product.getProductId());
+            if (previous != null && previous.getProduct() != product) {
+                previous.getProduct().removeChangeListener(CatalogStore.this);
+                subscriptions.productRemoved(previous.getProduct());
+                touched.add(previous.getProduct());
+            }
+            entries = entries.put(product.getProductId(), ProductSnapshot.of(product));
+            product.addChangeListener(CatalogStore.this);
+            subscriptions.productAdded(product);
+            touched.add(product);
+        }
+
+        /**
+         * Removes a product in this transaction.
+         *
+         * @param productId the product to remove
+         */
+        public void remove(String productId) {
+            ProductSnapshot previous = entries.get(productId);
+            if (previous != null) {
+                previous.getProduct().removeChangeListener(CatalogStore.this);
+                subscriptions.productRemoved(previous.getProduct());
+                entries = entries.remove(productId);
+                touched.add(previous.getProduct());
+            }
+        }
+
+        /**
+         * Looks up a product as seen by this transaction, including its own changes.
+         *
+         * @param productId the product identifier
+         * @return the live product or null if absent
+         */
+        public Product getProduct(String productId) {
+            ProductSnapshot snapshot = entries.get(productId);
+            return snapshot == null ? null : snapshot.getProduct();
+        }
+
+        synchronized boolean markDirty(Product product) {
+            if (closed) {
+                return false;
+            }
+            dirty.add(product);
+            return true;
+        }
+
+        Set<String> touchedIds() {
+            Set<String> ids = new HashSet<>();
+            for (Product product : touched) {
+                ids.add(product.getProductId());
+            }
+            return ids;
+        }
+
+        synchronized PersistentHashTrie<String, ProductSnapshot> commit() {
+            closed = true;
+            for (Product product : dirty) {
+                ProductSnapshot stored = entries.get(product.getProductId());
+                if (stored != null && stored.getProduct() == product) {
+                    entries = entries.put(product.getProductId(), ProductSnapshot.of(product));
+                    touched.add(product);
+                }
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package fsabeauty.catalog;
+
+import java.util.List;
+
+/**
+ * Destination for validated catalog rows.
+ * The importer hands over rows in batches; the sink decides whether each row
+ * inserts a new product or updates an existing one and records that in the report.
+ */
+public interface CatalogUpsertSink {
+
+    /**
+     * Applies one batch of rows to the catalog.
+     *
+     * @param rows validated rows with unique product IDs
+     * @param report the report of the running import
+     */
+    void upsertBatch(List<CatalogRow> rows, ImportReport report);
+}
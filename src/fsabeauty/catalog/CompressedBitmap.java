@@ -0,0 +1,431 @@
+package fsabeauty.catalog;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints in the style of a Roaring bitmap.
+ * Values are grouped by their high 16 bits into chunks of 65536; a sparse chunk is
+ * a sorted {@code char[]} of low bits, a dense one a 1024-word bitset. Set operations
+ * (and, or, andNot) work chunk by chunk on whichever representation both sides have,
+ * so combining audiences of millions of customer IDs touches only the machine words
+ * involved. Not thread-safe; {@link #and}, {@link #or} and {@link #andNot} return new
+ * bitmaps and never modify their operands.
+ */
+public final class CompressedBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int chunkCount;
+
+    /**
+     * @param values the values to put in the bitmap
+     * @return a bitmap holding the values
+     */
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return true if the value was not yet present
+     */
+    public boolean add(int value) {
+        checkValue(value);
+        char high = (char) (value >>> 16);
+        int index = chunkIndex(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, high, new Container());
+        }
+        return containers[index].add((char) value);
+    }
+
+    /**
+     * @param value the value to remove
+     * @return true if the value was present
+     */
+    public boolean remove(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = chunkIndex((char) (value >>> 16));
+        if (index < 0 || !containers[index].remove((char) value)) {
+            return false;
+        }
+        if (containers[index].cardinality == 0) {
+            removeChunk(index);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = chunkIndex((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /** @return number of values in the bitmap */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    /**
+     * @param other the other bitmap
+     * @return values present in both bitmaps
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < chunkCount && j < other.chunkCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendChunk(keys[i], Container.and(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other the other bitmap
+     * @return values present in either bitmap
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < chunkCount || j < other.chunkCount) {
+            if (j == other.chunkCount || (i < chunkCount && keys[i] < other.keys[j])) {
+                result.appendChunk(keys[i], containers[i].copy());
+                i++;
+            } else if (i == chunkCount || keys[i] > other.keys[j]) {
+                result.appendChunk(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendChunk(keys[i], Container.or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other the values to exclude
+     * @return values of this bitmap that are not in the other one
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            while (j < other.chunkCount && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.chunkCount && other.keys[j] == keys[i]) {
+                result.appendChunk(keys[i], Container.andNot(containers[i], other.containers[j]));
+            } else {
+                result.appendChunk(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /** @return an independent copy */
+    public CompressedBitmap copy() {
+        CompressedBitmap copy = new CompressedBitmap();
+        for (int i = 0; i < chunkCount; i++) {
+            copy.appendChunk(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Visits every value in ascending order.
+     *
+     * @param action called once per value
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < chunkCount; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /** @return the values in ascending order */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = {0};
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedBitmap[cardinality=" + cardinality() + ", chunks=" + chunkCount + "]";
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values must be non-negative: " + value);
+        }
+    }
+
+    private int chunkIndex(char high) {
+        return Arrays.binarySearch(keys, 0, chunkCount, high);
+    }
+
+    private void insertChunk(int index, char high, Container container) {
+        if (chunkCount == keys.length) {
+            keys = Arrays.copyOf(keys, chunkCount * 2);
+            containers = Arrays.copyOf(containers, chunkCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(containers, index, containers, index + 1, chunkCount - index);
+        keys[index] = high;
+        containers[index] = container;
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, chunkCount - index - 1);
+        containers[--chunkCount] = null;
+    }
+
+    private void appendChunk(char high, Container container) {
+        if (container.cardinality > 0) {
+            insertChunk(chunkCount, high, container);
+        }
+    }
+
+    /**
+     * The low 16 bits of one chunk: a sorted array while sparse, a bitset once dense.
+     */
+    private static final class Container {
+        char[] values = new char[4]; // used while bits == null
+        long[] bits;
+        int cardinality;
+
+        boolean contains(char value) {
+            if (bits != null) {
+                return (bits[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        boolean add(char value) {
+            if (bits != null) {
+                long before = bits[value >>> 6];
+                bits[value >>> 6] = before | (1L << value);
+                if (before == bits[value >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int position = Arrays.binarySearch(values, 0, cardinality, value);
+            if (position >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                toBits();
+                return add(value);
+            }
+            int insertAt = -position - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, cardinality - insertAt);
+            values[insertAt] = value;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char value) {
+            if (bits != null) {
+                long before = bits[value >>> 6];
+                bits[value >>> 6] = before & ~(1L << value);
+                if (before == bits[value >>> 6]) {
+                    return false;
+                }
+                cardinality--;
+                normalize();
+                return true;
+            }
+            int position = Arrays.binarySearch(values, 0, cardinality, value);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+            cardinality--;
+            return true;
+        }
+
+        void forEach(int base, IntConsumer action) {
+            if (bits != null) {
+                for (int word = 0; word < WORDS; word++) {
+                    long w = bits[word];
+                    while (w != 0) {
+                        action.accept(base | (word << 6) | Long.numberOfTrailingZeros(w));
+                        w &= w - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(base | values[i]);
+                }
+            }
+        }
+
+        Container copy() {
+            Container copy = new Container();
+            copy.cardinality = cardinality;
+            if (bits != null) {
+                copy.bits = bits.clone();
+                copy.values = null;
+            } else {
+                copy.values = Arrays.copyOf(values, Math.max(4, cardinality));
+            }
+            return copy;
+        }
+
+        private void toBits() {
+            bits = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        // Switches a bitset that became sparse back to the array form
+        private void normalize() {
+            if (bits != null && cardinality <= ARRAY_LIMIT) {
+                char[] array = new char[Math.max(4, cardinality)];
+                int n = 0;
+                for (int word = 0; word < WORDS; word++) {
+                    long w = bits[word];
+                    while (w != 0) {
+                        array[n++] = (char) ((word << 6) | Long.numberOfTrailingZeros(w));
+                        w &= w - 1;
+                    }
+                }
+                values = array;
+                bits = null;
+            }
+        }
+
+        private static Container fromBits(long[] bits) {
+            Container result = new Container();
+            result.bits = bits;
+            result.values = null;
+            for (long word : bits) {
+                result.cardinality += Long.bitCount(word);
+            }
+            result.normalize();
+            return result;
+        }
+
+        static Container and(Container a, Container b) {
+            if (a.bits != null && b.bits != null) {
+                long[] bits = new long[WORDS];
+                for (int i = 0; i < WORDS; i++) {
+                    bits[i] = a.bits[i] & b.bits[i];
+                }
+                return fromBits(bits);
+            }
+            Container sparse = a.bits == null ? a : b;
+            Container other = sparse == a ? b : a;
+            Container result = new Container();
+            result.values = new char[Math.max(4, sparse.cardinality)];
+            for (int i = 0; i < sparse.cardinality; i++) {
+                if (other.contains(sparse.values[i])) {
+                    result.values[result.cardinality++] = sparse.values[i];
+                }
+            }
+            return result;
+        }
+
+        static Container or(Container a, Container b) {
+            if (a.bits == null && b.bits == null && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+                Container result = new Container();
+                result.values = new char[Math.max(4, a.cardinality + b.cardinality)];
+                int i = 0;
+                int j = 0;
+                while (i < a.cardinality || j < b.cardinality) {
+                    char next;
+                    if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+                        next = a.values[i++];
+                    } else if (i == a.cardinality || a.values[i] > b.values[j]) {
+                        next = b.values[j++];
+                    } else {
+                        next = a.values[i++];
+                        j++;
+                    }
+                    result.values[result.cardinality++] = next;
+                }
+                return result;
+            }
+            long[] bits = new long[WORDS];
+            a.orInto(bits);
+            b.orInto(bits);
+            return fromBits(bits);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a.bits == null) {
+                Container result = new Container();
+                result.values = new char[Math.max(4, a.cardinality)];
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (!b.contains(a.values[i])) {
+                        result.values[result.cardinality++] = a.values[i];
+                    }
+                }
+                return result;
+            }
+            long[] bits = a.bits.clone();
+            if (b.bits != null) {
+                for (int i = 0; i < WORDS; i++) {
+                    bits[i] &= ~b.bits[i];
+                }
+            } else {
+                for (int i = 0; i < b.cardinality; i++) {
+                    bits[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+                }
+            }
+            return fromBits(bits);
+        }
+
+        private void orInto(long[] target) {
+            if (bits != null) {
+                for (int i = 0; i < WORDS; i++) {
+                    target[i] |= bits[i];
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    target[values[i] >>> 6] |= 1L << values[i];
+                }
+            }
+        }
+    }
+}
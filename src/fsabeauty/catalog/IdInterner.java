@@ -0,0 +1,94 @@
+package fsabeauty.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns small dense integer IDs to keys so that relations between them can be
+ * kept in primitive arrays. IDs of released keys are reused, keeping the ID space
+ * (and every array indexed by it) as small as the number of live keys.
+ * Not thread-safe; callers synchronise.
+ *
+ * @param <K> the key type
+ */
+public final class IdInterner<K> {
+    public static final int ABSENT = -1;
+
+    private final Map<K, Integer> ids = new HashMap<>();
+    private final List<K> keys = new ArrayList<>();
+    private int[] free = new int[8];
+    private int freeCount;
+
+    /**
+     * Returns the ID of a key, assigning one if the key is new.
+     *
+     * @param key the key to intern
+     * @return its dense ID
+     */
+    public int intern(K key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        int assigned;
+        if (freeCount > 0) {
+            assigned = free[--freeCount];
+            keys.set(assigned, key);
+        } else {
+            assigned = keys.size();
+            keys.add(key);
+        }
+        ids.put(key, assigned);
+        return assigned;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return its ID, or {@link #ABSENT} if it was never interned or has been released
+     */
+    public int idOf(K key) {
+        Integer id = ids.get(key);
+        return id == null ? ABSENT : id;
+    }
+
+    /**
+     * @param id an ID handed out by this interner
+     * @return the key, or null if the ID is unused
+     */
+    public K keyOf(int id) {
+        return id >= 0 && id < keys.size() ? keys.get(id) : null;
+    }
+
+    /**
+     * Forgets a key; its ID may be handed to the next new key.
+     *
+     * @param key the key to release
+     * @return the released ID, or {@link #ABSENT} if the key was unknown
+     */
+    public int release(K key) {
+        Integer id = ids.remove(key);
+        if (id == null) {
+            return ABSENT;
+        }
+        keys.set(id, null);
+        if (freeCount == free.length) {
+            int[] grown = new int[free.length * 2];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        free[freeCount++] = id;
+        return id;
+    }
+
+    /** @return number of live keys */
+    public int size() {
+        return ids.size();
+    }
+
+    /** @return one more than the highest ID handed out so far */
+    public int capacity() {
+        return keys.size();
+    }
+}
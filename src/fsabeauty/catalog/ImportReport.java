@@ -0,0 +1,97 @@
+package fsabeauty.catalog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a catalog import run.
+ * Only the first {@link #MAX_RECORDED_ERRORS} problems are kept verbatim so that
+ * a feed full of bad rows cannot grow the report without bound.
+ */
+public class ImportReport {
+    public static final int MAX_RECORDED_ERRORS = 100;
+
+    private long rowsRead;
+    private long inserted;
+    private long updated;
+    private long rejected;
+    private long duplicates;
+    private long batches;
+    private final List<String> errors;
+
+    /**
+     * Constructs an empty report.
+     */
+    public ImportReport() {
+        this.errors = new ArrayList<>();
+    }
+
+    void recordRowRead() { rowsRead++; }
+
+    void recordBatch() { batches++; }
+
+    /**
+     * Records a row that was rejected by validation.
+     *
+     * @param lineNumber the feed line of the rejected row
+     * @param reason why the row was rejected
+     */
+    void recordRejected(long lineNumber, String reason) {
+        rejected++;
+        recordError(lineNumber, reason);
+    }
+
+    /**
+     * Records a row whose product ID was already seen earlier in the same feed.
+     *
+     * @param lineNumber the feed line of the duplicate row
+     * @param productId the duplicated identifier
+     */
+    void recordDuplicate(long lineNumber, String productId) {
+        duplicates++;
+        recordError(lineNumber, "duplicate product ID " + productId);
+    }
+
+    /** Records a product that did not exist before the import. */
+    public void recordInserted() { inserted++; }
+
+    /** Records an existing product that was updated from the feed. */
+    public void recordUpdated() { updated++; }
+
+    private void recordError(long lineNumber, String reason) {
+        if (errors.size() < MAX_RECORDED_ERRORS) {
+            errors.add("line " + lineNumber + ": " + reason);
+        }
+    }
+
+    /** @return number of data rows read from the feed */
+    public long getRowsRead() { return rowsRead; }
+
+    /** @return number of new products added to the catalog */
+    public long getInserted() { return inserted; }
+
+    /** @return number of existing products updated */
+    public long getUpdated() { return updated; }
+
+    /** @return number of rows that failed validation */
+    public long getRejected() { return rejected; }
+
+    /** @return number of rows skipped because their ID repeated */
+    public long getDuplicates() { return duplicates; }
+
+    /** @return number of batches applied to the catalog */
+    public long getBatches() { return batches; }
+
+    /** @return the first recorded problems, at most {@link #MAX_RECORDED_ERRORS} */
+    public List<String> getErrors() { return new ArrayList<>(errors); }
+
+    /**
+     * Provides a one-line human readable summary of the run.
+     *
+     * @return formatted summary string
+     */
+    public String getSummary() {
+        return String.format("Rows: %d | Inserted: %d | Updated: %d | Rejected: %d | Duplicates: %d | Batches: %d",
+                rowsRead, inserted, updated, rejected, duplicates, batches);
+    }
+}
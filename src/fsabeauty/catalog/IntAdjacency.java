@@ -0,0 +1,97 @@
+package fsabeauty.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Directed graph over dense integer IDs stored as one sorted {@code int[]} row per node.
+ * Membership tests are a binary search, and adding or removing an edge costs
+ * O(degree) - never anything proportional to the number of nodes.
+ * Not thread-safe; callers synchronise.
+ */
+final class IntAdjacency {
+    private static final int[] EMPTY_ROW = new int[0];
+
+    private int[][] rows = new int[16][];
+    private int[] degrees = new int[16];
+
+    /**
+     * @return true if the edge was added, false if it already existed
+     */
+    boolean add(int from, int to) {
+        ensureNode(from);
+        int[] row = rows[from];
+        int degree = degrees[from];
+        int position = row == null ? -1 : Arrays.binarySearch(row, 0, degree, to);
+        if (position >= 0) {
+            return false;
+        }
+        int insertAt = -position - 1;
+        if (row == null) {
+            row = new int[4];
+        } else if (degree == row.length) {
+            row = Arrays.copyOf(row, degree * 2);
+        }
+        System.arraycopy(row, insertAt, row, insertAt + 1, degree - insertAt);
+        row[insertAt] = to;
+        rows[from] = row;
+        degrees[from] = degree + 1;
+        return true;
+    }
+
+    /**
+     * @return true if the edge existed
+     */
+    boolean remove(int from, int to) {
+        if (from >= rows.length || rows[from] == null) {
+            return false;
+        }
+        int[] row = rows[from];
+        int degree = degrees[from];
+        int position = Arrays.binarySearch(row, 0, degree, to);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(row, position + 1, row, position, degree - position - 1);
+        degrees[from] = degree - 1;
+        return true;
+    }
+
+    boolean contains(int from, int to) {
+        return from < rows.length && rows[from] != null
+                && Arrays.binarySearch(rows[from], 0, degrees[from], to) >= 0;
+    }
+
+    int degree(int node) {
+        return node < degrees.length ? degrees[node] : 0;
+    }
+
+    /**
+     * @return a copy of the node's neighbours in ascending order
+     */
+    int[] neighbours(int node) {
+        if (node >= rows.length || rows[node] == null) {
+            return EMPTY_ROW;
+        }
+        return Arrays.copyOf(rows[node], degrees[node]);
+    }
+
+    /**
+     * Drops all edges of a node and returns the former neighbours.
+     */
+    int[] clear(int node) {
+        int[] neighbours = neighbours(node);
+        if (node < rows.length) {
+            rows[node] = null;
+            degrees[node] = 0;
+        }
+        return neighbours;
+    }
+
+    private void ensureNode(int node) {
+        if (node >= rows.length) {
+            int length = Math.max(node + 1, rows.length * 2);
+            rows = Arrays.copyOf(rows, length);
+            degrees = Arrays.copyOf(degrees, length);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package fsabeauty.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Small bounded map that evicts the least recently used entry once it is full.
+ * Not thread-safe; owners guard it with their own lock.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+    private final BiConsumer<K, V> onEvict;
+    private long evictions;
+
+    /**
+     * Constructs a cache with the given capacity.
+     *
+     * @param capacity maximum number of entries kept
+     * @param onEvict callback invoked for every entry dropped because the cache was full
+     */
+    public LruCache(int capacity, BiConsumer<K, V> onEvict) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.onEvict = onEvict;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= LruCache.this.capacity) {
+                    return false;
+                }
+                evictions++;
+                LruCache.this.onEvict.accept(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Constructs a cache without an eviction callback.
+     *
+     * @param capacity maximum number of entries kept
+     */
+    public LruCache(int capacity) {
+        this(capacity, (key, value) -> { });
+    }
+
+    /**
+     * Returns the cached value and marks it as recently used.
+     *
+     * @param key the key to look up
+     * @return the value or null if absent
+     */
+    public V get(K key) { return entries.get(key); }
+
+    /**
+     * Stores a value, evicting the least recently used entry if needed.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value) { entries.put(key, value); }
+
+    /**
+     * Removes an entry without invoking the eviction callback.
+     *
+     * @param key the key to remove
+     * @return the removed value or null
+     */
+    public V remove(K key) { return entries.remove(key); }
+
+    /** Removes all entries. */
+    public void clear() { entries.clear(); }
+
+    /** @return current number of entries */
+    public int size() { return entries.size(); }
+
+    /** @return maximum number of entries */
+    public int getCapacity() { return capacity; }
+
+    /** @return number of entries evicted because the cache was full */
+    public long getEvictions() { return evictions; }
+}
@@ -0,0 +1,437 @@
+package fsabeauty.catalog;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash array mapped trie (HAMT).
+ * Every update returns a new trie that shares all untouched nodes with the
+ * previous one, so an update copies only the O(log32 n) nodes on the path to
+ * the changed key. Old versions stay valid forever, which makes a trie safe to
+ * hand to any number of readers without locking.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class PersistentHashTrie<K, V> implements Iterable<Map.Entry<K, V>> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashTrie<Object, Object> EMPTY =
+            new PersistentHashTrie<>(new BitmapNode<>(0, new Object[0]), 0);
+
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentHashTrie(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the shared empty trie.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return an empty trie
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <K, V> PersistentHashTrie<K, V> empty() {
+        return (PersistentHashTrie) EMPTY;
+    }
+
+    /**
+     * Looks up the value stored for a key.
+     *
+     * @param key the key to look up
+     * @return the value, or null if the key is absent
+     */
+    public V get(K key) {
+        return root.find(0, hash(key), key);
+    }
+
+    /**
+     * Checks whether the key is present.
+     *
+     * @param key the key to look up
+     * @return true if a value is stored for the key
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a trie that maps the key to the value.
+     *
+     * @param key the key, must not be null
+     * @param value the value, must not be null
+     * @return the updated trie, or this trie if nothing changed
+     */
+    public PersistentHashTrie<K, V> put(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        boolean[] added = new boolean[1];
+        Node<K, V> newRoot = root.put(0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashTrie<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a trie without the key.
+     *
+     * @param key the key to remove
+     * @return the updated trie, or this trie if the key was absent
+     */
+    public PersistentHashTrie<K, V> remove(K key) {
+        Node<K, V> newRoot = root.remove(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashTrie<>(newRoot, size - 1);
+    }
+
+    /** @return number of entries */
+    public int size() { return size; }
+
+    /** @return true if the trie holds no entries */
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Visits every entry in trie order.
+     *
+     * @param action callback receiving each key and value
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach(action);
+    }
+
+    /**
+     * Returns a lazy iterator over the entries in trie order.
+     *
+     * @return entry iterator
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new TrieIterator<>(root);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int fragment(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    /**
+     * Builds the smallest subtree that holds two leaves with different keys.
+     */
+    private static <K, V> Node<K, V> merge(int shift, Leaf<K, V> a, Leaf<K, V> b) {
+        if (a.hash == b.hash) {
+            return new CollisionNode<>(a.hash, new Object[]{a, b});
+        }
+        int fragA = fragment(a.hash, shift);
+        int fragB = fragment(b.hash, shift);
+        if (fragA == fragB) {
+            return new BitmapNode<>(1 << fragA, new Object[]{merge(shift + BITS, a, b)});
+        }
+        Object[] slots = fragA < fragB ? new Object[]{a, b} : new Object[]{b, a};
+        return new BitmapNode<>((1 << fragA) | (1 << fragB), slots);
+    }
+
+    private static final class Leaf<K, V> implements Map.Entry<K, V> {
+        final int hash;
+        final K key;
+        final V value;
+
+        Leaf(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override public K getKey() { return key; }
+        @Override public V getValue() { return value; }
+        @Override public V setValue(V value) { throw new UnsupportedOperationException("Trie entries are immutable"); }
+    }
+
+    private abstract static class Node<K, V> {
+        abstract V find(int shift, int hash, K key);
+
+        abstract Node<K, V> put(int shift, int hash, K key, V value, boolean[] added);
+
+        abstract Node<K, V> remove(int shift, int hash, K key);
+
+        abstract Object[] slots();
+
+        @SuppressWarnings("unchecked")
+        void forEach(BiConsumer<? super K, ? super V> action) {
+            for (Object slot : slots()) {
+                if (slot instanceof Leaf) {
+                    Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                    action.accept(leaf.key, leaf.value);
+                } else {
+                    ((Node<K, V>) slot).forEach(action);
+                }
+            }
+        }
+    }
+
+    /**
+     * Interior node: a 32-bit bitmap says which hash fragments are present and the
+     * slot array stores only those, each either a Leaf or a child Node.
+     */
+    private static final class BitmapNode<K, V> extends Node<K, V> {
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        Object[] slots() { return slots; }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V find(int shift, int hash, K key) {
+            int bit = 1 << fragment(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                return leaf.hash == hash && leaf.key.equals(key) ? leaf.value : null;
+            }
+            return ((Node<K, V>) slot).find(shift + BITS, hash, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> put(int shift, int hash, K key, V value, boolean[] added) {
+            int bit = 1 << fragment(hash, shift);
+            int idx = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, copy, 0, idx);
+                copy[idx] = new Leaf<>(hash, key, value);
+                System.arraycopy(slots, idx, copy, idx + 1, slots.length - idx);
+                added[0] = true;
+                return new BitmapNode<>(bitmap | bit, copy);
+            }
+
+            Object slot = slots[idx];
+            Object replacement;
+            if (slot instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                if (leaf.hash == hash && leaf.key.equals(key)) {
+                    if (leaf.value == value) {
+                        return this;
+                    }
+                    replacement = new Leaf<>(hash, key, value);
+                } else {
+                    added[0] = true;
+                    replacement = merge(shift + BITS, leaf, new Leaf<>(hash, key, value));
+                }
+            } else {
+                Node<K, V> child = (Node<K, V>) slot;
+                Node<K, V> newChild = child.put(shift + BITS, hash, key, value, added);
+                if (newChild == child) {
+                    return this;
+                }
+                replacement = newChild;
+            }
+            Object[] copy = slots.clone();
+            copy[idx] = replacement;
+            return new BitmapNode<>(bitmap, copy);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> remove(int shift, int hash, K key) {
+            int bit = 1 << fragment(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object slot = slots[idx];
+
+            if (slot instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                if (leaf.hash != hash || !leaf.key.equals(key)) {
+                    return this;
+                }
+                return without(bit, idx);
+            }
+
+            Node<K, V> child = (Node<K, V>) slot;
+            Node<K, V> newChild = child.remove(shift + BITS, hash, key);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild == null) {
+                return without(bit, idx);
+            }
+            Object[] copy = slots.clone();
+            Object[] childSlots = newChild.slots();
+            // Pull a lone leaf up so the trie stays as shallow as possible
+            copy[idx] = childSlots.length == 1 && childSlots[0] instanceof Leaf ? childSlots[0] : newChild;
+            return new BitmapNode<>(bitmap, copy);
+        }
+
+        private Node<K, V> without(int bit, int idx) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, idx);
+            System.arraycopy(slots, idx + 1, copy, idx, slots.length - idx - 1);
+            return new BitmapNode<>(bitmap & ~bit, copy);
+        }
+    }
+
+    /**
+     * Leaf bucket for keys whose full 32-bit hashes are equal.
+     */
+    private static final class CollisionNode<K, V> extends Node<K, V> {
+        final int hash;
+        final Object[] leaves;
+
+        CollisionNode(int hash, Object[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        Object[] slots() { return leaves; }
+
+        @SuppressWarnings("unchecked")
+        private int indexOf(K key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (((Leaf<K, V>) leaves[i]).key.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V find(int shift, int hash, K key) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int idx = indexOf(key);
+            return idx < 0 ? null : ((Leaf<K, V>) leaves[idx]).value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> put(int shift, int hash, K key, V value, boolean[] added) {
+            if (hash != this.hash) {
+                // A different hash reached this depth: split into a bitmap node holding both
+                BitmapNode<K, V> parent = new BitmapNode<>(1 << fragment(this.hash, shift), new Object[]{this});
+                return parent.put(shift, hash, key, value, added);
+            }
+            int idx = indexOf(key);
+            if (idx >= 0) {
+                if (((Leaf<K, V>) leaves[idx]).value == value) {
+                    return this;
+                }
+                Object[] copy = leaves.clone();
+                copy[idx] = new Leaf<>(hash, key, value);
+                return new CollisionNode<>(hash, copy);
+            }
+            Object[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = new Leaf<>(hash, key, value);
+            added[0] = true;
+            return new CollisionNode<>(hash, copy);
+        }
+
+        @Override
+        Node<K, V> remove(int shift, int hash, K key) {
+            if (hash != this.hash) {
+                return this;
+            }
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return this;
+            }
+            if (leaves.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[leaves.length - 1];
+            System.arraycopy(leaves, 0, copy, 0, idx);
+            System.arraycopy(leaves, idx + 1, copy, idx, leaves.length - idx - 1);
+            return new CollisionNode<>(hash, copy);
+        }
+    }
+
+    /**
+     * Depth-first iterator that keeps one cursor per trie level.
+     */
+    private static final class TrieIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+        private Leaf<K, V> next;
+
+        TrieIterator(Node<K, V> root) {
+            arrays.push(root.slots());
+            positions.push(0);
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] array = arrays.peek();
+                int pos = positions.pop();
+                if (pos >= array.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(pos + 1);
+                Object slot = array[pos];
+                if (slot instanceof Leaf) {
+                    next = (Leaf<K, V>) slot;
+                    return;
+                }
+                arrays.push(((Node<K, V>) slot).slots());
+                positions.push(0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> result = new AbstractMap.SimpleImmutableEntry<>(next.key, next.value);
+            advance();
+            return result;
+        }
+    }
+}
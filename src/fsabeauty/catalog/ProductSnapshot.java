@@ -0,0 +1,76 @@
+package fsabeauty.catalog;
+
+import fsabeauty.observer.Product;
+
+/**
+ * Immutable copy of a product's catalog-visible state at one point in time.
+ * Readers work with these values so that a page render sees consistent prices
+ * and stock even while the live {@link Product} is being updated.
+ */
+public final class ProductSnapshot {
+    private final Product product;
+    private final String productId;
+    private final String name;
+    private final String brand;
+    private final double price;
+    private final int stock;
+    private final boolean onSale;
+    private final double discountPercentage;
+
+    private ProductSnapshot(Product product) {
+        this.product = product;
+        this.productId = product.getProductId();
+        this.name = product.getName();
+        this.brand = product.getBrand();
+        this.price = product.getPrice();
+        this.stock = product.getStock();
+        this.onSale = product.isOnSale();
+        this.discountPercentage = product.getDiscountPercentage();
+    }
+
+    /**
+     * Captures the current state of a live product.
+     * The product's monitor is held while copying, which is the same lock its
+     * mutators use, so the copy is never half-way through an update.
+     *
+     * @param product the live product
+     * @return an immutable snapshot of the product
+     */
+    public static ProductSnapshot of(Product product) {
+        synchronized (product) {
+            return new ProductSnapshot(product);
+        }
+    }
+
+    /**
+     * Returns the live product this snapshot was taken from.
+     * Use it for subscriptions and mutations, never for reading catalog values.
+     *
+     * @return the live product
+     */
+    public Product getProduct() { return product; }
+
+    /** @return the unique product identifier */
+    public String getProductId() { return productId; }
+
+    /** @return the product name */
+    public String getName() { return name; }
+
+    /** @return the product brand */
+    public String getBrand() { return brand; }
+
+    /** @return the unit price at snapshot time */
+    public double getPrice() { return price; }
+
+    /** @return the stock quantity at snapshot time */
+    public int getStock() { return stock; }
+
+    /** @return true if the product was on sale at snapshot time */
+    public boolean isOnSale() { return onSale; }
+
+    /** @return the discount percentage at snapshot time */
+    public double getDiscountPercentage() { return discountPercentage; }
+
+    /** @return true if at least one unit was in stock at snapshot time */
+    public boolean isAvailable() { return stock > 0; }
+}
@@ -0,0 +1,288 @@
+package fsabeauty.catalog;
+
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductSubscription;
+import fsabeauty.observer.SubscriptionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Store-level index of who watches what, in both directions.
+ * Products keep their own subscription lists for delivery; this index mirrors them
+ * (it listens to every product in the {@link CatalogStore}) so that questions about a
+ * customer - what do they watch, unsubscribe them everywhere, forget them entirely -
+ * cost O(number of products they watch) instead of a scan over the whole catalog.
+ * Products and customers are interned to dense integer IDs and the two directions are
+ * kept as sorted primitive {@code int} adjacency rows. The watchers of each product are
+ * also kept as a {@link CompressedBitmap} over customer IDs for audience targeting.
+ */
+public class SubscriptionIndex implements SubscriptionListener {
+    private final IdInterner<String> productIds = new IdInterner<>();
+    private final IdInterner<CustomerObserver> customerIds = new IdInterner<>();
+    private final IntAdjacency watchersOfProduct = new IntAdjacency();
+    private final IntAdjacency productsOfCustomer = new IntAdjacency();
+    private final List<IntConsumer> customerReleaseListeners = new CopyOnWriteArrayList<>();
+    private Product[] products = new Product[16];
+    private CompressedBitmap[] watcherBitmaps = new CompressedBitmap[16];
+    private long subscriptionCount;
+    private long modificationCount;
+
+    /**
+     * Starts mirroring a product that entered the catalog, including its existing watchers.
+     */
+    synchronized void productAdded(Product product) {
+        int productId = productIds.intern(product.getProductId());
+        if (productId >= products.length) {
+            products = Arrays.copyOf(products, Math.max(productId + 1, products.length * 2));
+            watcherBitmaps = Arrays.copyOf(watcherBitmaps, products.length);
+        }
+        if (products[productId] != null && products[productId] != product) {
+            productRemoved(products[productId]);
+            productId = productIds.intern(product.getProductId());
+        }
+        products[productId] = product;
+        if (watcherBitmaps[productId] == null) {
+            watcherBitmaps[productId] = new CompressedBitmap();
+        }
+        product.addSubscriptionListener(this);
+        for (ProductSubscription subscription : product.getSubscriptions()) {
+            // Weak (session) subscriptions are not mirrored; interning would keep them alive
+            if (!subscription.isWeak()) {
+                link(productId, customerIds.intern(subscription.getObserver()));
+            }
+        }
+    }
+
+    /**
+     * Stops mirroring a product that left the catalog and drops its edges.
+     */
+    synchronized void productRemoved(Product product) {
+        product.removeSubscriptionListener(this);
+        int productId = productIds.idOf(product.getProductId());
+        if (productId == IdInterner.ABSENT || products[productId] != product) {
+            return;
+        }
+        for (int customerId : watchersOfProduct.clear(productId)) {
+            productsOfCustomer.remove(customerId, productId);
+            subscriptionCount--;
+        }
+        products[productId] = null;
+        watcherBitmaps[productId] = null;
+        modificationCount++;
+        productIds.release(product.getProductId());
+    }
+
+    @Override
+    public synchronized void subscribed(Product product, CustomerObserver observer) {
+        int productId = indexedId(product);
+        if (productId != IdInterner.ABSENT) {
+            link(productId, customerIds.intern(observer));
+        }
+    }
+
+    @Override
+    public synchronized void unsubscribed(Product product, CustomerObserver observer) {
+        int productId = indexedId(product);
+        int customerId = customerIds.idOf(observer);
+        if (productId != IdInterner.ABSENT && customerId != IdInterner.ABSENT
+                && watchersOfProduct.remove(productId, customerId)) {
+            unlinkCustomer(productId, customerId);
+        }
+    }
+
+    private void link(int productId, int customerId) {
+        if (watchersOfProduct.add(productId, customerId)) {
+            productsOfCustomer.add(customerId, productId);
+            watcherBitmaps[productId].add(customerId);
+            subscriptionCount++;
+            modificationCount++;
+        }
+    }
+
+    // Second half of removing an edge, once it is gone from watchersOfProduct
+    private void unlinkCustomer(int productId, int customerId) {
+        productsOfCustomer.remove(customerId, productId);
+        watcherBitmaps[productId].remove(customerId);
+        subscriptionCount--;
+        modificationCount++;
+    }
+
+    private int indexedId(Product product) {
+        int productId = productIds.idOf(product.getProductId());
+        return productId != IdInterner.ABSENT && products[productId] == product ? productId : IdInterner.ABSENT;
+    }
+
+    /**
+     * @param customer the customer
+     * @return IDs of the catalog products the customer watches
+     */
+    public synchronized List<String> getWatchedProductIds(CustomerObserver customer) {
+        List<String> watched = new ArrayList<>();
+        int id = customerIds.idOf(customer);
+        if (id != IdInterner.ABSENT) {
+            for (int productId : productsOfCustomer.neighbours(id)) {
+                watched.add(productIds.keyOf(productId));
+            }
+        }
+        return watched;
+    }
+
+    /**
+     * @param productId the product
+     * @return the customers watching it
+     */
+    public synchronized List<CustomerObserver> getWatchers(String productId) {
+        List<CustomerObserver> watchers = new ArrayList<>();
+        int id = productIds.idOf(productId);
+        if (id != IdInterner.ABSENT) {
+            for (int customerId : watchersOfProduct.neighbours(id)) {
+                watchers.add(customerIds.keyOf(customerId));
+            }
+        }
+        return watchers;
+    }
+
+    /** @return number of catalog products the customer watches */
+    public synchronized int getWatchedCount(CustomerObserver customer) {
+        int id = customerIds.idOf(customer);
+        return id == IdInterner.ABSENT ? 0 : productsOfCustomer.degree(id);
+    }
+
+    /** @return number of customers watching the product */
+    public synchronized int getWatcherCount(String productId) {
+        int id = productIds.idOf(productId);
+        return id == IdInterner.ABSENT ? 0 : watchersOfProduct.degree(id);
+    }
+
+    /**
+     * Removes the customer from every product they watch.
+     *
+     * @param customer the customer
+     * @return number of subscriptions removed
+     */
+    public int unsubscribeAll(CustomerObserver customer) {
+        List<Product> watched = new ArrayList<>();
+        synchronized (this) {
+            int customerId = customerIds.idOf(customer);
+            if (customerId == IdInterner.ABSENT) {
+                return 0;
+            }
+            for (int productId : productsOfCustomer.neighbours(customerId)) {
+                watched.add(products[productId]);
+            }
+        }
+        // Outside the lock: each removal calls back into unsubscribed()
+        for (Product product : watched) {
+            product.removeObserver(customer);
+        }
+        return watched.size();
+    }
+
+    /**
+     * Unsubscribes the customer everywhere and drops every trace of them from the index,
+     * e.g. for an erasure request. Their dense ID is freed for the next interned customer;
+     * the customer release listeners are told first, so ID-keyed state kept elsewhere does
+     * not pass to that customer.
+     *
+     * @param customer the customer
+     * @return number of subscriptions removed
+     */
+    public int forgetCustomer(CustomerObserver customer) {
+        int removed = unsubscribeAll(customer);
+        synchronized (this) {
+            int customerId = customerIds.release(customer);
+            if (customerId != IdInterner.ABSENT) {
+                // Subscriptions added concurrently with the removal above
+                for (int productId : productsOfCustomer.neighbours(customerId)) {
+                    watchersOfProduct.remove(productId, customerId);
+                    unlinkCustomer(productId, customerId);
+                }
+                for (IntConsumer listener : customerReleaseListeners) {
+                    listener.accept(customerId);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Registers a callback for customer IDs freed by {@link #forgetCustomer}. It runs while
+     * this index is locked, before the ID can be interned again, so ID-keyed state it
+     * clears may be guarded by this index's monitor.
+     *
+     * @param listener receives the freed customer ID
+     */
+    public void addCustomerReleaseListener(IntConsumer listener) {
+        customerReleaseListeners.add(listener);
+    }
+
+    /**
+     * @param productId the product
+     * @return the IDs of the customers watching it, as a bitmap the caller may modify
+     */
+    public synchronized CompressedBitmap watchersBitmap(String productId) {
+        int id = productIds.idOf(productId);
+        return id == IdInterner.ABSENT || watcherBitmaps[id] == null ? new CompressedBitmap() : watcherBitmaps[id].copy();
+    }
+
+    /**
+     * @param productIds the products
+     * @return the IDs of the customers watching any of them
+     */
+    public synchronized CompressedBitmap watchersOfAny(Iterable<String> productIds) {
+        CompressedBitmap watchers = new CompressedBitmap();
+        for (String productId : productIds) {
+            int id = this.productIds.idOf(productId);
+            if (id != IdInterner.ABSENT && watcherBitmaps[id] != null) {
+                watchers = watchers.or(watcherBitmaps[id]);
+            }
+        }
+        return watchers;
+    }
+
+    /**
+     * Assigns a dense ID to a customer who may not watch anything yet, e.g. to record
+     * their notification preferences in ID-keyed indexes.
+     *
+     * @param customer the customer
+     * @return the customer's dense ID
+     */
+    public synchronized int internCustomer(CustomerObserver customer) {
+        return customerIds.intern(customer);
+    }
+
+    /** @return counter that changes whenever a subscription is added or removed */
+    public synchronized long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * @param customer the customer
+     * @return the customer's dense ID, or {@link IdInterner#ABSENT} if they are unknown
+     */
+    public synchronized int customerIdOf(CustomerObserver customer) {
+        return customerIds.idOf(customer);
+    }
+
+    /**
+     * @param customerId a dense customer ID
+     * @return the customer, or null if the ID is unused
+     */
+    public synchronized CustomerObserver customerOf(int customerId) {
+        return customerIds.keyOf(customerId);
+    }
+
+    /** @return number of customers known to the index */
+    public synchronized int getCustomerCount() {
+        return customerIds.size();
+    }
+
+    /** @return number of (product, customer) subscriptions */
+    public synchronized long getSubscriptionCount() {
+        return subscriptionCount;
+    }
+}
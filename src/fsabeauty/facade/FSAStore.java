@@ -6,6 +6,9 @@ import fsabeauty.strategy.*;
 import fsabeauty.builder.*;
 import fsabeauty.decorator.*;
 import fsabeauty.observer.*;
+import fsabeauty.catalog.ImportReport;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -350,4 +353,15 @@ public class FSAStore {
     public void updateProductPrice(String productId, double newPrice) {
         productFacade.updateProductPrice(productId, newPrice);
     }
+
+    /**
+     * Imports a merchandising catalog feed (CSV or JSON Lines)
+     *
+     * @param feedFile the feed file to import
+     * @return the import report
+     * @throws IOException if the feed cannot be read
+     */
+    public ImportReport importCatalog(Path feedFile) throws IOException {
+        return productFacade.importCatalog(feedFile);
+    }
 }
@@ -0,0 +1,52 @@
+package fsabeauty.facade;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable record of a successfully processed order, published to order stream subscribers
+ */
+public final class OrderCompleted {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long orderNumber;
+    private final long timestamp;
+    private final List<String> items;
+    private final double total;
+    private final String paymentMethod;
+
+    public OrderCompleted(List<String> items, double total, String paymentMethod) {
+        this(nextOrderNumber(), items, total, paymentMethod);
+    }
+
+    // orderNumber: taken from nextOrderNumber() when the order was placed
+    public OrderCompleted(long orderNumber, List<String> items, double total, String paymentMethod) {
+        this.orderNumber = orderNumber;
+        this.timestamp = System.currentTimeMillis();
+        this.items = Collections.unmodifiableList(items);
+        this.total = total;
+        this.paymentMethod = paymentMethod;
+    }
+
+    // Reserves the number of an order about to be paid, so the payment can refer to it
+    public static long nextOrderNumber() {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    // Reference passed to the payment gateway for the order
+    public static String orderId(long orderNumber) {
+        return "ORD-" + orderNumber;
+    }
+
+    public long getOrderNumber() { return orderNumber; }
+    public long getTimestamp() { return timestamp; }
+    public List<String> getItems() { return items; }
+    public double getTotal() { return total; }
+    public String getPaymentMethod() { return paymentMethod; }
+
+    @Override
+    public String toString() {
+        return String.format("Order #%d: %d item(s), $%.2f via %s", orderNumber, items.size(), total, paymentMethod);
+    }
+}
@@ -4,7 +4,9 @@ import fsabeauty.strategy.*;
 import fsabeauty.factory.*;
 import fsabeauty.decorator.*;
 import fsabeauty.observer.*;
+import fsabeauty.fraud.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Facade class for order processing operations that provides a simplified interface
@@ -15,14 +17,29 @@ import java.util.*;
 public class OrderProcessingFacade {
     private List<CosmeticProduct> shoppingCart;
     private PaymentContext paymentContext;
+    private final EventStream<OrderCompleted> orderCompletions = new EventStream<>("order completions");
+    private PaymentGateway paymentGateway; // null: strategies simulate fixed delays
+    private final PaymentStrategyRegistry paymentStrategies = PaymentStrategyRegistry.withDefaults(null);
+    private PaymentResilience paymentResilience; // null: payments run unguarded
+    private PaymentStrategy fallbackStrategy;
+    private PaymentCredentials paymentCredentials; // of the selected payment method
+    private FraudScreen fraudScreen; // null: payments are not screened
+    private long cartOrderNumber; // order number the current cart is paid under, 0 before the first attempt
 
     public OrderProcessingFacade() {
         this.shoppingCart = new ArrayList<>();
         this.paymentContext = new PaymentContext();
     }
 
+    // Completed orders for internal consumers (analytics, fulfilment, ...); slow subscribers never hold up checkout -
+    // one that falls behind its buffer is cut off with onError(EventStream.Overflow) and must subscribe again
+    public EventStream<OrderCompleted> orderCompletions() {
+        return orderCompletions;
+    }
+
     public void addToCart(CosmeticProduct product) {
         shoppingCart.add(product);
+        cartChanged();
         System.out.println(" Added to cart: " + product.getDescription());
     }
 
@@ -48,19 +65,50 @@ public class OrderProcessingFacade {
         }
     }
 
+    // A changed cart is a new order: retries of the old one must not share its idempotency key
+    private void cartChanged() {
+        cartOrderNumber = 0;
+    }
+
     private double calculateTotal() {
         return shoppingCart.stream().mapToDouble(CosmeticProduct::getPrice).sum();
     }
 
     public void addToCartById(String productId, ProductManagementFacade productFacade) {
+        Product product = availableProduct(productId, productFacade);
+        if (product != null) {
+            addProductToCart(product);
+        }
+    }
+
+    // Same as above for a known customer; during a restock wave only reservation holders get through.
+    // The reservation is spent only once the item is certain to go into the cart.
+    public void addToCartById(String productId, ProductManagementFacade productFacade, String customerName) {
+        Product product = availableProduct(productId, productFacade);
+        if (product == null) {
+            return;
+        }
+        if (!productFacade.claimPurchase(productId, customerName)) {
+            System.out.println(" ⏳ " + customerName + " is on the waitlist for " + productId + " - please wait for your turn");
+            return;
+        }
+        addProductToCart(product);
+    }
+
+    // The product if it exists and is in stock, otherwise null after telling the customer
+    private Product availableProduct(String productId, ProductManagementFacade productFacade) {
         Product product = productFacade.getProduct(productId);
-        if (product != null && product.getStock() > 0) {
-            CosmeticProduct cosmeticProduct = createCosmeticProductFromProduct(product);
-            shoppingCart.add(cosmeticProduct);
-            System.out.println(" Added to cart: " + product.getName());
-        } else {
+        if (product == null || product.getStock() <= 0) {
             System.out.println(" Product not available: " + productId);
+            return null;
         }
+        return product;
+    }
+
+    private void addProductToCart(Product product) {
+        shoppingCart.add(createCosmeticProductFromProduct(product));
+        cartChanged();
+        System.out.println(" Added to cart: " + product.getName());
     }
 
     private CosmeticProduct createCosmeticProductFromProduct(Product product) {
@@ -87,39 +135,75 @@ public class OrderProcessingFacade {
     }
 
     public void setPaymentMethod(String paymentType, String... details) {
-        PaymentStrategy strategy;
-
-        switch (paymentType.toLowerCase()) {
-            case "applepay":
-                if (details.length < 2) {
-                    System.out.println("Apple Pay requires token and device");
-                    return;
-                }
-                strategy = new ApplePayPayment(details[0], details[1]);
-                break;
-            case "creditcard":
-                if (details.length < 4) {
-                    System.out.println(" Credit Card requires number, holder, expiry, and CVV");
-                    return;
-                }
-                strategy = new CreditCardPayment(details[0], details[1], details[2], details[3]);
-                break;
-            case "qr":
-                if (details.length < 2) {
-                    System.out.println(" QR payment requires code and app name");
-                    return;
-                }
-                strategy = new QRPayment(details[0], details[1]);
-                break;
-            default:
-                System.out.println(" Unknown payment type. Available: applepay, creditcard, qr");
-                return;
-        }
-
-        paymentContext.setPaymentStrategy(strategy);
+        PaymentCredentials credentials = createCredentials(paymentType, details);
+        if (credentials == null) {
+            return;
+        }
+        PaymentStrategy strategy = bind(credentials);
+
+        paymentCredentials = credentials;
+        paymentContext.setPaymentStrategy(guard(strategy));
         System.out.println(" Payment method set: " + strategy.getPaymentMethod());
     }
 
+    // Method to fail over to when the selected one cannot take the payment (gateway error, throttling,
+    // circuit breaker open) - never after a decline or timeout; takes effect once payment resilience is enabled
+    public void setFallbackPaymentMethod(String paymentType, String... details) {
+        PaymentCredentials credentials = createCredentials(paymentType, details);
+        if (credentials == null) {
+            return;
+        }
+        PaymentStrategy strategy = bind(credentials);
+        fallbackStrategy = strategy;
+        rewrapCurrentStrategy();
+        System.out.println(" Fallback payment method set: " + strategy.getPaymentMethod());
+    }
+
+    // Bounds every payment by the deadline and guards each method with a circuit breaker; with a
+    // positive hedge delay the fallback also starts when the selected method is slower than that
+    public PaymentResilience enablePaymentResilience(long deadlineMillis, long hedgeDelayMillis) {
+        paymentResilience = new PaymentResilience(deadlineMillis, hedgeDelayMillis, 20, 0.5, 30_000);
+        rewrapCurrentStrategy();
+        return paymentResilience;
+    }
+
+    // The payer's immutable credentials for the method, or null after reporting what is wrong
+    private PaymentCredentials createCredentials(String paymentType, String... details) {
+        PaymentMethod method;
+        try {
+            method = PaymentMethod.parse(paymentType);
+        } catch (IllegalArgumentException e) {
+            System.out.println(" Unknown payment type. Available: applepay, creditcard, qr");
+            return null;
+        }
+        try {
+            return paymentStrategies.require(method).credentials(details);
+        } catch (IllegalArgumentException e) {
+            System.out.println(" " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The registry's shared strategy for the credentials' method, bound to them
+    private PaymentStrategy bind(PaymentCredentials credentials) {
+        return paymentStrategies.require(credentials.getMethod()).withCredentials(credentials);
+    }
+
+    private PaymentStrategy guard(PaymentStrategy strategy) {
+        return paymentResilience == null ? strategy : paymentResilience.guard(strategy, fallbackStrategy);
+    }
+
+    // Re-wraps the selected method after the fallback or the resilience policy changed
+    private void rewrapCurrentStrategy() {
+        PaymentStrategy current = paymentContext.getPaymentStrategy();
+        if (current instanceof ResilientPaymentStrategy) {
+            current = ((ResilientPaymentStrategy) current).getPrimary();
+        }
+        if (current != null) {
+            paymentContext.setPaymentStrategy(guard(current));
+        }
+    }
+
     public boolean processOrder() {
         if (shoppingCart.isEmpty()) {
             System.out.println(" Cart is empty!");
@@ -137,7 +221,25 @@ public class OrderProcessingFacade {
         System.out.printf("Total Amount: $%.2f%n", total);
         System.out.println("Payment Method: " + paymentContext.getCurrentStrategyInfo());
 
-        boolean success = paymentContext.executePayment(total);
+        // A retried checkout of the same cart keeps its order number, so idempotent payments
+        // and the fraud screen recognize it
+        if (cartOrderNumber == 0) {
+            cartOrderNumber = OrderCompleted.nextOrderNumber();
+        }
+        long orderNumber = cartOrderNumber;
+
+        if (fraudScreen != null && paymentCredentials != null) {
+            FraudAssessment assessment = fraudScreen.screen(OrderCompleted.orderId(orderNumber),
+                    paymentCredentials.getPayerKey(), total, cartDescriptions());
+            if (assessment.isBlocked()) {
+                System.out.println(" ORDER BLOCKED by fraud screening: " + assessment);
+                return false;
+            }
+            if (assessment.needsReview()) {
+                System.out.println(" Order flagged for review: " + assessment);
+            }
+        }
+        boolean success = paymentContext.executePayment(total, OrderCompleted.orderId(orderNumber));
 
         if (success) {
             System.out.println("\n ORDER PROCESSED SUCCESSFULLY!");
@@ -146,7 +248,11 @@ public class OrderProcessingFacade {
                 System.out.println("   • " + product.getDescription());
             }
             System.out.printf("Total: $%.2f%n", total);
+            if (orderCompletions.getSubscriberCount() > 0) {
+                orderCompletions.publish(new OrderCompleted(orderNumber, cartDescriptions(), total, paymentContext.getPaymentStrategy().getPaymentMethod()));
+            }
             shoppingCart.clear();
+            cartChanged();
             return true;
         } else {
             System.out.println(" ORDER PROCESSING FAILED!");
@@ -154,6 +260,82 @@ public class OrderProcessingFacade {
         }
     }
 
+    // Payment methods set from now on charge through this gateway, e.g. a SimulatedPaymentGateway.
+    // Re-registers the built-in strategies, replacing custom ones registered for their methods
+    public void usePaymentGateway(PaymentGateway gateway) {
+        this.paymentGateway = gateway;
+        paymentStrategies.registerDefaults(gateway);
+    }
+
+    // Strategies by payment method; register a strategy to add or replace a provider while running
+    public PaymentStrategyRegistry getPaymentStrategies() {
+        return paymentStrategies;
+    }
+
+    // Screens every order inline before payment: payer velocity, amount anomalies and cart composition.
+    // Blocked orders are not paid; rules can be added through getScorer() on the returned screen
+    public FraudScreen enableFraudScreening() {
+        fraudScreen = new FraudScreen();
+        return fraudScreen;
+    }
+
+    private List<String> cartDescriptions() {
+        List<String> items = new ArrayList<>(shoppingCart.size());
+        for (CosmeticProduct product : shoppingCart) {
+            items.add(product.getDescription());
+        }
+        return items;
+    }
+
+    // Charges each order at most once: retried or concurrent checkouts of the same order share the
+    // first payment's result, approvals and unknown outcomes being remembered for ttlMillis (at most
+    // `capacity` of them); an order whose payment timed out is looked up at the gateway before a retry
+    public PaymentIdempotency enableIdempotentPayments(long ttlMillis, int capacity) {
+        PaymentIdempotency idempotency = new PaymentIdempotency(ttlMillis, capacity);
+        idempotency.setReconciler(orderId -> paymentGateway != null
+                ? paymentGateway.chargeStatus(orderId)
+                : GatewayResponse.Status.TIMED_OUT);
+        paymentContext.setIdempotency(idempotency);
+        return idempotency;
+    }
+
+    // Authorizes orders at checkout but captures them in batches of up to batchSize, or after
+    // maxDelayMillis at the latest; wraps the current gateway (a simulated one if none is set).
+    // Payment methods set from now on use it; call close() on the returned pipeline at shutdown
+    public SettlementPipeline enableBatchedSettlement(int batchSize, long maxDelayMillis) {
+        PaymentGateway gateway = paymentGateway != null ? paymentGateway : new SimulatedPaymentGateway();
+        SettlementPipeline pipeline = new SettlementPipeline(gateway, batchSize, maxDelayMillis, 3);
+        pipeline.setResultListener((orderId, response) -> {
+            if (!response.isApproved()) {
+                System.out.println(" ⚠ Capture for " + orderId + " not settled: " + response);
+            }
+        });
+        usePaymentGateway(pipeline);
+        return pipeline;
+    }
+
+    // Runs concurrent checkouts against a simulated gateway, rotating through card, Apple Pay and QR
+    public LoadReport runPaymentLoadTest(SimulatedPaymentGateway gateway, int payments, int concurrency)
+            throws InterruptedException {
+        // One stateless strategy per method serves every concurrent checkout
+        PaymentStrategyRegistry registry = PaymentStrategyRegistry.withDefaults(gateway);
+        List<PaymentStrategy> checkouts = Arrays.asList(
+                registry.require(PaymentMethod.CREDIT_CARD).withCredentials(
+                        new CreditCardPayment.Credentials("4111111111111111", "Load Test", "12/30", "123")),
+                registry.require(PaymentMethod.APPLE_PAY).withCredentials(
+                        new ApplePayPayment.Credentials("ap_load_token_0001", "iPhone")),
+                registry.require(PaymentMethod.QR).withCredentials(
+                        new QRPayment.Credentials("QR-LOAD-0000001", "Kaspi Bank")));
+        AtomicInteger next = new AtomicInteger();
+        PaymentLoadGenerator generator = new PaymentLoadGenerator(
+                () -> checkouts.get(next.getAndIncrement() % checkouts.size()), concurrency);
+        System.out.println("\n PAYMENT LOAD TEST: " + payments + " payments, " + concurrency + " concurrent checkouts");
+        LoadReport report = generator.run(payments);
+        System.out.println(" " + report.getSummary());
+        System.out.print(gateway.getSummary());
+        return report;
+    }
+
     public void demonstratePaymentStrategies() {
         System.out.println("\n PAYMENT STRATEGIES DEMONSTRATION:");
         System.out.println("===================================");
@@ -161,6 +343,7 @@ public class OrderProcessingFacade {
         LipstickFactory lipstickFactory = new LipstickFactory();
         CosmeticProduct testProduct = lipstickFactory.createProduct("red");
         shoppingCart.add(testProduct);
+        cartChanged();
 
         double testAmount = 24.99;
 
@@ -177,6 +360,7 @@ public class OrderProcessingFacade {
         paymentContext.executePayment(testAmount);
 
         shoppingCart.clear();
+        cartChanged();
         paymentContext.setPaymentStrategy(null);
     }
 
@@ -1,8 +1,24 @@
 package fsabeauty.facade;
 
+import fsabeauty.catalog.*;
 import fsabeauty.factory.*;
+import fsabeauty.notification.AudienceIndex;
+import fsabeauty.notification.ChainedDispatcher;
+import fsabeauty.notification.CoalescingDispatcher;
+import fsabeauty.notification.DigestSchedule;
+import fsabeauty.notification.NotificationOutbox;
+import fsabeauty.notification.OutboxRelay;
+import fsabeauty.notification.PriorityLaneDispatcher;
+import fsabeauty.notification.RateLimit;
+import fsabeauty.notification.RateLimitingDispatcher;
+import fsabeauty.notification.RestockWaitlist;
+import fsabeauty.notification.ShardedFanOutDispatcher;
+import fsabeauty.notification.TimerWheel;
 import fsabeauty.observer.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Facade class for product management operations that provides a simplified interface
@@ -11,14 +27,40 @@ import java.util.*;
  * for product change notifications in a unified interface.
  */
 public class ProductManagementFacade {
-    private Map<String, Product> productCatalog;
+    private static final int CATALOG_PAGE_SIZE = 50;
+
+    /**
+     * Notification stages in pipeline order: stages working on a product's change come before
+     * the ones working per recipient, so each sees its input whatever order they are enabled in
+     */
+    private enum NotificationStage {
+        COALESCING,
+        RESTOCK_WAITLIST,
+        RATE_LIMITS,
+        OUTBOX,
+        SHARDED_FAN_OUT,
+        PRIORITY_LANES
+    }
+
+    private CatalogStore catalog;
+    private CatalogRenderCache renderCache;
+    private AudienceIndex audience;
     private LipstickFactory lipstickFactory;
     private MascaraFactory mascaraFactory;
     private BlushFactory blushFactory;
     private List<Customer> customers;
+    private EventDispatcher notificationDispatcher = EventDispatcher.DIRECT;
+    private EventDispatcher deliveryDispatcher = EventDispatcher.DIRECT;
+    private final Map<NotificationStage, ChainedDispatcher> notificationStages = new EnumMap<>(NotificationStage.class);
+    private RestockWaitlist restockWaitlist;
+    private volatile EventStream<ProductEvent> productEvents; // created on first productEvents() call
 
     public ProductManagementFacade() {
-        this.productCatalog = new HashMap<>();
+        this.catalog = new CatalogStore();
+        this.renderCache = new CatalogRenderCache(product -> String.format("🆔 %s | 💄 %s | 💰 $%.2f | 📦 Stock: %d",
+                product.getProductId(), product.getName(), product.getPrice(), product.getStock()));
+        this.catalog.addListener(renderCache);
+        this.audience = new AudienceIndex(catalog, ProductManagementFacade::categoryOf);
         this.lipstickFactory = new LipstickFactory();
         this.mascaraFactory = new MascaraFactory();
         this.blushFactory = new BlushFactory();
@@ -46,9 +88,9 @@ public class ProductManagementFacade {
                 10
         );
 
-        Product obsBrownLipstick = new Product("LIP002", "Luxury Lipstick (Red)", "FSA_Beauty", brownLipstick.getPrice(), 8);
+        Product obsBrownLipstick = new Product("LIP002", "Luxury Lipstick (Brown)", "FSA_Beauty", brownLipstick.getPrice(), 8);
         Product obsPinkLipstick = new Product(
-                "LIP002",
+                "LIP003",
                 "Luxury Lipstick (Pink)",
                 "FSA_Beauty",
                 pinkLipstick.getPrice(),
@@ -62,31 +104,76 @@ public class ProductManagementFacade {
         Product obsPeachBlush = new Product("BLUSH002", peachBlush.getName(), "FSA_Beauty", peachBlush.getPrice(), 6);
         Product obsPinkBlush = new Product("BLUSH003", pinkBlush.getName(), "FSA_Beauty", pinkBlush.getPrice(), 9);
 
-        productCatalog.put("LIP001", obsRedLipstick);
-        productCatalog.put("LIP002", obsBrownLipstick);
-        productCatalog.put("LIP003", obsPinkLipstick);
-        productCatalog.put("MASC001", obsWaterproofMascara);
-        productCatalog.put("MASC002", obsRegularMascara);
-        productCatalog.put("BLUSH001", obsRedBlush);
-        productCatalog.put("BLUSH002", obsPeachBlush);
-        productCatalog.put("BLUSH003", obsPinkBlush);
+        catalog.update(tx -> {
+            tx.put(obsRedLipstick);
+            tx.put(obsBrownLipstick);
+            tx.put(obsPinkLipstick);
+            tx.put(obsWaterproofMascara);
+            tx.put(obsRegularMascara);
+            tx.put(obsRedBlush);
+            tx.put(obsPeachBlush);
+            tx.put(obsPinkBlush);
+        });
 
         customers.add(new Customer("CUST001", "Alice", "alice@email.com"));
         customers.add(new Customer("CUST002", "Bob", "bob@email.com"));
         customers.add(new Customer("CUST003", "Carol", "carol@email.com"));
+        for (Customer customer : customers) {
+            audience.register(customer);
+        }
     }
 
     /**
      * Displays the complete product catalog with formatted information
      * Shows product ID, name, price, and current stock levels
+     * All lines come from one catalog version, so a concurrent bulk update is either fully visible or not at all
+     * Pages are served from the render cache; only products changed since the last view are formatted again
      */
     public void displayCatalog() {
         System.out.println("\n🌈 FSA_BEAUTY PRODUCT CATALOG:");
         System.out.println("=============================");
-        productCatalog.forEach((id, product) -> {
-            System.out.printf("🆔 %s | 💄 %s | 💰 $%.2f | 📦 Stock: %d%n",
-                    id, product.getName(), product.getPrice(), product.getStock());
-        });
+        CatalogSnapshot snapshot = catalog.snapshot();
+        CatalogQuery query = CatalogQuery.all();
+        String cursor = null;
+        int pageIndex = 0;
+        do {
+            CatalogPage page = snapshot.page(query, cursor, CATALOG_PAGE_SIZE);
+            System.out.print(renderCache.renderPage("catalog#" + pageIndex++, page.getItems()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    /**
+     * Reads one page of a sorted, filtered product listing
+     * Pass the returned page's cursor to get the following page
+     *
+     * @param query sort order and filters, e.g. CatalogQuery.all().sortedBy(CatalogSortOrder.PRICE)
+     * @param cursor the previous page's cursor, or null for the first page
+     * @param pageSize maximum number of products to return
+     * @return the page of products and the cursor of the next page
+     */
+    public CatalogPage listProducts(CatalogQuery query, String cursor, int pageSize) {
+        return catalog.snapshot().page(query, cursor, pageSize);
+    }
+
+    /**
+     * Streams a sorted, filtered product listing lazily from the current catalog version
+     *
+     * @param query sort order and filters
+     * @return stream that reads products only as they are consumed
+     */
+    public Stream<ProductSnapshot> streamProducts(CatalogQuery query) {
+        return catalog.snapshot().stream(query);
+    }
+
+    /**
+     * Returns the latest immutable catalog version for consistent multi-product reads
+     * Obtaining it never blocks, even while an import or bulk update is running
+     *
+     * @return the current catalog snapshot
+     */
+    public CatalogSnapshot getCatalogSnapshot() {
+        return catalog.snapshot();
     }
 
     /**
@@ -96,7 +183,8 @@ public class ProductManagementFacade {
      * @return the Product object or null if not found
      */
     public Product getProduct(String productId) {
-        return productCatalog.get(productId);
+        ProductSnapshot snapshot = catalog.snapshot().get(productId);
+        return snapshot == null ? null : snapshot.getProduct();
     }
 
     /**
@@ -129,7 +217,7 @@ public class ProductManagementFacade {
      * @param customerName the customer to receive notifications
      */
     public void setupProductNotification(String productId, String customerName) {
-        Product product = productCatalog.get(productId);
+        Product product = getProduct(productId);
         Customer customer = findCustomerByName(customerName);
 
         if (product != null && customer != null) {
@@ -140,6 +228,131 @@ public class ProductManagementFacade {
         }
     }
 
+    /**
+     * Sets a customer's loyalty tier, which decides their lane under priority delivery
+     *
+     * @param customerName the customer
+     * @param tier the new tier
+     */
+    public void setCustomerTier(String customerName, CustomerTier tier) {
+        Customer customer = findCustomerByName(customerName);
+        if (customer != null) {
+            customer.setTier(tier);
+        } else {
+            System.out.println("❌ Customer not found: " + customerName);
+        }
+    }
+
+    /**
+     * Lets a session-scoped observer (e.g. a live UI view) watch a product without being kept alive by it
+     * Once the observer is garbage collected its subscription is pruned at the next notification
+     *
+     * @param productId the product to watch
+     * @param observer the session observer
+     * @return false if the product does not exist
+     */
+    public boolean watchProductForSession(String productId, CustomerObserver observer) {
+        Product product = getProduct(productId);
+        if (product == null) {
+            System.out.println("❌ Product not found: " + productId);
+            return false;
+        }
+        product.registerWeakObserver(observer);
+        return true;
+    }
+
+    /**
+     * Reports products holding stale subscriptions, i.e. session observers that are gone
+     * but not yet pruned; a ratio that keeps growing points at a leak
+     *
+     * @return stale-subscription ratio by product ID, for products with any stale subscription
+     */
+    public Map<String, Double> getStaleSubscriptionReport() {
+        Map<String, Double> report = new TreeMap<>();
+        for (ProductSnapshot snapshot : catalog.snapshot().products()) {
+            Product product = snapshot.getProduct();
+            int stale = product.getStaleSubscriptionCount();
+            if (stale > 0) {
+                report.put(product.getProductId(), product.getStaleSubscriptionRatio());
+                System.out.printf("🧟 %s: %d of %d subscription(s) stale (%.0f%%), %d pruned so far%n",
+                        product.getName(), stale, product.getObserverCount(),
+                        product.getStaleSubscriptionRatio() * 100, product.getPrunedSubscriptionCount());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Lists the catalog products a customer is watching
+     * Answered from the store's subscription index without scanning the catalog
+     *
+     * @param customerName the customer
+     * @return IDs of the watched products, empty if the customer is unknown
+     */
+    public List<String> getWatchedProducts(String customerName) {
+        Customer customer = findCustomerByName(customerName);
+        return customer == null ? new ArrayList<>() : catalog.subscriptions().getWatchedProductIds(customer);
+    }
+
+    /**
+     * Stops all product notifications for a customer
+     *
+     * @param customerName the customer
+     * @return number of products the customer stopped watching
+     */
+    public int unsubscribeFromAllProducts(String customerName) {
+        Customer customer = findCustomerByName(customerName);
+        if (customer == null) {
+            System.out.println("❌ Customer not found: " + customerName);
+            return 0;
+        }
+        int removed = catalog.subscriptions().unsubscribeAll(customer);
+        System.out.println("🔕 " + customerName + " unsubscribed from " + removed + " product(s)");
+        return removed;
+    }
+
+    /**
+     * Returns the bitmap indexes used to select campaign audiences
+     * e.g. getAudienceIndex().watchersOfCategory("Blush").and(smsOptIn()).andNot(doNotDisturb())
+     *
+     * @return the audience index over catalog subscriptions and customer preferences
+     */
+    public AudienceIndex getAudienceIndex() {
+        return audience;
+    }
+
+    /**
+     * Sends an announcement about a product to a selected audience
+     *
+     * @param audienceIds customer IDs selected through the audience index
+     * @param productId the product the announcement is about
+     * @param message the announcement text
+     * @return number of customers notified
+     */
+    public int notifyAudience(CompressedBitmap audienceIds, String productId, String message) {
+        Product product = getProduct(productId);
+        if (product == null) {
+            System.out.println("❌ Product not found: " + productId);
+            return 0;
+        }
+        return audience.notify(audienceIds, new Announcement(productId, product.getName(), message), notificationDispatcher);
+    }
+
+    /**
+     * Product category used for audience targeting: the cosmetic type named in the product
+     *
+     * @param product the product
+     * @return "Lipstick", "Mascara", "Blush" or the brand for other products
+     */
+    private static String categoryOf(ProductSnapshot product) {
+        for (String category : new String[]{"Lipstick", "Mascara", "Blush"}) {
+            if (product.getName().contains(category)) {
+                return category;
+            }
+        }
+        return product.getBrand();
+    }
+
     /**
      * Updates the stock quantity for a specific product
      * Triggers observer notifications if stock levels change significantly
@@ -148,7 +361,7 @@ public class ProductManagementFacade {
      * @param newStock the new stock quantity
      */
     public void updateProductStock(String productId, int newStock) {
-        Product product = productCatalog.get(productId);
+        Product product = getProduct(productId);
         if (product != null) {
             System.out.println("📦 Updating stock for " + product.getName() + " to " + newStock);
             product.setStock(newStock);
@@ -165,7 +378,7 @@ public class ProductManagementFacade {
      * @param newPrice the new price value
      */
     public void updateProductPrice(String productId, double newPrice) {
-        Product product = productCatalog.get(productId);
+        Product product = getProduct(productId);
         if (product != null) {
             System.out.println("💰 Updating price for " + product.getName() + " to $" + newPrice);
             product.setPrice(newPrice);
@@ -174,6 +387,286 @@ public class ProductManagementFacade {
         }
     }
 
+    /**
+     * Summarises a product's prices over the last days from its price history
+     * The minimum is the lowest price charged in the period, e.g. the 30-day reference price for a discount
+     *
+     * @param productId the product
+     * @param days length of the period ending now
+     * @return min, max and time-weighted average price, or null if the product does not exist
+     */
+    public PriceStatistics getPriceStatistics(String productId, int days) {
+        Product product = getProduct(productId);
+        if (product == null) {
+            System.out.println("❌ Product not found: " + productId);
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        PriceStatistics statistics = product.getPriceHistory().range(now - days * 86_400_000L, now);
+        System.out.println("📈 " + product.getName() + " over " + days + " day(s): " + statistics);
+        return statistics;
+    }
+
+    /**
+     * Applies a price or sale change to every product matching the change's query
+     * All products switch in one catalog version and every watching customer gets one digest
+     *
+     * @param change the bulk change, e.g. BulkPriceChange.percentage(CatalogQuery.all().brand("FSA_Beauty"), -20)
+     * @return counts of changed products and notified customers
+     */
+    public BulkUpdateResult applyBulkPriceChange(BulkPriceChange change) {
+        System.out.println("💰 Applying bulk " + change.getMode().name().toLowerCase().replace('_', ' ') + " change");
+        BulkUpdateResult result = new BulkPriceUpdater(catalog).apply(change);
+        System.out.println("✅ Bulk change finished. " + result.getSummary());
+        return result;
+    }
+
+    /**
+     * Debounces customer notifications per product
+     * Changes to the same product within the window are merged and only the net
+     * transition is delivered, so a burst like stock 5 -> 0 -> 4 sends at most one alert
+     *
+     * @param windowMillis length of the coalescing window per product
+     * @return the dispatcher, first in the notification pipeline
+     */
+    public CoalescingDispatcher enableNotificationCoalescing(long windowMillis) {
+        CoalescingDispatcher coalescing = new CoalescingDispatcher(windowMillis);
+        installNotificationStage(NotificationStage.COALESCING, coalescing);
+        System.out.println("⏱️ Notifications are coalesced per product over " + windowMillis + " ms");
+        return coalescing;
+    }
+
+    /**
+     * Delivers to products with many watchers in parallel shards on the fork/join pool
+     * Each large fan-out prints a completion and latency report when its last shard finishes
+     *
+     * @param shardSize subscriptions per shard; products with fewer watchers are notified inline
+     * @return the dispatcher, e.g. to replace its report listener
+     */
+    public ShardedFanOutDispatcher enableShardedFanOut(int shardSize) {
+        ShardedFanOutDispatcher sharded = new ShardedFanOutDispatcher(shardSize);
+        installNotificationStage(NotificationStage.SHARDED_FAN_OUT, sharded);
+        System.out.println("🧵 Large watcher lists are notified in parallel shards of " + shardSize);
+        return sharded;
+    }
+
+    /**
+     * Queues notifications in one lane per customer tier and drains the lanes by weight
+     * VIP customers keep getting prompt notifications while a bulk campaign drains
+     *
+     * @param workers number of delivery threads
+     * @return the dispatcher, e.g. to read its per-lane metrics
+     */
+    public PriorityLaneDispatcher enablePriorityLanes(int workers) {
+        PriorityLaneDispatcher lanes = new PriorityLaneDispatcher(workers);
+        installNotificationStage(NotificationStage.PRIORITY_LANES, lanes);
+        System.out.println("🚦 Notifications are delivered through weighted priority lanes");
+        return lanes;
+    }
+
+    /**
+     * Limits how many notifications each customer receives, overall and per channel
+     * Notifications over a limit are folded into a digest sent on the given schedule
+     *
+     * @param perCustomerPerHour notifications per customer and hour over all channels
+     * @param emailPerHour notifications per customer and hour by email
+     * @param smsPerHour notifications per customer and hour by SMS
+     * @param schedule when digests of held-back notifications are sent
+     * @return the limiter, e.g. to flush digests or read its counters
+     */
+    public RateLimitingDispatcher enableNotificationRateLimits(int perCustomerPerHour, int emailPerHour,
+                                                               int smsPerHour, DigestSchedule schedule) {
+        Map<String, RateLimit> channelLimits = new LinkedHashMap<>();
+        channelLimits.put("email", RateLimit.perHour(emailPerHour));
+        channelLimits.put("sms", RateLimit.perHour(smsPerHour));
+        RateLimitingDispatcher limiter = new RateLimitingDispatcher(RateLimit.perHour(perCustomerPerHour),
+                channelLimits, ProductManagementFacade::channelsOf, schedule, TimerWheel.shared());
+        installNotificationStage(NotificationStage.RATE_LIMITS, limiter);
+        System.out.println("🚥 Notifications limited to " + perCustomerPerHour + "/h per customer, digests " + schedule);
+        return limiter;
+    }
+
+    private static Collection<String> channelsOf(CustomerObserver observer) {
+        List<String> channels = new ArrayList<>(2);
+        if (observer instanceof Customer) {
+            Customer customer = (Customer) observer;
+            if (customer.isWantsEmailNotifications()) {
+                channels.add("email");
+            }
+            if (customer.canReceiveSMS()) {
+                channels.add("sms");
+            }
+        }
+        return channels;
+    }
+
+    /**
+     * Records every product change and its notifications in a durable outbox before delivery
+     * A relay delivers from the outbox at least once and resumes after a crash with
+     * whatever had not been delivered yet
+     *
+     * @param directory where the outbox files are kept
+     * @param consumers number of parallel delivery threads
+     * @return the started relay
+     * @throws IOException if the outbox files cannot be opened
+     */
+    public OutboxRelay enableNotificationOutbox(Path directory, int consumers) throws IOException {
+        NotificationOutbox outbox = new NotificationOutbox(directory, this::findCustomerByEmail);
+        OutboxRelay relay = new OutboxRelay(outbox, consumers).start();
+        installNotificationStage(NotificationStage.OUTBOX, outbox);
+        System.out.println("📮 Notifications go through the outbox in " + directory);
+        return relay;
+    }
+
+    /**
+     * Announces restocks to watchers in waves instead of all at once
+     * Each wave holds stock x multiplier customers who get a time-limited reservation;
+     * the next wave follows as reservations expire or are used at checkout
+     *
+     * @param mode FIFO or priority order of the waitlist
+     * @param multiplier customers notified per available unit
+     * @param reservationMillis how long a notified customer may buy before the slot passes on
+     * @return the waitlist, placed after coalescing and before the per-recipient stages
+     */
+    public RestockWaitlist enableRestockWaitlist(RestockWaitlist.Mode mode, double multiplier, long reservationMillis) {
+        restockWaitlist = new RestockWaitlist(mode, multiplier, reservationMillis);
+        installNotificationStage(NotificationStage.RESTOCK_WAITLIST, restockWaitlist);
+        System.out.println("🌊 Restocks are announced in waves of stock x " + multiplier);
+        return restockWaitlist;
+    }
+
+    /**
+     * Checks whether a customer may buy a product now and, if they hold a waitlist
+     * reservation, uses it up in the same step
+     *
+     * @param productId the product to buy
+     * @param customerName the buying customer
+     * @return false while a restock wave is outstanding and the customer holds no reservation
+     */
+    public boolean claimPurchase(String productId, String customerName) {
+        Product product = getProduct(productId);
+        Customer customer = findCustomerByName(customerName);
+        if (restockWaitlist == null || product == null || customer == null) {
+            return true;
+        }
+        return restockWaitlist.claim(product, customer);
+    }
+
+    /**
+     * Delivers the notifications that passed every enabled stage through a dispatcher
+     * instead of notifying customers directly
+     *
+     * @param dispatcher the last dispatcher of the notification pipeline
+     */
+    public void useNotificationDispatcher(EventDispatcher dispatcher) {
+        this.deliveryDispatcher = dispatcher == null ? EventDispatcher.DIRECT : dispatcher;
+        relinkNotificationStages();
+    }
+
+    private void installNotificationStage(NotificationStage stage, ChainedDispatcher dispatcher) {
+        notificationStages.put(stage, dispatcher);
+        relinkNotificationStages();
+    }
+
+    // Chains the enabled stages in pipeline order and routes every catalog product through the first
+    private void relinkNotificationStages() {
+        List<ChainedDispatcher> stages = new ArrayList<>(notificationStages.values());
+        Collections.reverse(stages);
+        EventDispatcher next = deliveryDispatcher;
+        for (ChainedDispatcher stage : stages) {
+            stage.setDownstream(next);
+            next = stage;
+        }
+        notificationDispatcher = next;
+        for (ProductSnapshot product : catalog.snapshot().products()) {
+            product.getProduct().setDispatcher(next);
+        }
+    }
+
+    /**
+     * Returns one stream of the change events of every catalog product, including products imported later
+     * Subscribers request events at their own pace; a subscriber that falls behind its buffer
+     * does not slow down product updates but is cut off with {@code onError(EventStream.Overflow)}
+     * and has to subscribe again, so it never misses events without knowing
+     *
+     * @return the catalog-wide product event stream
+     */
+    public synchronized EventStream<ProductEvent> productEvents() {
+        EventStream<ProductEvent> stream = productEvents;
+        if (stream == null) {
+            // Published before the catalog is read: an import committing meanwhile either
+            // shows up in this snapshot or finds the stream afterwards (attaching twice is harmless)
+            stream = new EventStream<>("product events");
+            productEvents = stream;
+            for (ProductSnapshot product : catalog.snapshot().products()) {
+                product.getProduct().addEventStream(stream);
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Sends customer emails and SMS through the given channels instead of the console
+     * e.g. BatchingChannels over a provider transport or a LocalMessageServer for load tests
+     *
+     * @param email channel for email notifications, null for console output
+     * @param sms channel for SMS notifications, null for console output
+     */
+    public void useNotificationChannels(NotificationChannel email, NotificationChannel sms) {
+        for (Customer customer : customers) {
+            customer.setNotificationChannels(email, sms);
+        }
+    }
+
+    /**
+     * Imports a merchandising feed (CSV or JSON Lines) into the catalog
+     * The file is streamed and applied in batches, so feeds of any size can be loaded
+     *
+     * @param feedFile the feed to import; the format is taken from the file extension
+     * @return the import report with inserted, updated, rejected and duplicate counts
+     * @throws IOException if the feed cannot be read
+     */
+    public ImportReport importCatalog(Path feedFile) throws IOException {
+        System.out.println("📥 Importing catalog feed: " + feedFile.getFileName());
+        ImportReport report = new CatalogImporter(this::upsertProducts).importFile(feedFile);
+        System.out.println("✅ Import finished. " + report.getSummary());
+        return report;
+    }
+
+    /**
+     * Applies one batch of feed rows to the catalog as a single new catalog version
+     * Existing products receive all changes of a row at once, so each watcher
+     * gets a single notification per product instead of one per changed field
+     *
+     * @param rows validated rows with unique product IDs
+     * @param report the report of the running import
+     */
+    private void upsertProducts(List<CatalogRow> rows, ImportReport report) {
+        List<Product> inserted = new ArrayList<>();
+        catalog.update(tx -> {
+            for (CatalogRow row : rows) {
+                Product existing = tx.getProduct(row.getProductId());
+                if (existing == null) {
+                    Product product = new Product(row.getProductId(), row.getName(), row.getBrand(), row.getPrice(), row.getStock());
+                    product.setDispatcher(notificationDispatcher);
+                    inserted.add(product);
+                    tx.put(product);
+                    report.recordInserted();
+                } else {
+                    existing.applyFeedUpdate(row.getName(), row.getBrand(), row.getPrice(), row.getStock());
+                    report.recordUpdated();
+                }
+            }
+        });
+        // Read after the commit, so a productEvents() call racing with this import cannot miss the new products
+        EventStream<ProductEvent> stream = productEvents;
+        if (stream != null) {
+            for (Product product : inserted) {
+                product.addEventStream(stream);
+            }
+        }
+    }
+
     /**
      * Demonstrates the Factory Method pattern by creating different cosmetic products
      * Shows how factories create specific product types with their characteristics
@@ -223,13 +716,20 @@ public class ProductManagementFacade {
                 .orElse(null);
     }
 
+    private Customer findCustomerByEmail(String email) {
+        return customers.stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElse(null);
+    }
+
     /**
      * Gets a list of all available product IDs in the catalog
      *
      * @return list of product identifiers
      */
     public List<String> getAvailableProductIds() {
-        return new ArrayList<>(productCatalog.keySet());
+        return catalog.snapshot().getProductIds();
     }
 
     /**
@@ -239,8 +739,8 @@ public class ProductManagementFacade {
      * @return true if product exists and has stock, false otherwise
      */
     public boolean isProductAvailable(String productId) {
-        Product product = productCatalog.get(productId);
-        return product != null && product.getStock() > 0;
+        ProductSnapshot product = catalog.snapshot().get(productId);
+        return product != null && product.isAvailable();
     }
 
     /**
@@ -249,6 +749,6 @@ public class ProductManagementFacade {
      * @return the count of products in the catalog
      */
     public int getProductCount() {
-        return productCatalog.size();
+        return catalog.snapshot().size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package fsabeauty.fraud;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of screening one payment: its risk score, the decision and the rules that contributed.
+ */
+public final class FraudAssessment {
+
+    /**
+     * What checkout should do with the payment.
+     */
+    public enum Decision {
+        ALLOW,
+        REVIEW,
+        BLOCK
+    }
+
+    private final int score;
+    private final Decision decision;
+    private final List<String> reasons;
+    private final long latencyNanos;
+
+    FraudAssessment(int score, Decision decision, List<String> reasons, long latencyNanos) {
+        this.score = score;
+        this.decision = decision;
+        this.reasons = Collections.unmodifiableList(reasons);
+        this.latencyNanos = latencyNanos;
+    }
+
+    public int getScore() { return score; }
+    public Decision getDecision() { return decision; }
+
+    /**
+     * @return "rule +points" for every rule that gave points
+     */
+    public List<String> getReasons() { return reasons; }
+
+    /**
+     * @return time spent screening, features and scoring included
+     */
+    public long getLatencyNanos() { return latencyNanos; }
+
+    public boolean isBlocked() { return decision == Decision.BLOCK; }
+    public boolean needsReview() { return decision == Decision.REVIEW; }
+
+    @Override
+    public String toString() {
+        return decision + " (score " + score + (reasons.isEmpty() ? "" : ": " + String.join(", ", reasons)) + ")";
+    }
+}
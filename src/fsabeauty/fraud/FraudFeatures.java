@@ -0,0 +1,67 @@
+package fsabeauty.fraud;
+
+/**
+ * Immutable snapshot of what is known about a payment when it is screened: the payer's recent
+ * velocity and spending, and the composition of the cart. Counts exclude the payment itself.
+ */
+public final class FraudFeatures {
+    private final String payerKey;
+    private final double amount;
+    private final long paymentsLast10Minutes;
+    private final long paymentsLastHour;
+    private final long amountHistoryCount;
+    private final double amountMean;
+    private final double amountStandardDeviation;
+    private final int itemCount;
+    private final int distinctItemCount;
+    private final int maxSameItemCount;
+
+    FraudFeatures(String payerKey, double amount, long paymentsLast10Minutes, long paymentsLastHour,
+                  long amountHistoryCount, double amountMean, double amountStandardDeviation,
+                  int itemCount, int distinctItemCount, int maxSameItemCount) {
+        this.payerKey = payerKey;
+        this.amount = amount;
+        this.paymentsLast10Minutes = paymentsLast10Minutes;
+        this.paymentsLastHour = paymentsLastHour;
+        this.amountHistoryCount = amountHistoryCount;
+        this.amountMean = amountMean;
+        this.amountStandardDeviation = amountStandardDeviation;
+        this.itemCount = itemCount;
+        this.distinctItemCount = distinctItemCount;
+        this.maxSameItemCount = maxSameItemCount;
+    }
+
+    public String getPayerKey() { return payerKey; }
+    public double getAmount() { return amount; }
+    public long getPaymentsLast10Minutes() { return paymentsLast10Minutes; }
+    public long getPaymentsLastHour() { return paymentsLastHour; }
+
+    /**
+     * @return number of the payer's past unblocked payments the mean and deviation are based on
+     */
+    public long getAmountHistoryCount() { return amountHistoryCount; }
+    public double getAmountMean() { return amountMean; }
+    public double getAmountStandardDeviation() { return amountStandardDeviation; }
+    public int getItemCount() { return itemCount; }
+    public int getDistinctItemCount() { return distinctItemCount; }
+
+    /**
+     * @return units of the most repeated item in the cart
+     */
+    public int getMaxSameItemCount() { return maxSameItemCount; }
+
+    /**
+     * How unusual the amount is for the payer, in standard deviations above the mean.
+     * The deviation is floored at a tenth of the mean so that a payer with identical past
+     * amounts is not flagged for a small change.
+     *
+     * @return the z-score, 0 without history
+     */
+    public double getAmountZScore() {
+        if (amountHistoryCount == 0) {
+            return 0;
+        }
+        double spread = Math.max(amountStandardDeviation, Math.max(amountMean * 0.1, 1.0));
+        return (amount - amountMean) / spread;
+    }
+}
@@ -0,0 +1,98 @@
+package fsabeauty.fraud;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * One fraud signal: turns a payment's features into risk points, 0 when the rule sees nothing
+ * suspicious. Rules run inline at checkout, so they must be cheap and thread-safe.
+ */
+public interface FraudRule {
+
+    /**
+     * @return the rule's name, reported with the points it gave
+     */
+    String getName();
+
+    /**
+     * @param features the payment being screened
+     * @return risk points, 0 for none
+     */
+    int score(FraudFeatures features);
+
+    /**
+     * @param name the rule's name
+     * @param scoring computes the points
+     * @return a rule
+     */
+    static FraudRule of(String name, ToIntFunction<FraudFeatures> scoring) {
+        return new FraudRule() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public int score(FraudFeatures features) {
+                return scoring.applyAsInt(features);
+            }
+        };
+    }
+
+    /**
+     * Many payments from the same payer in a short time, typical of card testing.
+     *
+     * @return the velocity rule
+     */
+    static FraudRule velocity() {
+        return of("velocity", features -> {
+            int points = 0;
+            if (features.getPaymentsLast10Minutes() >= 8) {
+                points += 80;
+            } else if (features.getPaymentsLast10Minutes() >= 4) {
+                points += 40;
+            }
+            if (features.getPaymentsLastHour() >= 20) {
+                points += 30;
+            }
+            return points;
+        });
+    }
+
+    /**
+     * An amount far above what the payer usually spends, or a large first payment.
+     *
+     * @return the amount anomaly rule
+     */
+    static FraudRule amountAnomaly() {
+        return of("amount-anomaly", features -> {
+            if (features.getAmountHistoryCount() == 0) {
+                return features.getAmount() >= 500 ? 20 : 0;
+            }
+            if (features.getAmountHistoryCount() < 3) {
+                return 0;
+            }
+            double z = features.getAmountZScore();
+            return z >= 6 ? 60 : z >= 3 ? 30 : 0;
+        });
+    }
+
+    /**
+     * Carts stocking up on one product or unusually large, typical of resellers using stolen cards.
+     *
+     * @return the cart composition rule
+     */
+    static FraudRule cartComposition() {
+        return of("cart-composition", features -> {
+            int points = 0;
+            if (features.getMaxSameItemCount() >= 10) {
+                points += 50;
+            } else if (features.getMaxSameItemCount() >= 5) {
+                points += 25;
+            }
+            if (features.getItemCount() >= 30) {
+                points += 20;
+            }
+            return points;
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package fsabeauty.fraud;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Adds up the points of its rules and maps the total to a decision: at or above the review
+ * threshold a payment is flagged, at or above the block threshold it is refused. Rules can be
+ * added and removed while checkouts are being scored.
+ */
+public class FraudScorer {
+    private final List<FraudRule> rules = new CopyOnWriteArrayList<>();
+    private volatile int reviewThreshold;
+    private volatile int blockThreshold;
+
+    /**
+     * Constructs a scorer without rules.
+     *
+     * @param reviewThreshold score from which payments are flagged for review
+     * @param blockThreshold score from which payments are blocked
+     */
+    public FraudScorer(int reviewThreshold, int blockThreshold) {
+        setThresholds(reviewThreshold, blockThreshold);
+    }
+
+    /**
+     * @return a scorer with the velocity, amount anomaly and cart composition rules,
+     *         reviewing from 40 points and blocking from 80
+     */
+    public static FraudScorer withDefaultRules() {
+        FraudScorer scorer = new FraudScorer(40, 80);
+        scorer.addRule(FraudRule.velocity());
+        scorer.addRule(FraudRule.amountAnomaly());
+        scorer.addRule(FraudRule.cartComposition());
+        return scorer;
+    }
+
+    public void addRule(FraudRule rule) {
+        rules.add(rule);
+    }
+
+    /**
+     * @param name a rule's name
+     * @return true if a rule was removed
+     */
+    public boolean removeRule(String name) {
+        return rules.removeIf(rule -> rule.getName().equals(name));
+    }
+
+    /**
+     * @param reviewThreshold score from which payments are flagged for review
+     * @param blockThreshold score from which payments are blocked, at least the review threshold
+     */
+    public void setThresholds(int reviewThreshold, int blockThreshold) {
+        if (reviewThreshold < 1 || blockThreshold < reviewThreshold) {
+            throw new IllegalArgumentException("Block threshold must not be below the review threshold");
+        }
+        this.reviewThreshold = reviewThreshold;
+        this.blockThreshold = blockThreshold;
+    }
+
+    /**
+     * @return the rules in evaluation order
+     */
+    public List<FraudRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    FraudAssessment score(FraudFeatures features, long startNanos) {
+        int score = 0;
+        List<String> reasons = null;
+        for (FraudRule rule : rules) {
+            int points = rule.score(features);
+            if (points > 0) {
+                score += points;
+                if (reasons == null) {
+                    reasons = new ArrayList<>(2);
+                }
+                reasons.add(rule.getName() + " +" + points);
+            }
+        }
+        FraudAssessment.Decision decision = score >= blockThreshold ? FraudAssessment.Decision.BLOCK
+                : score >= reviewThreshold ? FraudAssessment.Decision.REVIEW : FraudAssessment.Decision.ALLOW;
+        return new FraudAssessment(score, decision, reasons != null ? reasons : Collections.emptyList(),
+                System.nanoTime() - startNanos);
+    }
+}
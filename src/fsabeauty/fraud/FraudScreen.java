@@ -0,0 +1,198 @@
+package fsabeauty.fraud;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inline fraud check run before a payment is executed.
+ * Keeps an in-process feature store keyed by payer (card last four digits and holder, hash of the
+ * Apple Pay token or QR code): a one-hour window of payment attempts in two-minute buckets for
+ * velocity, and a 24-hour window of unblocked amounts in hourly buckets for the payer's usual
+ * spending, about 1.2 KB per active payer. Screening reads both windows, counts the cart's items, scores the result with the
+ * {@link FraudScorer} and records the attempt - all in memory, typically a few microseconds.
+ * A retried checkout of an order already screened by the same payer for the same amount is
+ * scored again but not recorded again, so retries do not count as velocity against the payer;
+ * another card or amount under the same order is a new attempt and is recorded.
+ * Thread-safe; one instance serves every checkout.
+ */
+public class FraudScreen {
+    private static final long MINUTE = 60_000L;
+    private static final int REMEMBERED_ORDERS = 10_000;
+
+    private final FraudScorer scorer;
+    private final SlidingWindowStore attempts = new SlidingWindowStore(2 * MINUTE, 30, false);
+    private final SlidingWindowStore spending = new SlidingWindowStore(60 * MINUTE, 24, true);
+    // Recently screened order, payer and amount combinations, oldest forgotten first
+    private final Map<String, Boolean> screenedOrders = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > REMEMBERED_ORDERS;
+        }
+    };
+
+    // Striped counters: every checkout thread updates them
+    private final LongAdder[] decisions = new LongAdder[FraudAssessment.Decision.values().length];
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Constructs a screen with the default rules.
+     */
+    public FraudScreen() {
+        this(FraudScorer.withDefaultRules());
+    }
+
+    /**
+     * Constructs a screen.
+     *
+     * @param scorer the rules and thresholds to apply
+     */
+    public FraudScreen(FraudScorer scorer) {
+        this.scorer = scorer;
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Screens a payment about to be made and records it.
+     *
+     * @param payerKey identifies the payer, see {@code PaymentCredentials.getPayerKey()}
+     * @param amount the payment amount
+     * @param items the cart's item descriptions, one entry per unit
+     * @return the assessment; a blocked payment must not be executed
+     */
+    public FraudAssessment screen(String payerKey, double amount, List<String> items) {
+        return screen(null, payerKey, amount, items, System.currentTimeMillis());
+    }
+
+    /**
+     * Screens an order's payment about to be made and records it, unless the same payer
+     * was screened for the order and amount before.
+     *
+     * @param orderId the order being paid; a retry of it is not recorded again
+     * @param payerKey identifies the payer, see {@code PaymentCredentials.getPayerKey()}
+     * @param amount the payment amount
+     * @param items the cart's item descriptions, one entry per unit
+     * @return the assessment; a blocked payment must not be executed
+     */
+    public FraudAssessment screen(String orderId, String payerKey, double amount, List<String> items) {
+        return screen(orderId, payerKey, amount, items, System.currentTimeMillis());
+    }
+
+    /**
+     * Screens a payment at a given time, e.g. when replaying past orders.
+     *
+     * @param payerKey identifies the payer
+     * @param amount the payment amount
+     * @param items the cart's item descriptions, one entry per unit
+     * @param now the payment time, in milliseconds
+     * @return the assessment
+     */
+    public FraudAssessment screen(String payerKey, double amount, List<String> items, long now) {
+        return screen(null, payerKey, amount, items, now);
+    }
+
+    /**
+     * Screens an order's payment at a given time.
+     *
+     * @param orderId the order being paid, or null to record every call
+     * @param payerKey identifies the payer
+     * @param amount the payment amount
+     * @param items the cart's item descriptions, one entry per unit
+     * @param now the payment time, in milliseconds
+     * @return the assessment
+     */
+    public FraudAssessment screen(String orderId, String payerKey, double amount, List<String> items, long now) {
+        long start = System.nanoTime();
+        WindowStats stats = new WindowStats();
+        attempts.read(payerKey, now, 10 * MINUTE, stats);
+        long last10Minutes = stats.getCount();
+        attempts.read(payerKey, now, 60 * MINUTE, stats);
+        long lastHour = stats.getCount();
+        spending.read(payerKey, now, spending.getWindowMillis(), stats);
+
+        int maxSameItem = 0;
+        Map<String, Integer> units = new HashMap<>();
+        for (String item : items) {
+            maxSameItem = Math.max(maxSameItem, units.merge(item, 1, Integer::sum));
+        }
+
+        FraudFeatures features = new FraudFeatures(payerKey, amount, last10Minutes, lastHour,
+                stats.getCount(), stats.getMean(), stats.getStandardDeviation(),
+                items.size(), units.size(), maxSameItem);
+        FraudAssessment assessment = scorer.score(features, start);
+
+        if (firstScreening(orderId, payerKey, amount)) {
+            attempts.record(payerKey, now, amount);
+            if (!assessment.isBlocked()) {
+                spending.record(payerKey, now, amount); // blocked amounts would skew the payer's baseline
+            }
+        }
+
+        decisions[assessment.getDecision().ordinal()].increment();
+        long elapsed = System.nanoTime() - start;
+        totalNanos.add(elapsed);
+        if (elapsed > maxNanos.get()) {
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        return assessment;
+    }
+
+    // Only an exact retry is skipped: swapping cards or amounts under one order must still count
+    private boolean firstScreening(String orderId, String payerKey, double amount) {
+        if (orderId == null) {
+            return true;
+        }
+        String attempt = orderId + '|' + payerKey + '|' + Math.round(amount * 100);
+        synchronized (screenedOrders) {
+            return screenedOrders.put(attempt, Boolean.TRUE) == null;
+        }
+    }
+
+    public FraudScorer getScorer() { return scorer; }
+
+    /**
+     * @param decision a decision
+     * @return number of payments screened with that outcome
+     */
+    public long getCount(FraudAssessment.Decision decision) {
+        return decisions[decision.ordinal()].sum();
+    }
+
+    /**
+     * @return payments screened so far
+     */
+    public long getScreenedCount() {
+        long screened = 0;
+        for (FraudAssessment.Decision decision : FraudAssessment.Decision.values()) {
+            screened += getCount(decision);
+        }
+        return screened;
+    }
+
+    /**
+     * @return mean screening time in microseconds
+     */
+    public double getAverageMicros() {
+        long screened = getScreenedCount();
+        return screened == 0 ? 0 : totalNanos.sum() / 1000.0 / screened;
+    }
+
+    public double getMaxMicros() { return maxNanos.get() / 1000.0; }
+
+    /**
+     * @return one line with decisions, screening time and feature store size
+     */
+    public String getSummary() {
+        return String.format("Fraud screen: %d allowed, %d for review, %d blocked | avg %.1f us, max %.1f us"
+                        + " | %d payer(s), ~%d KB",
+                getCount(FraudAssessment.Decision.ALLOW), getCount(FraudAssessment.Decision.REVIEW),
+                getCount(FraudAssessment.Decision.BLOCK), getAverageMicros(), getMaxMicros(),
+                attempts.getKeyCount(), (attempts.getMemoryBytes() + spending.getMemoryBytes()) / 1024);
+    }
+}
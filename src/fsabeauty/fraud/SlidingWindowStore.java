@@ -0,0 +1,170 @@
+package fsabeauty.fraud;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Per-key sliding-window counters of events and amounts.
+ * Each key owns a ring of time buckets held in primitive arrays (bucket epoch, event count and,
+ * when amounts are tracked, amount sum and sum of squared amounts); a bucket is reused as soon
+ * as its epoch falls out of the window, so recording and querying cost at most one pass over
+ * the ring. An event arriving so late that its bucket already holds a newer epoch is outside the
+ * window and is ignored rather than wiping the newer bucket.
+ * A key takes about {@code bucketCount * 12} bytes, or {@code bucketCount * 28} with amounts.
+ * Keys are locked individually, so checkouts of different payers never contend. Keys idle for
+ * longer than the window are pruned from time to time, in the background.
+ */
+public class SlidingWindowStore {
+    private static final int PRUNE_EVERY = 4096;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final boolean trackAmounts;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private int recordsSincePrune; // racy on purpose: only paces pruning
+
+    /**
+     * Constructs a store.
+     *
+     * @param bucketMillis time covered by one bucket, the resolution of window queries
+     * @param bucketCount buckets per key; the window spans bucketMillis * bucketCount
+     * @param trackAmounts whether to keep amount sums for means and deviations, or only count events
+     */
+    public SlidingWindowStore(long bucketMillis, int bucketCount, boolean trackAmounts) {
+        if (bucketMillis < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Bucket size and count must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.trackAmounts = trackAmounts;
+    }
+
+    /**
+     * Records an event. Events older than the window of the key's newer events are ignored.
+     *
+     * @param key the key, e.g. a payer
+     * @param timestamp when the event happened, in milliseconds
+     * @param amount the event's amount, 0 if it has none
+     */
+    public void record(String key, long timestamp, double amount) {
+        long epoch = epoch(timestamp);
+        // Recorded inside compute so a concurrent prune cannot drop the window under us
+        windows.compute(key, (k, window) -> {
+            Window target = window != null ? window : new Window();
+            target.record(epoch, amount);
+            return target;
+        });
+        if (++recordsSincePrune >= PRUNE_EVERY) {
+            recordsSincePrune = 0;
+            ForkJoinPool.commonPool().execute(() -> prune(timestamp)); // keep the scan off the checkout path
+        }
+    }
+
+    /**
+     * Fills in a key's statistics over the most recent part of the window.
+     *
+     * @param key the key
+     * @param now the current time, in milliseconds
+     * @param spanMillis how far back to look, rounded up to whole buckets and capped at the window
+     * @param into receives the count, sum and sum of squares; zeroed first
+     */
+    public void read(String key, long now, long spanMillis, WindowStats into) {
+        into.clear();
+        Window window = windows.get(key);
+        if (window != null) {
+            long buckets = Math.min(bucketCount, (spanMillis + bucketMillis - 1) / bucketMillis);
+            window.read(epoch(now), (int) buckets, into);
+        }
+    }
+
+    /**
+     * @param key the key
+     * @param now the current time, in milliseconds
+     * @param spanMillis how far back to look
+     * @return number of events of the key in that time
+     */
+    public long count(String key, long now, long spanMillis) {
+        WindowStats stats = new WindowStats();
+        read(key, now, spanMillis, stats);
+        return stats.getCount();
+    }
+
+    /**
+     * Forgets keys with no event in the whole window.
+     *
+     * @param now the current time, in milliseconds
+     */
+    public void prune(long now) {
+        long oldestEpoch = epoch(now) - bucketCount + 1;
+        for (String key : windows.keySet()) {
+            windows.computeIfPresent(key, (k, window) -> window.lastEpoch() < oldestEpoch ? null : window);
+        }
+    }
+
+    // Bucket number since the epoch; a long, as millisecond buckets outgrow an int
+    private long epoch(long timestamp) {
+        return timestamp / bucketMillis;
+    }
+
+    public int getKeyCount() { return windows.size(); }
+    public long getWindowMillis() { return bucketMillis * bucketCount; }
+
+    /**
+     * @return approximate bytes held by the buckets of all keys
+     */
+    public long getMemoryBytes() {
+        return (long) windows.size() * (bucketCount * (trackAmounts ? 28L : 12L) + 120);
+    }
+
+    /**
+     * Ring of time buckets of one key.
+     */
+    private final class Window {
+        private final long[] epochs = new long[bucketCount];
+        private final int[] counts = new int[bucketCount];
+        private final double[] sums = trackAmounts ? new double[bucketCount] : null;
+        private final double[] squares = trackAmounts ? new double[bucketCount] : null;
+        private long lastEpoch = Long.MIN_VALUE;
+
+        Window() {
+            Arrays.fill(epochs, Long.MIN_VALUE);
+        }
+
+        synchronized void record(long epoch, double amount) {
+            int slot = Math.floorMod(epoch, bucketCount);
+            if (epoch < epochs[slot]) {
+                return; // arrived after its bucket was reused for a newer one: already out of the window
+            }
+            if (epochs[slot] != epoch) {
+                epochs[slot] = epoch;
+                counts[slot] = 0;
+                if (sums != null) {
+                    sums[slot] = 0;
+                    squares[slot] = 0;
+                }
+            }
+            counts[slot]++;
+            if (sums != null) {
+                sums[slot] += amount;
+                squares[slot] += amount * amount;
+            }
+            lastEpoch = Math.max(lastEpoch, epoch);
+        }
+
+        synchronized void read(long currentEpoch, int buckets, WindowStats into) {
+            long oldest = currentEpoch - buckets + 1;
+            for (int slot = 0; slot < bucketCount; slot++) {
+                long epoch = epochs[slot];
+                if (epoch >= oldest && epoch <= currentEpoch) {
+                    into.add(counts[slot], sums != null ? sums[slot] : 0, squares != null ? squares[slot] : 0);
+                }
+            }
+        }
+
+        synchronized long lastEpoch() {
+            return lastEpoch;
+        }
+    }
+}
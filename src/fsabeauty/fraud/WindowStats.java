@@ -0,0 +1,43 @@
+package fsabeauty.fraud;
+
+/**
+ * Reusable accumulator of a key's events over part of a sliding window.
+ */
+public final class WindowStats {
+    private long count;
+    private double sum;
+    private double sumOfSquares;
+
+    void clear() {
+        count = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    void add(long count, double sum, double sumOfSquares) {
+        this.count += count;
+        this.sum += sum;
+        this.sumOfSquares += sumOfSquares;
+    }
+
+    public long getCount() { return count; }
+    public double getSum() { return sum; }
+
+    /**
+     * @return mean amount, 0 without events
+     */
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return population standard deviation of the amounts, 0 with fewer than two events
+     */
+    public double getStandardDeviation() {
+        if (count < 2) {
+            return 0;
+        }
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+    }
+}
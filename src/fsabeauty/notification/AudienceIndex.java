@@ -0,0 +1,225 @@
+package fsabeauty.notification;
+
+import fsabeauty.catalog.CatalogSnapshot;
+import fsabeauty.catalog.CatalogStore;
+import fsabeauty.catalog.CompressedBitmap;
+import fsabeauty.catalog.ProductSnapshot;
+import fsabeauty.catalog.SubscriptionIndex;
+import fsabeauty.observer.Customer;
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.ProductEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bitmap indexes for selecting notification audiences.
+ * Every set of customers - watchers of a product, watchers of any product in a category,
+ * email opt-in, SMS opt-in, do-not-disturb - is a {@link CompressedBitmap} over the
+ * dense customer IDs of the catalog's {@link SubscriptionIndex}. A campaign such as
+ * "everyone watching any Blush with SMS enabled who is not on do-not-disturb" is then
+ * {@code watchersOfCategory("Blush").and(smsOptIn()).andNot(doNotDisturb())}, evaluated
+ * word by word instead of customer by customer. Every accessor returns a fresh bitmap.
+ */
+public class AudienceIndex {
+    private final CatalogStore catalog;
+    private final SubscriptionIndex subscriptions;
+    private final Function<ProductSnapshot, String> categoryOf;
+    // ID-keyed: guarded by the subscription index, which clears them when it frees an ID
+    private final CompressedBitmap emailOptIn = new CompressedBitmap();
+    private final CompressedBitmap smsOptIn = new CompressedBitmap();
+    private final CompressedBitmap doNotDisturb = new CompressedBitmap();
+    private final Consumer<Customer> preferenceListener = this::preferencesChanged;
+    private final Map<String, CategoryAudience> categoryCache = new HashMap<>();
+    private Map<String, List<String>> productsByCategory;
+    private long productsByCategoryVersion = -1;
+
+    /**
+     * Constructs an audience index over the catalog's subscriptions.
+     *
+     * @param catalog the catalog whose subscription index supplies customer IDs and watchers
+     * @param categoryOf assigns each product its category, e.g. "Blush"
+     */
+    public AudienceIndex(CatalogStore catalog, Function<ProductSnapshot, String> categoryOf) {
+        this.catalog = catalog;
+        this.subscriptions = catalog.subscriptions();
+        this.categoryOf = categoryOf;
+        subscriptions.addCustomerReleaseListener(this::customerReleased);
+    }
+
+    /**
+     * Records a customer's channel preferences and follows later changes to them.
+     *
+     * @param customer the customer
+     */
+    public void register(Customer customer) {
+        preferencesChanged(customer);
+        customer.addPreferenceListener(preferenceListener);
+    }
+
+    private void preferencesChanged(Customer customer) {
+        synchronized (subscriptions) {
+            int id = subscriptions.internCustomer(customer);
+            set(emailOptIn, id, customer.isWantsEmailNotifications());
+            set(smsOptIn, id, customer.canReceiveSMS());
+        }
+    }
+
+    // Called by the subscription index, holding its lock, before the ID is handed out again
+    private void customerReleased(int id) {
+        emailOptIn.remove(id);
+        smsOptIn.remove(id);
+        doNotDisturb.remove(id);
+    }
+
+    /**
+     * Puts a customer on or takes them off the do-not-disturb list.
+     *
+     * @param customer the customer
+     * @param enabled true to suppress campaign notifications to this customer
+     */
+    public void setDoNotDisturb(CustomerObserver customer, boolean enabled) {
+        synchronized (subscriptions) {
+            set(doNotDisturb, subscriptions.internCustomer(customer), enabled);
+        }
+    }
+
+    private static void set(CompressedBitmap bitmap, int id, boolean member) {
+        if (member) {
+            bitmap.add(id);
+        } else {
+            bitmap.remove(id);
+        }
+    }
+
+    /**
+     * Removes a customer from every bitmap and from the subscription index.
+     *
+     * @param customer the customer to forget
+     */
+    public void forget(Customer customer) {
+        customer.removePreferenceListener(preferenceListener);
+        // Clears this index's bits for the customer's ID through customerReleased
+        subscriptions.forgetCustomer(customer);
+        synchronized (this) {
+            categoryCache.clear();
+        }
+    }
+
+    /** @return customers watching the product */
+    public CompressedBitmap watchersOf(String productId) {
+        return subscriptions.watchersBitmap(productId);
+    }
+
+    /**
+     * Watchers of any product in a category. The union is cached until the catalog or
+     * any subscription changes.
+     *
+     * @param category the category as returned by the categoriser
+     * @return customers watching at least one product of the category
+     */
+    public synchronized CompressedBitmap watchersOfCategory(String category) {
+        CatalogSnapshot snapshot = catalog.snapshot();
+        long modifications = subscriptions.getModificationCount();
+        CategoryAudience cached = categoryCache.get(category);
+        if (cached == null || cached.catalogVersion != snapshot.getVersion() || cached.modifications != modifications) {
+            List<String> productIds = productsByCategory(snapshot).getOrDefault(category, new ArrayList<>());
+            cached = new CategoryAudience(snapshot.getVersion(), modifications, subscriptions.watchersOfAny(productIds));
+            categoryCache.put(category, cached);
+        }
+        return cached.watchers.copy();
+    }
+
+    private Map<String, List<String>> productsByCategory(CatalogSnapshot snapshot) {
+        if (productsByCategory == null || productsByCategoryVersion != snapshot.getVersion()) {
+            Map<String, List<String>> byCategory = new HashMap<>();
+            for (ProductSnapshot product : snapshot.products()) {
+                byCategory.computeIfAbsent(categoryOf.apply(product), c -> new ArrayList<>()).add(product.getProductId());
+            }
+            productsByCategory = byCategory;
+            productsByCategoryVersion = snapshot.getVersion();
+        }
+        return productsByCategory;
+    }
+
+    /** @return customers who want email notifications */
+    public CompressedBitmap emailOptIn() {
+        synchronized (subscriptions) {
+            return emailOptIn.copy();
+        }
+    }
+
+    /** @return customers who want SMS notifications and have a phone number */
+    public CompressedBitmap smsOptIn() {
+        synchronized (subscriptions) {
+            return smsOptIn.copy();
+        }
+    }
+
+    /** @return customers on the do-not-disturb list */
+    public CompressedBitmap doNotDisturb() {
+        synchronized (subscriptions) {
+            return doNotDisturb.copy();
+        }
+    }
+
+    /**
+     * @param audience customer IDs
+     * @return the customers, in ID order
+     */
+    public List<CustomerObserver> resolve(CompressedBitmap audience) {
+        List<CustomerObserver> customers = new ArrayList<>(audience.cardinality());
+        audience.forEach(id -> {
+            CustomerObserver customer = subscriptions.customerOf(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        });
+        return customers;
+    }
+
+    /**
+     * Addresses an event to every customer of an audience and hands the notifications to a
+     * dispatcher, so campaigns go through the same rate limits, outbox and lanes as product
+     * notifications.
+     *
+     * @param audience the selected customer IDs
+     * @param event the event to deliver
+     * @param dispatcher the installed notification dispatcher
+     * @return number of customers notified
+     */
+    public int notify(CompressedBitmap audience, ProductEvent event, EventDispatcher dispatcher) {
+        List<CustomerObserver> recipients = resolve(audience);
+        if (!recipients.isEmpty()) {
+            System.out.println("\n🎯 Notifying an audience of " + recipients.size() + " about: " + event.getProductName());
+            List<ProductEvent> events = Collections.singletonList(event);
+            List<Notification> notifications = new ArrayList<>(recipients.size());
+            for (CustomerObserver recipient : recipients) {
+                notifications.add(new Notification(recipient, events));
+            }
+            dispatcher.deliver(notifications);
+        }
+        return recipients.size();
+    }
+
+    /**
+     * Cached union of the watchers of one category.
+     */
+    private static final class CategoryAudience {
+        final long catalogVersion;
+        final long modifications;
+        final CompressedBitmap watchers;
+
+        CategoryAudience(long catalogVersion, long modifications, CompressedBitmap watchers) {
+            this.catalogVersion = catalogVersion;
+            this.modifications = modifications;
+            this.watchers = watchers;
+        }
+    }
+}
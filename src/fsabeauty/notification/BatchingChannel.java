@@ -0,0 +1,224 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.NotificationChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notification channel that batches messages before handing them to a {@link MessageTransport}.
+ * A batch is submitted when it holds {@code batchSize} messages or when its oldest message
+ * has waited {@code maxDelayMillis}, whichever comes first. Batches are submitted in order by
+ * one sender thread over a single reused connection; a failed batch is retried on a fresh
+ * connection with exponential backoff and random jitter, so many channels recovering from
+ * the same provider outage do not retry in lockstep.
+ */
+public class BatchingChannel implements NotificationChannel, AutoCloseable {
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    private final String name;
+    private final MessageTransport transport;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final TimerWheel timerWheel;
+    private final ExecutorService sender;
+
+    private final Object lock = new Object();
+    private List<OutboundMessage> pending;
+    private TimerWheel.Timeout flushTimer;
+    private boolean closed;
+    private MessageTransport.Connection connection; // sender thread only
+
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong messagesFailed = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+
+    /**
+     * Constructs a channel.
+     *
+     * @param name channel name, e.g. "email"
+     * @param transport the provider to submit batches to
+     * @param batchSize messages per batch
+     * @param maxDelayMillis longest time a message waits for its batch to fill
+     * @param maxAttempts submissions per batch before its messages are counted as failed
+     */
+    public BatchingChannel(String name, MessageTransport transport, int batchSize, long maxDelayMillis, int maxAttempts) {
+        if (batchSize < 1 || maxDelayMillis < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Batch size, delay and attempts must be positive");
+        }
+        this.name = name;
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.timerWheel = TimerWheel.shared();
+        this.pending = new ArrayList<>(batchSize);
+        this.sender = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "fsa-" + name + "-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void send(String recipient, String message) {
+        List<OutboundMessage> full = null;
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Channel " + name + " is closed");
+            }
+            pending.add(new OutboundMessage(recipient, message));
+            if (pending.size() >= batchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                flushTimer = timerWheel.schedule(this::flushDue, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    private void flushDue() {
+        List<OutboundMessage> due;
+        synchronized (lock) {
+            due = takePending();
+        }
+        submit(due);
+    }
+
+    private List<OutboundMessage> takePending() {
+        if (flushTimer != null) {
+            flushTimer.cancel();
+            flushTimer = null;
+        }
+        List<OutboundMessage> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        return batch;
+    }
+
+    private void submit(List<OutboundMessage> batch) {
+        if (!batch.isEmpty()) {
+            sender.execute(() -> deliver(batch));
+        }
+    }
+
+    private void deliver(List<OutboundMessage> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                connection().submit(batch);
+                messagesSent.addAndGet(batch.size());
+                batchesSent.incrementAndGet();
+                return;
+            } catch (IOException e) {
+                closeConnection();
+                if (attempt == maxAttempts) {
+                    messagesFailed.addAndGet(batch.size());
+                    System.out.println("⚠️ " + name + " batch of " + batch.size() + " dropped after "
+                            + attempt + " attempts: " + e.getMessage());
+                    return;
+                }
+                retries.incrementAndGet();
+                if (!backOff(attempt)) {
+                    messagesFailed.addAndGet(batch.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    // Exponential backoff with equal jitter - half the ceiling plus a random part of the other
+    // half, so a retry never fires right away; false if interrupted
+    private boolean backOff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private MessageTransport.Connection connection() throws IOException {
+        if (connection == null || !connection.isOpen()) {
+            connection = transport.connect();
+            connectionsOpened.incrementAndGet();
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+                // The connection is being discarded anyway
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Submits the current partial batch and waits until everything handed to the channel
+     * so far has been delivered or given up on.
+     */
+    public void flush() {
+        List<OutboundMessage> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        submit(batch);
+        try {
+            sender.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Channel " + name + " sender failed", e.getCause());
+        }
+    }
+
+    /**
+     * Flushes pending messages, then releases the connection and the sender thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+        sender.execute(this::closeConnection);
+        sender.shutdown();
+        try {
+            sender.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getName() { return name; }
+    public long getMessagesSent() { return messagesSent.get(); }
+    public long getBatchesSent() { return batchesSent.get(); }
+    public long getRetries() { return retries.get(); }
+    public long getMessagesFailed() { return messagesFailed.get(); }
+    public long getConnectionsOpened() { return connectionsOpened.get(); }
+
+    /** @return one-line delivery statistics */
+    public String getSummary() {
+        return String.format("%s: %d sent in %d batches, %d retries, %d failed, %d connection(s)",
+                name, getMessagesSent(), getBatchesSent(), getRetries(), getMessagesFailed(), getConnectionsOpened());
+    }
+}
@@ -0,0 +1,18 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.EventDispatcher;
+
+/**
+ * An {@link EventDispatcher} that passes what it lets through to a next dispatcher, so
+ * several of them - coalescing, waitlist, rate limits, outbox, sharding, lanes - can be
+ * composed into one notification pipeline.
+ */
+public interface ChainedDispatcher extends EventDispatcher {
+
+    /**
+     * Replaces the dispatcher that receives what this one passes on.
+     *
+     * @param downstream the next dispatcher, e.g. {@link EventDispatcher#DIRECT}
+     */
+    void setDownstream(EventDispatcher downstream);
+}
@@ -0,0 +1,207 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.PriceChanged;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import fsabeauty.observer.SaleStarted;
+import fsabeauty.observer.StockChanged;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event dispatcher that debounces bursts of changes per product.
+ * The first event of a product opens a window; further events within the window are
+ * folded into it, and when the window closes only the net transition is passed on.
+ * An inventory sync that sets stock 5 -> 3 -> 2 -> 0 -> 4 therefore produces one
+ * StockChanged(5 -> 4) instead of low-stock, out-of-stock and back-in-stock alerts.
+ * Stock and price changes collapse to first-old/last-new, a newer sale replaces an
+ * older one, and one-off announcements (new shade, feature, free text) are kept in order.
+ * All windows share one {@link TimerWheel} instead of one timer per product. Bulk changes
+ * and notifications addressed to chosen recipients are already one batch and pass through.
+ */
+public class CoalescingDispatcher implements ChainedDispatcher {
+    private final long defaultWindowMillis;
+    private volatile EventDispatcher downstream;
+    private final TimerWheel timerWheel;
+    private final Map<String, Long> windowOverrides = new ConcurrentHashMap<>();
+    private final Map<Product, Window> openWindows = new ConcurrentHashMap<>();
+    private volatile long receivedEvents;
+    private volatile long forwardedEvents;
+
+    /**
+     * Constructs a dispatcher that delivers directly when a window closes.
+     *
+     * @param windowMillis default coalescing window per product
+     */
+    public CoalescingDispatcher(long windowMillis) {
+        this(windowMillis, EventDispatcher.DIRECT, TimerWheel.shared());
+    }
+
+    /**
+     * Constructs a dispatcher.
+     *
+     * @param windowMillis default coalescing window per product
+     * @param downstream receives the net events when a window closes
+     * @param timerWheel wheel used to close windows
+     */
+    public CoalescingDispatcher(long windowMillis, EventDispatcher downstream, TimerWheel timerWheel) {
+        if (windowMillis < 1) {
+            throw new IllegalArgumentException("Coalescing window must be at least 1 ms");
+        }
+        this.defaultWindowMillis = windowMillis;
+        this.downstream = downstream;
+        this.timerWheel = timerWheel;
+    }
+
+    /**
+     * Overrides the window length for one product, e.g. a longer one for items that sync often.
+     *
+     * @param productId the product
+     * @param windowMillis the window for that product
+     */
+    public void setWindow(String productId, long windowMillis) {
+        if (windowMillis < 1) {
+            throw new IllegalArgumentException("Coalescing window must be at least 1 ms");
+        }
+        windowOverrides.put(productId, windowMillis);
+    }
+
+    @Override
+    public void setDownstream(EventDispatcher downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void dispatch(Product source, List<ProductEvent> events) {
+        synchronized (this) {
+            receivedEvents += events.size();
+        }
+        while (true) {
+            Window window = openWindows.computeIfAbsent(source, this::openWindow);
+            if (window.add(events)) {
+                return;
+            }
+            // The window closed between lookup and add; open a fresh one
+            openWindows.remove(source, window);
+        }
+    }
+
+    @Override
+    public void dispatchAll(Map<Product, List<ProductEvent>> changes) {
+        downstream.dispatchAll(changes);
+    }
+
+    @Override
+    public void deliver(List<Notification> notifications) {
+        downstream.deliver(notifications);
+    }
+
+    private Window openWindow(Product source) {
+        Window window = new Window(source);
+        long windowMillis = windowOverrides.getOrDefault(source.getProductId(), defaultWindowMillis);
+        // Delivery runs the rest of the chain; keep the timer thread free
+        timerWheel.schedule(() -> ForkJoinPool.commonPool().execute(() -> close(window)),
+                windowMillis, TimeUnit.MILLISECONDS);
+        return window;
+    }
+
+    private void close(Window window) {
+        openWindows.remove(window.source, window);
+        List<ProductEvent> net = window.closeAndNet();
+        if (!net.isEmpty()) {
+            synchronized (this) {
+                forwardedEvents += net.size();
+            }
+            downstream.dispatch(window.source, net);
+        }
+    }
+
+    /**
+     * Closes every open window now, e.g. before shutdown.
+     */
+    public void flush() {
+        for (Window window : new ArrayList<>(openWindows.values())) {
+            close(window);
+        }
+    }
+
+    /** @return number of events received from products */
+    public synchronized long getReceivedEvents() { return receivedEvents; }
+
+    /** @return number of net events passed on to subscribers */
+    public synchronized long getForwardedEvents() { return forwardedEvents; }
+
+    /** @return number of products with an open window */
+    public int getOpenWindowCount() { return openWindows.size(); }
+
+    /**
+     * Pending events of one product within one window.
+     */
+    private static final class Window {
+        final Product source;
+        private StockChanged firstStock;
+        private StockChanged lastStock;
+        private PriceChanged firstPrice;
+        private PriceChanged lastPrice;
+        private SaleStarted sale;
+        private final List<ProductEvent> announcements = new ArrayList<>();
+        private boolean closed;
+
+        Window(Product source) {
+            this.source = source;
+        }
+
+        synchronized boolean add(List<ProductEvent> events) {
+            if (closed) {
+                return false;
+            }
+            for (ProductEvent event : events) {
+                if (event instanceof StockChanged) {
+                    if (firstStock == null) {
+                        firstStock = (StockChanged) event;
+                    }
+                    lastStock = (StockChanged) event;
+                } else if (event instanceof PriceChanged) {
+                    if (firstPrice == null) {
+                        firstPrice = (PriceChanged) event;
+                    }
+                    lastPrice = (PriceChanged) event;
+                } else if (event instanceof SaleStarted) {
+                    sale = (SaleStarted) event;
+                } else {
+                    announcements.add(event);
+                }
+            }
+            return true;
+        }
+
+        synchronized List<ProductEvent> closeAndNet() {
+            if (closed) {
+                return new ArrayList<>();
+            }
+            closed = true;
+
+            List<ProductEvent> net = new ArrayList<>();
+            if (firstPrice != null && firstPrice.getOldPrice() != lastPrice.getNewPrice()) {
+                // A price that went down and back up again within the window is no news
+                net.add(firstPrice == lastPrice ? firstPrice : new PriceChanged(source.getProductId(),
+                        lastPrice.getProductName(), firstPrice.getOldPrice(), lastPrice.getNewPrice()));
+            }
+            if (firstStock != null) {
+                net.add(firstStock == lastStock ? firstStock : new StockChanged(source.getProductId(),
+                        lastStock.getProductName(), firstStock.getOldStock(), lastStock.getNewStock()));
+            }
+            if (sale != null) {
+                net.add(sale);
+            }
+            net.addAll(announcements);
+            return net;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fsabeauty.notification;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * When held-back notifications are sent as digests: at the top of every hour, once a day
+ * at a fixed local time, or at a fixed interval.
+ */
+public final class DigestSchedule {
+    private final String description;
+    private final LocalTime dailyAt;   // null unless daily
+    private final long intervalMillis; // 0 for hourly and daily
+    private final ZoneId zone;
+
+    private DigestSchedule(String description, LocalTime dailyAt, long intervalMillis) {
+        this.description = description;
+        this.dailyAt = dailyAt;
+        this.intervalMillis = intervalMillis;
+        this.zone = ZoneId.systemDefault();
+    }
+
+    /** @return a schedule firing at the start of every hour */
+    public static DigestSchedule hourly() {
+        return new DigestSchedule("hourly", null, 0);
+    }
+
+    /**
+     * @param time local time of day, e.g. 09:00
+     * @return a schedule firing once a day at that time
+     */
+    public static DigestSchedule dailyAt(LocalTime time) {
+        return new DigestSchedule("daily at " + time, time, 0);
+    }
+
+    /**
+     * @param millis interval between digests
+     * @return a schedule firing every {@code millis} from now
+     */
+    public static DigestSchedule every(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("Digest interval must be positive");
+        }
+        return new DigestSchedule("every " + millis + " ms", null, millis);
+    }
+
+    /**
+     * @param nowMillis the current time
+     * @return milliseconds until the next digest is due
+     */
+    long millisUntilNext(long nowMillis) {
+        if (intervalMillis > 0) {
+            return intervalMillis;
+        }
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(zone);
+        ZonedDateTime next;
+        if (dailyAt == null) {
+            next = now.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        } else {
+            next = now.with(dailyAt);
+            if (!next.isAfter(now)) {
+                next = next.plusDays(1);
+            }
+        }
+        return Math.max(1, next.toInstant().toEpochMilli() - nowMillis);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
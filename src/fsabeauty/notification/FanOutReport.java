@@ -0,0 +1,137 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.ProductEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Progress and outcome of one sharded fan-out: which events, how many shards, how far
+ * each shard has got, and - once complete - how long each shard and the whole delivery took.
+ * Progress counters are updated by the shard workers and may be read at any time.
+ */
+public final class FanOutReport {
+    private final String productId;
+    private final List<Long> eventIds = new ArrayList<>();
+    private final int[] shardSizes;
+    private final AtomicIntegerArray shardProcessed;
+    private final AtomicIntegerArray shardDelivered;
+    private final AtomicLongArray shardNanos;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger unfinishedShards;
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile long completedNanos;
+    private volatile int failures;
+
+    FanOutReport(String productId, List<ProductEvent> events, int[] shardSizes) {
+        this.productId = productId;
+        for (ProductEvent event : events) {
+            eventIds.add(event.getEventId());
+        }
+        this.shardSizes = shardSizes;
+        this.shardProcessed = new AtomicIntegerArray(shardSizes.length);
+        this.shardDelivered = new AtomicIntegerArray(shardSizes.length);
+        this.shardNanos = new AtomicLongArray(shardSizes.length);
+        this.unfinishedShards = new AtomicInteger(shardSizes.length);
+    }
+
+    void processed(int shard, boolean delivered) {
+        shardProcessed.incrementAndGet(shard);
+        if (delivered) {
+            shardDelivered.incrementAndGet(shard);
+        }
+    }
+
+    synchronized void failed() {
+        failures++;
+    }
+
+    // Returns true for exactly one caller: the one finishing the last shard
+    boolean shardDone(int shard, long nanos) {
+        shardNanos.set(shard, nanos);
+        if (unfinishedShards.decrementAndGet() != 0) {
+            return false;
+        }
+        completedNanos = System.nanoTime();
+        completed.countDown();
+        return true;
+    }
+
+    /**
+     * Waits for every shard to finish.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return true if the fan-out completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        return completed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isComplete() { return completed.getCount() == 0; }
+    public String getProductId() { return productId; }
+    public List<Long> getEventIds() { return new ArrayList<>(eventIds); }
+    public int getShardCount() { return shardSizes.length; }
+    public int getFailures() { return failures; }
+
+    /** @return subscriptions examined so far across all shards */
+    public int getProcessed() {
+        int processed = 0;
+        for (int i = 0; i < shardSizes.length; i++) {
+            processed += shardProcessed.get(i);
+        }
+        return processed;
+    }
+
+    /** @return customers notified so far across all shards */
+    public int getDelivered() {
+        int delivered = 0;
+        for (int i = 0; i < shardSizes.length; i++) {
+            delivered += shardDelivered.get(i);
+        }
+        return delivered;
+    }
+
+    /** @return total number of subscriptions to examine */
+    public int getRecipientCount() {
+        int total = 0;
+        for (int size : shardSizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /** @return fraction of one shard's subscriptions examined so far */
+    public double getShardProgress(int shard) {
+        return shardSizes[shard] == 0 ? 1.0 : (double) shardProcessed.get(shard) / shardSizes[shard];
+    }
+
+    /** @return milliseconds from dispatch to the last shard finishing (or until now if still running) */
+    public double getLatencyMillis() {
+        long end = isComplete() ? completedNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000.0;
+    }
+
+    /** @return the slowest shard's own running time in milliseconds */
+    public double getSlowestShardMillis() {
+        long slowest = 0;
+        for (int i = 0; i < shardSizes.length; i++) {
+            slowest = Math.max(slowest, shardNanos.get(i));
+        }
+        return slowest / 1_000_000.0;
+    }
+
+    /** @return one-line completion and latency summary */
+    public String getSummary() {
+        double latency = getLatencyMillis();
+        return String.format("Fan-out %s events %s: %d/%d notified in %d shard(s), %.1f ms total, "
+                        + "slowest shard %.1f ms, %.0f deliveries/s%s",
+                productId, eventIds, getDelivered(), getRecipientCount(), getShardCount(), latency,
+                getSlowestShardMillis(), latency > 0 ? getProcessed() * 1000.0 / latency : 0.0,
+                failures > 0 ? ", " + failures + " failed" : "");
+    }
+}
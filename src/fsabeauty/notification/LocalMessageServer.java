@@ -0,0 +1,140 @@
+package fsabeauty.notification;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for an SMTP relay or SMS gateway.
+ * Accepts connections and batches like a provider would - optionally with a fixed cost
+ * per connection and per batch and a random batch failure rate - and records what it
+ * received, so notification storms can be load-tested locally without network access.
+ */
+public class LocalMessageServer implements MessageTransport {
+    private final String protocol;
+    private final long connectMillis;
+    private final long batchMillis;
+    private final double failureRate;
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong rejectedBatches = new AtomicLong();
+    private volatile long firstMessageNanos;
+    private volatile long lastMessageNanos;
+
+    /**
+     * Constructs a server that accepts everything instantly.
+     *
+     * @param protocol label used in reports, e.g. "SMTP" or "SMS"
+     */
+    public LocalMessageServer(String protocol) {
+        this(protocol, 0, 0, 0);
+    }
+
+    /**
+     * Constructs a server with simulated costs and failures.
+     *
+     * @param protocol label used in reports, e.g. "SMTP" or "SMS"
+     * @param connectMillis time to open a connection
+     * @param batchMillis time to accept one batch
+     * @param failureRate probability in [0, 1) that a batch is rejected and the connection dropped
+     */
+    public LocalMessageServer(String protocol, long connectMillis, long batchMillis, double failureRate) {
+        if (failureRate < 0 || failureRate >= 1) {
+            throw new IllegalArgumentException("Failure rate must be in [0, 1)");
+        }
+        this.protocol = protocol;
+        this.connectMillis = connectMillis;
+        this.batchMillis = batchMillis;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public Connection connect() throws IOException {
+        pause(connectMillis);
+        connections.incrementAndGet();
+        return new LocalConnection();
+    }
+
+    private static void pause(long millis) throws IOException {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+    }
+
+    private void accept(List<OutboundMessage> batch) {
+        long now = System.nanoTime();
+        if (messages.get() == 0) {
+            synchronized (this) {
+                if (firstMessageNanos == 0) {
+                    firstMessageNanos = now;
+                }
+            }
+        }
+        long size = 0;
+        for (OutboundMessage message : batch) {
+            size += message.getBody().getBytes(StandardCharsets.UTF_8).length;
+        }
+        bytes.addAndGet(size);
+        messages.addAndGet(batch.size());
+        batches.incrementAndGet();
+        lastMessageNanos = now;
+    }
+
+    public long getConnections() { return connections.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getMessages() { return messages.get(); }
+    public long getBytes() { return bytes.get(); }
+    public long getRejectedBatches() { return rejectedBatches.get(); }
+
+    /** @return messages accepted per second between the first and the latest batch */
+    public double getThroughput() {
+        long elapsed = lastMessageNanos - firstMessageNanos;
+        return elapsed <= 0 ? messages.get() : messages.get() * 1_000_000_000.0 / elapsed;
+    }
+
+    /** @return one-line report of what the server received */
+    public String getSummary() {
+        return String.format("%s server: %d messages (%d bytes) in %d batches over %d connection(s), "
+                        + "%d rejected, %.0f msg/s",
+                protocol, getMessages(), getBytes(), getBatches(), getConnections(),
+                getRejectedBatches(), getThroughput());
+    }
+
+    private final class LocalConnection implements Connection {
+        private volatile boolean open = true;
+
+        @Override
+        public void submit(List<OutboundMessage> batch) throws IOException {
+            if (!open) {
+                throw new IOException(protocol + " connection is closed");
+            }
+            pause(batchMillis);
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                open = false;
+                rejectedBatches.incrementAndGet();
+                throw new IOException(protocol + " server dropped the connection");
+            }
+            accept(batch);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
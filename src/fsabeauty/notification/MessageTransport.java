@@ -0,0 +1,38 @@
+package fsabeauty.notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Connection-level access to an email or SMS provider.
+ * A channel opens one connection and keeps submitting batches over it until the
+ * connection fails, so the cost of connecting and authenticating is paid once, not per message.
+ */
+public interface MessageTransport {
+
+    /**
+     * Opens a connection to the provider.
+     *
+     * @return an open connection
+     * @throws IOException if the provider cannot be reached
+     */
+    Connection connect() throws IOException;
+
+    /**
+     * An open provider connection. Used by one thread at a time.
+     */
+    interface Connection extends Closeable {
+
+        /**
+         * Submits a batch of messages; either the whole batch is accepted or an exception is thrown.
+         *
+         * @param batch the messages to submit
+         * @throws IOException if the batch was rejected or the connection broke
+         */
+        void submit(List<OutboundMessage> batch) throws IOException;
+
+        /** @return false once the connection is closed or broken */
+        boolean isOpen();
+    }
+}
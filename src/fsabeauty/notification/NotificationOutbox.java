@@ -0,0 +1,219 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Transactional outbox for product notifications.
+ * Installed as a product's {@link EventDispatcher}, it does not notify anyone itself:
+ * it resolves the recipients of a change and appends the product's new state together
+ * with every pending notification to a local log in one write. An {@link OutboxRelay}
+ * drains the log and hands each notification to the downstream dispatcher. A crash after
+ * the append loses nothing - the relay picks the entry up on restart - and a crash before
+ * it loses the whole change, never half of it.
+ * Notifications keep their typed events. Recipients are recorded by a key the outbox can
+ * resolve again: customers known to the customer directory by their email address, any
+ * other observer (e.g. a weak session listener) by a key valid for this run only, which
+ * does not keep the observer alive.
+ */
+public class NotificationOutbox implements ChainedDispatcher, Closeable {
+    private static final String CUSTOMER_KEY = "customer:";
+    private static final String SESSION_KEY = "session:";
+
+    private final OutboxLog log;
+    private final Function<String, CustomerObserver> customers;
+    private final SessionRecipients sessions = new SessionRecipients();
+    private volatile EventDispatcher downstream = EventDispatcher.DIRECT;
+    private final Object appended = new Object();
+    private long appendCount;
+
+    /**
+     * Opens (or creates) an outbox whose entries are forced to disk before dispatch returns.
+     *
+     * @param directory where the log, acknowledgement and checkpoint files live
+     * @param customers maps an email address to the customer, or null if unknown
+     * @throws IOException if the files cannot be opened
+     */
+    public NotificationOutbox(Path directory, Function<String, CustomerObserver> customers) throws IOException {
+        this(directory, customers, true);
+    }
+
+    /**
+     * Opens (or creates) an outbox.
+     *
+     * @param directory where the log, acknowledgement and checkpoint files live
+     * @param customers maps an email address to the customer, or null if unknown
+     * @param sync true to force every append to disk; false trades crash safety for speed
+     * @throws IOException if the files cannot be opened
+     */
+    public NotificationOutbox(Path directory, Function<String, CustomerObserver> customers, boolean sync)
+            throws IOException {
+        this(new OutboxLog(directory, sync), customers);
+    }
+
+    NotificationOutbox(OutboxLog log, Function<String, CustomerObserver> customers) {
+        this.log = log;
+        this.customers = customers;
+    }
+
+    /**
+     * Sets where the relay delivers the recorded notifications.
+     *
+     * @param downstream the next dispatcher; {@link EventDispatcher#DIRECT} by default
+     */
+    @Override
+    public void setDownstream(EventDispatcher downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void dispatch(Product source, List<ProductEvent> events) {
+        record(source.getProductId(), source.getProductInfo(), Notification.of(source, events));
+    }
+
+    /**
+     * Records notifications that are already addressed, e.g. bulk digests, in one entry
+     * without a product state.
+     */
+    @Override
+    public void deliver(List<Notification> notifications) {
+        record("", "", notifications);
+    }
+
+    private void record(String productId, String productState, List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        List<OutboxLog.Delivery> deliveries = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            deliveries.add(new OutboxLog.Delivery(recipientKey(notification.getRecipient()), notification.getEvents()));
+        }
+
+        try {
+            log.append(System.currentTimeMillis(), productId, productState, deliveries);
+        } catch (IOException e) {
+            // Better an undurable notification than none at all
+            System.out.println("⚠️ Outbox append failed, notifying directly: " + e.getMessage());
+            downstream.deliver(notifications);
+            return;
+        }
+        synchronized (appended) {
+            appendCount++;
+            appended.notifyAll();
+        }
+    }
+
+    private String recipientKey(CustomerObserver observer) {
+        String email = observer.getEmail();
+        if (email != null && customers.apply(email) == observer) {
+            return CUSTOMER_KEY + email;
+        }
+        return sessions.keyOf(observer);
+    }
+
+    /**
+     * Maps a recorded recipient key back to the observer.
+     *
+     * @return the observer, or null if the customer is gone or the session has ended
+     */
+    CustomerObserver resolve(String recipient) {
+        if (recipient.startsWith(CUSTOMER_KEY)) {
+            return customers.apply(recipient.substring(CUSTOMER_KEY.length()));
+        }
+        return sessions.get(recipient);
+    }
+
+    /**
+     * Blocks until another entry is appended or the timeout passes.
+     */
+    void awaitAppend(long timeoutMillis) throws InterruptedException {
+        synchronized (appended) {
+            long seen = appendCount;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (appendCount == seen) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return;
+                }
+                appended.wait(remaining);
+            }
+        }
+    }
+
+    // Used by the relay for each notification read back from the log
+    void forward(Notification notification) {
+        downstream.deliver(Collections.singletonList(notification));
+    }
+
+    OutboxLog log() {
+        return log;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    /**
+     * Keys for observers outside the customer directory. Keys carry a per-run prefix, so
+     * entries left over from an earlier run never resolve to an unrelated observer.
+     */
+    private static final class SessionRecipients {
+        private final String run = UUID.randomUUID().toString();
+        private final AtomicLong nextId = new AtomicLong();
+        private final Map<CustomerObserver, String> keys = new WeakHashMap<>();
+        private final Map<String, KeyedReference> observers = new ConcurrentHashMap<>();
+        private final ReferenceQueue<CustomerObserver> collected = new ReferenceQueue<>();
+
+        synchronized String keyOf(CustomerObserver observer) {
+            expungeCollected();
+            String key = keys.get(observer);
+            if (key == null) {
+                key = SESSION_KEY + run + ":" + nextId.incrementAndGet();
+                keys.put(observer, key);
+                observers.put(key, new KeyedReference(key, observer, collected));
+            }
+            return key;
+        }
+
+        CustomerObserver get(String key) {
+            KeyedReference reference = observers.get(key);
+            return reference == null ? null : reference.get();
+        }
+
+        private void expungeCollected() {
+            Reference<? extends CustomerObserver> reference;
+            while ((reference = collected.poll()) != null) {
+                observers.remove(((KeyedReference) reference).key);
+            }
+        }
+    }
+
+    private static final class KeyedReference extends WeakReference<CustomerObserver> {
+        final String key;
+
+        KeyedReference(String key, CustomerObserver observer, ReferenceQueue<CustomerObserver> queue) {
+            super(observer, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package fsabeauty.notification;
+
+/**
+ * One message waiting in, or handed over by, a notification channel.
+ */
+public final class OutboundMessage {
+    private final String recipient;
+    private final String body;
+    private final long createdAt;
+
+    public OutboundMessage(String recipient, String body) {
+        this.recipient = recipient;
+        this.body = body;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /** @return email address or phone number */
+    public String getRecipient() { return recipient; }
+
+    /** @return the message text */
+    public String getBody() { return body; }
+
+    /** @return when the message was handed to the channel, epoch millis */
+    public long getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,457 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.Announcement;
+import fsabeauty.observer.FeatureAdded;
+import fsabeauty.observer.NewShade;
+import fsabeauty.observer.PriceChanged;
+import fsabeauty.observer.ProductEvent;
+import fsabeauty.observer.ProductEventType;
+import fsabeauty.observer.SaleStarted;
+import fsabeauty.observer.StockChanged;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * The files of a notification outbox.
+ * {@code outbox.log} starts with the logical offset of its first entry, followed by entries
+ * framed as length, CRC32 and payload; a torn write at the tail (crash mid-append) fails the
+ * length or checksum test and ends the readable log. Offsets handed out are logical, so they
+ * - and the dedup keys built from them - stay valid when the log is compacted.
+ * {@code outbox.acks} holds one line per delivered dedup key, and {@code outbox.checkpoint}
+ * the offset before which every delivery has been acknowledged. Compaction drops that
+ * acknowledged prefix from the log and its keys from the acknowledgements.
+ * {@code outbox.deadletters} keeps one tab-separated line (dedup key, recipient, error,
+ * messages) per delivery given up on, for inspection or manual replay.
+ */
+final class OutboxLog implements Closeable {
+    private static final int FILE_HEADER = 8;
+    private static final int FRAME_HEADER = 8;
+    static final long DEFAULT_COMPACTION_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final Path logFile;
+    private final Path acksFile;
+    private final boolean sync;
+    private final long compactionBytes;
+    private FileChannel log;
+    private FileChannel acks;
+    private final FileChannel checkpointFile;
+    private FileChannel deadLetters; // opened on the first dead letter
+    private volatile long baseOffset;
+    private volatile long checkpoint;
+    private final Set<String> recoveredAcks;
+
+    OutboxLog(Path directory, boolean sync) throws IOException {
+        this(directory, sync, DEFAULT_COMPACTION_BYTES);
+    }
+
+    /**
+     * @param compactionBytes acknowledged prefix length at which the log is rewritten without it
+     */
+    OutboxLog(Path directory, boolean sync, long compactionBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.logFile = directory.resolve("outbox.log");
+        this.acksFile = directory.resolve("outbox.acks");
+        this.sync = sync;
+        this.compactionBytes = compactionBytes;
+        this.log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.acks = FileChannel.open(acksFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpointFile = FileChannel.open(directory.resolve("outbox.checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.baseOffset = readHeader();
+        this.checkpoint = Math.max(baseOffset, readCheckpoint());
+        truncateTornTail();
+        this.recoveredAcks = recoverAcks();
+    }
+
+    // Base offset of a compacted log; a new (or torn new) file starts at 0
+    private long readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        if (log.size() >= FILE_HEADER && readFully(log, header, 0)) {
+            return header.getLong(0);
+        }
+        log.truncate(0);
+        writeFully(log, ByteBuffer.allocate(FILE_HEADER).putLong(0, 0L), 0);
+        log.force(true);
+        return 0;
+    }
+
+    private long readCheckpoint() throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+        return readFully(checkpointFile, value, 0) ? value.getLong(0) : 0;
+    }
+
+    // Drops a partially written entry so new entries are not appended behind it
+    private void truncateTornTail() throws IOException {
+        long position = checkpoint;
+        Entry entry;
+        while ((entry = readEntry(position)) != null) {
+            position = entry.nextOffset;
+        }
+        if (physical(position) < log.size()) {
+            log.truncate(physical(position));
+        }
+    }
+
+    // Reads the acknowledged keys of earlier runs and drops a torn last line
+    private Set<String> recoverAcks() throws IOException {
+        ByteBuffer content = ByteBuffer.allocate((int) acks.size());
+        while (content.hasRemaining() && acks.read(content, content.position()) > 0) {
+            // read until the buffer holds the whole file
+        }
+        String text = new String(content.array(), 0, content.position(), StandardCharsets.UTF_8);
+        Set<String> keys = new HashSet<>();
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+            String key = text.substring(start, end);
+            if (entryOffsetOf(key) >= checkpoint) {
+                keys.add(key);
+            }
+            start = end + 1;
+        }
+        long complete = text.substring(0, start).getBytes(StandardCharsets.UTF_8).length;
+        acks.truncate(complete);
+        acks.position(complete);
+        return keys;
+    }
+
+    private long physical(long offset) {
+        return offset - baseOffset + FILE_HEADER;
+    }
+
+    /**
+     * Appends one entry - a product change and its deliveries - as a single write.
+     *
+     * @return the entry's offset, which also makes its dedup keys unique
+     */
+    synchronized long append(long timestamp, String productId, String productState, List<Delivery> deliveries)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(timestamp);
+        out.writeUTF(productId);
+        out.writeUTF(productState);
+        out.writeInt(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            out.writeUTF(delivery.recipient);
+            out.writeInt(delivery.events.size());
+            for (ProductEvent event : delivery.events) {
+                writeEvent(out, event);
+            }
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long end = log.size();
+        writeFully(log, frame, end);
+        if (sync) {
+            log.force(false);
+        }
+        return baseOffset + end - FILE_HEADER;
+    }
+
+    // Events are stored by type and raw values; a restored event gets a new id and timestamp
+    private static void writeEvent(DataOutputStream out, ProductEvent event) throws IOException {
+        out.writeUTF(event.getType().name());
+        out.writeUTF(event.getProductId());
+        out.writeUTF(event.getProductName());
+        switch (event.getType()) {
+            case STOCK_CHANGED:
+                out.writeInt(((StockChanged) event).getOldStock());
+                out.writeInt(((StockChanged) event).getNewStock());
+                break;
+            case PRICE_CHANGED:
+                out.writeDouble(((PriceChanged) event).getOldPrice());
+                out.writeDouble(((PriceChanged) event).getNewPrice());
+                break;
+            case SALE_STARTED:
+                out.writeDouble(((SaleStarted) event).getRegularPrice());
+                out.writeDouble(((SaleStarted) event).getDiscountPercentage());
+                break;
+            case NEW_SHADE:
+                out.writeUTF(((NewShade) event).getShade());
+                break;
+            case NEW_FEATURE:
+                out.writeUTF(((FeatureAdded) event).getFeature());
+                break;
+            default:
+                out.writeUTF(event.getMessage());
+                break;
+        }
+    }
+
+    private static ProductEvent readEvent(DataInputStream in) throws IOException {
+        ProductEventType type = ProductEventType.valueOf(in.readUTF());
+        String productId = in.readUTF();
+        String productName = in.readUTF();
+        switch (type) {
+            case STOCK_CHANGED:
+                return new StockChanged(productId, productName, in.readInt(), in.readInt());
+            case PRICE_CHANGED:
+                return new PriceChanged(productId, productName, in.readDouble(), in.readDouble());
+            case SALE_STARTED:
+                return new SaleStarted(productId, productName, in.readDouble(), in.readDouble());
+            case NEW_SHADE:
+                return new NewShade(productId, productName, in.readUTF());
+            case NEW_FEATURE:
+                return new FeatureAdded(productId, productName, in.readUTF());
+            default:
+                return new Announcement(productId, productName, in.readUTF());
+        }
+    }
+
+    /** @return the end of the log, where the next entry will be appended */
+    synchronized long size() throws IOException {
+        return baseOffset + log.size() - FILE_HEADER;
+    }
+
+    /** @return the offset before which every delivery was acknowledged, as last recorded */
+    long checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Reads the entry at an offset. Only the relay's reader (which also compacts) calls this
+     * once the log is open.
+     *
+     * @return the entry, or null if there is no complete, valid entry at the offset
+     */
+    Entry readEntry(long offset) throws IOException {
+        long position = physical(offset);
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        if (!readFully(log, header, position)) {
+            return null;
+        }
+        header.flip();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || position + FRAME_HEADER + length > log.size()) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(log, payload, position + FRAME_HEADER)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+        long timestamp = in.readLong();
+        String productId = in.readUTF();
+        String productState = in.readUTF();
+        int count = in.readInt();
+        List<Delivery> deliveries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String recipient = in.readUTF();
+            int eventCount = in.readInt();
+            List<ProductEvent> events = new ArrayList<>(eventCount);
+            for (int j = 0; j < eventCount; j++) {
+                events.add(readEvent(in));
+            }
+            deliveries.add(new Delivery(recipient, events));
+        }
+        return new Entry(offset, offset + FRAME_HEADER + length, timestamp, productId, productState, deliveries);
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    synchronized void ack(String dedupKey) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((dedupKey + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            acks.write(line);
+        }
+        if (sync) {
+            acks.force(false);
+        }
+    }
+
+    /**
+     * Keeps a delivery that cannot be made in the dead-letter file. The caller then acknowledges
+     * it, so the checkpoint can move past its entry.
+     *
+     * @param dedupKey the delivery's dedup key
+     * @param recipient the recipient key
+     * @param events the undelivered events
+     * @param error why delivery failed
+     */
+    synchronized void deadLetter(String dedupKey, String recipient, List<ProductEvent> events, String error)
+            throws IOException {
+        if (deadLetters == null) {
+            deadLetters = FileChannel.open(directory.resolve("outbox.deadletters"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        StringBuilder line = new StringBuilder(dedupKey).append('\t').append(recipient).append('\t')
+                .append(oneLine(error));
+        for (ProductEvent event : events) {
+            line.append('\t').append(oneLine(event.getMessage()));
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(line.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            deadLetters.write(bytes);
+        }
+        deadLetters.force(false); // acknowledged next, so it must not be lost
+    }
+
+    private static String oneLine(String text) {
+        return String.valueOf(text).replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Records that every delivery before an offset is acknowledged, so the next start reads
+     * from there, and compacts once the acknowledged prefix has grown large enough.
+     *
+     * @param offset an entry boundary at or after the previous checkpoint
+     * @return true if the log was compacted
+     */
+    synchronized boolean checkpoint(long offset) throws IOException {
+        if (offset <= checkpoint) {
+            return false;
+        }
+        writeFully(checkpointFile, ByteBuffer.allocate(Long.BYTES).putLong(0, offset), 0);
+        checkpointFile.force(false);
+        checkpoint = offset;
+        if (offset - baseOffset < compactionBytes) {
+            return false;
+        }
+        compactLog(offset);
+        compactAcks(offset);
+        return true;
+    }
+
+    // Rewrites the log from the checkpoint on and swaps it in; appends wait on the lock meanwhile
+    private void compactLog(long offset) throws IOException {
+        Path compacted = directory.resolve("outbox.log.compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, ByteBuffer.allocate(FILE_HEADER).putLong(0, offset), 0);
+            long from = physical(offset);
+            long remaining = log.size() - from;
+            long copied = 0;
+            while (copied < remaining) {
+                copied += log.transferTo(from + copied, remaining - copied, out.position(FILE_HEADER + copied));
+            }
+            out.force(true);
+        }
+        log.close();
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        baseOffset = offset;
+    }
+
+    // Keeps only the keys of entries from the checkpoint on
+    private void compactAcks(long offset) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate((int) acks.size());
+        readFully(acks, content, 0);
+        String text = new String(content.array(), StandardCharsets.UTF_8);
+        StringBuilder kept = new StringBuilder();
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+            String key = text.substring(start, end);
+            if (entryOffsetOf(key) >= offset) {
+                kept.append(key).append('\n');
+            }
+            start = end + 1;
+        }
+        Path compacted = directory.resolve("outbox.acks.compact");
+        Files.write(compacted, kept.toString().getBytes(StandardCharsets.UTF_8));
+        acks.close();
+        Files.move(compacted, acksFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        acks = FileChannel.open(acksFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        acks.position(acks.size());
+    }
+
+    /** @return the dedup keys acknowledged by earlier runs at or after the checkpoint */
+    Set<String> recoveredAcks() {
+        return new HashSet<>(recoveredAcks);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+        acks.close();
+        checkpointFile.close();
+        if (deadLetters != null) {
+            deadLetters.close();
+        }
+    }
+
+    static String dedupKey(long entryOffset, int deliveryIndex) {
+        return entryOffset + "#" + deliveryIndex;
+    }
+
+    static long entryOffsetOf(String dedupKey) {
+        return Long.parseLong(dedupKey.substring(0, dedupKey.indexOf('#')));
+    }
+
+    /**
+     * The events accepted by one recipient, who is identified by a key the outbox can resolve.
+     */
+    static final class Delivery {
+        final String recipient;
+        final List<ProductEvent> events;
+
+        Delivery(String recipient, List<ProductEvent> events) {
+            this.recipient = recipient;
+            this.events = events;
+        }
+    }
+
+    /**
+     * One product change with the notifications it caused.
+     */
+    static final class Entry {
+        final long offset;
+        final long nextOffset;
+        final long timestamp;
+        final String productId;
+        final String productState;
+        final List<Delivery> deliveries;
+
+        Entry(long offset, long nextOffset, long timestamp, String productId, String productState,
+              List<Delivery> deliveries) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.timestamp = timestamp;
+            this.productId = productId;
+            this.productState = productState;
+            this.deliveries = deliveries;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.ProductEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains a {@link NotificationOutbox} and delivers its notifications at least once.
+ * One reader thread tails the log from the last checkpoint and skips deliveries whose dedup
+ * key (entry offset and delivery index) was acknowledged before, so after a crash the relay
+ * resumes exactly with what had not been confirmed. Deliveries are spread over parallel
+ * consumer threads by recipient, which keeps each customer's notifications in order, and
+ * go on as typed events through the outbox's downstream dispatcher. A delivery is acknowledged only after the customer
+ * accepted it; a crash in between means it is delivered again on restart, never lost. A delivery
+ * that keeps failing is moved to the outbox's dead-letter file and then acknowledged, so it
+ * does not hold back the checkpoint.
+ * Whenever the reader is idle it records how far every delivery has been acknowledged, which
+ * lets the log drop that prefix.
+ */
+public class OutboxRelay implements AutoCloseable {
+    private static final long POLL_MILLIS = 100;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final NotificationOutbox outbox;
+    private final List<BlockingQueue<Pending>> partitions = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+    // Entries read but not yet fully acknowledged, by offset, with their open deliveries
+    private final ConcurrentSkipListMap<Long, AtomicInteger> openEntries = new ConcurrentSkipListMap<>();
+    private volatile boolean running;
+    private volatile long readPosition;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong skippedDuplicates = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    /**
+     * Constructs a relay.
+     *
+     * @param outbox the outbox to drain; it also resolves the recorded recipients
+     * @param consumers number of parallel delivery threads
+     */
+    public OutboxRelay(NotificationOutbox outbox, int consumers) {
+        if (consumers < 1) {
+            throw new IllegalArgumentException("A relay needs at least one consumer");
+        }
+        this.outbox = outbox;
+        for (int i = 0; i < consumers; i++) {
+            partitions.add(new LinkedBlockingQueue<>());
+        }
+    }
+
+    /**
+     * Starts the reader and consumer threads.
+     *
+     * @return this relay
+     */
+    public synchronized OutboxRelay start() {
+        if (running) {
+            return this;
+        }
+        running = true;
+        acknowledged.addAll(outbox.log().recoveredAcks());
+        readPosition = outbox.log().checkpoint();
+        threads.add(newThread("fsa-outbox-reader", this::readLoop));
+        for (int i = 0; i < partitions.size(); i++) {
+            BlockingQueue<Pending> partition = partitions.get(i);
+            threads.add(newThread("fsa-outbox-consumer-" + i, () -> consumeLoop(partition)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        return this;
+    }
+
+    private static Thread newThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void readLoop() {
+        OutboxLog log = outbox.log();
+        try {
+            while (running) {
+                OutboxLog.Entry entry = log.readEntry(readPosition);
+                if (entry == null) {
+                    checkpoint();
+                    outbox.awaitAppend(POLL_MILLIS);
+                    continue;
+                }
+                List<Pending> pending = new ArrayList<>(entry.deliveries.size());
+                for (int i = 0; i < entry.deliveries.size(); i++) {
+                    String key = OutboxLog.dedupKey(entry.offset, i);
+                    if (acknowledged.contains(key)) {
+                        skippedDuplicates.incrementAndGet();
+                        continue;
+                    }
+                    OutboxLog.Delivery delivery = entry.deliveries.get(i);
+                    pending.add(new Pending(key, entry.offset, delivery.recipient, delivery.events));
+                }
+                if (!pending.isEmpty()) {
+                    openEntries.put(entry.offset, new AtomicInteger(pending.size()));
+                }
+                for (Pending delivery : pending) {
+                    enqueued.incrementAndGet();
+                    partitions.get(Math.floorMod(delivery.recipient.hashCode(), partitions.size())).put(delivery);
+                }
+                readPosition = entry.nextOffset;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("⚠️ Outbox relay stopped reading: " + e.getMessage());
+        }
+    }
+
+    // Everything before the oldest entry with an open delivery is done; the log may forget it
+    private void checkpoint() throws IOException {
+        long read = readPosition;
+        Map.Entry<Long, AtomicInteger> oldest = openEntries.firstEntry();
+        long position = oldest == null ? read : Math.min(read, oldest.getKey());
+        if (outbox.log().checkpoint(position)) {
+            compactions.incrementAndGet();
+            acknowledged.removeIf(key -> OutboxLog.entryOffsetOf(key) < position);
+        }
+    }
+
+    private void consumeLoop(BlockingQueue<Pending> partition) {
+        try {
+            while (running) {
+                Pending delivery = partition.take();
+                try {
+                    deliver(delivery);
+                } finally {
+                    finished.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(Pending delivery) throws InterruptedException {
+        CustomerObserver customer = outbox.resolve(delivery.recipient);
+        if (customer == null) {
+            // Customer no longer exists or the session ended; retrying would never succeed
+            System.out.println("⚠️ Outbox: no recipient for " + delivery.recipient + ", dropping " + delivery.key);
+            acknowledge(delivery);
+            failed.incrementAndGet();
+            return;
+        }
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                outbox.forward(new Notification(customer, delivery.events));
+                acknowledge(delivery);
+                delivered.incrementAndGet();
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    System.out.println("⚠️ Outbox delivery " + delivery.key + " failed: " + e.getMessage());
+                    failed.incrementAndGet();
+                    deadLetter(delivery, e);
+                    return;
+                }
+                Thread.sleep(50L * attempt);
+            }
+        }
+    }
+
+    // Set aside for inspection and acknowledged, so the checkpoint and compaction can move on
+    private void deadLetter(Pending delivery, RuntimeException error) {
+        try {
+            outbox.log().deadLetter(delivery.key, delivery.recipient, delivery.events, String.valueOf(error));
+        } catch (IOException e) {
+            // Left unacknowledged (and holding back the checkpoint): the next start delivers it again
+            System.out.println("⚠️ Outbox dead letter failed: " + e.getMessage());
+            return;
+        }
+        deadLettered.incrementAndGet();
+        acknowledge(delivery);
+    }
+
+    private void acknowledge(Pending delivery) {
+        try {
+            outbox.log().ack(delivery.key);
+            acknowledged.add(delivery.key);
+        } catch (IOException e) {
+            // Not acknowledged durably, so it will be delivered again after a restart
+            System.out.println("⚠️ Outbox acknowledgement failed: " + e.getMessage());
+            return;
+        }
+        AtomicInteger open = openEntries.get(delivery.entryOffset);
+        if (open != null && open.decrementAndGet() == 0) {
+            openEntries.remove(delivery.entryOffset);
+        }
+    }
+
+    /**
+     * Waits until every entry appended so far has been read and its deliveries handled.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return true if the relay caught up within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                if (readPosition == outbox.log().size() && finished.get() == enqueued.get()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    /**
+     * Stops the relay threads. Unacknowledged deliveries stay in the log for the next start.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    public long getDelivered() { return delivered.get(); }
+    public long getSkippedDuplicates() { return skippedDuplicates.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getDeadLettered() { return deadLettered.get(); }
+    public long getBacklog() { return enqueued.get() - finished.get(); }
+    public long getCheckpoint() { return outbox.log().checkpoint(); }
+    public long getCompactions() { return compactions.get(); }
+
+    /** @return one-line relay statistics */
+    public String getSummary() {
+        return String.format("Outbox relay: %d delivered, %d already delivered before, %d failed (%d dead-lettered), "
+                        + "%d pending, checkpoint %d, %d compaction(s)",
+                getDelivered(), getSkippedDuplicates(), getFailed(), getDeadLettered(), getBacklog(), getCheckpoint(),
+                getCompactions());
+    }
+
+    /**
+     * One notification to one recipient.
+     */
+    private static final class Pending {
+        final String key;
+        final long entryOffset;
+        final String recipient;
+        final List<ProductEvent> events;
+
+        Pending(String key, long entryOffset, String recipient, List<ProductEvent> events) {
+            this.key = key;
+            this.entryOffset = entryOffset;
+            this.recipient = recipient;
+            this.events = events;
+        }
+    }
+}
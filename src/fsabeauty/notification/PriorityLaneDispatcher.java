@@ -0,0 +1,358 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.CustomerTier;
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Event dispatcher that queues deliveries in one lane per {@link CustomerTier} and drains
+ * the lanes with weighted fair scheduling. Worker threads pick the next delivery by smooth
+ * weighted round robin over the non-empty lanes, so with the default weights a VIP
+ * delivery is taken 16 times as often as a standard one: a bulk campaign of thousands of
+ * standard notifications keeps draining, but VIP recipients never wait behind it. An idle
+ * lane gives its share to the others. Dispatch only enqueues and returns at once; with
+ * several workers, one customer's notifications may arrive out of order. Workers hand each
+ * delivery to the downstream dispatcher. Each lane exports its queue depth, throughput and enqueue-to-delivery latency.
+ */
+public class PriorityLaneDispatcher implements ChainedDispatcher, AutoCloseable {
+    private static final int LATENCY_BUCKETS = 20; // powers of two in milliseconds, up to ~9 minutes
+
+    private final Map<CustomerTier, Lane> lanes = new EnumMap<>(CustomerTier.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private final Object lock = new Object();
+    private volatile EventDispatcher downstream = EventDispatcher.DIRECT;
+    private int queued;   // guarded by lock
+    private int inFlight; // guarded by lock
+    private boolean closed;
+
+    /**
+     * Constructs a dispatcher with the default lane weights (VIP 16, PREMIUM 4, STANDARD 1).
+     *
+     * @param workerCount number of delivery threads
+     */
+    public PriorityLaneDispatcher(int workerCount) {
+        this(workerCount, defaultWeights());
+    }
+
+    /**
+     * Constructs a dispatcher.
+     *
+     * @param workerCount number of delivery threads
+     * @param weights relative share of deliveries per tier; tiers left out get weight 1
+     */
+    public PriorityLaneDispatcher(int workerCount, Map<CustomerTier, Integer> weights) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("A dispatcher needs at least one worker");
+        }
+        for (CustomerTier tier : CustomerTier.values()) {
+            int weight = weights.getOrDefault(tier, 1);
+            if (weight < 1) {
+                throw new IllegalArgumentException("Lane weight must be positive: " + tier);
+            }
+            lanes.put(tier, new Lane(tier, weight));
+        }
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workLoop, "fsa-lane-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private static Map<CustomerTier, Integer> defaultWeights() {
+        Map<CustomerTier, Integer> weights = new EnumMap<>(CustomerTier.class);
+        weights.put(CustomerTier.VIP, 16);
+        weights.put(CustomerTier.PREMIUM, 4);
+        weights.put(CustomerTier.STANDARD, 1);
+        return weights;
+    }
+
+    /**
+     * Sets where the workers hand each delivery.
+     *
+     * @param downstream the next dispatcher; {@link EventDispatcher#DIRECT} by default
+     */
+    @Override
+    public void setDownstream(EventDispatcher downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void dispatch(Product source, List<ProductEvent> events) {
+        enqueue(Notification.of(source, events), "about: " + source.getName());
+    }
+
+    @Override
+    public void deliver(List<Notification> notifications) {
+        enqueue(notifications, "");
+    }
+
+    private void enqueue(List<Notification> notifications, String about) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Map<CustomerTier, List<Delivery>> byTier = new EnumMap<>(CustomerTier.class);
+        for (Notification notification : notifications) {
+            byTier.computeIfAbsent(notification.getRecipient().getTier(), tier -> new ArrayList<>())
+                    .add(new Delivery(notification, now));
+        }
+        int recipients = notifications.size();
+
+        System.out.println("\n🔔 Queueing " + recipients + " notification(s) " + (about.isEmpty() ? "" : about + " ")
+                + byTier.keySet());
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed");
+            }
+            for (Map.Entry<CustomerTier, List<Delivery>> entry : byTier.entrySet()) {
+                lanes.get(entry.getKey()).offer(entry.getValue());
+            }
+            queued += recipients;
+            lock.notifyAll();
+        }
+    }
+
+    private void workLoop() {
+        while (true) {
+            Lane lane;
+            Delivery delivery;
+            synchronized (lock) {
+                while (queued == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (queued == 0) {
+                    return; // closed and drained
+                }
+                lane = nextLane();
+                delivery = lane.queue.poll();
+                queued--;
+                inFlight++;
+            }
+            try {
+                downstream.deliver(Collections.singletonList(delivery.notification));
+                lane.delivered(System.nanoTime() - delivery.enqueuedNanos);
+            } catch (RuntimeException e) {
+                lane.failed.incrementAndGet();
+                System.out.println("⚠️ " + lane.tier + " delivery to " + delivery.notification.getRecipient().getName()
+                        + " failed: " + e.getMessage());
+            } finally {
+                synchronized (lock) {
+                    inFlight--;
+                    if (queued == 0 && inFlight == 0) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    // Smooth weighted round robin over the non-empty lanes; caller holds the lock
+    private Lane nextLane() {
+        Lane best = null;
+        int totalWeight = 0;
+        for (Lane lane : lanes.values()) {
+            if (lane.queue.isEmpty()) {
+                lane.credit = 0;
+                continue;
+            }
+            lane.credit += lane.weight;
+            totalWeight += lane.weight;
+            if (best == null || lane.credit > best.credit) {
+                best = lane;
+            }
+        }
+        best.credit -= totalWeight;
+        return best;
+    }
+
+    /**
+     * Waits until every queued delivery has been made.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return true if all lanes drained within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (lock) {
+            while (queued > 0 || inFlight > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops accepting events, delivers what is already queued and stops the workers.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** @return deliveries waiting in the tier's lane */
+    public int getQueueDepth(CustomerTier tier) {
+        synchronized (lock) {
+            return lanes.get(tier).queue.size();
+        }
+    }
+
+    /** @return deliveries made from the tier's lane */
+    public long getDeliveredCount(CustomerTier tier) {
+        return lanes.get(tier).delivered.get();
+    }
+
+    /** @return mean enqueue-to-delivery latency of the tier's lane in milliseconds */
+    public double getAverageLatencyMillis(CustomerTier tier) {
+        Lane lane = lanes.get(tier);
+        long delivered = lane.delivered.get();
+        return delivered == 0 ? 0.0 : lane.totalLatencyNanos.get() / 1_000_000.0 / delivered;
+    }
+
+    /** @return highest enqueue-to-delivery latency of the tier's lane in milliseconds */
+    public double getMaxLatencyMillis(CustomerTier tier) {
+        return lanes.get(tier).maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Approximates a latency percentile of a lane from its power-of-two histogram.
+     *
+     * @param tier the lane
+     * @param percentile e.g. 99.0
+     * @return upper bound in milliseconds of the bucket holding the percentile
+     */
+    public long getLatencyPercentileMillis(CustomerTier tier, double percentile) {
+        Lane lane = lanes.get(tier);
+        long delivered = lane.delivered.get();
+        if (delivered == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(delivered * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+            seen += lane.latencyHistogram.get(bucket);
+            if (seen >= rank) {
+                return 1L << bucket;
+            }
+        }
+        return 1L << (LATENCY_BUCKETS - 1);
+    }
+
+    /**
+     * Exports the lane metrics as flat name/value pairs, e.g. {@code lane.vip.depth}.
+     *
+     * @return metrics in tier order
+     */
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        for (CustomerTier tier : CustomerTier.values()) {
+            String prefix = "lane." + tier.name().toLowerCase(Locale.ROOT) + ".";
+            Lane lane = lanes.get(tier);
+            metrics.put(prefix + "weight", lane.weight);
+            metrics.put(prefix + "depth", getQueueDepth(tier));
+            metrics.put(prefix + "enqueued", lane.enqueued.get());
+            metrics.put(prefix + "delivered", lane.delivered.get());
+            metrics.put(prefix + "failed", lane.failed.get());
+            metrics.put(prefix + "latency.avg.ms", getAverageLatencyMillis(tier));
+            metrics.put(prefix + "latency.p99.ms", getLatencyPercentileMillis(tier, 99.0));
+            metrics.put(prefix + "latency.max.ms", getMaxLatencyMillis(tier));
+        }
+        return metrics;
+    }
+
+    /** @return one line per lane with depth, deliveries and latency */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (CustomerTier tier : CustomerTier.values()) {
+            Lane lane = lanes.get(tier);
+            summary.append(String.format("%-8s weight %2d: %d queued, %d delivered, %d failed, "
+                            + "latency avg %.1f ms, p99 <= %d ms, max %.1f ms%n",
+                    tier, lane.weight, getQueueDepth(tier), lane.delivered.get(), lane.failed.get(),
+                    getAverageLatencyMillis(tier), getLatencyPercentileMillis(tier, 99.0), getMaxLatencyMillis(tier)));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Queue and metrics of one tier.
+     */
+    private static final class Lane {
+        final CustomerTier tier;
+        final int weight;
+        final ArrayDeque<Delivery> queue = new ArrayDeque<>(); // guarded by the dispatcher lock
+        int credit;                                            // guarded by the dispatcher lock
+        final AtomicLong enqueued = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+
+        Lane(CustomerTier tier, int weight) {
+            this.tier = tier;
+            this.weight = weight;
+        }
+
+        void offer(List<Delivery> deliveries) {
+            queue.addAll(deliveries);
+            enqueued.addAndGet(deliveries.size());
+        }
+
+        void delivered(long latencyNanos) {
+            delivered.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            long millis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            // Bucket b counts latencies up to 2^b ms
+            int bucket = millis <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(millis - 1);
+            latencyHistogram.incrementAndGet(Math.min(bucket, LATENCY_BUCKETS - 1));
+        }
+    }
+
+    /**
+     * A notification waiting in a lane.
+     */
+    private static final class Delivery {
+        final Notification notification;
+        final long enqueuedNanos;
+
+        Delivery(Notification notification, long enqueuedNanos) {
+            this.notification = notification;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fsabeauty.notification;
+
+/**
+ * Token-bucket limit: up to {@code burst} notifications at once, refilled at
+ * {@code perHour} notifications per hour.
+ */
+public final class RateLimit {
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final int burst;
+    private final double perHour;
+
+    /**
+     * Constructs a limit.
+     *
+     * @param burst bucket capacity
+     * @param perHour sustained refill rate
+     */
+    public RateLimit(int burst, double perHour) {
+        if (burst < 1 || perHour <= 0) {
+            throw new IllegalArgumentException("Burst and rate must be positive");
+        }
+        this.burst = burst;
+        this.perHour = perHour;
+    }
+
+    /**
+     * @param notifications allowed per hour, all of which may be used at once
+     * @return the limit
+     */
+    public static RateLimit perHour(int notifications) {
+        return new RateLimit(notifications, notifications);
+    }
+
+    public int getBurst() { return burst; }
+    public double getPerHour() { return perHour; }
+
+    double tokensPerMilli() {
+        return perHour / MILLIS_PER_HOUR;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d burst, %.0f/h", burst, perHour);
+    }
+}
@@ -0,0 +1,402 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.PriceChanged;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import fsabeauty.observer.SaleStarted;
+import fsabeauty.observer.StockChanged;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Event dispatcher that caps how often each customer is notified.
+ * Every customer has a token bucket, plus one per channel they are reached on (e.g. a
+ * stricter one for SMS). A notification goes out at once only if all of the customer's
+ * buckets hold a token; otherwise its events are held for the customer's next digest.
+ * Held events are folded as they arrive - stock and price changes of a product collapse to
+ * first-old/last-new, a newer sale replaces an older one - so a pending digest stays small
+ * however many changes it absorbs. When the {@link DigestSchedule} fires, pending digests
+ * are taken out and sent one customer at a time, never all rendered together. What goes out,
+ * at once or as a digest, is handed to the downstream dispatcher.
+ * Buckets that have refilled to their burst are indistinguishable from new ones, so they are
+ * dropped on every digest run and every {@value #EVICTION_INTERVAL} new buckets; only
+ * customers notified recently keep a bucket (and stay reachable from the limiter).
+ */
+public class RateLimitingDispatcher implements ChainedDispatcher, AutoCloseable {
+    private static final int EVICTION_INTERVAL = 4096;
+
+    private final RateLimit customerLimit;
+    private final String[] channels;
+    private final RateLimit[] channelLimits;
+    private final Function<CustomerObserver, Collection<String>> channelsOf;
+    private final DigestSchedule schedule;
+    private final TimerWheel timerWheel;
+    private volatile EventDispatcher downstream = EventDispatcher.DIRECT;
+    private final Map<CustomerObserver, Budget> budgets = new ConcurrentHashMap<>();
+    private final Map<CustomerObserver, PendingDigest> pendingDigests = new ConcurrentHashMap<>();
+    private final AtomicLong budgetsCreated = new AtomicLong();
+    private volatile TimerWheel.Timeout nextDigest;
+    private volatile boolean closed;
+
+    private final AtomicLong sentImmediately = new AtomicLong();
+    private final AtomicLong eventsHeld = new AtomicLong();
+    private final AtomicLong digestsSent = new AtomicLong();
+    private final AtomicLong digestsFailed = new AtomicLong();
+
+    /**
+     * Constructs a dispatcher with a per-customer limit only.
+     *
+     * @param customerLimit notifications each customer may receive
+     * @param schedule when held-back events are sent as digests
+     */
+    public RateLimitingDispatcher(RateLimit customerLimit, DigestSchedule schedule) {
+        this(customerLimit, Collections.emptyMap(), customer -> Collections.emptyList(), schedule, TimerWheel.shared());
+    }
+
+    /**
+     * Constructs a dispatcher.
+     *
+     * @param customerLimit notifications each customer may receive over all channels
+     * @param channelLimits per-customer limit of each channel, by channel name
+     * @param channelsOf names of the channels a customer is currently reached on
+     * @param schedule when held-back events are sent as digests
+     * @param timerWheel wheel that triggers the digests
+     */
+    public RateLimitingDispatcher(RateLimit customerLimit, Map<String, RateLimit> channelLimits,
+                                  Function<CustomerObserver, Collection<String>> channelsOf,
+                                  DigestSchedule schedule, TimerWheel timerWheel) {
+        this.customerLimit = customerLimit;
+        this.channels = channelLimits.keySet().toArray(new String[0]);
+        this.channelLimits = new RateLimit[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            this.channelLimits[i] = channelLimits.get(channels[i]);
+        }
+        this.channelsOf = channelsOf;
+        this.schedule = schedule;
+        this.timerWheel = timerWheel;
+        scheduleNextDigest();
+    }
+
+    private void scheduleNextDigest() {
+        if (closed) {
+            return;
+        }
+        long delay = schedule.millisUntilNext(System.currentTimeMillis());
+        // Digests may take a while; keep the timer thread free
+        nextDigest = timerWheel.schedule(() -> ForkJoinPool.commonPool().execute(() -> {
+            flushDigests();
+            evictFullBudgets();
+            scheduleNextDigest();
+        }), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets where admitted notifications and digests go.
+     *
+     * @param downstream the next dispatcher; {@link EventDispatcher#DIRECT} by default
+     */
+    @Override
+    public void setDownstream(EventDispatcher downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void dispatch(Product source, List<ProductEvent> events) {
+        List<Notification> immediate = admit(Notification.of(source, events), "about " + source.getName());
+        if (!immediate.isEmpty()) {
+            System.out.println("\n🔔 Notifying " + immediate.size() + " observer(s) about: " + source.getName());
+            downstream.deliver(immediate);
+        }
+    }
+
+    @Override
+    public void deliver(List<Notification> notifications) {
+        List<Notification> immediate = admit(notifications, "");
+        if (!immediate.isEmpty()) {
+            downstream.deliver(immediate);
+        }
+    }
+
+    // Takes a token for each notification that may go out now and holds the others for the digest
+    private List<Notification> admit(List<Notification> notifications, String about) {
+        long now = System.currentTimeMillis();
+        int held = 0;
+        List<Notification> immediate = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            CustomerObserver customer = notification.getRecipient();
+            if (tryAcquire(customer, channelMask(customer), now)) {
+                immediate.add(notification);
+            } else {
+                hold(customer, notification.getEvents());
+                held++;
+            }
+        }
+        if (held > 0) {
+            System.out.println("\n⏳ " + held + " notification(s) " + (about.isEmpty() ? "" : about + " ")
+                    + "held for the " + schedule + " digest");
+        }
+        sentImmediately.addAndGet(immediate.size());
+        return immediate;
+    }
+
+    private boolean tryAcquire(CustomerObserver customer, long channelMask, long now) {
+        while (true) {
+            Budget budget = budgets.computeIfAbsent(customer, key -> newBudget(now));
+            if (budget.tryAcquire(channelMask, now)) {
+                return true;
+            }
+            if (!budget.evicted) {
+                return false;
+            }
+            // Evicted in the meantime; a fresh bucket is just as full
+            budgets.remove(customer, budget);
+        }
+    }
+
+    private Budget newBudget(long now) {
+        if (budgetsCreated.incrementAndGet() % EVICTION_INTERVAL == 0) {
+            // Runs inside computeIfAbsent; sweep afterwards on another thread
+            ForkJoinPool.commonPool().execute(this::evictFullBudgets);
+        }
+        return new Budget(now);
+    }
+
+    /**
+     * Drops the buckets of customers that have not been notified long enough to be back at
+     * their full burst.
+     *
+     * @return number of buckets dropped
+     */
+    int evictFullBudgets() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Map.Entry<CustomerObserver, Budget> entry : budgets.entrySet()) {
+            if (entry.getValue().evictIfFull(now) && budgets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // Bit i set: the customer is reached on channel i
+    private long channelMask(CustomerObserver customer) {
+        if (channels.length == 0) {
+            return 0;
+        }
+        Collection<String> used = channelsOf.apply(customer);
+        long mask = 0;
+        for (int i = 0; i < channels.length && i < Long.SIZE; i++) {
+            if (used.contains(channels[i])) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private void hold(CustomerObserver customer, List<ProductEvent> events) {
+        eventsHeld.addAndGet(events.size());
+        while (true) {
+            PendingDigest digest = pendingDigests.computeIfAbsent(customer, key -> new PendingDigest());
+            if (digest.add(events)) {
+                return;
+            }
+            // Taken by a flush in the meantime; start the next digest
+            pendingDigests.remove(customer, digest);
+        }
+    }
+
+    /**
+     * Sends every pending digest now. Digests are taken out and rendered one at a time.
+     *
+     * @return number of digests sent
+     */
+    public int flushDigests() {
+        int sent = 0;
+        for (CustomerObserver customer : pendingDigests.keySet()) {
+            PendingDigest digest = pendingDigests.remove(customer);
+            if (digest == null) {
+                continue;
+            }
+            List<ProductEvent> net = digest.closeAndNet();
+            if (net.isEmpty()) {
+                continue;
+            }
+            try {
+                downstream.deliver(Collections.singletonList(new Notification(customer, net)));
+                sent++;
+            } catch (RuntimeException e) {
+                digestsFailed.incrementAndGet();
+                System.out.println("⚠️ Digest for " + customer.getName() + " failed: " + e.getMessage());
+            }
+        }
+        digestsSent.addAndGet(sent);
+        if (sent > 0) {
+            System.out.println("📰 Sent " + sent + " notification digest(s)");
+        }
+        return sent;
+    }
+
+    /**
+     * Stops the digest schedule. Pending digests are sent first.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        TimerWheel.Timeout timeout = nextDigest;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        flushDigests();
+    }
+
+    /** @return notifications delivered within the limits */
+    public long getSentImmediately() { return sentImmediately.get(); }
+
+    /** @return events held back for a digest */
+    public long getEventsHeld() { return eventsHeld.get(); }
+
+    /** @return digests delivered */
+    public long getDigestsSent() { return digestsSent.get(); }
+
+    /** @return customers whose token buckets are below their burst */
+    public int getTrackedCustomerCount() { return budgets.size(); }
+
+    /** @return customers with a digest waiting for the next schedule */
+    public int getPendingDigestCount() { return pendingDigests.size(); }
+
+    /** @return one-line summary of the limiter */
+    public String getSummary() {
+        return String.format("Rate limits %s per customer, digests %s: %d sent at once, %d event(s) held, "
+                        + "%d digest(s) sent, %d pending, %d failed",
+                customerLimit, schedule, getSentImmediately(), getEventsHeld(), getDigestsSent(),
+                getPendingDigestCount(), digestsFailed.get());
+    }
+
+    /**
+     * Token buckets of one customer: slot 0 for the customer, slot i + 1 for channel i.
+     */
+    private final class Budget {
+        private final double[] tokens = new double[channels.length + 1];
+        private long refilledAt;
+        // Set once the bucket is full and leaves the map; it then admits nothing
+        volatile boolean evicted;
+
+        Budget(long now) {
+            tokens[0] = customerLimit.getBurst();
+            for (int i = 0; i < channels.length; i++) {
+                tokens[i + 1] = channelLimits[i].getBurst();
+            }
+            refilledAt = now;
+        }
+
+        // Takes a token from the customer bucket and every masked channel bucket, or from none
+        synchronized boolean tryAcquire(long channelMask, long now) {
+            if (evicted) {
+                return false;
+            }
+            refill(now);
+
+            if (tokens[0] < 1) {
+                return false;
+            }
+            for (int i = 0; i < channels.length; i++) {
+                if ((channelMask & (1L << i)) != 0 && tokens[i + 1] < 1) {
+                    return false;
+                }
+            }
+            tokens[0]--;
+            for (int i = 0; i < channels.length; i++) {
+                if ((channelMask & (1L << i)) != 0) {
+                    tokens[i + 1]--;
+                }
+            }
+            return true;
+        }
+
+        // Marks the bucket evicted if every slot is back at its burst
+        synchronized boolean evictIfFull(long now) {
+            refill(now);
+            if (tokens[0] < customerLimit.getBurst()) {
+                return false;
+            }
+            for (int i = 0; i < channels.length; i++) {
+                if (tokens[i + 1] < channelLimits[i].getBurst()) {
+                    return false;
+                }
+            }
+            evicted = true;
+            return true;
+        }
+
+        private void refill(long now) {
+            long elapsed = Math.max(0, now - refilledAt);
+            refilledAt = now;
+            tokens[0] = Math.min(customerLimit.getBurst(), tokens[0] + elapsed * customerLimit.tokensPerMilli());
+            for (int i = 0; i < channels.length; i++) {
+                RateLimit limit = channelLimits[i];
+                tokens[i + 1] = Math.min(limit.getBurst(), tokens[i + 1] + elapsed * limit.tokensPerMilli());
+            }
+        }
+    }
+
+    /**
+     * Events held for one customer, folded per product as they arrive.
+     */
+    private static final class PendingDigest {
+        // Key product + type for foldable events, the event id for one-off announcements;
+        // value is the first and the latest event under that key
+        private final Map<String, ProductEvent[]> entries = new LinkedHashMap<>();
+        private boolean closed;
+
+        synchronized boolean add(List<ProductEvent> events) {
+            if (closed) {
+                return false;
+            }
+            for (ProductEvent event : events) {
+                boolean foldable = event instanceof StockChanged || event instanceof PriceChanged
+                        || event instanceof SaleStarted;
+                String key = foldable ? event.getProductId() + '|' + event.getType() : "#" + event.getEventId();
+                ProductEvent[] entry = entries.get(key);
+                if (entry == null) {
+                    entries.put(key, new ProductEvent[]{event, event});
+                } else {
+                    entry[1] = event;
+                }
+            }
+            return true;
+        }
+
+        synchronized List<ProductEvent> closeAndNet() {
+            closed = true;
+            List<ProductEvent> net = new ArrayList<>(entries.size());
+            for (ProductEvent[] entry : entries.values()) {
+                ProductEvent first = entry[0];
+                ProductEvent last = entry[1];
+                if (first == last || last instanceof SaleStarted) {
+                    net.add(last);
+                } else if (last instanceof StockChanged) {
+                    net.add(new StockChanged(last.getProductId(), last.getProductName(),
+                            ((StockChanged) first).getOldStock(), ((StockChanged) last).getNewStock()));
+                } else if (((PriceChanged) first).getOldPrice() != ((PriceChanged) last).getNewPrice()) {
+                    // A price that went down and back up again before the digest is no news
+                    net.add(new PriceChanged(last.getProductId(), last.getProductName(),
+                            ((PriceChanged) first).getOldPrice(), ((PriceChanged) last).getNewPrice()));
+                }
+            }
+            entries.clear();
+            return net;
+        }
+    }
+}
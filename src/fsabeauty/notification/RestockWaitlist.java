@@ -0,0 +1,367 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.CustomerObserver;
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import fsabeauty.observer.ProductSubscription;
+import fsabeauty.observer.StockChanged;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event dispatcher that turns back-in-stock announcements into a fair waitlist.
+ * Instead of telling every watcher at once that five units are back, watchers queue up
+ * (in subscription order, or by priority) and a restock notifies them in waves of
+ * {@code stock * multiplier}. Each notified customer holds a reservation for a limited
+ * time; the next wave is released only as reservations expire or are used. A used
+ * reservation takes its unit out of the restock, so checkout sees a steady trickle
+ * instead of the whole crowd, and the waves stop once every unit is claimed. Waves are
+ * delivered through the downstream dispatcher, and all other events pass through to it
+ * unchanged.
+ */
+public class RestockWaitlist implements ChainedDispatcher {
+
+    /**
+     * Order in which waiting customers are released.
+     */
+    public enum Mode {
+        FIFO,
+        PRIORITY
+    }
+
+    private volatile EventDispatcher downstream;
+    private final Mode mode;
+    private final double multiplier;
+    private final long reservationMillis;
+    private final TimerWheel timerWheel;
+    private final Map<Product, ProductWaitlist> waitlists = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a waitlist that delivers other events directly.
+     *
+     * @param mode FIFO or priority release order
+     * @param multiplier customers notified per available unit, e.g. 2.0
+     * @param reservationMillis how long a notified customer's reservation lasts
+     */
+    public RestockWaitlist(Mode mode, double multiplier, long reservationMillis) {
+        this(mode, multiplier, reservationMillis, EventDispatcher.DIRECT, TimerWheel.shared());
+    }
+
+    /**
+     * Constructs a waitlist.
+     *
+     * @param mode FIFO or priority release order
+     * @param multiplier customers notified per available unit, e.g. 2.0
+     * @param reservationMillis how long a notified customer's reservation lasts
+     * @param downstream receives the waves and every event that is not a waitlisted restock
+     * @param timerWheel wheel used to expire reservations
+     */
+    public RestockWaitlist(Mode mode, double multiplier, long reservationMillis,
+                           EventDispatcher downstream, TimerWheel timerWheel) {
+        if (multiplier <= 0 || reservationMillis < 1) {
+            throw new IllegalArgumentException("Multiplier and reservation time must be positive");
+        }
+        this.mode = mode;
+        this.multiplier = multiplier;
+        this.reservationMillis = reservationMillis;
+        this.downstream = downstream;
+        this.timerWheel = timerWheel;
+    }
+
+    /**
+     * Puts a customer on a product's waitlist with a priority (higher goes first in PRIORITY mode).
+     *
+     * @param product the product
+     * @param customer the waiting customer
+     * @param priority release priority; ignored in FIFO mode
+     */
+    public void join(Product product, CustomerObserver customer, int priority) {
+        waitlistOf(product).enqueue(customer, mode == Mode.PRIORITY ? priority : 0);
+    }
+
+    @Override
+    public void setDownstream(EventDispatcher downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void dispatch(Product source, List<ProductEvent> events) {
+        ProductWaitlist waitlist = waitlistOf(source);
+        boolean cycleActive = waitlist.isActive();
+        List<ProductEvent> passThrough = new ArrayList<>(events.size());
+        StockChanged restock = null;
+        StockChanged stockChange = null;
+        for (ProductEvent event : events) {
+            if (event instanceof StockChanged && ((StockChanged) event).isBackInStock()) {
+                restock = (StockChanged) event;
+            } else if (event instanceof StockChanged) {
+                stockChange = (StockChanged) event;
+                // Low-stock alerts during a wave would bring back the herd; sold out still goes to everyone
+                if (!cycleActive || stockChange.getNewStock() == 0) {
+                    passThrough.add(event);
+                }
+            } else {
+                passThrough.add(event);
+            }
+        }
+        if (!passThrough.isEmpty()) {
+            downstream.dispatch(source, passThrough);
+        }
+
+        if (restock != null) {
+            waitlist.restocked(restock);
+        } else if (stockChange != null) {
+            waitlist.stockChanged(stockChange.getNewStock());
+        }
+    }
+
+    /**
+     * Changes without stock news pass on as one batch; products whose stock changed go
+     * through the waitlist one by one.
+     */
+    @Override
+    public void dispatchAll(Map<Product, List<ProductEvent>> changes) {
+        Map<Product, List<ProductEvent>> passThrough = new LinkedHashMap<>();
+        for (Map.Entry<Product, List<ProductEvent>> change : changes.entrySet()) {
+            boolean stockNews = false;
+            for (ProductEvent event : change.getValue()) {
+                stockNews |= event instanceof StockChanged;
+            }
+            if (stockNews) {
+                dispatch(change.getKey(), change.getValue());
+            } else {
+                passThrough.put(change.getKey(), change.getValue());
+            }
+        }
+        if (!passThrough.isEmpty()) {
+            downstream.dispatchAll(passThrough);
+        }
+    }
+
+    @Override
+    public void deliver(List<Notification> notifications) {
+        downstream.deliver(notifications);
+    }
+
+    /**
+     * Tells whether a customer may buy a product now: anyone may while no wave is
+     * outstanding, otherwise only holders of a reservation. Use {@link #claim} to buy.
+     *
+     * @param product the product
+     * @param customer the customer
+     * @return true if the purchase should be allowed
+     */
+    public boolean mayPurchase(Product product, CustomerObserver customer) {
+        ProductWaitlist waitlist = waitlists.get(product);
+        return waitlist == null || waitlist.mayPurchase(customer);
+    }
+
+    /**
+     * Checks and uses up a customer's right to buy in one step: while a wave is
+     * outstanding, only a reservation holder may buy, and the reservation is spent at once
+     * together with one unit of the restock; once every unit is claimed, remaining
+     * reservations are refused. Two concurrent claims never share a reservation.
+     * Call it only once the purchase is certain to go ahead, e.g. the item is in stock.
+     *
+     * @param product the product
+     * @param customer the buying customer
+     * @return true if the purchase may go ahead
+     */
+    public boolean claim(Product product, CustomerObserver customer) {
+        ProductWaitlist waitlist = waitlists.get(product);
+        return waitlist == null || waitlist.claim(customer);
+    }
+
+    /** @return number of customers still waiting for the product */
+    public int getWaitingCount(Product product) {
+        ProductWaitlist waitlist = waitlists.get(product);
+        return waitlist == null ? 0 : waitlist.waitingCount();
+    }
+
+    /** @return number of unexpired, unused reservations for the product */
+    public int getReservationCount(Product product) {
+        ProductWaitlist waitlist = waitlists.get(product);
+        return waitlist == null ? 0 : waitlist.reservationCount();
+    }
+
+    /** @return waiting, reserved, used and expired counts for the product */
+    public String getStatus(Product product) {
+        ProductWaitlist waitlist = waitlists.get(product);
+        return waitlist == null ? product.getName() + ": no waitlist" : waitlist.status();
+    }
+
+    private ProductWaitlist waitlistOf(Product product) {
+        return waitlists.computeIfAbsent(product, ProductWaitlist::new);
+    }
+
+    /**
+     * Queue, reservations and release state of one product.
+     */
+    private final class ProductWaitlist {
+        private final Product product;
+        private final PriorityQueue<Waiting> queue = new PriorityQueue<>(
+                Comparator.comparingInt((Waiting w) -> -w.priority).thenComparingLong(w -> w.sequence));
+        private final Set<CustomerObserver> queued = new HashSet<>();
+        private final Map<CustomerObserver, TimerWheel.Timeout> reservations = new HashMap<>();
+        private final Set<CustomerObserver> notified = new HashSet<>(); // this restock cycle
+        private long nextSequence;
+        private int stock;
+        private int claimedThisCycle; // units bought with a reservation since the restock
+        private long soldThrough;
+        private long expired;
+
+        ProductWaitlist(Product product) {
+            this.product = product;
+            this.stock = product.getStock();
+        }
+
+        synchronized void enqueue(CustomerObserver customer, int priority) {
+            if (!queued.contains(customer) && !reservations.containsKey(customer) && !notified.contains(customer)) {
+                queue.add(new Waiting(customer, priority, nextSequence++));
+                queued.add(customer);
+            }
+        }
+
+        void restocked(StockChanged event) {
+            synchronized (this) {
+                stock = event.getNewStock();
+                claimedThisCycle = 0;
+                // Watchers who want this news and are not yet waiting join at the back
+                for (ProductSubscription subscription : product.getSubscriptions()) {
+                    if (subscription.accepts(event)) {
+                        enqueue(subscription.getObserver(), 0);
+                    }
+                }
+            }
+            releaseWave();
+        }
+
+        void stockChanged(int newStock) {
+            synchronized (this) {
+                stock = newStock;
+                if (newStock == 0) {
+                    // Sold out again: open reservations are worthless and the next restock starts a new cycle
+                    for (TimerWheel.Timeout timeout : reservations.values()) {
+                        timeout.cancel();
+                    }
+                    reservations.clear();
+                    notified.clear();
+                    claimedThisCycle = 0;
+                }
+            }
+            releaseWave();
+        }
+
+        synchronized boolean isActive() {
+            return !reservations.isEmpty() || (!queue.isEmpty() && unclaimedStock() > 0);
+        }
+
+        synchronized boolean mayPurchase(CustomerObserver customer) {
+            return reservations.isEmpty() || reservations.containsKey(customer);
+        }
+
+        boolean claim(CustomerObserver customer) {
+            synchronized (this) {
+                if (reservations.isEmpty()) {
+                    return true;
+                }
+                if (!reservations.containsKey(customer) || unclaimedStock() == 0) {
+                    return false; // waves overbook by the multiplier; the first claims get the units
+                }
+                TimerWheel.Timeout timeout = reservations.remove(customer);
+                timeout.cancel();
+                soldThrough++;
+                claimedThisCycle++;
+            }
+            releaseWave();
+            return true;
+        }
+
+        void reservationExpired(CustomerObserver customer) {
+            synchronized (this) {
+                if (reservations.remove(customer) == null) {
+                    return;
+                }
+                expired++;
+            }
+            // Expiry runs on the timer thread; deliver the next wave elsewhere
+            ForkJoinPool.commonPool().execute(this::releaseWave);
+        }
+
+        synchronized int waitingCount() {
+            return queue.size();
+        }
+
+        synchronized int reservationCount() {
+            return reservations.size();
+        }
+
+        synchronized String status() {
+            return String.format("%s: %d waiting, %d reserved, %d reservations used, %d expired, %d unclaimed",
+                    product.getName(), queue.size(), reservations.size(), soldThrough, expired, unclaimedStock());
+        }
+
+        // Caller holds the lock
+        private int unclaimedStock() {
+            return Math.max(0, stock - claimedThisCycle);
+        }
+
+        // Notifies as many waiting customers as the unclaimed stock allows beyond open reservations
+        private void releaseWave() {
+            List<CustomerObserver> wave = new ArrayList<>();
+            int currentStock;
+            synchronized (this) {
+                currentStock = unclaimedStock();
+                long allowance = (long) Math.ceil(currentStock * multiplier) - reservations.size();
+                while (allowance-- > 0 && !queue.isEmpty()) {
+                    CustomerObserver customer = queue.poll().customer;
+                    queued.remove(customer);
+                    notified.add(customer);
+                    reservations.put(customer, timerWheel.schedule(
+                            () -> reservationExpired(customer), reservationMillis, TimeUnit.MILLISECONDS));
+                    wave.add(customer);
+                }
+            }
+            if (wave.isEmpty()) {
+                return;
+            }
+
+            System.out.println("\n🌊 Releasing a wave of " + wave.size() + " for " + product.getName()
+                    + " (" + currentStock + " in stock, " + waitingCount() + " still waiting)");
+            StockChanged news = new StockChanged(product.getProductId(), product.getName(), 0, currentStock);
+            List<Notification> notifications = new ArrayList<>(wave.size());
+            for (CustomerObserver customer : wave) {
+                notifications.add(new Notification(customer, Collections.singletonList(news)));
+            }
+            downstream.deliver(notifications);
+        }
+    }
+
+    /**
+     * A queued customer.
+     */
+    private static final class Waiting {
+        final CustomerObserver customer;
+        final int priority;
+        final long sequence;
+
+        Waiting(CustomerObserver customer, int priority, long sequence) {
+            this.customer = customer;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
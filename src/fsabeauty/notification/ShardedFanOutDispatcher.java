@@ -0,0 +1,183 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Event dispatcher that delivers to large recipient lists in parallel.
+ * A product with more than {@code shardSize} subscriptions, or a list of more than
+ * {@code shardSize} addressed notifications, is split into shards that run as fork/join
+ * tasks on a work-stealing pool: idle workers steal unstarted halves of the shard range, so
+ * delivery spreads over all cores even when some customers are slow. Each notification is
+ * handed to the downstream dispatcher on its own. Each sharded fan-out produces a
+ * {@link FanOutReport} with per-shard progress, handed to the report listener once the last
+ * shard completes. Dispatch returns as soon as the work is submitted. Smaller lists go to
+ * the downstream dispatcher inline, exactly as before.
+ */
+public class ShardedFanOutDispatcher implements ChainedDispatcher {
+    public static final int DEFAULT_SHARD_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final int shardSize;
+    private volatile EventDispatcher downstream = EventDispatcher.DIRECT;
+    private volatile Consumer<FanOutReport> reportListener = report -> System.out.println("📊 " + report.getSummary());
+
+    /**
+     * Constructs a dispatcher on the common fork/join pool.
+     *
+     * @param shardSize recipients per shard; lists up to this size are delivered inline
+     */
+    public ShardedFanOutDispatcher(int shardSize) {
+        this(shardSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a dispatcher.
+     *
+     * @param shardSize recipients per shard; lists up to this size are delivered inline
+     * @param pool the work-stealing pool running the shards
+     */
+    public ShardedFanOutDispatcher(int shardSize, ForkJoinPool pool) {
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("Shard size must be positive");
+        }
+        this.shardSize = shardSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Replaces the callback that receives each completed fan-out report (default: print the summary).
+     *
+     * @param listener the callback, run on the worker that finished the last shard
+     */
+    public void setReportListener(Consumer<FanOutReport> listener) {
+        this.reportListener = listener == null ? report -> { } : listener;
+    }
+
+    /**
+     * Sets where each notification of a shard goes.
+     *
+     * @param downstream the next dispatcher; {@link EventDispatcher#DIRECT} by default
+     */
+    @Override
+    public void setDownstream(EventDispatcher downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void dispatch(Product source, List<ProductEvent> events) {
+        fanOut(source, events);
+    }
+
+    @Override
+    public void deliver(List<Notification> notifications) {
+        if (notifications.size() <= shardSize) {
+            downstream.deliver(notifications);
+            return;
+        }
+        Set<String> productIds = new LinkedHashSet<>();
+        Set<ProductEvent> events = new LinkedHashSet<>();
+        for (Notification notification : notifications) {
+            for (ProductEvent event : notification.getEvents()) {
+                productIds.add(event.getProductId());
+                events.add(event);
+            }
+        }
+        System.out.println("\n🔔 Notifying " + notifications.size() + " recipient(s) in "
+                + shardCount(notifications.size()) + " parallel shard(s)");
+        submit(String.join(",", productIds), new ArrayList<>(events), notifications);
+    }
+
+    /**
+     * Delivers the events and returns the fan-out's report, or null if the list was small
+     * enough to be handed downstream inline.
+     *
+     * @param source the product whose subscribers are notified
+     * @param events the events to deliver
+     * @return the report of a sharded fan-out, or null
+     */
+    public FanOutReport fanOut(Product source, List<ProductEvent> events) {
+        if (source.getObserverCount() <= shardSize) {
+            downstream.dispatch(source, events);
+            return null;
+        }
+        List<Notification> notifications = Notification.of(source, events);
+        if (notifications.isEmpty()) {
+            return null;
+        }
+        System.out.println("\n🔔 Notifying " + notifications.size() + " subscription(s) about: "
+                + source.getName() + " in " + shardCount(notifications.size()) + " parallel shard(s)");
+        return submit(source.getProductId(), events, notifications);
+    }
+
+    private int shardCount(int recipients) {
+        return (recipients + shardSize - 1) / shardSize;
+    }
+
+    private FanOutReport submit(String subject, List<ProductEvent> events, List<Notification> notifications) {
+        int shards = shardCount(notifications.size());
+        int[] sizes = new int[shards];
+        for (int i = 0; i < shards; i++) {
+            sizes[i] = Math.min(shardSize, notifications.size() - i * shardSize);
+        }
+        FanOutReport report = new FanOutReport(subject, events, sizes);
+        pool.execute(new ShardRange(notifications, report, 0, shards));
+        return report;
+    }
+
+    /**
+     * A range of shards; splits in halves until it is a single shard. Tasks only live in the
+     * pool and are never serialized, although {@link RecursiveAction} is {@code Serializable}.
+     */
+    @SuppressWarnings("serial")
+    private final class ShardRange extends RecursiveAction {
+        private final List<Notification> notifications;
+        private final FanOutReport report;
+        private final int fromShard;
+        private final int toShard;
+
+        ShardRange(List<Notification> notifications, FanOutReport report, int fromShard, int toShard) {
+            this.notifications = notifications;
+            this.report = report;
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+        }
+
+        @Override
+        protected void compute() {
+            if (toShard - fromShard > 1) {
+                int middle = (fromShard + toShard) >>> 1;
+                invokeAll(new ShardRange(notifications, report, fromShard, middle),
+                        new ShardRange(notifications, report, middle, toShard));
+                return;
+            }
+            long start = System.nanoTime();
+            int from = fromShard * shardSize;
+            int to = Math.min(notifications.size(), from + shardSize);
+            for (int i = from; i < to; i++) {
+                boolean delivered = false;
+                try {
+                    downstream.deliver(Collections.singletonList(notifications.get(i)));
+                    delivered = true;
+                } catch (RuntimeException e) {
+                    // One failing customer must not stop the rest of the shard
+                    report.failed();
+                }
+                report.processed(fromShard, delivered);
+            }
+            if (report.shardDone(fromShard, System.nanoTime() - start)) {
+                reportListener.accept(report);
+            }
+        }
+    }
+}
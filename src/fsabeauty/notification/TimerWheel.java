@@ -0,0 +1,231 @@
+package fsabeauty.notification;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel: one background thread serves any number of timeouts.
+ * Scheduling is O(1) - the timeout is dropped into a lock-free queue and sorted into
+ * a wheel bucket on the next tick - and each tick only inspects one bucket.
+ * Precision is one tick, which is plenty for notification windows, batching
+ * deadlines and reservation expiry. Tasks run on the wheel thread and must be short;
+ * hand longer work to an executor.
+ */
+public class TimerWheel implements AutoCloseable {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static volatile TimerWheel shared;
+
+    private final String name;
+    private final long tickNanos;
+    private final Queue<WheelTimeout>[] buckets;
+    private final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(); // 0 = new, 1 = running, 2 = closed
+    private volatile long startNanos;
+    private volatile Thread worker;
+
+    /**
+     * Constructs a wheel with default tick and size.
+     *
+     * @param name name of the worker thread
+     */
+    public TimerWheel(String name) {
+        this(name, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructs a wheel.
+     *
+     * @param name name of the worker thread
+     * @param tickMillis resolution of the wheel
+     * @param wheelSize number of buckets; one wheel turn covers tickMillis * wheelSize
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Returns the process-wide wheel shared by notification components.
+     *
+     * @return the shared timer wheel
+     */
+    public static TimerWheel shared() {
+        TimerWheel wheel = shared;
+        if (wheel == null) {
+            synchronized (TimerWheel.class) {
+                wheel = shared;
+                if (wheel == null) {
+                    wheel = new TimerWheel("fsa-timer-wheel");
+                    shared = wheel;
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Runs a task once after the given delay.
+     *
+     * @param task the task to run on the wheel thread
+     * @param delay delay before running
+     * @param unit unit of the delay
+     * @return handle that can cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+        if (state.get() == 2) {
+            throw new IllegalStateException("Timer wheel " + name + " is closed");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        WheelTimeout timeout = new WheelTimeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // Publishes the running state only after startNanos and worker are set, so a concurrent
+    // schedule() never computes a deadline against an unset start time
+    private void start() {
+        if (state.get() != 0) {
+            return;
+        }
+        synchronized (this) {
+            if (state.get() != 0) {
+                return;
+            }
+            startNanos = System.nanoTime();
+            Thread thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            worker = thread;
+            if (state.compareAndSet(0, 1)) {
+                thread.start();
+            }
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (state.get() == 1) {
+            long wakeUp = (tick + 1) * tickNanos;
+            long sleepNanos = wakeUp - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            transferPending(tick);
+            expire(buckets[(int) (tick % buckets.length)]);
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        WheelTimeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long targetTick = Math.max(currentTick, timeout.deadline / tickNanos);
+            timeout.remainingRounds = (targetTick - currentTick) / buckets.length;
+            buckets[(int) (targetTick % buckets.length)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<WheelTimeout> bucket) {
+        Iterator<WheelTimeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            WheelTimeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Stops the worker thread; timeouts that have not fired are dropped.
+     */
+    @Override
+    public void close() {
+        Thread thread = worker;
+        if (state.getAndSet(2) == 1 && thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public interface Timeout {
+        /**
+         * Prevents the task from running if it has not run yet.
+         *
+         * @return true if the task was cancelled before it ran
+         */
+        boolean cancel();
+
+        /** @return true once the task has run */
+        boolean isExpired();
+    }
+
+    private static final class WheelTimeout implements Timeout {
+        final Runnable task;
+        final long deadline;
+        long remainingRounds;
+        volatile boolean cancelled;
+        volatile boolean expired;
+
+        WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void expire() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                expired = true;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Timer task failed: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized boolean cancel() {
+            if (expired) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package fsabeauty.observer;
+
+// Free-text message sent through ProductSubject.notifyObservers(String)
+public class Announcement extends ProductEvent {
+    private final String text;
+
+    public Announcement(String productId, String productName, String text) {
+        super(productId, productName);
+        this.text = text;
+    }
+
+    @Override
+    public ProductEventType getType() { return ProductEventType.ANNOUNCEMENT; }
+
+    @Override
+    protected String render() {
+        return text;
+    }
+}
@@ -1,16 +1,21 @@
 package fsabeauty.observer;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class Customer implements CustomerObserver {
     private String customerId;
     private String name;
     private String email;
     private String phone;
-    private List<String> notificationHistory;
+    private NotificationHistory notificationHistory;
     private boolean wantsEmailNotifications;
     private boolean wantsSMSNotifications;
+    private volatile CustomerTier tier = CustomerTier.STANDARD;
+    private volatile NotificationChannel emailChannel; // null: print to the console only
+    private volatile NotificationChannel smsChannel;
+    private final List<Consumer<Customer>> preferenceListeners = new CopyOnWriteArrayList<>();
 
     // Constructor with required fields
     public Customer(String customerId, String name, String email) {
@@ -23,22 +28,40 @@ public class Customer implements CustomerObserver {
         this.name = name;
         this.email = email;
         this.phone = phone;
-        this.notificationHistory = new ArrayList<>();
+        this.notificationHistory = new NotificationHistory();
         this.wantsEmailNotifications = true;
         this.wantsSMSNotifications = false;
     }
 
     @Override
     public void update(String message) {
-        // Add notification to history
-        notificationHistory.add(message);
+        // Plain text without a product event behind it
+        notificationHistory.record(message, System.currentTimeMillis());
+        send(message);
+    }
 
+    @Override
+    public void onEvent(ProductEvent event) {
+        // History keeps a compact reference to the event; its text is rendered when read
+        notificationHistory.record(event);
+        send(event.getMessage());
+    }
+
+    @Override
+    public void onDigest(List<ProductEvent> events) {
+        for (ProductEvent event : events) {
+            notificationHistory.record(event);
+        }
+        send(ProductEvent.renderDigest(events));
+    }
+
+    private void send(String message) {
         // Send notifications based on customer preferences
         if (wantsEmailNotifications) {
             sendEmailNotification(message);
         }
 
-        if (wantsSMSNotifications && !phone.equals("Not provided")) {
+        if (canReceiveSMS()) {
             sendSMSNotification(message);
         }
 
@@ -47,15 +70,31 @@ public class Customer implements CustomerObserver {
     }
 
     private void sendEmailNotification(String message) {
+        NotificationChannel channel = emailChannel;
+        if (channel != null) {
+            channel.send(email, message);
+            return;
+        }
         // Simulate email notification sending
         System.out.println("        Email to " + email + ": " + message);
     }
 
     private void sendSMSNotification(String message) {
+        NotificationChannel channel = smsChannel;
+        if (channel != null) {
+            channel.send(phone, message);
+            return;
+        }
         // Simulate SMS notification sending
         System.out.println("      SMS to " + phone + ": " + message);
     }
 
+    // Route email and SMS through real (batching) channels; null keeps the console simulation
+    public void setNotificationChannels(NotificationChannel email, NotificationChannel sms) {
+        this.emailChannel = email;
+        this.smsChannel = sms;
+    }
+
     @Override
     public String getCustomerInfo() {
         return String.format("%s (%s) - %s", name, email, phone);
@@ -71,26 +110,74 @@ public class Customer implements CustomerObserver {
         return email;
     }
 
+    @Override
+    public CustomerTier getTier() {
+        return tier;
+    }
+
+    public void setTier(CustomerTier tier) {
+        this.tier = tier;
+        System.out.println(name + " is now a " + tier + " customer");
+    }
+
     // Manage customer notification preferences
     public void setNotificationPreferences(boolean email, boolean sms) {
         this.wantsEmailNotifications = email;
         this.wantsSMSNotifications = sms;
         System.out.println( name + " notification preferences updated: Email=" + email + ", SMS=" + sms);
+        firePreferencesChanged();
+    }
+
+    // Indexes keyed by preference (e.g. audience bitmaps) follow changes through this hook
+    public void addPreferenceListener(Consumer<Customer> listener) {
+        if (!preferenceListeners.contains(listener)) {
+            preferenceListeners.add(listener);
+        }
     }
 
-    // Display all received notifications
+    public void removePreferenceListener(Consumer<Customer> listener) {
+        preferenceListeners.remove(listener);
+    }
+
+    private void firePreferencesChanged() {
+        for (Consumer<Customer> listener : preferenceListeners) {
+            listener.accept(this);
+        }
+    }
+
+    // SMS goes out only to customers who opted in and gave a phone number
+    public boolean canReceiveSMS() {
+        return wantsSMSNotifications && !phone.equals("Not provided");
+    }
+
+    // Display the most recent notifications, newest first
     public void displayNotificationHistory() {
+        displayNotificationHistory(0, NotificationHistory.DEFAULT_CAPACITY);
+    }
+
+    // Display one page of received notifications, newest first; older pages come from the journal
+    public void displayNotificationHistory(int page, int pageSize) {
         System.out.println("\n📋 Notification History for " + name + ":");
-        if (notificationHistory.isEmpty()) {
+        long total = notificationHistory.size();
+        if (total == 0) {
             System.out.println("   No notifications yet");
             return;
         }
 
-        for (int i = 0; i < notificationHistory.size(); i++) {
-            System.out.println("   " + (i + 1) + ". " + notificationHistory.get(i));
+        List<NotificationHistory.Entry> entries = notificationHistory.page(page, pageSize);
+        long number = (long) page * pageSize;
+        for (NotificationHistory.Entry entry : entries) {
+            System.out.println("   " + (++number) + ". " + entry);
+        }
+        if (number < total) {
+            System.out.println("   ... " + (total - number) + " older notification(s) on page " + (page + 1));
         }
     }
 
+    public NotificationHistory getNotificationHistory() {
+        return notificationHistory;
+    }
+
     // Clear notification history
     public void clearNotificationHistory() {
         notificationHistory.clear();
@@ -99,7 +186,7 @@ public class Customer implements CustomerObserver {
 
     // Get total number of notifications received
     public int getNotificationCount() {
-        return notificationHistory.size();
+        return (int) Math.min(Integer.MAX_VALUE, notificationHistory.size());
     }
 
     // Getters and setters
@@ -109,6 +196,7 @@ public class Customer implements CustomerObserver {
 
     public void setPhone(String phone) {
         this.phone = phone;
+        firePreferencesChanged();
     }
 
     public boolean isWantsEmailNotifications() {
@@ -1,9 +1,21 @@
 package fsabeauty.observer;
 
+import java.util.List;
+
 public interface CustomerObserver {
     // Called when a new notification needs to be sent
     void update(String message);
 
+    // Typed delivery - the event text is rendered only here, for recipients that passed their filter
+    default void onEvent(ProductEvent event) {
+        update(event.getMessage());
+    }
+
+    // Several events delivered together (bulk changes, feed imports) as one notification
+    default void onDigest(List<ProductEvent> events) {
+        update(ProductEvent.renderDigest(events));
+    }
+
     // Returns formatted customer information
     String getCustomerInfo();
 
@@ -12,4 +24,9 @@ public interface CustomerObserver {
 
     // Returns email for communication
     String getEmail();
-}
\ No newline at end of file
+
+    // Returns the loyalty tier used to prioritise deliveries
+    default CustomerTier getTier() {
+        return CustomerTier.STANDARD;
+    }
+}
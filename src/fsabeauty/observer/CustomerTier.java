@@ -0,0 +1,8 @@
+package fsabeauty.observer;
+
+// Loyalty tier of a customer; higher tiers are served first when notifications queue up
+public enum CustomerTier {
+    STANDARD,
+    PREMIUM,
+    VIP
+}
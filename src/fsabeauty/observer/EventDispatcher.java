@@ -0,0 +1,26 @@
+package fsabeauty.observer;
+
+import java.util.List;
+import java.util.Map;
+
+public interface EventDispatcher {
+    // Default: deliver immediately on the publishing thread
+    EventDispatcher DIRECT = Product::deliver;
+
+    // Decides when (and how) the events of one product change reach its subscribers
+    void dispatch(Product source, List<ProductEvent> events);
+
+    // A change of several products at once (e.g. a bulk price update); by default each
+    // recipient gets one digest of everything it accepts, through deliver()
+    default void dispatchAll(Map<Product, List<ProductEvent>> changes) {
+        deliver(Notification.digests(changes));
+    }
+
+    // Notifications whose recipients are already chosen (digests, audiences, waitlist waves,
+    // the outbox relay); by default delivered at once on the calling thread
+    default void deliver(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            notification.deliver();
+        }
+    }
+}
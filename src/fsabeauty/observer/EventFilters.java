@@ -0,0 +1,39 @@
+package fsabeauty.observer;
+
+import java.util.function.Predicate;
+
+// Ready-made subscription filters evaluated on the primitive fields of typed events
+public final class EventFilters {
+
+    private EventFilters() {
+    }
+
+    // Default filter: everything the store used to announce (low/out/back-in-stock, price changes, sales, ...)
+    public static Predicate<ProductEvent> notable() {
+        return ProductEvent::isNotable;
+    }
+
+    public static Predicate<ProductEvent> all() {
+        return event -> true;
+    }
+
+    public static Predicate<ProductEvent> ofType(ProductEventType type) {
+        return event -> event.getType() == type;
+    }
+
+    public static Predicate<ProductEvent> backInStock() {
+        return event -> event instanceof StockChanged && ((StockChanged) event).isBackInStock();
+    }
+
+    public static Predicate<ProductEvent> priceDropAtLeast(double percentage) {
+        return event -> event instanceof PriceChanged && ((PriceChanged) event).getDropPercentage() >= percentage;
+    }
+
+    public static Predicate<ProductEvent> priceBelow(double price) {
+        return event -> event instanceof PriceChanged && ((PriceChanged) event).getNewPrice() < price;
+    }
+
+    public static Predicate<ProductEvent> saleWithDiscountAtLeast(double percentage) {
+        return event -> event instanceof SaleStarted && ((SaleStarted) event).getDiscountPercentage() >= percentage;
+    }
+}
@@ -0,0 +1,139 @@
+package fsabeauty.observer;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Reactive counterpart of the observer list: subscribers pull items with Flow.Subscription.request(n)
+// and each has its own bounded buffer. Publishing never blocks the producer - a lagging subscriber whose
+// buffer is full loses the item, and is then cut off: its subscription is cancelled and it receives
+// onError(EventStream.Overflow) instead of a silent gap, so it can resynchronise and subscribe again
+public class EventStream<T> implements Flow.Publisher<T>, AutoCloseable {
+    public static final int DEFAULT_BUFFER_CAPACITY = Flow.defaultBufferSize();
+
+    private final String name;
+    private final SubmissionPublisher<T> publisher;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+
+    public EventStream(String name) {
+        this(name, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    // bufferCapacity: items each subscriber may have outstanding (rounded up to a power of two)
+    public EventStream(String name, int bufferCapacity) {
+        this.name = name;
+        this.publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        publisher.subscribe(new GuardedSubscriber<>(subscriber, name, overflowed));
+    }
+
+    // Hands the item to every subscriber's buffer; costs nothing while nobody subscribes
+    public void publish(T item) {
+        if (!publisher.hasSubscribers()) {
+            return;
+        }
+        published.incrementAndGet();
+        publisher.offer(item, (subscriber, rejected) -> {
+            dropped.incrementAndGet();
+            ((GuardedSubscriber<?>) subscriber).overflow();
+            return false; // never wait for a slow subscriber
+        });
+    }
+
+    // Completes every subscriber after its buffered items
+    @Override
+    public void close() {
+        publisher.close();
+    }
+
+    public String getName() { return name; }
+    public int getSubscriberCount() { return publisher.getNumberOfSubscribers(); }
+    public long getPublishedCount() { return published.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+
+    // Subscribers cut off for falling behind
+    public long getOverflowedCount() { return overflowed.get(); }
+
+    // Items published but not yet consumed by the slowest subscriber
+    public int getMaximumLag() { return publisher.estimateMaximumLag(); }
+
+    public String getSummary() {
+        return String.format("%s: %d subscriber(s), %d published, %d dropped, %d cut off, max lag %d",
+                name, getSubscriberCount(), getPublishedCount(), getDroppedCount(), getOverflowedCount(),
+                getMaximumLag());
+    }
+
+    // Signalled to a subscriber that missed items because its buffer was full
+    public static final class Overflow extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Overflow(String streamName) {
+            super("Subscriber of " + streamName + " fell behind its buffer and missed items");
+        }
+    }
+
+    // Wraps a subscriber so an overflow can end it with onError; signals are serialised on the wrapper
+    private static final class GuardedSubscriber<S> implements Flow.Subscriber<S> {
+        private final Flow.Subscriber<? super S> delegate;
+        private final String streamName;
+        private final AtomicLong overflowed; // the stream's count
+        private final AtomicBoolean overflowing = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+        private boolean done; // guarded by this
+
+        GuardedSubscriber(Flow.Subscriber<? super S> delegate, String streamName, AtomicLong overflowed) {
+            this.delegate = delegate;
+            this.streamName = streamName;
+            this.overflowed = overflowed;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public synchronized void onNext(S item) {
+            if (!done) {
+                delegate.onNext(item);
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable error) {
+            if (!done) {
+                done = true;
+                delegate.onError(error);
+            }
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            if (!done) {
+                done = true;
+                delegate.onComplete();
+            }
+        }
+
+        // Called on the producer's thread: cancel at once, signal on the pool so publishing never waits
+        void overflow() {
+            if (!overflowing.compareAndSet(false, true)) {
+                return;
+            }
+            overflowed.incrementAndGet();
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            ForkJoinPool.commonPool().execute(() -> onError(new Overflow(streamName)));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package fsabeauty.observer;
+
+public class FeatureAdded extends ProductEvent {
+    private final String feature;
+
+    public FeatureAdded(String productId, String productName, String feature) {
+        super(productId, productName);
+        this.feature = feature;
+    }
+
+    @Override
+    public ProductEventType getType() { return ProductEventType.NEW_FEATURE; }
+
+    public String getFeature() { return feature; }
+
+    @Override
+    protected String render() {
+        return "✨ New feature! '" + getProductName() + "' now includes: " + feature;
+    }
+}
@@ -0,0 +1,20 @@
+package fsabeauty.observer;
+
+public class NewShade extends ProductEvent {
+    private final String shade;
+
+    public NewShade(String productId, String productName, String shade) {
+        super(productId, productName);
+        this.shade = shade;
+    }
+
+    @Override
+    public ProductEventType getType() { return ProductEventType.NEW_SHADE; }
+
+    public String getShade() { return shade; }
+
+    @Override
+    protected String render() {
+        return "🎨 New shade available! '" + getProductName() + "' now comes in " + shade;
+    }
+}
@@ -0,0 +1,61 @@
+package fsabeauty.observer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// One recipient and the events it gets as a single notification, after its filter ran.
+// Dispatchers that work per recipient (rate limits, lanes, the outbox) pass these along
+public final class Notification {
+    private final CustomerObserver recipient;
+    private final List<ProductEvent> events;
+
+    public Notification(CustomerObserver recipient, List<ProductEvent> events) {
+        this.recipient = recipient;
+        this.events = events;
+    }
+
+    // Recipients of one product change: every live subscription with the events it accepts
+    public static List<Notification> of(Product source, List<ProductEvent> events) {
+        List<Notification> notifications = new ArrayList<>();
+        for (ProductSubscription subscription : source.getSubscriptions()) {
+            List<ProductEvent> accepted = subscription.accepted(events);
+            if (!accepted.isEmpty()) {
+                notifications.add(new Notification(subscription.getObserver(), accepted));
+            }
+        }
+        return notifications;
+    }
+
+    // Recipients of a change spanning several products: one digest per customer of everything it accepts
+    public static List<Notification> digests(Map<Product, List<ProductEvent>> changes) {
+        Map<CustomerObserver, List<ProductEvent>> byRecipient = new LinkedHashMap<>();
+        for (Map.Entry<Product, List<ProductEvent>> change : changes.entrySet()) {
+            for (ProductSubscription subscription : change.getKey().getSubscriptions()) {
+                for (ProductEvent event : change.getValue()) {
+                    if (subscription.accepts(event)) {
+                        byRecipient.computeIfAbsent(subscription.getObserver(), o -> new ArrayList<>()).add(event);
+                    }
+                }
+            }
+        }
+        List<Notification> notifications = new ArrayList<>(byRecipient.size());
+        for (Map.Entry<CustomerObserver, List<ProductEvent>> digest : byRecipient.entrySet()) {
+            notifications.add(new Notification(digest.getKey(), digest.getValue()));
+        }
+        return notifications;
+    }
+
+    // Hands the events to the recipient: one as an event, several as one digest
+    public void deliver() {
+        if (events.size() == 1) {
+            recipient.onEvent(events.get(0));
+        } else if (!events.isEmpty()) {
+            recipient.onDigest(events);
+        }
+    }
+
+    public CustomerObserver getRecipient() { return recipient; }
+    public List<ProductEvent> getEvents() { return events; }
+}
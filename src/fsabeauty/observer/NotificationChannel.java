@@ -0,0 +1,6 @@
+package fsabeauty.observer;
+
+public interface NotificationChannel {
+    // Hands one message to the channel; delivery may happen later, together with others
+    void send(String recipient, String message);
+}
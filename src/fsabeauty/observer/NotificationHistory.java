@@ -0,0 +1,225 @@
+package fsabeauty.observer;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+// Bounded per-customer notification history.
+// The newest entries live in a fixed-size ring of primitive columns holding compact event
+// references (event id, type, product id, timestamp) plus the event itself, which is shared
+// with every other recipient and only rendered when the history is read; plain messages keep
+// their text. When the ring is full the oldest entry spills, with its rendered text, to the
+// shared NotificationJournal, so memory per customer stays constant however long they keep
+// watching products. Journal I/O runs outside the history lock: evicted entries wait in a
+// small queue that one thread at a time writes out, oldest first.
+public class NotificationHistory {
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final NotificationJournal journal;
+    private final long[] eventIds;
+    private final long[] timestamps;
+    private final byte[] types;
+    private final String[] productIds; // references to the products' own ID strings
+    private final Object[] contents; // the ProductEvent, or the text of a plain message
+    private final ArrayDeque<Entry> unspilled = new ArrayDeque<>(); // evicted, not yet journalled
+    private final Object spillLock = new Object();
+    private int next;
+    private int size;
+    private long spilledCount;
+    private long journalHead = NotificationJournal.NO_RECORD;
+    private long generation; // bumped by clear() so an in-flight spill is discarded
+
+    public NotificationHistory() {
+        this(DEFAULT_CAPACITY, NotificationJournal.shared());
+    }
+
+    public NotificationHistory(int capacity, NotificationJournal journal) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.journal = journal;
+        this.eventIds = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.types = new byte[capacity];
+        this.productIds = new String[capacity];
+        this.contents = new Object[capacity];
+    }
+
+    public void record(ProductEvent event) {
+        record(event.getEventId(), event.getType(), event.getProductId(), event, event.getTimestamp());
+    }
+
+    // A plain text notification that was not a product event
+    public void record(String message, long timestamp) {
+        record(0, null, null, message, timestamp);
+    }
+
+    private void record(long eventId, ProductEventType type, String productId, Object content, long timestamp) {
+        boolean evicted;
+        synchronized (this) {
+            evicted = size == eventIds.length;
+            if (evicted) {
+                unspilled.addLast(entryAt(next));
+            } else {
+                size++;
+            }
+            eventIds[next] = eventId;
+            timestamps[next] = timestamp;
+            types[next] = type == null ? -1 : (byte) type.ordinal();
+            productIds[next] = productId;
+            contents[next] = content;
+            next = (next + 1) % eventIds.length;
+        }
+        if (evicted) {
+            spillEvicted();
+        }
+    }
+
+    // Writes queued entries to the journal; the append happens without holding the history lock
+    private void spillEvicted() {
+        synchronized (spillLock) {
+            while (true) {
+                Entry entry;
+                long head;
+                long spillGeneration;
+                synchronized (this) {
+                    entry = unspilled.peekFirst();
+                    if (entry == null) {
+                        return;
+                    }
+                    head = journalHead;
+                    spillGeneration = generation;
+                }
+
+                long offset = NotificationJournal.NO_RECORD;
+                try {
+                    offset = journal.append(head, entry);
+                } catch (IOException e) {
+                    // History is best effort; never fail a delivery because the journal is unavailable
+                    System.out.println("⚠️ Could not journal notification history: " + e.getMessage());
+                }
+                synchronized (this) {
+                    if (spillGeneration == generation) {
+                        unspilled.pollFirst();
+                        if (offset != NotificationJournal.NO_RECORD) {
+                            journalHead = offset;
+                            spilledCount++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Total number of entries, in memory and journalled
+    public synchronized long size() {
+        return size + unspilled.size() + spilledCount;
+    }
+
+    public synchronized int inMemorySize() {
+        return size;
+    }
+
+    // Reads one page of history, newest first; older pages are read from the journal on demand,
+    // after the in-memory part has been copied and the lock released
+    public List<Entry> page(int pageIndex, int pageSize) {
+        if (pageIndex < 0 || pageSize < 1) {
+            throw new IllegalArgumentException("Page index must be non-negative and page size positive");
+        }
+        long from = (long) pageIndex * pageSize;
+        long to;
+        List<Entry> entries = new ArrayList<>();
+        long position = from;
+        long buffered;
+        long offset;
+
+        synchronized (this) {
+            to = Math.min(size(), from + pageSize);
+            for (; position < to && position < size; position++) {
+                entries.add(entryAt(Math.floorMod(next - 1 - (int) position, eventIds.length)));
+            }
+            buffered = size + unspilled.size();
+            if (position < to && position < buffered) {
+                Iterator<Entry> newestFirst = unspilled.descendingIterator();
+                for (long skip = position - size; skip > 0; skip--) {
+                    newestFirst.next();
+                }
+                for (; position < to && position < buffered; position++) {
+                    entries.add(newestFirst.next());
+                }
+            }
+            offset = journalHead;
+        }
+        if (position < to) {
+            try {
+                for (long skip = position - buffered; skip > 0 && offset != NotificationJournal.NO_RECORD; skip--) {
+                    offset = journal.previous(offset);
+                }
+                long[] prev = new long[1];
+                for (; position < to && offset != NotificationJournal.NO_RECORD; position++) {
+                    entries.add(journal.read(offset, prev));
+                    offset = prev[0];
+                }
+            } catch (IOException e) {
+                System.out.println("⚠️ Could not read notification journal: " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        spilledCount = 0;
+        journalHead = NotificationJournal.NO_RECORD;
+        generation++;
+        unspilled.clear();
+        Arrays.fill(productIds, null);
+        Arrays.fill(contents, null);
+    }
+
+    private Entry entryAt(int slot) {
+        byte type = types[slot];
+        Object content = contents[slot];
+        String message = content instanceof ProductEvent ? ((ProductEvent) content).getMessage() : (String) content;
+        return new Entry(eventIds[slot], type < 0 ? null : ProductEventType.values()[type],
+                productIds[slot], message, timestamps[slot]);
+    }
+
+    // One history entry; a null type marks a plain text notification that was not a product event
+    public static final class Entry {
+        private final long eventId;
+        private final ProductEventType type;
+        private final String productId;
+        private final String message;
+        private final long timestamp;
+
+        public Entry(long eventId, ProductEventType type, String productId, String message, long timestamp) {
+            this.eventId = eventId;
+            this.type = type;
+            this.productId = productId;
+            this.message = message;
+            this.timestamp = timestamp;
+        }
+
+        public long getEventId() { return eventId; }
+        public ProductEventType getType() { return type; }
+        public String getProductId() { return productId; }
+        public String getMessage() { return message; }
+        public long getTimestamp() { return timestamp; }
+
+        @Override
+        public String toString() {
+            String when = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(timestamp));
+            if (type == null) {
+                return when + " | " + message;
+            }
+            return when + " | " + type + " | " + productId + " (event #" + eventId + ") | " + message;
+        }
+    }
+}
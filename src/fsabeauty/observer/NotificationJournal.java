@@ -0,0 +1,157 @@
+package fsabeauty.observer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Append-only file holding notification history entries that no longer fit in memory.
+// Every record stores the offset of the same customer's previous record, so all customers
+// share one file and each history is a backward-linked chain that can be paged from the
+// newest entry without scanning anyone else's records.
+// The chains start from in-memory histories, so a journal is only valid for the process that
+// wrote it: the file is truncated when it is first opened.
+//
+// Record layout: prevOffset(8) eventId(8) timestamp(8) type(1) productIdLength(2)
+//                messageLength(4) productId(UTF-8) message(UTF-8)
+public class NotificationJournal implements Closeable {
+    public static final long NO_RECORD = -1;
+    // System property naming the shared journal file; defaults to DEFAULT_FILE in the working directory
+    public static final String FILE_PROPERTY = "fsabeauty.notification.journal";
+    public static final String DEFAULT_FILE = "notification-journal.log";
+
+    private static final int HEADER_BYTES = 8 + 8 + 8 + 1 + 2 + 4;
+    private static volatile NotificationJournal shared;
+
+    private final Path file;
+    private FileChannel channel;
+    private boolean opened;
+
+    public NotificationJournal(Path file) {
+        this.file = file;
+    }
+
+    // Process-wide journal at the configured path; the file is opened on the first spilled entry
+    public static NotificationJournal shared() {
+        NotificationJournal journal = shared;
+        if (journal == null) {
+            synchronized (NotificationJournal.class) {
+                journal = shared;
+                if (journal == null) {
+                    journal = new NotificationJournal(Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)));
+                    shared = journal;
+                }
+            }
+        }
+        return journal;
+    }
+
+    // Moves the shared journal, e.g. to the application's data directory. Histories created
+    // before the call keep the journal they were created with
+    public static synchronized void configureShared(Path file) {
+        shared = new NotificationJournal(file);
+    }
+
+    // Appends one entry and returns its offset, to be passed as prevOffset of the next one
+    public synchronized long append(long prevOffset, NotificationHistory.Entry entry) throws IOException {
+        byte[] productId = entry.getProductId() == null
+                ? new byte[0]
+                : entry.getProductId().getBytes(StandardCharsets.UTF_8);
+        byte[] message = entry.getMessage() == null
+                ? new byte[0]
+                : entry.getMessage().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + productId.length + message.length);
+        record.putLong(prevOffset)
+                .putLong(entry.getEventId())
+                .putLong(entry.getTimestamp())
+                .put(entry.getType() == null ? -1 : (byte) entry.getType().ordinal())
+                .putShort(entry.getProductId() == null ? -1 : (short) productId.length)
+                .putInt(entry.getMessage() == null ? -1 : message.length)
+                .put(productId)
+                .put(message)
+                .flip();
+
+        FileChannel out = channel();
+        long offset = out.size();
+        while (record.hasRemaining()) {
+            out.write(record, offset + record.position());
+        }
+        return offset;
+    }
+
+    // Reads the record at an offset; the previous record's offset is reported through prevOut[0]
+    public synchronized NotificationHistory.Entry read(long offset, long[] prevOut) throws IOException {
+        FileChannel in = channel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(in, header, offset);
+        header.flip();
+        long prevOffset = header.getLong();
+        long eventId = header.getLong();
+        long timestamp = header.getLong();
+        byte type = header.get();
+        short productIdLength = header.getShort();
+        int messageLength = header.getInt();
+
+        ByteBuffer bytes = ByteBuffer.allocate(Math.max(0, productIdLength) + Math.max(0, messageLength));
+        readFully(in, bytes, offset + HEADER_BYTES);
+        String productId = productIdLength < 0
+                ? null
+                : new String(bytes.array(), 0, productIdLength, StandardCharsets.UTF_8);
+        String message = messageLength < 0
+                ? null
+                : new String(bytes.array(), Math.max(0, productIdLength), messageLength, StandardCharsets.UTF_8);
+        prevOut[0] = prevOffset;
+        return new NotificationHistory.Entry(eventId, type < 0 ? null : ProductEventType.values()[type],
+                productId, message, timestamp);
+    }
+
+    // Follows the chain backwards from an offset without decoding the entries
+    public synchronized long previous(long offset) throws IOException {
+        ByteBuffer prev = ByteBuffer.allocate(8);
+        readFully(channel(), prev, offset);
+        prev.flip();
+        return prev.getLong();
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated notification journal record at offset " + offset);
+            }
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (!opened) {
+                // Records of an earlier run are unreachable; start empty
+                Files.deleteIfExists(file);
+                opened = true;
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package fsabeauty.observer;
+
+public class PriceChanged extends ProductEvent {
+    private final double oldPrice;
+    private final double newPrice;
+
+    public PriceChanged(String productId, String productName, double oldPrice, double newPrice) {
+        super(productId, productName);
+        this.oldPrice = oldPrice;
+        this.newPrice = newPrice;
+    }
+
+    @Override
+    public ProductEventType getType() { return ProductEventType.PRICE_CHANGED; }
+
+    public double getOldPrice() { return oldPrice; }
+    public double getNewPrice() { return newPrice; }
+
+    public boolean isPriceDrop() { return newPrice < oldPrice; }
+
+    // Percentage saved compared to the old price (0 for increases)
+    public double getDropPercentage() {
+        return isPriceDrop() && oldPrice > 0 ? ((oldPrice - newPrice) / oldPrice) * 100 : 0.0;
+    }
+
+    @Override
+    public boolean isNotable() {
+        return newPrice != oldPrice;
+    }
+
+    @Override
+    protected String render() {
+        if (isPriceDrop()) {
+            return String.format("💰 Price drop! '%s' is now $%.2f (%.1f%% off)!",
+                    getProductName(), newPrice, getDropPercentage());
+        }
+        return String.format("📈 Price update: '%s' is now $%.2f", getProductName(), newPrice);
+    }
+}
@@ -0,0 +1,280 @@
+package fsabeauty.observer;
+
+import java.util.Arrays;
+
+// Append-only price time series of one product.
+// Prices are kept as whole cents. Points are grouped in blocks of BLOCK_SIZE: the first point of a
+// block is stored in full in primitive header columns, the rest as varint-encoded deltas (time since
+// the previous change, zigzag price difference) in one shared byte array - typically 3-5 bytes per
+// change. Each block also keeps its min, max and time-weighted price area, so range queries read
+// summaries for the blocks fully inside the range and decode at most the two blocks at its edges.
+public class PriceHistory {
+    public static final int BLOCK_SIZE = 64;
+    private static final int INITIAL_BLOCKS = 1;
+
+    // Block header columns
+    private long[] blockStartTimes = new long[INITIAL_BLOCKS];
+    private long[] blockStartCents = new long[INITIAL_BLOCKS];
+    private int[] blockOffsets = new int[INITIAL_BLOCKS]; // where the block's deltas start in data
+    private int[] blockCounts = new int[INITIAL_BLOCKS];
+    private long[] blockMinCents = new long[INITIAL_BLOCKS];
+    private long[] blockMaxCents = new long[INITIAL_BLOCKS];
+    private double[] blockAreas = new double[INITIAL_BLOCKS]; // cents x ms until the next block starts
+    private int blockCount;
+
+    private byte[] data = new byte[16];
+    private int dataLength;
+
+    private int size;
+    private long lastTime;
+    private long lastCents;
+    private double openArea; // area of the last block up to lastTime
+
+    public PriceHistory(long timestamp, double initialPrice) {
+        record(timestamp, initialPrice);
+    }
+
+    // Appends a price change; a timestamp older than the last change is treated as simultaneous with it
+    public synchronized void record(long timestamp, double price) {
+        long cents = Math.round(price * 100);
+        if (size > 0 && timestamp < lastTime) {
+            timestamp = lastTime;
+        }
+
+        if (blockCount == 0 || blockCounts[blockCount - 1] == BLOCK_SIZE) {
+            if (blockCount > 0) {
+                blockAreas[blockCount - 1] = openArea + (double) lastCents * (timestamp - lastTime);
+            }
+            startBlock(timestamp, cents);
+            openArea = 0;
+        } else {
+            int block = blockCount - 1;
+            openArea += (double) lastCents * (timestamp - lastTime);
+            writeVarLong(timestamp - lastTime);
+            writeVarLong(zigzag(cents - lastCents));
+            blockCounts[block]++;
+            blockMinCents[block] = Math.min(blockMinCents[block], cents);
+            blockMaxCents[block] = Math.max(blockMaxCents[block], cents);
+        }
+        lastTime = timestamp;
+        lastCents = cents;
+        size++;
+    }
+
+    private void startBlock(long timestamp, long cents) {
+        if (blockCount == blockStartTimes.length) {
+            int capacity = blockCount * 2;
+            blockStartTimes = Arrays.copyOf(blockStartTimes, capacity);
+            blockStartCents = Arrays.copyOf(blockStartCents, capacity);
+            blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            blockCounts = Arrays.copyOf(blockCounts, capacity);
+            blockMinCents = Arrays.copyOf(blockMinCents, capacity);
+            blockMaxCents = Arrays.copyOf(blockMaxCents, capacity);
+            blockAreas = Arrays.copyOf(blockAreas, capacity);
+        }
+        blockStartTimes[blockCount] = timestamp;
+        blockStartCents[blockCount] = cents;
+        blockOffsets[blockCount] = dataLength;
+        blockCounts[blockCount] = 1;
+        blockMinCents[blockCount] = cents;
+        blockMaxCents[blockCount] = cents;
+        blockCount++;
+    }
+
+    // Number of recorded prices, the initial one included
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getFirstTimestamp() {
+        return blockStartTimes[0];
+    }
+
+    public synchronized long getLastTimestamp() {
+        return lastTime;
+    }
+
+    // Price in effect at the given time, NaN before the history begins
+    public synchronized double priceAt(long timestamp) {
+        if (timestamp < blockStartTimes[0]) {
+            return Double.NaN;
+        }
+        int block = blockAt(timestamp);
+        BlockCursor cursor = new BlockCursor(block);
+        long cents = cursor.cents;
+        while (cursor.next() && cursor.time <= timestamp) {
+            cents = cursor.cents;
+        }
+        return cents / 100.0;
+    }
+
+    // Min, max and time-weighted average of the prices in effect during [from, to]
+    public synchronized PriceStatistics range(long from, long to) {
+        if (to < from) {
+            throw new IllegalArgumentException("Range end before its start");
+        }
+        if (to < blockStartTimes[0]) {
+            return PriceStatistics.EMPTY;
+        }
+        from = Math.max(from, blockStartTimes[0]);
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        double area = 0;
+        int changes = 0;
+        int firstBlock = firstBlockFrom(from);
+        int lastBlock = blockAt(to);
+        for (int block = firstBlock; block <= lastBlock; block++) {
+            boolean sealed = block < blockCount - 1;
+            if (sealed && blockStartTimes[block] >= from && blockStartTimes[block + 1] <= to) {
+                min = Math.min(min, blockMinCents[block]);
+                max = Math.max(max, blockMaxCents[block]);
+                area += blockAreas[block];
+                changes += blockCounts[block];
+                continue;
+            }
+
+            // Edge block: walk its points and clip each one's time in effect to the range
+            long blockEnd = sealed ? blockStartTimes[block + 1] : Math.max(to, lastTime);
+            BlockCursor cursor = new BlockCursor(block);
+            boolean more = true;
+            while (more) {
+                long time = cursor.time;
+                long cents = cursor.cents;
+                more = cursor.next();
+                long until = more ? cursor.time : blockEnd;
+                if (time > to) {
+                    break;
+                }
+                if (until > from || time >= from) {
+                    min = Math.min(min, cents);
+                    max = Math.max(max, cents);
+                    area += (double) cents * (Math.min(until, to) - Math.max(time, from));
+                    if (time >= from) {
+                        changes++;
+                    }
+                }
+            }
+        }
+        double average = to == from ? priceAt(from) : area / (to - from) / 100.0;
+        return new PriceStatistics(from, to, min / 100.0, max / 100.0, average, changes);
+    }
+
+    // Lowest price in effect at any time during the last `days` days, e.g. the 30-day prior price
+    public double lowestPriceInDays(int days, long now) {
+        return range(now - days * 86_400_000L, now).getMin();
+    }
+
+    // Visits the price in effect at `from` and every change up to `to`, e.g. to draw a chart
+    public synchronized void forEach(long from, long to, PricePointVisitor visitor) {
+        if (to < blockStartTimes[0] || to < from) {
+            return;
+        }
+        from = Math.max(from, blockStartTimes[0]);
+        for (int block = firstBlockFrom(from); block < blockCount; block++) {
+            BlockCursor cursor = new BlockCursor(block);
+            boolean more = true;
+            while (more) {
+                long time = cursor.time;
+                long cents = cursor.cents;
+                more = cursor.next();
+                if (time > to) {
+                    return;
+                }
+                boolean supersededBeforeFrom = more ? cursor.time <= from : block < blockCount - 1
+                        && blockStartTimes[block + 1] <= from;
+                if (time >= from || !supersededBeforeFrom) {
+                    visitor.visit(time, cents / 100.0);
+                }
+            }
+        }
+    }
+
+    // Approximate bytes held by this history
+    public synchronized long getMemoryBytes() {
+        return data.length + (long) blockStartTimes.length * (8 + 8 + 4 + 4 + 8 + 8 + 8) + 96;
+    }
+
+    // Last block starting at or before the timestamp (0 if it precedes the history)
+    private int blockAt(long timestamp) {
+        int index = Arrays.binarySearch(blockStartTimes, 0, blockCount, timestamp);
+        if (index < 0) {
+            return Math.max(0, -index - 2);
+        }
+        // Several blocks may start at the same millisecond; take the last one
+        while (index + 1 < blockCount && blockStartTimes[index + 1] == timestamp) {
+            index++;
+        }
+        return index;
+    }
+
+    // First block that may hold a point at or after the timestamp: the last one starting before it,
+    // since a price replaced in the same millisecond may end that block and open the next ones
+    private int firstBlockFrom(long timestamp) {
+        return blockAt(timestamp - 1);
+    }
+
+    private void writeVarLong(long value) {
+        if (dataLength + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + 10));
+        }
+        while ((value & ~0x7FL) != 0) {
+            data[dataLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[dataLength++] = (byte) value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Decodes one block point by point, starting on its first point; caller holds the lock
+    private final class BlockCursor {
+        private final int remainingEnd;
+        private int position;
+        private int index;
+        long time;
+        long cents;
+
+        BlockCursor(int block) {
+            this.time = blockStartTimes[block];
+            this.cents = blockStartCents[block];
+            this.position = blockOffsets[block];
+            this.remainingEnd = blockCounts[block];
+            this.index = 1;
+        }
+
+        // Moves to the next point of the block; false at its end
+        boolean next() {
+            if (index >= remainingEnd) {
+                return false;
+            }
+            time += readVarLong();
+            cents += unzigzag(readVarLong());
+            index++;
+            return true;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    // Receives the points of a price history in time order
+    public interface PricePointVisitor {
+        void visit(long timestamp, double price);
+    }
+}
@@ -0,0 +1,37 @@
+package fsabeauty.observer;
+
+// Summary of a product's prices over a time range; average is weighted by how long each price held
+public final class PriceStatistics {
+    public static final PriceStatistics EMPTY = new PriceStatistics(0, 0, Double.NaN, Double.NaN, Double.NaN, 0);
+
+    private final long from;
+    private final long to;
+    private final double min;
+    private final double max;
+    private final double average;
+    private final int changes;
+
+    public PriceStatistics(long from, long to, double min, double max, double average, int changes) {
+        this.from = from;
+        this.to = to;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.changes = changes;
+    }
+
+    public boolean isEmpty() { return Double.isNaN(min); }
+    public long getFrom() { return from; }
+    public long getTo() { return to; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public double getAverage() { return average; }
+    // Prices recorded within the range (the one already in effect at its start not counted)
+    public int getChanges() { return changes; }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "no price history in range"
+                : String.format("min $%.2f, max $%.2f, avg $%.2f, %d change(s)", min, max, average, changes);
+    }
+}
@@ -1,7 +1,15 @@
 package fsabeauty.observer;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
 
 public class Product implements ProductSubject {
     private String productId;
@@ -11,7 +19,15 @@ public class Product implements ProductSubject {
     private int stock;
     private boolean onSale;
     private double discountPercentage;
-    private List<CustomerObserver> observers;
+    private final List<ProductSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<ProductChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<SubscriptionListener> subscriptionListeners = new CopyOnWriteArrayList<>();
+    private volatile EventDispatcher dispatcher = EventDispatcher.DIRECT;
+    private volatile String renderedInfo; // cached getProductInfo() text, cleared by every mutation
+    private final AtomicLong prunedSubscriptions = new AtomicLong();
+    private final PriceHistory priceHistory; // prices charged, sale discounts applied
+    private volatile EventStream<ProductEvent> eventStream; // created on first events() call
+    private final CopyOnWriteArrayList<EventStream<ProductEvent>> eventSinks = new CopyOnWriteArrayList<>(); // own stream + shared ones
 
     // Constructor - initializes product with basic information
     public Product(String productId, String name, String brand, double price, int stock) {
@@ -20,104 +36,344 @@ public class Product implements ProductSubject {
         this.brand = brand;
         this.price = price;
         this.stock = stock;
-        this.observers = new ArrayList<>();
         this.onSale = false;
         this.discountPercentage = 0.0;
+        this.priceHistory = new PriceHistory(System.currentTimeMillis(), price);
     }
 
     // Update stock and notify observers about inventory changes
     public void setStock(int newStock) {
-        int oldStock = this.stock;
-        this.stock = newStock;
+        StockChanged event;
+        synchronized (this) {
+            event = applyStock(newStock);
+            renderedInfo = null;
+        }
+        fireChanged();
+        publish(event);
+    }
 
-        // Notify when product comes back in stock
-        if (oldStock == 0 && newStock > 0) {
-            notifyObservers("🎉 Product '" + name + "' is back in stock! Only " + newStock + " items available.");
+    // Update price and notify observers about price changes
+    public void setPrice(double newPrice) {
+        PriceChanged event = setPriceDeferred(newPrice);
+        if (event != null) {
+            publish(event);
         }
+    }
 
-        // Notify when stock is low
-        if (newStock > 0 && newStock <= 3) {
-            notifyObservers("  Low stock alert! '" + name + "' has only " + newStock + " items left.");
+    // Update price but hand the event back to the caller (bulk updates send digests instead)
+    public PriceChanged setPriceDeferred(double newPrice) {
+        PriceChanged event;
+        synchronized (this) {
+            event = applyPrice(newPrice);
+            renderedInfo = null;
         }
+        fireChanged();
+        return event;
+    }
 
-        // Notify when out of stock
-        if (oldStock > 0 && newStock == 0) {
-            notifyObservers(" Sorry! '" + name + "' is now out of stock. We'll notify you when it's back.");
+    // Same, but the new price is computed from the current one under the product lock, so a
+    // concurrent price change is never overwritten by an adjustment of a stale price
+    public PriceChanged adjustPriceDeferred(DoubleUnaryOperator adjustment) {
+        PriceChanged event;
+        synchronized (this) {
+            event = applyPrice(adjustment.applyAsDouble(price));
+            renderedInfo = null;
         }
+        fireChanged();
+        return event;
     }
 
-    // Update price and notify observers about price changes
-    public void setPrice(double newPrice) {
+    // Apply a catalog feed row in one step - each watcher gets a single combined notification
+    public void applyFeedUpdate(String newName, String newBrand, double newPrice, int newStock) {
+        List<ProductEvent> events = new ArrayList<>(2);
+        synchronized (this) {
+            this.name = newName;
+            this.brand = newBrand;
+            PriceChanged priceEvent = applyPrice(newPrice);
+            if (priceEvent != null) {
+                events.add(priceEvent);
+            }
+            events.add(applyStock(newStock));
+            renderedInfo = null;
+        }
+        fireChanged();
+        publishAll(events);
+    }
+
+    // Change stock and describe the transition without notifying anyone
+    private StockChanged applyStock(int newStock) {
+        int oldStock = this.stock;
+        this.stock = newStock;
+        return new StockChanged(productId, name, oldStock, newStock);
+    }
+
+    // Change price and describe the transition without notifying anyone (null when unchanged)
+    private PriceChanged applyPrice(double newPrice) {
         double oldPrice = this.price;
         this.price = newPrice;
-
-        // Notify about price drop
-        if (newPrice < oldPrice) {
-            double discount = ((oldPrice - newPrice) / oldPrice) * 100;
-            this.discountPercentage = discount;
-            notifyObservers(String.format("💰 Price drop! '%s' is now $%.2f (%.1f%% off)!",
-                    name, newPrice, discount));
+        if (newPrice == oldPrice) {
+            return null;
         }
+        priceHistory.record(System.currentTimeMillis(), effectivePrice());
 
-        // Notify about price increase
-        if (newPrice > oldPrice) {
-            notifyObservers(String.format("📈 Price update: '%s' is now $%.2f", name, newPrice));
+        PriceChanged event = new PriceChanged(productId, name, oldPrice, newPrice);
+        // During a sale the discount is the sale's own
+        if (event.isPriceDrop() && !onSale) {
+            this.discountPercentage = event.getDropPercentage();
         }
+        return event;
     }
 
     // Set sale status and notify about special offers
     public void setOnSale(boolean onSale, double discountPercentage) {
-        this.onSale = onSale;
-        this.discountPercentage = discountPercentage;
+        SaleStarted event = setOnSaleDeferred(onSale, discountPercentage);
+        if (event != null) {
+            publish(event);
+        }
+    }
 
-        if (onSale) {
-            double salePrice = price * (1 - discountPercentage / 100);
-            notifyObservers(String.format("🔥 SALE! '%s' is now $%.2f (%.1f%% off)!",
-                    name, salePrice, discountPercentage));
+    // Set sale status but hand the event back to the caller (null when the sale ends)
+    public SaleStarted setOnSaleDeferred(boolean onSale, double discountPercentage) {
+        SaleStarted event = null;
+        synchronized (this) {
+            double oldEffectivePrice = effectivePrice();
+            this.onSale = onSale;
+            this.discountPercentage = discountPercentage;
+            double newEffectivePrice = effectivePrice();
+            if (newEffectivePrice != oldEffectivePrice) {
+                priceHistory.record(System.currentTimeMillis(), newEffectivePrice);
+            }
+            if (onSale) {
+                event = new SaleStarted(productId, name, price, discountPercentage);
+            }
+            renderedInfo = null;
         }
+        fireChanged();
+        return event;
+    }
+
+    // Price customers pay, the sale discount applied; caller holds the lock
+    private double effectivePrice() {
+        return onSale ? price * (1 - discountPercentage / 100) : price;
     }
 
     // Announce new product features to observers
     public void addNewFeature(String feature) {
-        notifyObservers("✨ New feature! '" + name + "' now includes: " + feature);
+        publish(new FeatureAdded(productId, name, feature));
     }
 
     // Announce new product shades to observers
     public void restockWithNewShade(String shade) {
-        notifyObservers("🎨 New shade available! '" + name + "' now comes in " + shade);
+        publish(new NewShade(productId, name, shade));
+    }
+
+    // Internal hooks (catalog snapshots, caches) that must see every state change
+    public void addChangeListener(ProductChangeListener listener) {
+        if (!changeListeners.contains(listener)) {
+            changeListeners.add(listener);
+        }
+    }
+
+    public void removeChangeListener(ProductChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        for (ProductChangeListener listener : changeListeners) {
+            listener.productChanged(this);
+        }
+    }
+
+    // Store-level indexes that mirror who watches this product
+    public void addSubscriptionListener(SubscriptionListener listener) {
+        if (!subscriptionListeners.contains(listener)) {
+            subscriptionListeners.add(listener);
+        }
+    }
+
+    public void removeSubscriptionListener(SubscriptionListener listener) {
+        subscriptionListeners.remove(listener);
     }
 
     // Subject interface implementation - observer management
     @Override
     public void registerObserver(CustomerObserver observer) {
-        if (!observers.contains(observer)) {
-            observers.add(observer);
+        registerObserver(observer, EventFilters.notable());
+    }
+
+    @Override
+    public void registerObserver(CustomerObserver observer, Predicate<ProductEvent> filter) {
+        if (findSubscription(observer) == null) {
+            subscriptions.add(new ProductSubscription(observer, filter));
             System.out.println("👤 " + observer.getName() + " started watching " + name);
+            for (SubscriptionListener listener : subscriptionListeners) {
+                listener.subscribed(this, observer);
+            }
+        }
+    }
+
+    // Weak registration: the product does not keep the observer alive, and once it is collected
+    // the subscription is pruned at the next notification. Meant for session-scoped listeners,
+    // so store-level indexes are not told (they would pin the observer)
+    public void registerWeakObserver(CustomerObserver observer) {
+        registerWeakObserver(observer, EventFilters.notable());
+    }
+
+    public void registerWeakObserver(CustomerObserver observer, Predicate<ProductEvent> filter) {
+        if (findSubscription(observer) == null) {
+            subscriptions.add(ProductSubscription.weak(observer, filter));
+            System.out.println("👤 " + observer.getName() + " started watching " + name + " for this session");
         }
     }
 
     @Override
     public void removeObserver(CustomerObserver observer) {
-        observers.remove(observer);
+        ProductSubscription subscription = findSubscription(observer);
+        if (subscription != null && subscriptions.remove(subscription) && !subscription.isWeak()) {
+            for (SubscriptionListener listener : subscriptionListeners) {
+                listener.unsubscribed(this, observer);
+            }
+        }
         System.out.println( observer.getName() + " stopped watching " + name);
     }
 
     @Override
     public void notifyObservers(String message) {
-        if (observers.isEmpty()) {
+        publish(new Announcement(productId, name, message));
+    }
+
+    // Hands the event to the dispatcher (direct delivery unless a coalescing/async one is installed)
+    @Override
+    public void publish(ProductEvent event) {
+        publishAll(Collections.singletonList(event));
+    }
+
+    // Several events of one change - each recipient gets the ones it accepts as one notification
+    public void publishAll(List<ProductEvent> events) {
+        if (!events.isEmpty()) {
+            publishToStream(events);
+            dispatcher.dispatch(this, events);
+        }
+    }
+
+    // A change of several products at once (bulk price updates): every product's stream gets its
+    // events, and each dispatcher gets its products as one batch so customers get one digest
+    public static void publishBatch(Map<Product, List<ProductEvent>> changes) {
+        Map<EventDispatcher, Map<Product, List<ProductEvent>>> byDispatcher = new LinkedHashMap<>();
+        for (Map.Entry<Product, List<ProductEvent>> change : changes.entrySet()) {
+            if (change.getValue().isEmpty()) {
+                continue;
+            }
+            Product product = change.getKey();
+            product.publishToStream(change.getValue());
+            byDispatcher.computeIfAbsent(product.dispatcher, d -> new LinkedHashMap<>())
+                    .put(product, change.getValue());
+        }
+        for (Map.Entry<EventDispatcher, Map<Product, List<ProductEvent>>> batch : byDispatcher.entrySet()) {
+            batch.getKey().dispatchAll(batch.getValue());
+        }
+    }
+
+    private void publishToStream(List<ProductEvent> events) {
+        for (EventStream<ProductEvent> sink : eventSinks) {
+            for (ProductEvent event : events) {
+                sink.publish(event);
+            }
+        }
+    }
+
+    // Pull-based stream of this product's events for internal consumers (analytics, search sync, ...)
+    public Flow.Publisher<ProductEvent> events() {
+        EventStream<ProductEvent> stream = eventStream;
+        if (stream == null) {
+            synchronized (this) {
+                stream = eventStream;
+                if (stream == null) {
+                    stream = new EventStream<>(productId + " events");
+                    eventSinks.add(stream);
+                    eventStream = stream;
+                }
+            }
+        }
+        return stream;
+    }
+
+    // Also publishes into a stream shared with other products (e.g. the catalog-wide one);
+    // subscribers of events() keep receiving this product's events
+    public void addEventStream(EventStream<ProductEvent> stream) {
+        if (stream != null) {
+            eventSinks.addIfAbsent(stream);
+        }
+    }
+
+    public void removeEventStream(EventStream<ProductEvent> stream) {
+        if (stream != eventStream) {
+            eventSinks.remove(stream);
+        }
+    }
+
+    // Filters run first; only accepted recipients cause the event text to be rendered
+    public void deliver(List<ProductEvent> events) {
+        List<ProductSubscription> recipients = new ArrayList<>();
+        List<List<ProductEvent>> acceptedEvents = new ArrayList<>();
+        for (ProductSubscription subscription : liveSubscriptions()) {
+            List<ProductEvent> accepted = subscription.accepted(events);
+            if (!accepted.isEmpty()) {
+                recipients.add(subscription);
+                acceptedEvents.add(accepted);
+            }
+        }
+        if (recipients.isEmpty()) {
             return;
         }
 
-        System.out.println("\n🔔 Notifying " + observers.size() + " observer(s) about: " + name);
-        for (CustomerObserver observer : observers) {
-            observer.update(message);
+        System.out.println("\n🔔 Notifying " + recipients.size() + " observer(s) about: " + name);
+        for (int i = 0; i < recipients.size(); i++) {
+            recipients.get(i).deliver(acceptedEvents.get(i));
         }
     }
 
+    public void setDispatcher(EventDispatcher dispatcher) {
+        this.dispatcher = dispatcher == null ? EventDispatcher.DIRECT : dispatcher;
+    }
+
+    public EventDispatcher getDispatcher() { return dispatcher; }
+
+    // Live subscriptions with weak ones pinned for the caller; collected observers are pruned on the way
+    private List<ProductSubscription> liveSubscriptions() {
+        List<ProductSubscription> live = new ArrayList<>(subscriptions.size());
+        for (ProductSubscription subscription : subscriptions) {
+            ProductSubscription pinned = subscription.pin();
+            if (pinned != null) {
+                live.add(pinned);
+            } else if (subscriptions.remove(subscription)) {
+                prunedSubscriptions.incrementAndGet();
+            }
+        }
+        return live;
+    }
+
+    private ProductSubscription findSubscription(CustomerObserver observer) {
+        for (ProductSubscription subscription : subscriptions) {
+            if (observer.equals(subscription.getObserver())) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    // Formatted once per product state; the mutators above drop the cached text
     @Override
     public String getProductInfo() {
-        return String.format("Product[ID: %s, Name: %s, Brand: %s, Price: $%.2f, Stock: %d, OnSale: %s]",
-                productId, name, brand, price, stock, onSale);
+        String info = renderedInfo;
+        if (info == null) {
+            synchronized (this) {
+                info = String.format("Product[ID: %s, Name: %s, Brand: %s, Price: $%.2f, Stock: %d, OnSale: %s]",
+                        productId, name, brand, price, stock, onSale);
+                renderedInfo = info;
+            }
+        }
+        return info;
     }
 
     // Getters for product properties
@@ -128,25 +384,75 @@ public class Product implements ProductSubject {
     public int getStock() { return stock; }
     public boolean isOnSale() { return onSale; }
     public double getDiscountPercentage() { return discountPercentage; }
-    public int getObserverCount() { return observers.size(); }
-    public List<CustomerObserver> getObservers() { return new ArrayList<>(observers); }
+    public PriceHistory getPriceHistory() { return priceHistory; }
+
+    // Lowest price charged during the last `days` days, e.g. the 30-day reference for advertised discounts
+    public double getLowestPriceInDays(int days) {
+        return priceHistory.lowestPriceInDays(days, System.currentTimeMillis());
+    }
+    public int getObserverCount() { return subscriptions.size(); }
+    public List<ProductSubscription> getSubscriptions() { return liveSubscriptions(); }
+
+    public List<CustomerObserver> getObservers() {
+        List<CustomerObserver> observers = new ArrayList<>(subscriptions.size());
+        for (ProductSubscription subscription : liveSubscriptions()) {
+            observers.add(subscription.getObserver());
+        }
+        return observers;
+    }
+
+    // Leak detection: weak subscriptions whose observer was collected but not yet pruned
+    public int getStaleSubscriptionCount() {
+        int stale = 0;
+        for (ProductSubscription subscription : subscriptions) {
+            if (subscription.isStale()) {
+                stale++;
+            }
+        }
+        return stale;
+    }
+
+    // Share of held subscriptions that are stale; stays high if the product is rarely notified
+    public double getStaleSubscriptionRatio() {
+        int held = subscriptions.size();
+        return held == 0 ? 0.0 : (double) getStaleSubscriptionCount() / held;
+    }
+
+    public int getWeakSubscriptionCount() {
+        int weak = 0;
+        for (ProductSubscription subscription : subscriptions) {
+            if (subscription.isWeak()) {
+                weak++;
+            }
+        }
+        return weak;
+    }
+
+    // Stale subscriptions removed during fan-out so far
+    public long getPrunedSubscriptionCount() { return prunedSubscriptions.get(); }
 
     // Display all customers watching this product
     public void displayObserverList() {
-        if (observers.isEmpty()) {
+        if (subscriptions.isEmpty()) {
             System.out.println("No observers watching " + name);
             return;
         }
 
         System.out.println("\n Observers watching " + name + ":");
-        for (CustomerObserver observer : observers) {
-            System.out.println("   • " + observer.getCustomerInfo());
+        for (ProductSubscription subscription : liveSubscriptions()) {
+            System.out.println("   • " + subscription.getObserver().getCustomerInfo());
         }
     }
 
     // Remove all observers from this product
     public void clearAllObservers() {
         System.out.println("🧹 Clearing all observers from " + name);
-        observers.clear();
+        for (ProductSubscription subscription : subscriptions) {
+            if (subscriptions.remove(subscription) && !subscription.isWeak()) {
+                for (SubscriptionListener listener : subscriptionListeners) {
+                    listener.unsubscribed(this, subscription.getObserver());
+                }
+            }
+        }
     }
 }
\ No newline at end of file
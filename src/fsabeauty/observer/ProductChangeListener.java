@@ -0,0 +1,6 @@
+package fsabeauty.observer;
+
+public interface ProductChangeListener {
+    // Called after a product's price, stock, sale status or descriptive data changed
+    void productChanged(Product product);
+}
@@ -0,0 +1,72 @@
+package fsabeauty.observer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Base class for typed product change events.
+// Subclasses expose the raw values (old/new stock, prices, ...) so subscription filters
+// can decide on primitives; the human-readable text is rendered lazily, at most once,
+// and only when a recipient actually asks for it.
+public abstract class ProductEvent {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long eventId;
+    private final long timestamp;
+    private final String productId;
+    private final String productName;
+    private volatile String message;
+
+    protected ProductEvent(String productId, String productName) {
+        this.eventId = SEQUENCE.incrementAndGet();
+        this.timestamp = System.currentTimeMillis();
+        this.productId = productId;
+        this.productName = productName;
+    }
+
+    public abstract ProductEventType getType();
+
+    // Builds the notification text; called at most once per event
+    protected abstract String render();
+
+    // Whether plain subscribers (no custom filter) are told about this event
+    public boolean isNotable() {
+        return true;
+    }
+
+    public String getMessage() {
+        String text = message;
+        if (text == null) {
+            text = render();
+            message = text;
+        }
+        return text;
+    }
+
+    // True once some recipient has asked for the text
+    public boolean isRendered() {
+        return message != null;
+    }
+
+    public long getEventId() { return eventId; }
+    public long getTimestamp() { return timestamp; }
+    public String getProductId() { return productId; }
+    public String getProductName() { return productName; }
+
+    // Joins several events into one message, used when a recipient gets a batch at once
+    public static String renderDigest(List<? extends ProductEvent> events) {
+        if (events.size() == 1) {
+            return events.get(0).getMessage();
+        }
+        List<String> messages = new ArrayList<>(events.size());
+        for (ProductEvent event : events) {
+            messages.add(event.getMessage());
+        }
+        return "📰 " + events.size() + " updates on products you watch: " + String.join(" | ", messages);
+    }
+
+    @Override
+    public String toString() {
+        return getType() + "#" + eventId + "[" + productId + "]";
+    }
+}
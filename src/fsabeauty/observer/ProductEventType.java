@@ -0,0 +1,10 @@
+package fsabeauty.observer;
+
+public enum ProductEventType {
+    STOCK_CHANGED,
+    PRICE_CHANGED,
+    SALE_STARTED,
+    NEW_SHADE,
+    NEW_FEATURE,
+    ANNOUNCEMENT
+}
@@ -1,15 +1,23 @@
 package fsabeauty.observer;
 
+import java.util.function.Predicate;
+
 public interface ProductSubject {
     // Register a new observer to receive product updates
     void registerObserver(CustomerObserver observer);
 
+    // Register an observer that only receives events accepted by the filter
+    void registerObserver(CustomerObserver observer, Predicate<ProductEvent> filter);
+
     // Remove an observer from receiving updates
     void removeObserver(CustomerObserver observer);
 
     // Notify all registered observers with a message
     void notifyObservers(String message);
 
+    // Deliver a typed event to every subscription whose filter accepts it
+    void publish(ProductEvent event);
+
     // Get formatted product information
     String getProductInfo();
-}
\ No newline at end of file
+}
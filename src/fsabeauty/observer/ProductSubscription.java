@@ -0,0 +1,87 @@
+package fsabeauty.observer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+// One observer's interest in one product: the filter runs on the typed event
+// before any text is produced, so ignored events cost no formatting
+public class ProductSubscription {
+    private final CustomerObserver observer; // null for a weak subscription that is not pinned
+    private final WeakReference<CustomerObserver> weakObserver; // null for a strong subscription
+    private final Predicate<ProductEvent> filter;
+
+    public ProductSubscription(CustomerObserver observer, Predicate<ProductEvent> filter) {
+        this(observer, null, filter);
+    }
+
+    private ProductSubscription(CustomerObserver observer, WeakReference<CustomerObserver> weakObserver,
+                                Predicate<ProductEvent> filter) {
+        this.observer = observer;
+        this.weakObserver = weakObserver;
+        this.filter = filter;
+    }
+
+    // A subscription that does not keep its observer alive, e.g. for session-scoped listeners
+    public static ProductSubscription weak(CustomerObserver observer, Predicate<ProductEvent> filter) {
+        return new ProductSubscription(null, new WeakReference<>(observer), filter);
+    }
+
+    public boolean isWeak() {
+        return weakObserver != null;
+    }
+
+    // True once a weak subscription's observer has been garbage collected
+    public boolean isStale() {
+        return getObserver() == null;
+    }
+
+    // Strongly held view for the duration of one fan-out; null if the observer is gone
+    ProductSubscription pin() {
+        if (observer != null) {
+            return this;
+        }
+        CustomerObserver target = weakObserver.get();
+        return target == null ? null : new ProductSubscription(target, weakObserver, filter);
+    }
+
+    public boolean accepts(ProductEvent event) {
+        return filter.test(event);
+    }
+
+    // The events this subscriber wants, in order; empty if none or if the observer is gone
+    public List<ProductEvent> accepted(List<ProductEvent> events) {
+        if (isStale()) {
+            return Collections.emptyList();
+        }
+        List<ProductEvent> accepted = new ArrayList<>(events.size());
+        for (ProductEvent event : events) {
+            if (filter.test(event)) {
+                accepted.add(event);
+            }
+        }
+        return accepted;
+    }
+
+    // Hands accepted events to the observer as one notification
+    public void deliver(List<ProductEvent> accepted) {
+        CustomerObserver target = getObserver();
+        if (target == null) {
+            return;
+        }
+        if (accepted.size() == 1) {
+            target.onEvent(accepted.get(0));
+        } else if (!accepted.isEmpty()) {
+            target.onDigest(accepted);
+        }
+    }
+
+    // Null only for a weak subscription whose observer was collected
+    public CustomerObserver getObserver() {
+        return observer != null ? observer : weakObserver.get();
+    }
+
+    public Predicate<ProductEvent> getFilter() { return filter; }
+}
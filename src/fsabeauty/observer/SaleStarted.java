@@ -0,0 +1,25 @@
+package fsabeauty.observer;
+
+public class SaleStarted extends ProductEvent {
+    private final double regularPrice;
+    private final double discountPercentage;
+
+    public SaleStarted(String productId, String productName, double regularPrice, double discountPercentage) {
+        super(productId, productName);
+        this.regularPrice = regularPrice;
+        this.discountPercentage = discountPercentage;
+    }
+
+    @Override
+    public ProductEventType getType() { return ProductEventType.SALE_STARTED; }
+
+    public double getRegularPrice() { return regularPrice; }
+    public double getDiscountPercentage() { return discountPercentage; }
+    public double getSalePrice() { return regularPrice * (1 - discountPercentage / 100); }
+
+    @Override
+    protected String render() {
+        return String.format("🔥 SALE! '%s' is now $%.2f (%.1f%% off)!",
+                getProductName(), getSalePrice(), discountPercentage);
+    }
+}
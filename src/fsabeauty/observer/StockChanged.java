@@ -0,0 +1,52 @@
+package fsabeauty.observer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StockChanged extends ProductEvent {
+    public static final int LOW_STOCK_THRESHOLD = 3;
+
+    private final int oldStock;
+    private final int newStock;
+
+    public StockChanged(String productId, String productName, int oldStock, int newStock) {
+        super(productId, productName);
+        this.oldStock = oldStock;
+        this.newStock = newStock;
+    }
+
+    @Override
+    public ProductEventType getType() { return ProductEventType.STOCK_CHANGED; }
+
+    public int getOldStock() { return oldStock; }
+    public int getNewStock() { return newStock; }
+
+    public boolean isBackInStock() { return oldStock == 0 && newStock > 0; }
+    public boolean isLowStock() { return newStock > 0 && newStock <= LOW_STOCK_THRESHOLD; }
+    public boolean isOutOfStock() { return oldStock > 0 && newStock == 0; }
+
+    // Ordinary stock movements (e.g. 10 -> 8) are only delivered to subscribers that ask for them
+    @Override
+    public boolean isNotable() {
+        return isBackInStock() || isLowStock() || isOutOfStock();
+    }
+
+    @Override
+    protected String render() {
+        String name = getProductName();
+        List<String> parts = new ArrayList<>();
+        if (isBackInStock()) {
+            parts.add("🎉 Product '" + name + "' is back in stock! Only " + newStock + " items available.");
+        }
+        if (isLowStock()) {
+            parts.add("  Low stock alert! '" + name + "' has only " + newStock + " items left.");
+        }
+        if (isOutOfStock()) {
+            parts.add(" Sorry! '" + name + "' is now out of stock. We'll notify you when it's back.");
+        }
+        if (parts.isEmpty()) {
+            parts.add("📦 Stock update: '" + name + "' now has " + newStock + " items.");
+        }
+        return String.join(" ", parts);
+    }
+}
@@ -0,0 +1,9 @@
+package fsabeauty.observer;
+
+public interface SubscriptionListener {
+    // Called after a customer started watching a product
+    void subscribed(Product product, CustomerObserver observer);
+
+    // Called after a customer stopped watching a product
+    void unsubscribed(Product product, CustomerObserver observer);
+}
@@ -1,4 +1,3 @@
-
 package fsabeauty.strategy;
 
 /**
@@ -6,20 +5,20 @@ package fsabeauty.strategy;
  * Handles the specific logic required for processing payments through Apple Pay.
  * This class encapsulates all Apple Pay related operations including token management
  * and device-specific payment processing.
+ * An instance created without a token is stateless and serves any number of concurrent
+ * {@link PaymentRequest}s carrying {@link Credentials}.
  */
 public class ApplePayPayment implements PaymentStrategy {
 
     /**
-     * Secure token provided by Apple Pay system for payment authorization
-     * This token represents the encrypted payment credentials
+     * The token and device this instance is bound to; null for a stateless instance serving requests
      */
-    private String applePayToken;
+    private final Credentials credentials;
 
     /**
-     * The specific Apple device used for making the payment
-     * Examples: iPhone, iPad, Apple Watch, etc.
+     * Provider the payment is authorized through; null to simulate a fixed processing delay
      */
-    private String device;
+    private final PaymentGateway gateway;
 
     /**
      * Constructs a new ApplePayPayment instance with required payment credentials
@@ -28,8 +27,29 @@ public class ApplePayPayment implements PaymentStrategy {
      * @param device the Apple device used for the payment transaction
      */
     public ApplePayPayment(String applePayToken, String device) {
-        this.applePayToken = applePayToken;
-        this.device = device;
+        this(applePayToken, device, null);
+    }
+
+    /**
+     * Constructs an ApplePayPayment that authorizes the token through a payment gateway
+     *
+     * @param applePayToken the secure payment token from Apple Pay system
+     * @param device the Apple device used for the payment transaction
+     * @param gateway the provider to charge through
+     */
+    public ApplePayPayment(String applePayToken, String device, PaymentGateway gateway) {
+        this.credentials = new Credentials(applePayToken, device);
+        this.gateway = gateway;
+    }
+
+    /**
+     * Constructs a stateless ApplePayPayment that takes the token from each request
+     *
+     * @param gateway the provider to charge through; null to simulate a fixed processing delay
+     */
+    public ApplePayPayment(PaymentGateway gateway) {
+        this.credentials = null;
+        this.gateway = gateway;
     }
 
     /**
@@ -42,19 +62,88 @@ public class ApplePayPayment implements PaymentStrategy {
      */
     @Override
     public boolean processPayment(double amount) {
-        System.out.printf("Processing Apple Pay payment of $%.2f from %s%n", amount, device);
-        System.out.println("Using secure token: " + applePayToken.substring(0, 8) + "...");
+        return processPayment(amount, null);
+    }
+
+    /**
+     * Processes the payment on behalf of an order; the order reference is passed to the gateway
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return boolean indicating whether the payment was successfully processed
+     */
+    @Override
+    public boolean processPayment(double amount, String orderId) {
+        return processPayment(new PaymentRequest(boundCredentials(), amount, orderId));
+    }
+
+    /**
+     * Authorizes the Apple Pay token carried by the request
+     *
+     * @param request the payment, with {@link Credentials}
+     * @return boolean indicating whether the payment was successfully processed
+     */
+    @Override
+    public boolean processPayment(PaymentRequest request) {
+        return attemptPayment(request) == GatewayResponse.Status.APPROVED;
+    }
+
+    /**
+     * Pays on behalf of an order with this strategy's own credentials and reports the gateway's answer
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return the outcome of the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(double amount, String orderId) {
+        return attemptPayment(new PaymentRequest(boundCredentials(), amount, orderId));
+    }
+
+    /**
+     * Authorizes the Apple Pay token carried by the request and reports the gateway's answer
+     *
+     * @param request the payment, with {@link Credentials}
+     * @return the outcome of the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(PaymentRequest request) {
+        Credentials wallet = request.getCredentials(Credentials.class);
+        double amount = request.getAmount();
+        PaymentConsole.printf("Processing Apple Pay payment of $%.2f from %s%n", amount, wallet.device);
+        PaymentConsole.println("Using secure token: " + wallet.getTokenPrefix() + "...");
+
+        if (gateway != null) {
+            GatewayResponse response = gateway.charge(PaymentMethod.APPLE_PAY, amount,
+                    wallet.getTokenPrefix() + "...", request.getOrderId());
+            PaymentConsole.println("Apple Pay gateway response: " + response);
+            return response.getStatus();
+        }
 
         try {
             Thread.sleep(800);
-            System.out.println("Apple Pay payment successful!");
-            return true;
+            PaymentConsole.println("Apple Pay payment successful!");
+            return GatewayResponse.Status.APPROVED;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return false;
+            return GatewayResponse.Status.TIMED_OUT;
         }
     }
 
+    /**
+     * Builds Apple Pay credentials from checkout details
+     *
+     * @param details the Apple Pay token and the device
+     * @return the wallet credentials
+     */
+    @Override
+    public PaymentCredentials credentials(String... details) {
+        if (details.length < 2) {
+            throw new IllegalArgumentException("Apple Pay requires token and device");
+        }
+        return new Credentials(details[0], details[1]);
+    }
+
     /**
      * Returns the human-readable name of this payment method
      * Used for displaying payment option to users and in transaction logs
@@ -75,6 +164,78 @@ public class ApplePayPayment implements PaymentStrategy {
      */
     @Override
     public String getPaymentDetails() {
-        return String.format("Apple Pay on %s (Token: %s...)", device, applePayToken.substring(0, 8));
+        return credentials == null ? "Apple Pay - any device" : getPaymentDetails(credentials);
+    }
+
+    @Override
+    public String getPaymentDetails(PaymentCredentials credentials) {
+        Credentials wallet = (Credentials) credentials;
+        return String.format("Apple Pay on %s (Token: %s...)", wallet.device, wallet.getTokenPrefix());
+    }
+
+    private Credentials boundCredentials() {
+        if (credentials == null) {
+            throw new IllegalStateException("Stateless Apple Pay strategy needs a PaymentRequest with a token");
+        }
+        return credentials;
+    }
+
+    /**
+     * Immutable Apple Pay token of one payer's device
+     */
+    public static final class Credentials implements PaymentCredentials {
+
+        /**
+         * Secure token provided by Apple Pay system for payment authorization
+         * This token represents the encrypted payment credentials
+         */
+        private final String applePayToken;
+
+        /**
+         * The specific Apple device used for making the payment
+         * Examples: iPhone, iPad, Apple Watch, etc.
+         */
+        private final String device;
+
+        /**
+         * Constructs Apple Pay credentials
+         *
+         * @param applePayToken the secure payment token from Apple Pay system
+         * @param device the Apple device used for the payment transaction
+         */
+        public Credentials(String applePayToken, String device) {
+            this.applePayToken = applePayToken;
+            this.device = device;
+        }
+
+        @Override
+        public PaymentMethod getMethod() {
+            return PaymentMethod.APPLE_PAY;
+        }
+
+        /**
+         * The device is shared by everyone paying from the same model, so the payer is
+         * told apart by the token instead.
+         *
+         * @return a hash of the Apple Pay token
+         */
+        @Override
+        public String getPayerKey() {
+            return PayerKeys.hashed("applepay", applePayToken);
+        }
+
+        public String getDevice() { return device; }
+
+        /**
+         * @return the first characters of the token, safe to display
+         */
+        public String getTokenPrefix() {
+            return applePayToken.substring(0, Math.min(8, applePayToken.length()));
+        }
+
+        @Override
+        public String toString() {
+            return "Apple Pay on " + device;
+        }
     }
 }
@@ -0,0 +1,66 @@
+package fsabeauty.strategy;
+
+/**
+ * Immutable pairing of a shared stateless strategy with one payer's credentials.
+ * Lets code written against {@link PaymentStrategy#processPayment(double, String)} use
+ * registry strategies without creating a strategy per checkout.
+ */
+final class BoundPaymentStrategy implements PaymentStrategy {
+    private final PaymentStrategy strategy;
+    private final PaymentCredentials credentials;
+
+    BoundPaymentStrategy(PaymentStrategy strategy, PaymentCredentials credentials) {
+        this.strategy = strategy;
+        this.credentials = credentials;
+    }
+
+    @Override
+    public boolean processPayment(double amount) {
+        return processPayment(amount, null);
+    }
+
+    @Override
+    public boolean processPayment(double amount, String orderId) {
+        return strategy.processPayment(new PaymentRequest(credentials, amount, orderId));
+    }
+
+    @Override
+    public boolean processPayment(PaymentRequest request) {
+        return strategy.processPayment(request);
+    }
+
+    @Override
+    public GatewayResponse.Status attemptPayment(double amount, String orderId) {
+        return strategy.attemptPayment(new PaymentRequest(credentials, amount, orderId));
+    }
+
+    @Override
+    public GatewayResponse.Status attemptPayment(PaymentRequest request) {
+        return strategy.attemptPayment(request);
+    }
+
+    @Override
+    public PaymentCredentials credentials(String... details) {
+        return strategy.credentials(details);
+    }
+
+    @Override
+    public String getPaymentDetails(PaymentCredentials credentials) {
+        return strategy.getPaymentDetails(credentials);
+    }
+
+    @Override
+    public PaymentStrategy withCredentials(PaymentCredentials credentials) {
+        return strategy.withCredentials(credentials);
+    }
+
+    @Override
+    public String getPaymentMethod() {
+        return strategy.getPaymentMethod();
+    }
+
+    @Override
+    public String getPaymentDetails() {
+        return strategy.getPaymentDetails(credentials);
+    }
+}
@@ -0,0 +1,23 @@
+package fsabeauty.strategy;
+
+/**
+ * One authorization to collect in a capture batch.
+ */
+public final class CaptureRequest {
+    private final String authorizationId;
+    private final double amount;
+
+    /**
+     * Constructs a capture request.
+     *
+     * @param authorizationId the approved authorization's transaction ID
+     * @param amount the amount to collect, at most the authorized amount
+     */
+    public CaptureRequest(String authorizationId, double amount) {
+        this.authorizationId = authorizationId;
+        this.amount = amount;
+    }
+
+    public String getAuthorizationId() { return authorizationId; }
+    public double getAmount() { return amount; }
+}
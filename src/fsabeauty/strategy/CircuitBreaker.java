@@ -0,0 +1,158 @@
+package fsabeauty.strategy;
+
+/**
+ * Circuit breaker guarding calls to one payment provider.
+ * While CLOSED it records the outcome of the most recent calls in a fixed window; once
+ * enough calls have been made and the share of failed or slow ones reaches the threshold,
+ * it OPENS and rejects calls at once for a cool-down period. After that it lets a few trial
+ * calls through (HALF_OPEN): if they all succeed it closes again, otherwise it reopens.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Breaker states.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+    private final int trialCalls;
+
+    private final boolean[] window; // true: the call failed or was slow
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+    private long rejected;
+    private long timesOpened;
+
+    /**
+     * Constructs a breaker with five trial calls and a minimum of half the window before tripping.
+     *
+     * @param name the guarded provider, for reports
+     * @param windowSize number of recent calls the failure rate is computed over
+     * @param failureRateThreshold share of failed or slow calls that opens the breaker, in (0, 1]
+     * @param slowCallMillis calls taking at least this long count as failures
+     * @param openMillis how long the breaker rejects calls before trying again
+     */
+    public CircuitBreaker(String name, int windowSize, double failureRateThreshold, long slowCallMillis, long openMillis) {
+        if (windowSize < 1 || failureRateThreshold <= 0 || failureRateThreshold > 1
+                || slowCallMillis <= 0 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.max(1, windowSize / 2);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.trialCalls = 5;
+    }
+
+    /**
+     * Asks for permission to call the provider. Every permitted call must be followed by
+     * {@link #record(boolean, long)}.
+     *
+     * @return false if the breaker is open and the call should not be made
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                rejected++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= trialCalls) {
+                rejected++;
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param success whether the call succeeded
+     * @param durationMillis how long it took, or took until it was abandoned
+     */
+    public synchronized void record(boolean success, long durationMillis) {
+        boolean failure = !success || durationMillis >= slowCallMillis;
+        if (state == State.HALF_OPEN) {
+            if (failure) {
+                open();
+            } else if (++trialsSucceeded == trialCalls) {
+                state = State.CLOSED;
+                resetWindow();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // a call started before the breaker opened
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        timesOpened++;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowPosition = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    public String getName() { return name; }
+    public synchronized State getState() { return state; }
+    public synchronized long getRejectedCount() { return rejected; }
+    public synchronized long getTimesOpened() { return timesOpened; }
+
+    /**
+     * @return share of failed or slow calls in the current window, 0 when it is empty
+     */
+    public synchronized double getFailureRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s breaker %s (failure rate %.0f%% of %d, opened %d time(s), %d rejected)",
+                name, state, getFailureRate() * 100, windowCount, timesOpened, rejected);
+    }
+}
@@ -6,46 +6,55 @@ package fsabeauty.strategy;
  * Handles payment processing using credit card information including card number,
  * cardholder name, expiration date, and security code.
  * This class provides secure credit card transaction processing with proper data masking.
+ * An instance created without card details is stateless and serves any number of concurrent
+ * {@link PaymentRequest}s carrying {@link Credentials}.
  */
 public class CreditCardPayment implements PaymentStrategy {
 
     /**
-     * The 16-digit credit card number for the payment transaction
-     * Stored as string to handle various card formats and preserve leading zeros
+     * The card this instance is bound to; null for a stateless instance serving requests
      */
-    private String cardNumber;
+    private final Credentials credentials;
 
     /**
-     * Full name of the cardholder as it appears on the credit card
-     * Used for verification and transaction records
+     * Provider the card is charged through; null to simulate a fixed processing delay
      */
-    private String cardHolder;
+    private final PaymentGateway gateway;
 
     /**
-     * Expiration date of the credit card in MM/YY format
-     * Validates that the card is still active and usable
-     */
-    private String expiryDate;
-
-    /**
-     * Card Verification Value - 3 or 4 digit security code
-     * Provides additional security layer for card-not-present transactions
+     * Constructs a new CreditCardPayment instance with complete card details
+     *
+     * @param cardNumber the complete credit card number
+     * @param cardHolder the name of the cardholder
+     * @param expiryDate the card expiration date in MM/YY format
+     * @param cvv the 3 or 4 digit security code from the card
      */
-    private String cvv;
+    public CreditCardPayment(String cardNumber, String cardHolder, String expiryDate, String cvv) {
+        this(cardNumber, cardHolder, expiryDate, cvv, null);
+    }
 
     /**
-     * Constructs a new CreditCardPayment instance with complete card details
+     * Constructs a CreditCardPayment that charges the card through a payment gateway
      *
      * @param cardNumber the complete credit card number
      * @param cardHolder the name of the cardholder
      * @param expiryDate the card expiration date in MM/YY format
      * @param cvv the 3 or 4 digit security code from the card
+     * @param gateway the provider to charge through
      */
-    public CreditCardPayment(String cardNumber, String cardHolder, String expiryDate, String cvv) {
-        this.cardNumber = cardNumber;
-        this.cardHolder = cardHolder;
-        this.expiryDate = expiryDate;
-        this.cvv = cvv;
+    public CreditCardPayment(String cardNumber, String cardHolder, String expiryDate, String cvv, PaymentGateway gateway) {
+        this.credentials = new Credentials(cardNumber, cardHolder, expiryDate, cvv);
+        this.gateway = gateway;
+    }
+
+    /**
+     * Constructs a stateless CreditCardPayment that takes the card from each request
+     *
+     * @param gateway the provider to charge through; null to simulate a fixed processing delay
+     */
+    public CreditCardPayment(PaymentGateway gateway) {
+        this.credentials = null;
+        this.gateway = gateway;
     }
 
     /**
@@ -59,18 +68,86 @@ public class CreditCardPayment implements PaymentStrategy {
      */
     @Override
     public boolean processPayment(double amount) {
-        System.out.printf("Processing Credit Card payment of $%.2f for %s%n", amount, cardHolder);
-        System.out.printf("Card: **** **** **** %s | Exp: %s%n",
-                cardNumber.substring(cardNumber.length() - 4), expiryDate);
+        return processPayment(amount, null);
+    }
+
+    /**
+     * Processes the payment on behalf of an order; the order reference is passed to the gateway
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return boolean indicating whether the payment was successfully processed
+     */
+    @Override
+    public boolean processPayment(double amount, String orderId) {
+        return processPayment(new PaymentRequest(boundCredentials(), amount, orderId));
+    }
+
+    /**
+     * Charges the card carried by the request
+     *
+     * @param request the payment, with {@link Credentials}
+     * @return boolean indicating whether the payment was successfully processed
+     */
+    @Override
+    public boolean processPayment(PaymentRequest request) {
+        return attemptPayment(request) == GatewayResponse.Status.APPROVED;
+    }
+
+    /**
+     * Pays on behalf of an order with this strategy's own credentials and reports the gateway's answer
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return the outcome of the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(double amount, String orderId) {
+        return attemptPayment(new PaymentRequest(boundCredentials(), amount, orderId));
+    }
+
+    /**
+     * Charges the card carried by the request and reports the gateway's answer
+     *
+     * @param request the payment, with {@link Credentials}
+     * @return the outcome of the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(PaymentRequest request) {
+        Credentials card = request.getCredentials(Credentials.class);
+        double amount = request.getAmount();
+        PaymentConsole.printf("Processing Credit Card payment of $%.2f for %s%n", amount, card.cardHolder);
+        PaymentConsole.printf("Card: **** **** **** %s | Exp: %s%n", card.getLastFour(), card.expiryDate);
+
+        if (gateway != null) {
+            GatewayResponse response = gateway.charge(PaymentMethod.CREDIT_CARD, amount,
+                    "****" + card.getLastFour(), request.getOrderId());
+            PaymentConsole.println("Credit Card gateway response: " + response);
+            return response.getStatus();
+        }
 
         try {
             Thread.sleep(1000);
-            System.out.println("Credit Card payment successful!");
-            return true;
+            PaymentConsole.println("Credit Card payment successful!");
+            return GatewayResponse.Status.APPROVED;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return false;
+            return GatewayResponse.Status.TIMED_OUT;
+        }
+    }
+
+    /**
+     * Builds card credentials from checkout details
+     *
+     * @param details card number, cardholder, expiry date and CVV
+     * @return the card
+     */
+    @Override
+    public PaymentCredentials credentials(String... details) {
+        if (details.length < 4) {
+            throw new IllegalArgumentException("Credit Card requires number, holder, expiry, and CVV");
         }
+        return new Credentials(details[0], details[1], details[2], details[3]);
     }
 
     /**
@@ -93,6 +170,92 @@ public class CreditCardPayment implements PaymentStrategy {
      */
     @Override
     public String getPaymentDetails() {
-        return String.format("Credit Card - %s (****%s)", cardHolder, cardNumber.substring(cardNumber.length() - 4));
+        return credentials == null ? "Credit Card - any card" : getPaymentDetails(credentials);
+    }
+
+    @Override
+    public String getPaymentDetails(PaymentCredentials credentials) {
+        Credentials card = (Credentials) credentials;
+        return String.format("Credit Card - %s (****%s)", card.cardHolder, card.getLastFour());
+    }
+
+    private Credentials boundCredentials() {
+        if (credentials == null) {
+            throw new IllegalStateException("Stateless Credit Card strategy needs a PaymentRequest with card details");
+        }
+        return credentials;
+    }
+
+    /**
+     * Immutable card details of one payer
+     */
+    public static final class Credentials implements PaymentCredentials {
+
+        /**
+         * The 16-digit credit card number for the payment transaction
+         * Stored as string to handle various card formats and preserve leading zeros
+         */
+        private final String cardNumber;
+
+        /**
+         * Full name of the cardholder as it appears on the credit card
+         * Used for verification and transaction records
+         */
+        private final String cardHolder;
+
+        /**
+         * Expiration date of the credit card in MM/YY format
+         * Validates that the card is still active and usable
+         */
+        private final String expiryDate;
+
+        /**
+         * Card Verification Value - 3 or 4 digit security code
+         * Provides additional security layer for card-not-present transactions
+         */
+        private final String cvv;
+
+        /**
+         * Constructs card credentials
+         *
+         * @param cardNumber the complete credit card number
+         * @param cardHolder the name of the cardholder
+         * @param expiryDate the card expiration date in MM/YY format
+         * @param cvv the 3 or 4 digit security code from the card
+         */
+        public Credentials(String cardNumber, String cardHolder, String expiryDate, String cvv) {
+            this.cardNumber = cardNumber;
+            this.cardHolder = cardHolder;
+            this.expiryDate = expiryDate;
+            this.cvv = cvv;
+        }
+
+        @Override
+        public PaymentMethod getMethod() {
+            return PaymentMethod.CREDIT_CARD;
+        }
+
+        /**
+         * @return the last four digits and the cardholder
+         */
+        @Override
+        public String getPayerKey() {
+            return "card:" + getLastFour() + ":" + cardHolder.trim().toLowerCase();
+        }
+
+        public String getCardHolder() { return cardHolder; }
+        public String getExpiryDate() { return expiryDate; }
+
+        /**
+         * @return the last four digits of the card number, safe to display
+         */
+        public String getLastFour() {
+            return cardNumber.substring(cardNumber.length() - 4);
+        }
+
+        @Override
+        public String toString() {
+            return "card ****" + getLastFour();
+        }
     }
 }
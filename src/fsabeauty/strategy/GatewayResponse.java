@@ -0,0 +1,64 @@
+package fsabeauty.strategy;
+
+/**
+ * Outcome of one request to a payment gateway.
+ * Separates a definite answer from the provider (approved or declined) from failures
+ * of the request itself (gateway error, throttling), which a caller may retry elsewhere,
+ * and from a request that got no answer in time, which may or may not have charged.
+ */
+public final class GatewayResponse {
+
+    /**
+     * Result categories a gateway can report.
+     */
+    public enum Status {
+        APPROVED,
+        DECLINED,
+        ERROR,
+        THROTTLED,
+        /** No answer within the caller's deadline; the provider may still have charged */
+        TIMED_OUT
+    }
+
+    private final Status status;
+    private final String transactionId;
+    private final long latencyMicros;
+
+    /**
+     * Constructs a response.
+     *
+     * @param status the outcome
+     * @param transactionId the gateway's reference, null unless approved
+     * @param latencyMicros time the gateway took to answer
+     */
+    public GatewayResponse(Status status, String transactionId, long latencyMicros) {
+        this.status = status;
+        this.transactionId = transactionId;
+        this.latencyMicros = latencyMicros;
+    }
+
+    public Status getStatus() { return status; }
+    public String getTransactionId() { return transactionId; }
+    public long getLatencyMicros() { return latencyMicros; }
+
+    /**
+     * @return true if the money was authorized
+     */
+    public boolean isApproved() {
+        return status == Status.APPROVED;
+    }
+
+    /**
+     * @param status a result category
+     * @return true if the request certainly charged nothing, so it may be retried elsewhere
+     */
+    public static boolean isRetryable(Status status) {
+        return status == Status.ERROR || status == Status.THROTTLED;
+    }
+
+    @Override
+    public String toString() {
+        return status + (transactionId != null ? " " + transactionId : "")
+                + String.format(" in %.1f ms", latencyMicros / 1000.0);
+    }
+}
@@ -0,0 +1,65 @@
+package fsabeauty.strategy;
+
+import java.util.Arrays;
+
+/**
+ * Result of a payment load run: counts, throughput and the latency distribution
+ * of {@link PaymentContext#executePayment(double)} as seen by the caller.
+ */
+public final class LoadReport {
+    private final long approved;
+    private final long failed;
+    private final long elapsedNanos;
+    private final long[] latenciesMicros; // sorted
+
+    /**
+     * Constructs a report.
+     *
+     * @param approved payments that succeeded
+     * @param failed payments that did not
+     * @param elapsedNanos wall-clock duration of the run
+     * @param latenciesMicros latency of every payment, in any order
+     */
+    LoadReport(long approved, long failed, long elapsedNanos, long[] latenciesMicros) {
+        this.approved = approved;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.latenciesMicros = latenciesMicros.clone();
+        Arrays.sort(this.latenciesMicros);
+    }
+
+    public long getAttempts() { return approved + failed; }
+    public long getApproved() { return approved; }
+    public long getFailed() { return failed; }
+    public double getElapsedSeconds() { return elapsedNanos / 1e9; }
+
+    /**
+     * @return completed payments per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getAttempts() / getElapsedSeconds();
+    }
+
+    /**
+     * @param percentile e.g. 99.0
+     * @return latency at the percentile in milliseconds, 0 if nothing ran
+     */
+    public double getLatencyMillis(double percentile) {
+        if (latenciesMicros.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(latenciesMicros.length * percentile / 100.0) - 1;
+        return latenciesMicros[Math.max(0, Math.min(index, latenciesMicros.length - 1))] / 1000.0;
+    }
+
+    /**
+     * @return one-line summary of throughput, success rate and latency percentiles
+     */
+    public String getSummary() {
+        return String.format("%d payments in %.1f s (%.1f/s), %d approved, %d failed; "
+                        + "latency p50 %.0f ms, p95 %.0f ms, p99 %.0f ms, p99.9 %.0f ms, max %.0f ms",
+                getAttempts(), getElapsedSeconds(), getThroughput(), approved, failed,
+                getLatencyMillis(50), getLatencyMillis(95), getLatencyMillis(99), getLatencyMillis(99.9),
+                getLatencyMillis(100));
+    }
+}
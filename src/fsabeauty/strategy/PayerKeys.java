@@ -0,0 +1,37 @@
+package fsabeauty.strategy;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives payer keys from credentials that are secret but unique to one payer, such as a
+ * wallet token or a personal QR code. The secret is hashed, so the key identifies the payer
+ * without revealing it.
+ */
+final class PayerKeys {
+    private static final int KEY_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private PayerKeys() {
+    }
+
+    /**
+     * @param scheme the payment method's key prefix, e.g. "qr"
+     * @param secret the payer's credential
+     * @return the scheme followed by a truncated SHA-256 hash of the secret
+     */
+    static String hashed(String scheme, String secret) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(secret.trim().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // required of every JRE
+        }
+        StringBuilder key = new StringBuilder(scheme.length() + 1 + KEY_BYTES * 2).append(scheme).append(':');
+        for (int i = 0; i < KEY_BYTES; i++) {
+            key.append(HEX[(digest[i] >> 4) & 0xF]).append(HEX[digest[i] & 0xF]);
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package fsabeauty.strategy;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Console output of the payment flow.
+ * Output can be muted for the current thread only: the {@link PaymentLoadGenerator} mutes its
+ * workers so thousands of receipts do not dominate a measurement, while every other thread of
+ * the application keeps printing.
+ */
+final class PaymentConsole {
+    private static final ThreadLocal<Boolean> MUTED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private PaymentConsole() {
+    }
+
+    static void println(String line) {
+        if (!MUTED.get()) {
+            System.out.println(line);
+        }
+    }
+
+    static void printf(String format, Object... args) {
+        if (!MUTED.get()) {
+            System.out.printf(format, args);
+        }
+    }
+
+    /**
+     * Mutes or unmutes the payment output of the current thread.
+     *
+     * @param muted true to drop the output
+     */
+    static void setMuted(boolean muted) {
+        MUTED.set(muted);
+    }
+
+    /**
+     * Wraps a task handed to another thread so it prints, or stays quiet, like the thread
+     * that submitted it.
+     *
+     * @param task the task
+     * @param <T> the task's result type
+     * @return the wrapped task
+     */
+    static <T> Callable<T> inheritingMute(Callable<T> task) {
+        boolean muted = MUTED.get();
+        if (!muted) {
+            return task;
+        }
+        return () -> {
+            MUTED.set(Boolean.TRUE);
+            try {
+                return task.call();
+            } finally {
+                MUTED.remove();
+            }
+        };
+    }
+}
@@ -17,12 +17,34 @@ public class PaymentContext {
      */
     private PaymentStrategy paymentStrategy;
 
+    /**
+     * Collapses repeated payments of the same order; null to execute every request.
+     */
+    private PaymentIdempotency idempotency;
+
+    /**
+     * Strategies serving payment requests by method; null if this context only uses the strategy set on it.
+     */
+    private final PaymentStrategyRegistry registry;
+
     /**
      * Default constructor for PaymentContext.
      * Initializes without a default payment strategy, requiring explicit strategy setting
      * before payment processing can occur.
      */
     public PaymentContext() {
+        this(null);
+    }
+
+    /**
+     * Constructs a PaymentContext that serves {@link PaymentRequest}s with the registry's strategies.
+     * Such a context holds no per-checkout state for request payments and can be shared by
+     * concurrent checkouts.
+     *
+     * @param registry the strategies by payment method
+     */
+    public PaymentContext(PaymentStrategyRegistry registry) {
+        this.registry = registry;
     }
 
     /**
@@ -34,7 +56,17 @@ public class PaymentContext {
      */
     public void setPaymentStrategy(PaymentStrategy paymentStrategy) {
         this.paymentStrategy = paymentStrategy;
-        System.out.println("Payment strategy set to: " + paymentStrategy.getPaymentMethod());
+        PaymentConsole.println("Payment strategy set to: " + paymentStrategy.getPaymentMethod());
+    }
+
+    /**
+     * Makes payments with an order ID idempotent: a repeated request for the same order joins
+     * or reuses the first one's result instead of charging again.
+     *
+     * @param idempotency the layer to route order payments through, possibly shared with other contexts; null to disable
+     */
+    public void setIdempotency(PaymentIdempotency idempotency) {
+        this.idempotency = idempotency;
     }
 
     /**
@@ -48,18 +80,71 @@ public class PaymentContext {
      * @throws IllegalStateException if no payment strategy has been set prior to execution
      */
     public boolean executePayment(double amount) {
+        return executePayment(amount, null);
+    }
+
+    /**
+     * Executes a payment transaction for an order using the currently set payment strategy.
+     * The order reference travels with the payment to the gateway and, when an idempotency
+     * layer is set, identifies retries of the same payment.
+     *
+     * @param amount the monetary amount to be processed in the payment transaction
+     * @param orderId the order being paid, or null
+     * @return boolean indicating the success (true) or failure (false) of the payment
+     */
+    public boolean executePayment(double amount, String orderId) {
         if (paymentStrategy == null) {
-            System.out.println("No payment strategy set");
+            PaymentConsole.println("No payment strategy set");
             return false;
         }
+        PaymentStrategy strategy = paymentStrategy;
+        if (idempotency != null && orderId != null) {
+            return idempotency.execute(orderId, amount, () -> pay(strategy, amount, orderId))
+                    == GatewayResponse.Status.APPROVED;
+        }
+        return pay(strategy, amount, orderId) == GatewayResponse.Status.APPROVED;
+    }
+
+    /**
+     * Executes a payment request with the registry's strategy for its method.
+     * Uses no strategy set on this context, so concurrent checkouts may call it at once.
+     *
+     * @param request the payer's credentials, amount and order
+     * @return boolean indicating the success (true) or failure (false) of the payment
+     * @throws IllegalStateException if the context was created without a registry
+     * @throws IllegalArgumentException if no strategy serves the request's payment method
+     */
+    public boolean executePayment(PaymentRequest request) {
+        if (registry == null) {
+            throw new IllegalStateException("PaymentContext has no strategy registry");
+        }
+        PaymentStrategy strategy = registry.require(request.getMethod());
+        String orderId = request.getOrderId();
+        if (idempotency != null && orderId != null) {
+            return idempotency.execute(orderId, request.getAmount(), () -> pay(strategy, request))
+                    == GatewayResponse.Status.APPROVED;
+        }
+        return pay(strategy, request) == GatewayResponse.Status.APPROVED;
+    }
+
+    private static GatewayResponse.Status pay(PaymentStrategy strategy, PaymentRequest request) {
+        PaymentConsole.println("\n PROCESSING PAYMENT:");
+        PaymentConsole.println("=====================");
+        PaymentConsole.printf("Amount: $%.2f%n", request.getAmount());
+        PaymentConsole.println("Method: " + strategy.getPaymentMethod());
+        PaymentConsole.println("Details: " + strategy.getPaymentDetails(request.getCredentials()));
+
+        return strategy.attemptPayment(request);
+    }
 
-        System.out.println("\n PROCESSING PAYMENT:");
-        System.out.println("=====================");
-        System.out.printf("Amount: $%.2f%n", amount);
-        System.out.println("Method: " + paymentStrategy.getPaymentMethod());
-        System.out.println("Details: " + paymentStrategy.getPaymentDetails());
+    private static GatewayResponse.Status pay(PaymentStrategy paymentStrategy, double amount, String orderId) {
+        PaymentConsole.println("\n PROCESSING PAYMENT:");
+        PaymentConsole.println("=====================");
+        PaymentConsole.printf("Amount: $%.2f%n", amount);
+        PaymentConsole.println("Method: " + paymentStrategy.getPaymentMethod());
+        PaymentConsole.println("Details: " + paymentStrategy.getPaymentDetails());
 
-        return paymentStrategy.processPayment(amount);
+        return paymentStrategy.attemptPayment(amount, orderId);
     }
 
     /**
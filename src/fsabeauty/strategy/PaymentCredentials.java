@@ -0,0 +1,22 @@
+package fsabeauty.strategy;
+
+/**
+ * The payer's credentials for one payment method, e.g. a card or an Apple Pay token.
+ * Implementations are immutable, so a request carrying them can be handed between threads
+ * and the strategy processing it needs no per-payer state of its own.
+ */
+public interface PaymentCredentials {
+
+    /**
+     * @return the payment method these credentials are for
+     */
+    PaymentMethod getMethod();
+
+    /**
+     * Identifies the payer across payments without exposing secrets, e.g. for velocity checks.
+     *
+     * @return a stable key unique to the payer, made of display-safe parts of the credentials
+     *         or a hash of a secret one
+     */
+    String getPayerKey();
+}
@@ -0,0 +1,77 @@
+package fsabeauty.strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A payment provider's API as seen by the payment strategies.
+ * A charge reserves and collects the money in one go; providers that support it may instead
+ * be asked to authorize (reserve) first and capture (collect) later, many captures per request.
+ * Implementations may block for the provider's round trip and must be thread-safe.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Requests authorization and capture of an amount.
+     *
+     * @param method the payment method the request comes from
+     * @param amount the amount to charge
+     * @param reference the payer's masked credential reference, for the gateway's records
+     * @return the gateway's answer; never null
+     */
+    GatewayResponse charge(PaymentMethod method, double amount, String reference);
+
+    /**
+     * Requests authorization and capture of an amount for an order.
+     *
+     * @param method the payment method the request comes from
+     * @param amount the amount to charge
+     * @param reference the payer's masked credential reference
+     * @param orderId the order being paid, or null
+     * @return the gateway's answer; never null
+     */
+    default GatewayResponse charge(PaymentMethod method, double amount, String reference, String orderId) {
+        return charge(method, amount, reference);
+    }
+
+    /**
+     * Looks up what became of an order's charge, e.g. after the request got no answer in time.
+     * Gateways that cannot look orders up report that they cannot tell.
+     *
+     * @param orderId the order
+     * @return APPROVED if the order was charged, DECLINED if it certainly was not, or
+     *         TIMED_OUT if that cannot be told (yet)
+     */
+    default GatewayResponse.Status chargeStatus(String orderId) {
+        return GatewayResponse.Status.TIMED_OUT;
+    }
+
+    /**
+     * Reserves an amount without collecting it. The approved response's transaction ID
+     * identifies the authorization to capture. Gateways without separate capture charge at once.
+     *
+     * @param method the payment method
+     * @param amount the amount to reserve
+     * @param reference the payer's masked credential reference
+     * @return the gateway's answer; never null
+     */
+    default GatewayResponse authorize(PaymentMethod method, double amount, String reference) {
+        return charge(method, amount, reference);
+    }
+
+    /**
+     * Collects previously authorized amounts in one request.
+     * Gateways without separate capture have collected at authorization and approve every item.
+     *
+     * @param method the payment method all captures belong to
+     * @param captures the authorizations to collect
+     * @return one response per capture, in the same order
+     */
+    default List<GatewayResponse> capture(PaymentMethod method, List<CaptureRequest> captures) {
+        List<GatewayResponse> responses = new ArrayList<>(captures.size());
+        for (CaptureRequest capture : captures) {
+            responses.add(new GatewayResponse(GatewayResponse.Status.APPROVED, capture.getAuthorizationId(), 0));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,227 @@
+package fsabeauty.strategy;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Makes payments idempotent per key, typically the order ID.
+ * The first request for a key executes the payment; a duplicate arriving while it is in flight
+ * waits for and shares its result instead of charging again, and a duplicate arriving after it
+ * was approved gets the cached approval for as long as the entry lives. A payment whose outcome
+ * is unknown - it timed out, was interrupted or failed midway - is kept as well, because the
+ * provider may have charged: a duplicate first asks the reconciler what became of the order and
+ * only re-executes once the order is known not to have been charged. Only payments that
+ * certainly charged nothing (declined, gateway error, throttled) are forgotten at once, so a
+ * retry really tries again. Approvals and unknown outcomes are kept for a time-to-live in a cache
+ * of bounded size, oldest evicted first. A duplicate with a different amount is rejected: the key
+ * was reused for another payment.
+ * Thread-safe; one instance is meant to be shared by every checkout.
+ */
+public class PaymentIdempotency {
+    private final long ttlMillis;
+    private final int capacity;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> completed = new ConcurrentLinkedQueue<>(); // completion order
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private volatile Function<String, GatewayResponse.Status> reconciler = key -> GatewayResponse.Status.TIMED_OUT;
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong unknown = new AtomicLong();
+    private final AtomicLong reconciled = new AtomicLong();
+
+    /**
+     * Constructs an idempotency layer.
+     *
+     * @param ttlMillis how long an approval or unknown outcome is served to duplicates
+     * @param capacity most approvals and unknown outcomes kept at once
+     */
+    public PaymentIdempotency(long ttlMillis, int capacity) {
+        if (ttlMillis <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid idempotency settings");
+        }
+        this.ttlMillis = ttlMillis;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets how a payment with an unknown outcome is looked up when its order is retried,
+     * typically {@link PaymentGateway#chargeStatus(String)}.
+     *
+     * @param reconciler maps a key to APPROVED if the payment was charged, DECLINED if it
+     *                   certainly was not, or TIMED_OUT if that cannot be told yet
+     */
+    public void setReconciler(Function<String, GatewayResponse.Status> reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    /**
+     * Executes the payment unless the key's payment is already in flight, approved or of
+     * unknown outcome.
+     *
+     * @param key the order or request ID identifying the payment
+     * @param amount the amount, which duplicates must repeat
+     * @param payment performs the payment and reports the gateway's answer
+     * @return the result of the payment for the key; TIMED_OUT while it cannot be told
+     *         whether an earlier attempt charged
+     */
+    public GatewayResponse.Status execute(String key, double amount, Supplier<GatewayResponse.Status> payment) {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        Entry entry = new Entry(key, amount);
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                break;
+            }
+            if (existing.isExpired(now, ttlMillis)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (Math.abs(existing.amount - amount) > 0.005) {
+                conflicts.incrementAndGet();
+                PaymentConsole.printf("Payment %s rejected: already requested for $%.2f%n", key, existing.amount);
+                return GatewayResponse.Status.DECLINED;
+            }
+            if (!existing.result.isDone()) {
+                joined.incrementAndGet();
+                PaymentConsole.println("Payment " + key + " already in progress - waiting for its result");
+                return existing.result.join();
+            }
+            if (existing.result.join() == GatewayResponse.Status.APPROVED) {
+                cached.incrementAndGet();
+                PaymentConsole.println("Payment " + key + " already approved - not charging again");
+                return GatewayResponse.Status.APPROVED;
+            }
+            GatewayResponse.Status status = reconcile(existing);
+            if (status != null) {
+                return status;
+            }
+            // Certainly not charged: try again
+        }
+
+        executed.incrementAndGet();
+        GatewayResponse.Status status = GatewayResponse.Status.TIMED_OUT;
+        try {
+            status = payment.get();
+        } finally {
+            complete(entry, status);
+        }
+        return status;
+    }
+
+    // Resolves an unknown outcome; null once the payment is known not to have been charged
+    private GatewayResponse.Status reconcile(Entry existing) {
+        GatewayResponse.Status status = reconciler.apply(existing.key);
+        if (status == GatewayResponse.Status.APPROVED) {
+            reconciled.incrementAndGet();
+            Entry approved = new Entry(existing.key, existing.amount);
+            if (entries.replace(existing.key, existing, approved)) {
+                if (completed.remove(existing)) {
+                    completedCount.decrementAndGet();
+                }
+                complete(approved, status);
+            }
+            PaymentConsole.println("Payment " + existing.key + " was charged after all - not charging again");
+            return status;
+        }
+        if (status == GatewayResponse.Status.TIMED_OUT || status == null) {
+            PaymentConsole.println("Payment " + existing.key + " has an unknown outcome - not charging again until it is reconciled");
+            return GatewayResponse.Status.TIMED_OUT;
+        }
+        reconciled.incrementAndGet();
+        if (entries.remove(existing.key, existing) && completed.remove(existing)) {
+            completedCount.decrementAndGet();
+        }
+        return null;
+    }
+
+    private void complete(Entry entry, GatewayResponse.Status status) {
+        entry.completedAt = System.currentTimeMillis();
+        if (status == GatewayResponse.Status.APPROVED || status == GatewayResponse.Status.TIMED_OUT) {
+            if (status == GatewayResponse.Status.TIMED_OUT) {
+                unknown.incrementAndGet();
+            }
+            completed.add(entry);
+            completedCount.incrementAndGet();
+            trim();
+        } else {
+            entries.remove(entry.key, entry);
+        }
+        entry.result.complete(status);
+    }
+
+    private void evictExpired(long now) {
+        Entry oldest;
+        while ((oldest = completed.peek()) != null && oldest.isExpired(now, ttlMillis)) {
+            if (completed.remove(oldest)) {
+                completedCount.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private void trim() {
+        while (completedCount.get() > capacity) {
+            Entry oldest = completed.poll();
+            if (oldest != null) {
+                completedCount.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    /**
+     * @param key an order or request ID
+     * @return true if its payment is in flight, or approved or of unknown outcome and still cached
+     */
+    public boolean isKnown(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && !entry.isExpired(System.currentTimeMillis(), ttlMillis);
+    }
+
+    public long getExecutedCount() { return executed.get(); }
+    public long getJoinedCount() { return joined.get(); }
+    public long getCachedCount() { return cached.get(); }
+    public long getConflictCount() { return conflicts.get(); }
+    public long getUnknownCount() { return unknown.get(); }
+    public long getReconciledCount() { return reconciled.get(); }
+    public int getCachedEntries() { return completedCount.get(); }
+
+    /**
+     * @return one line with executions and the duplicates absorbed
+     */
+    public String getSummary() {
+        return String.format("Idempotency: %d executed, %d joined in flight, %d served from cache, %d conflict(s),"
+                        + " %d unknown outcome(s), %d reconciled, %d/%d cached", executed.get(), joined.get(), cached.get(),
+                conflicts.get(), unknown.get(), reconciled.get(), completedCount.get(), capacity);
+    }
+
+    /**
+     * The payment of one key, in flight, approved or of unknown outcome.
+     */
+    private static final class Entry {
+        private final String key;
+        private final double amount;
+        private final CompletableFuture<GatewayResponse.Status> result = new CompletableFuture<>();
+        private volatile long completedAt; // 0 while in flight
+
+        Entry(String key, double amount) {
+            this.key = key;
+            this.amount = amount;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            long at = completedAt;
+            return at != 0 && now - at >= ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package fsabeauty.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Drives {@link PaymentContext} from many concurrent checkouts and measures the result.
+ * Each worker thread plays one checkout after another: it obtains a strategy from the
+ * supplier (typically one targeting a {@link SimulatedPaymentGateway}), sets it on its own
+ * context and executes a payment of a random amount. The run reports throughput and the
+ * latency distribution, tail included. The payment flow's console output is muted on the
+ * worker threads; the rest of the application keeps printing while the run is in progress.
+ */
+public class PaymentLoadGenerator {
+    private static final double MIN_AMOUNT = 5.0;
+    private static final double MAX_AMOUNT = 150.0;
+
+    private final Supplier<PaymentStrategy> strategies;
+    private final int concurrency;
+
+    /**
+     * Constructs a load generator.
+     *
+     * @param strategies supplies the strategy for each payment, e.g. rotating through card, Apple Pay and QR
+     * @param concurrency number of checkouts in flight at once
+     */
+    public PaymentLoadGenerator(Supplier<PaymentStrategy> strategies, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.strategies = strategies;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Executes a fixed number of payments.
+     *
+     * @param payments total number of payments to execute
+     * @return throughput and latency of the run
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public LoadReport run(int payments) throws InterruptedException {
+        AtomicInteger remaining = new AtomicInteger(payments);
+        return execute(() -> remaining.getAndDecrement() > 0, payments);
+    }
+
+    /**
+     * Executes payments until the given time has passed.
+     *
+     * @param durationMillis how long to keep generating load
+     * @return throughput and latency of the run
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public LoadReport runFor(long durationMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        return execute(() -> System.nanoTime() < deadline, 1024);
+    }
+
+    private LoadReport execute(Supplier<Boolean> more, int expected) throws InterruptedException {
+        AtomicLong approved = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        int initialCapacity = Math.max(16, expected / concurrency + 1);
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> {
+                // Thousands of payment receipts on the console would dominate the measurement
+                PaymentConsole.setMuted(true);
+                PaymentContext context = new PaymentContext();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] buffer = new long[initialCapacity];
+                int count = 0;
+                while (more.get()) {
+                    context.setPaymentStrategy(strategies.get());
+                    double amount = Math.round(random.nextDouble(MIN_AMOUNT, MAX_AMOUNT) * 100) / 100.0;
+                    long start = System.nanoTime();
+                    boolean success = context.executePayment(amount);
+                    long micros = (System.nanoTime() - start) / 1000;
+                    (success ? approved : failed).incrementAndGet();
+                    if (count == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, count * 2);
+                    }
+                    buffer[count++] = micros;
+                }
+                synchronized (latencies) {
+                    latencies.add(Arrays.copyOf(buffer, count));
+                }
+            }, "fsa-payment-load-" + i);
+            workers.add(worker);
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for (long[] part : latencies) {
+            total += part.length;
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (long[] part : latencies) {
+            System.arraycopy(part, 0, all, position, part.length);
+            position += part.length;
+        }
+        return new LoadReport(approved.get(), failed.get(), elapsed, all);
+    }
+}
@@ -0,0 +1,42 @@
+package fsabeauty.strategy;
+
+/**
+ * The payment methods the store accepts.
+ * Used to key per-method gateway behaviour, limits and statistics.
+ */
+public enum PaymentMethod {
+    CREDIT_CARD("Credit Card"),
+    APPLE_PAY("Apple Pay"),
+    QR("QR Payment");
+
+    private final String displayName;
+
+    PaymentMethod(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the human-readable method name, as returned by the strategies' getPaymentMethod()
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Looks a method up by a loose name such as "creditcard", "Apple Pay" or "qr".
+     *
+     * @param name the method name, case, spaces and underscores ignored
+     * @return the matching method
+     * @throws IllegalArgumentException if no method matches
+     */
+    public static PaymentMethod parse(String name) {
+        String key = name.replaceAll("[\\s_-]", "").toLowerCase();
+        for (PaymentMethod method : values()) {
+            if (method.name().replace("_", "").toLowerCase().equals(key)
+                    || method.displayName.replace(" ", "").toLowerCase().equals(key)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("Unknown payment type: " + name);
+    }
+}
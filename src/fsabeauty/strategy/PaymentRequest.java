@@ -0,0 +1,46 @@
+package fsabeauty.strategy;
+
+import java.util.Objects;
+
+/**
+ * Immutable description of one payment: who pays, how much and for which order.
+ * Stateless strategies take everything they need from the request, so a single strategy
+ * instance can process any number of concurrent checkouts.
+ */
+public final class PaymentRequest {
+    private final PaymentCredentials credentials;
+    private final double amount;
+    private final String orderId;
+
+    /**
+     * Constructs a payment request.
+     *
+     * @param credentials the payer's credentials; they select the payment method
+     * @param amount the amount to charge
+     * @param orderId the order being paid, or null
+     */
+    public PaymentRequest(PaymentCredentials credentials, double amount, String orderId) {
+        this.credentials = Objects.requireNonNull(credentials, "credentials");
+        this.amount = amount;
+        this.orderId = orderId;
+    }
+
+    public PaymentCredentials getCredentials() { return credentials; }
+    public PaymentMethod getMethod() { return credentials.getMethod(); }
+    public double getAmount() { return amount; }
+    public String getOrderId() { return orderId; }
+
+    /**
+     * @param type the credentials class the calling strategy understands
+     * @param <T> the credentials type
+     * @return the credentials as that type
+     * @throws IllegalArgumentException if the request is for another payment method
+     */
+    public <T extends PaymentCredentials> T getCredentials(Class<T> type) {
+        if (!type.isInstance(credentials)) {
+            throw new IllegalArgumentException("Request carries " + credentials.getMethod().getDisplayName()
+                    + " credentials, not " + type.getName());
+        }
+        return type.cast(credentials);
+    }
+}
@@ -0,0 +1,154 @@
+package fsabeauty.strategy;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Shared policy for {@link ResilientPaymentStrategy}: the deadline of a payment, the hedge
+ * delay, one {@link CircuitBreaker} per payment method and the outcome counters. A single
+ * instance serves every checkout, so a provider's breaker sees all traffic to it.
+ */
+public class PaymentResilience {
+
+    /**
+     * Outcomes of single calls to a payment strategy.
+     */
+    public enum Outcome {
+        APPROVED,
+        DECLINED,
+        FAILED,
+        TIMED_OUT,
+        SHORT_CIRCUITED,
+        ABANDONED
+    }
+
+    private final long deadlineMillis;
+    private final long hedgeDelayMillis;
+    private final int windowSize;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLongArray> outcomes = new ConcurrentHashMap<>();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "payment-call");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a policy with failover only (no hedging), breakers over the last 20 calls
+     * opening at 50% failed or slow calls for 30 seconds.
+     *
+     * @param deadlineMillis longest a payment may take, fallback included
+     */
+    public PaymentResilience(long deadlineMillis) {
+        this(deadlineMillis, 0, 20, 0.5, 30_000);
+    }
+
+    /**
+     * Constructs a policy. A call is slow when it takes at least half the deadline.
+     *
+     * @param deadlineMillis longest a payment may take, fallback included
+     * @param hedgeDelayMillis when positive, the secondary strategy is also started if the primary
+     *                         has not answered after this long; 0 for failover only. Only payments
+     *                         with an order ID are hedged: it is passed to both providers as the
+     *                         idempotency key that keeps the order from being charged twice
+     * @param windowSize calls each breaker computes its failure rate over
+     * @param failureRateThreshold share of failed or slow calls that opens a breaker
+     * @param openMillis how long an open breaker rejects calls
+     */
+    public PaymentResilience(long deadlineMillis, long hedgeDelayMillis, int windowSize,
+                             double failureRateThreshold, long openMillis) {
+        if (deadlineMillis <= 0 || hedgeDelayMillis < 0 || hedgeDelayMillis >= deadlineMillis) {
+            throw new IllegalArgumentException("Hedge delay must be shorter than the deadline");
+        }
+        if (windowSize < 1 || failureRateThreshold <= 0 || failureRateThreshold > 1 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.deadlineMillis = deadlineMillis;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.windowSize = windowSize;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Wraps a strategy so it runs under this policy.
+     *
+     * @param primary the strategy to use normally
+     * @param secondary the strategy to fail over or hedge to, or null
+     * @return the guarded strategy
+     */
+    public PaymentStrategy guard(PaymentStrategy primary, PaymentStrategy secondary) {
+        return new ResilientPaymentStrategy(primary, secondary, this);
+    }
+
+    /**
+     * @param strategy a payment strategy
+     * @return the breaker shared by all strategies of its payment method
+     */
+    public CircuitBreaker breakerFor(PaymentStrategy strategy) {
+        return breakers.computeIfAbsent(strategy.getPaymentMethod(), method ->
+                new CircuitBreaker(method, windowSize, failureRateThreshold, Math.max(1, deadlineMillis / 2), openMillis));
+    }
+
+    void record(PaymentStrategy strategy, Outcome outcome) {
+        outcomes.computeIfAbsent(strategy.getPaymentMethod(), method -> new AtomicLongArray(Outcome.values().length))
+                .incrementAndGet(outcome.ordinal());
+    }
+
+    void recordFailover() {
+        failovers.incrementAndGet();
+    }
+
+    void recordHedge() {
+        hedges.incrementAndGet();
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    public long getDeadlineMillis() { return deadlineMillis; }
+    public long getHedgeDelayMillis() { return hedgeDelayMillis; }
+    public long getFailoverCount() { return failovers.get(); }
+    public long getHedgeCount() { return hedges.get(); }
+
+    /**
+     * @param paymentMethod a strategy's payment method name
+     * @param outcome an outcome
+     * @return number of calls to the method's strategies that ended with the outcome
+     */
+    public long getCount(String paymentMethod, Outcome outcome) {
+        AtomicLongArray counts = outcomes.get(paymentMethod);
+        return counts == null ? 0 : counts.get(outcome.ordinal());
+    }
+
+    /**
+     * @return one line per payment method with its call outcomes and breaker state
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder(String.format("Deadline %d ms, hedge %s: %d failover(s), %d hedge(s)%n",
+                deadlineMillis, hedgeDelayMillis > 0 ? "after " + hedgeDelayMillis + " ms" : "off",
+                failovers.get(), hedges.get()));
+        for (String method : new TreeMap<>(outcomes).keySet()) {
+            summary.append(String.format("%-11s", method));
+            for (Outcome outcome : Outcome.values()) {
+                summary.append(' ').append(outcome.name().toLowerCase()).append('=').append(getCount(method, outcome));
+            }
+            CircuitBreaker breaker = breakers.get(method);
+            if (breaker != null) {
+                summary.append(" | ").append(breaker.getState());
+            }
+            summary.append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+}
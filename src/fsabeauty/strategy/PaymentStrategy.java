@@ -19,6 +19,90 @@ public interface PaymentStrategy {
      */
     boolean processPayment(double amount);
 
+    /**
+     * Processes a payment on behalf of an order.
+     * Strategies that talk to a gateway pass the order reference along, so that later
+     * steps such as batched capture can be traced back to the order. The default ignores it.
+     *
+     * @param amount the monetary value to be processed in the payment transaction
+     * @param orderId the order being paid, or null if not known
+     * @return boolean indicating whether the payment was successfully completed
+     */
+    default boolean processPayment(double amount, String orderId) {
+        return processPayment(amount);
+    }
+
+    /**
+     * Processes a payment described by an immutable request.
+     * Stateless strategies registered in a {@link PaymentStrategyRegistry} take the payer's
+     * credentials from the request and can serve concurrent checkouts; strategies bound to
+     * their own credentials ignore the request's. The default delegates to
+     * {@link #processPayment(double, String)}.
+     *
+     * @param request the payment to process
+     * @return boolean indicating whether the payment was successfully completed
+     */
+    default boolean processPayment(PaymentRequest request) {
+        return processPayment(request.getAmount(), request.getOrderId());
+    }
+
+    /**
+     * Processes a payment on behalf of an order and reports the gateway's answer rather than
+     * just whether it was approved, so callers can tell a decline from a failed request.
+     * The default reports {@link GatewayResponse.Status#DECLINED} for any failure.
+     *
+     * @param amount the monetary value to be processed in the payment transaction
+     * @param orderId the order being paid, or null if not known
+     * @return the outcome of the payment
+     */
+    default GatewayResponse.Status attemptPayment(double amount, String orderId) {
+        return processPayment(amount, orderId) ? GatewayResponse.Status.APPROVED : GatewayResponse.Status.DECLINED;
+    }
+
+    /**
+     * Processes a payment described by an immutable request and reports the gateway's answer.
+     * The default reports {@link GatewayResponse.Status#DECLINED} for any failure.
+     *
+     * @param request the payment to process
+     * @return the outcome of the payment
+     */
+    default GatewayResponse.Status attemptPayment(PaymentRequest request) {
+        return processPayment(request) ? GatewayResponse.Status.APPROVED : GatewayResponse.Status.DECLINED;
+    }
+
+    /**
+     * Builds this method's credentials from raw details, e.g. those typed in at checkout.
+     *
+     * @param details the method-specific details in their documented order
+     * @return immutable credentials to pass in payment requests
+     * @throws IllegalArgumentException if the details are incomplete
+     * @throws UnsupportedOperationException if the strategy takes no credentials
+     */
+    default PaymentCredentials credentials(String... details) {
+        throw new UnsupportedOperationException(getPaymentMethod() + " does not take credentials");
+    }
+
+    /**
+     * Payment details for display, for the given credentials.
+     *
+     * @param credentials credentials of this strategy's method
+     * @return formatted details with sensitive data masked
+     */
+    default String getPaymentDetails(PaymentCredentials credentials) {
+        return getPaymentDetails();
+    }
+
+    /**
+     * Returns a view of this strategy bound to one payer's credentials, for APIs that pass
+     * only the amount. The view is immutable and shares this strategy.
+     *
+     * @param credentials credentials of this strategy's method
+     * @return a strategy paying with the credentials
+     */
+    default PaymentStrategy withCredentials(PaymentCredentials credentials) {
+        return new BoundPaymentStrategy(this, credentials);
+    }
+
     /**
      * Returns the human-readable name of the payment method.
      * This identifier is used for displaying the payment option to users
@@ -0,0 +1,100 @@
+package fsabeauty.strategy;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The payment strategy serving each payment method.
+ * Registered strategies are shared by every checkout and must be stateless and thread-safe,
+ * taking the payer's credentials from each {@link PaymentRequest}. Strategies can be registered
+ * or replaced while the store is running, e.g. to switch a method to another provider; lookups
+ * read an immutable snapshot and never block.
+ */
+public class PaymentStrategyRegistry {
+    private volatile Map<PaymentMethod, PaymentStrategy> strategies =
+            Collections.unmodifiableMap(new EnumMap<>(PaymentMethod.class));
+
+    /**
+     * Constructs a registry serving every method with the built-in strategies.
+     *
+     * @param gateway the provider the built-in strategies charge through; null to simulate fixed delays
+     * @return the registry
+     */
+    public static PaymentStrategyRegistry withDefaults(PaymentGateway gateway) {
+        PaymentStrategyRegistry registry = new PaymentStrategyRegistry();
+        registry.registerDefaults(gateway);
+        return registry;
+    }
+
+    /**
+     * Registers the built-in strategy of every method, replacing what was registered for it.
+     *
+     * @param gateway the provider the strategies charge through; null to simulate fixed delays
+     */
+    public synchronized void registerDefaults(PaymentGateway gateway) {
+        register(PaymentMethod.CREDIT_CARD, new CreditCardPayment(gateway));
+        register(PaymentMethod.APPLE_PAY, new ApplePayPayment(gateway));
+        register(PaymentMethod.QR, new QRPayment(gateway));
+    }
+
+    /**
+     * Registers the strategy serving a payment method.
+     *
+     * @param method the payment method
+     * @param strategy a stateless, thread-safe strategy
+     * @return the strategy it replaces, or null
+     */
+    public synchronized PaymentStrategy register(PaymentMethod method, PaymentStrategy strategy) {
+        Map<PaymentMethod, PaymentStrategy> updated = new EnumMap<>(PaymentMethod.class);
+        updated.putAll(strategies);
+        PaymentStrategy previous = updated.put(method, strategy);
+        strategies = Collections.unmodifiableMap(updated);
+        return previous;
+    }
+
+    /**
+     * Stops serving a payment method.
+     *
+     * @param method the payment method
+     * @return the strategy that served it, or null
+     */
+    public synchronized PaymentStrategy unregister(PaymentMethod method) {
+        if (!strategies.containsKey(method)) {
+            return null;
+        }
+        Map<PaymentMethod, PaymentStrategy> updated = new EnumMap<>(strategies);
+        PaymentStrategy previous = updated.remove(method);
+        strategies = Collections.unmodifiableMap(updated);
+        return previous;
+    }
+
+    /**
+     * @param method a payment method
+     * @return the strategy serving it, or null
+     */
+    public PaymentStrategy get(PaymentMethod method) {
+        return strategies.get(method);
+    }
+
+    /**
+     * @param method a payment method
+     * @return the strategy serving it
+     * @throws IllegalArgumentException if no strategy serves the method
+     */
+    public PaymentStrategy require(PaymentMethod method) {
+        PaymentStrategy strategy = strategies.get(method);
+        if (strategy == null) {
+            throw new IllegalArgumentException(method.getDisplayName() + " payments are not available");
+        }
+        return strategy;
+    }
+
+    /**
+     * @return the methods currently served
+     */
+    public Set<PaymentMethod> getMethods() {
+        return strategies.keySet();
+    }
+}
@@ -4,20 +4,20 @@ package fsabeauty.strategy;
  * Concrete implementation of PaymentStrategy for QR code-based payments.
  * Handles payment processing through QR code scanning and mobile payment applications.
  * This class simulates the QR payment flow including code scanning and confirmation waiting.
+ * An instance created without a QR code is stateless and serves any number of concurrent
+ * {@link PaymentRequest}s carrying {@link Credentials}.
  */
 public class QRPayment implements PaymentStrategy {
 
     /**
-     * The unique QR code string that represents the payment transaction
-     * Contains encrypted payment information that can be scanned by payment apps
+     * The code and app this instance is bound to; null for a stateless instance serving requests
      */
-    private String qrCode;
+    private final Credentials credentials;
 
     /**
-     * The specific mobile payment application used for processing the QR payment
-     * Examples: Kaspi Bank, Apple Pay, Google Pay, Alipay, etc.
+     * Provider the QR payment is confirmed through; null to simulate a fixed confirmation delay
      */
-    private String paymentApp;
+    private final PaymentGateway gateway;
 
     /**
      * Constructs a new QRPayment instance with QR code and payment app details
@@ -26,8 +26,29 @@ public class QRPayment implements PaymentStrategy {
      * @param paymentApp the mobile payment application used to process the payment
      */
     public QRPayment(String qrCode, String paymentApp) {
-        this.qrCode = qrCode;
-        this.paymentApp = paymentApp;
+        this(qrCode, paymentApp, null);
+    }
+
+    /**
+     * Constructs a QRPayment that is confirmed through a payment gateway
+     *
+     * @param qrCode the unique QR code string for the payment transaction
+     * @param paymentApp the mobile payment application used to process the payment
+     * @param gateway the provider to charge through
+     */
+    public QRPayment(String qrCode, String paymentApp, PaymentGateway gateway) {
+        this.credentials = new Credentials(qrCode, paymentApp);
+        this.gateway = gateway;
+    }
+
+    /**
+     * Constructs a stateless QRPayment that takes the QR code from each request
+     *
+     * @param gateway the provider to charge through; null to simulate a fixed confirmation delay
+     */
+    public QRPayment(PaymentGateway gateway) {
+        this.credentials = null;
+        this.gateway = gateway;
     }
 
     /**
@@ -41,24 +62,92 @@ public class QRPayment implements PaymentStrategy {
      */
     @Override
     public boolean processPayment(double amount) {
-        System.out.printf("   Processing QR payment of $%.2f via %s%n", amount, paymentApp);
-        System.out.println("  Scanning QR code: " + getShortQrCode());
+        return processPayment(amount, null);
+    }
+
+    /**
+     * Processes the payment on behalf of an order; the order reference is passed to the gateway
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return boolean indicating whether the payment was successfully processed
+     */
+    @Override
+    public boolean processPayment(double amount, String orderId) {
+        return processPayment(new PaymentRequest(boundCredentials(), amount, orderId));
+    }
+
+    /**
+     * Confirms the QR payment carried by the request
+     *
+     * @param request the payment, with {@link Credentials}
+     * @return boolean indicating whether the payment was successfully processed
+     */
+    @Override
+    public boolean processPayment(PaymentRequest request) {
+        return attemptPayment(request) == GatewayResponse.Status.APPROVED;
+    }
+
+    /**
+     * Pays on behalf of an order with this strategy's own credentials and reports the gateway's answer
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return the outcome of the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(double amount, String orderId) {
+        return attemptPayment(new PaymentRequest(boundCredentials(), amount, orderId));
+    }
+
+    /**
+     * Confirms the QR payment carried by the request and reports the gateway's answer
+     *
+     * @param request the payment, with {@link Credentials}
+     * @return the outcome of the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(PaymentRequest request) {
+        Credentials qr = request.getCredentials(Credentials.class);
+        double amount = request.getAmount();
+        PaymentConsole.printf("   Processing QR payment of $%.2f via %s%n", amount, qr.paymentApp);
+        PaymentConsole.println("  Scanning QR code: " + qr.getShortQrCode());
 
         // Validate QR code length
-        if (qrCode == null || qrCode.length() < 4) {
-            System.out.println("  Invalid QR code format!");
-            return false;
+        if (qr.qrCode == null || qr.qrCode.length() < 4) {
+            PaymentConsole.println("  Invalid QR code format!");
+            return GatewayResponse.Status.DECLINED;
+        }
+
+        if (gateway != null) {
+            GatewayResponse response = gateway.charge(PaymentMethod.QR, amount, qr.getShortQrCode(), request.getOrderId());
+            PaymentConsole.println("  QR gateway response: " + response);
+            return response.getStatus();
         }
 
         try {
-            System.out.println("  Waiting for QR confirmation...");
+            PaymentConsole.println("  Waiting for QR confirmation...");
             Thread.sleep(1500);
-            System.out.println("  QR payment confirmed!");
-            return true;
+            PaymentConsole.println("  QR payment confirmed!");
+            return GatewayResponse.Status.APPROVED;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return false;
+            return GatewayResponse.Status.TIMED_OUT;
+        }
+    }
+
+    /**
+     * Builds QR credentials from checkout details
+     *
+     * @param details the QR code and the payment app
+     * @return the QR credentials
+     */
+    @Override
+    public PaymentCredentials credentials(String... details) {
+        if (details.length < 2) {
+            throw new IllegalArgumentException("QR payment requires code and app name");
         }
+        return new Credentials(details[0], details[1]);
     }
 
     /**
@@ -81,19 +170,84 @@ public class QRPayment implements PaymentStrategy {
      */
     @Override
     public String getPaymentDetails() {
-        return String.format("QR Payment via %s (Code: %s)", paymentApp, getShortQrCode());
+        return credentials == null ? "QR Payment - any app" : getPaymentDetails(credentials);
+    }
+
+    @Override
+    public String getPaymentDetails(PaymentCredentials credentials) {
+        Credentials qr = (Credentials) credentials;
+        return String.format("QR Payment via %s (Code: %s)", qr.paymentApp, qr.getShortQrCode());
+    }
+
+    private Credentials boundCredentials() {
+        if (credentials == null) {
+            throw new IllegalStateException("Stateless QR strategy needs a PaymentRequest with a QR code");
+        }
+        return credentials;
     }
 
     /**
-     * Gets a shortened version of the QR code for display purposes
-     * Handles cases where QR code is shorter than expected length
-     *
-     * @return shortened QR code string with ellipsis if applicable
+     * Immutable QR code and payment app of one payer
      */
-    private String getShortQrCode() {
-        if (qrCode == null || qrCode.length() <= 10) {
-            return qrCode;
+    public static final class Credentials implements PaymentCredentials {
+
+        /**
+         * The unique QR code string that represents the payment transaction
+         * Contains encrypted payment information that can be scanned by payment apps
+         */
+        private final String qrCode;
+
+        /**
+         * The specific mobile payment application used for processing the QR payment
+         * Examples: Kaspi Bank, Apple Pay, Google Pay, Alipay, etc.
+         */
+        private final String paymentApp;
+
+        /**
+         * Constructs QR credentials
+         *
+         * @param qrCode the unique QR code string for the payment transaction
+         * @param paymentApp the mobile payment application used to process the payment
+         */
+        public Credentials(String qrCode, String paymentApp) {
+            this.qrCode = qrCode;
+            this.paymentApp = paymentApp;
+        }
+
+        @Override
+        public PaymentMethod getMethod() {
+            return PaymentMethod.QR;
+        }
+
+        /**
+         * The payment app is shared by all of its customers, so the payer is told apart by
+         * the QR code instead.
+         *
+         * @return a hash of the QR code
+         */
+        @Override
+        public String getPayerKey() {
+            return PayerKeys.hashed("qr", qrCode);
+        }
+
+        public String getPaymentApp() { return paymentApp; }
+
+        /**
+         * Gets a shortened version of the QR code for display purposes
+         * Handles cases where QR code is shorter than expected length
+         *
+         * @return shortened QR code string with ellipsis if applicable
+         */
+        public String getShortQrCode() {
+            if (qrCode == null || qrCode.length() <= 10) {
+                return qrCode;
+            }
+            return qrCode.substring(0, 10) + "...";
+        }
+
+        @Override
+        public String toString() {
+            return "QR via " + paymentApp;
         }
-        return qrCode.substring(0, 10) + "...";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,257 @@
+package fsabeauty.strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator running a payment strategy under a {@link PaymentResilience} policy.
+ * The payment must finish within the policy's deadline; a call that has not answered by then
+ * is interrupted and the payment reported as timed out, since the provider may still have
+ * charged. Calls to a provider whose circuit breaker is open are not made at all. The payment
+ * fails over to the secondary strategy only when the primary certainly charged nothing: it
+ * was short-circuited or answered with a gateway error or throttling. A decline is the
+ * provider's definite answer; it is returned as is and does not count against the breaker.
+ * With a hedge delay and an order ID the secondary is also started alongside a primary slower
+ * than that, and the first approval wins; the order ID is passed to both as the idempotency key
+ * the provider uses to charge the order at most once.
+ */
+public class ResilientPaymentStrategy implements PaymentStrategy {
+    private final PaymentStrategy primary;
+    private final PaymentStrategy secondary;
+    private final PaymentResilience policy;
+
+    /**
+     * Constructs a guarded strategy.
+     *
+     * @param primary the strategy to use normally
+     * @param secondary the strategy to fail over or hedge to, or null
+     * @param policy deadline, hedging, breakers and outcome counters shared with other checkouts
+     */
+    public ResilientPaymentStrategy(PaymentStrategy primary, PaymentStrategy secondary, PaymentResilience policy) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean processPayment(double amount) {
+        return processPayment(amount, null);
+    }
+
+    /**
+     * Pays through the primary strategy, the secondary one or both, within the deadline.
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null
+     * @return true if one of the strategies approved the payment in time
+     */
+    @Override
+    public boolean processPayment(double amount, String orderId) {
+        return attemptPayment(amount, orderId) == GatewayResponse.Status.APPROVED;
+    }
+
+    /**
+     * Pays through the primary strategy, the secondary one or both, within the deadline.
+     *
+     * @param amount the monetary amount to be charged
+     * @param orderId the order being paid, or null; required for hedging
+     * @return APPROVED if a strategy approved in time; TIMED_OUT if a call was still open at the
+     *         deadline and may have charged; DECLINED if a provider declined; ERROR or THROTTLED
+     *         if no provider could take the payment
+     */
+    @Override
+    public GatewayResponse.Status attemptPayment(double amount, String orderId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+        CompletionService<GatewayResponse.Status> completions = new ExecutorCompletionService<>(policy.executor());
+        List<Call> running = new ArrayList<>(2);
+        GatewayResponse.Status outcome = null;
+
+        boolean secondaryStarted = false;
+        if (!start(primary, amount, orderId, completions, running)) {
+            secondaryStarted = failOver(amount, orderId, completions, running);
+        }
+        // Racing two providers is only safe when they can recognise the same order
+        boolean hedging = policy.getHedgeDelayMillis() > 0 && secondary != null && orderId != null;
+        long hedgeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getHedgeDelayMillis());
+
+        try {
+            while (!running.isEmpty()) {
+                long waitUntil = hedging && !secondaryStarted ? Math.min(hedgeAt, deadline) : deadline;
+                Future<GatewayResponse.Status> done = completions.poll(waitUntil - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (System.nanoTime() - deadline >= 0) {
+                        break;
+                    }
+                    // Primary slower than the hedge delay: race the secondary against it
+                    secondaryStarted = true;
+                    if (start(secondary, amount, orderId, completions, running)) {
+                        policy.recordHedge();
+                    }
+                    continue;
+                }
+
+                Call call = remove(running, done);
+                if (call == null) {
+                    continue; // a call abandoned earlier, completing as cancelled
+                }
+                GatewayResponse.Status status = call.finish(done);
+                if (status == GatewayResponse.Status.APPROVED) {
+                    abandon(running, PaymentResilience.Outcome.ABANDONED);
+                    return status;
+                }
+                outcome = combine(outcome, status);
+                if (GatewayResponse.isRetryable(status) && !secondaryStarted && System.nanoTime() - deadline < 0) {
+                    secondaryStarted = failOver(amount, orderId, completions, running);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!running.isEmpty()) {
+            abandon(running, PaymentResilience.Outcome.TIMED_OUT);
+            return GatewayResponse.Status.TIMED_OUT;
+        }
+        return outcome == null ? GatewayResponse.Status.ERROR : outcome;
+    }
+
+    // Outcome of several unapproved calls: an unknown result outweighs a decline, and a decline a failed request
+    private static GatewayResponse.Status combine(GatewayResponse.Status current, GatewayResponse.Status next) {
+        return current == null || rank(next) > rank(current) ? next : current;
+    }
+
+    private static int rank(GatewayResponse.Status status) {
+        switch (status) {
+            case TIMED_OUT:
+                return 2;
+            case DECLINED:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private boolean failOver(double amount, String orderId, CompletionService<GatewayResponse.Status> completions,
+                             List<Call> running) {
+        if (secondary == null) {
+            return false;
+        }
+        policy.recordFailover();
+        start(secondary, amount, orderId, completions, running);
+        return true;
+    }
+
+    private boolean start(PaymentStrategy strategy, double amount, String orderId,
+                          CompletionService<GatewayResponse.Status> completions, List<Call> running) {
+        CircuitBreaker breaker = policy.breakerFor(strategy);
+        if (!breaker.tryAcquire()) {
+            policy.record(strategy, PaymentResilience.Outcome.SHORT_CIRCUITED);
+            PaymentConsole.println(strategy.getPaymentMethod() + " skipped: circuit breaker open");
+            return false;
+        }
+        running.add(new Call(strategy, breaker,
+                completions.submit(PaymentConsole.inheritingMute(() -> strategy.attemptPayment(amount, orderId)))));
+        return true;
+    }
+
+    private static Call remove(List<Call> running, Future<GatewayResponse.Status> future) {
+        for (int i = 0; i < running.size(); i++) {
+            if (running.get(i).future == future) {
+                return running.remove(i);
+            }
+        }
+        return null;
+    }
+
+    // Interrupts calls still in flight; losing a hedge race counts against the provider like a timeout
+    private void abandon(List<Call> running, PaymentResilience.Outcome outcome) {
+        for (Call call : running) {
+            call.future.cancel(true);
+            call.breaker.record(false, call.elapsedMillis());
+            policy.record(call.strategy, outcome);
+        }
+        running.clear();
+    }
+
+    @Override
+    public String getPaymentMethod() {
+        return primary.getPaymentMethod();
+    }
+
+    @Override
+    public String getPaymentDetails() {
+        return primary.getPaymentDetails() + (secondary != null ? " (fallback: " + secondary.getPaymentMethod() + ")" : "");
+    }
+
+    /**
+     * @return the strategy used normally
+     */
+    public PaymentStrategy getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return the fallback strategy, or null
+     */
+    public PaymentStrategy getSecondary() {
+        return secondary;
+    }
+
+    /**
+     * One strategy call in flight.
+     */
+    private final class Call {
+        private final PaymentStrategy strategy;
+        private final CircuitBreaker breaker;
+        private final Future<GatewayResponse.Status> future;
+        private final long startNanos = System.nanoTime();
+
+        Call(PaymentStrategy strategy, CircuitBreaker breaker, Future<GatewayResponse.Status> future) {
+            this.strategy = strategy;
+            this.breaker = breaker;
+            this.future = future;
+        }
+
+        long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        // Records the result of the completed call; a decline is a healthy provider answering
+        GatewayResponse.Status finish(Future<GatewayResponse.Status> done) {
+            GatewayResponse.Status status;
+            try {
+                status = done.get();
+            } catch (ExecutionException e) {
+                // The strategy failed before it got an answer from the provider
+                status = GatewayResponse.Status.ERROR;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = GatewayResponse.Status.TIMED_OUT;
+            }
+            if (status == null) {
+                status = GatewayResponse.Status.ERROR;
+            }
+            boolean answered = status == GatewayResponse.Status.APPROVED || status == GatewayResponse.Status.DECLINED;
+            breaker.record(answered, elapsedMillis());
+            policy.record(strategy, outcomeOf(status));
+            return status;
+        }
+
+        private PaymentResilience.Outcome outcomeOf(GatewayResponse.Status status) {
+            switch (status) {
+                case APPROVED:
+                    return PaymentResilience.Outcome.APPROVED;
+                case DECLINED:
+                    return PaymentResilience.Outcome.DECLINED;
+                case TIMED_OUT:
+                    return PaymentResilience.Outcome.TIMED_OUT;
+                default:
+                    return PaymentResilience.Outcome.FAILED;
+            }
+        }
+    }
+}
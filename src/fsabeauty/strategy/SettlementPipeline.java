@@ -0,0 +1,387 @@
+package fsabeauty.strategy;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Gateway wrapper that authorizes each payment at once but settles in batches.
+ * A charge is authorized through the delegate while the customer waits; the capture is
+ * queued per payment method and sent together with others when the batch is full or its
+ * oldest capture has waited the maximum delay, whichever comes first. Captures failing
+ * with a gateway error, throttling or a timeout are queued again after an exponential
+ * backoff, up to a number of attempts; declined captures are final. The outcome of every
+ * capture is reported per order and kept for a while after settling, the most recent
+ * ones first.
+ */
+public class SettlementPipeline implements PaymentGateway, AutoCloseable {
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+    private static final long SETTLED_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_SETTLED = 10_000;
+
+    private final PaymentGateway delegate;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final ScheduledExecutorService scheduler;
+    private final Map<PaymentMethod, Batch> batches = new EnumMap<>(PaymentMethod.class);
+    private final Map<String, CompletableFuture<GatewayResponse>> captures = new ConcurrentHashMap<>();
+    private final DelayQueue<PendingCapture> backingOff = new DelayQueue<>();
+    private final ConcurrentLinkedQueue<PendingCapture> settled = new ConcurrentLinkedQueue<>(); // settling order
+    private final AtomicInteger settledCount = new AtomicInteger();
+    private volatile BiConsumer<String, GatewayResponse> resultListener;
+
+    private final AtomicLong capturesSent = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    /**
+     * Constructs a settlement pipeline.
+     *
+     * @param delegate the gateway that authorizes and captures
+     * @param batchSize captures per request at most; a full batch is sent at once
+     * @param maxDelayMillis longest a capture waits for its batch to fill
+     * @param maxAttempts times a capture is sent before a gateway error or throttling is final
+     */
+    public SettlementPipeline(PaymentGateway delegate, int batchSize, long maxDelayMillis, int maxAttempts) {
+        if (batchSize < 1 || maxDelayMillis < 0 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid settlement settings");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "settlement");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (PaymentMethod method : PaymentMethod.values()) {
+            batches.put(method, new Batch(method));
+        }
+    }
+
+    @Override
+    public GatewayResponse charge(PaymentMethod method, double amount, String reference) {
+        return charge(method, amount, reference, null);
+    }
+
+    /**
+     * Authorizes the amount and queues its capture. The returned response is the
+     * authorization's; the capture's arrives later through {@link #getCapture(String)}
+     * and the result listener.
+     */
+    @Override
+    public GatewayResponse charge(PaymentMethod method, double amount, String reference, String orderId) {
+        GatewayResponse authorization = delegate.authorize(method, amount, reference);
+        if (authorization.isApproved()) {
+            String key = orderId != null ? orderId : authorization.getTransactionId();
+            CompletableFuture<GatewayResponse> result = new CompletableFuture<>();
+            captures.put(key, result);
+            batches.get(method).add(new PendingCapture(key, method,
+                    new CaptureRequest(authorization.getTransactionId(), amount), result));
+        }
+        pruneSettled(System.currentTimeMillis());
+        return authorization;
+    }
+
+    /**
+     * Charged if the order's authorization went through this pipeline and is still tracked;
+     * otherwise the delegate cannot tell, as orders are authorized there without their order ID.
+     */
+    @Override
+    public GatewayResponse.Status chargeStatus(String orderId) {
+        return captures.containsKey(orderId) ? GatewayResponse.Status.APPROVED : GatewayResponse.Status.TIMED_OUT;
+    }
+
+    @Override
+    public GatewayResponse authorize(PaymentMethod method, double amount, String reference) {
+        return delegate.authorize(method, amount, reference);
+    }
+
+    @Override
+    public List<GatewayResponse> capture(PaymentMethod method, List<CaptureRequest> requests) {
+        return delegate.capture(method, requests);
+    }
+
+    /**
+     * @param orderId an order charged through this pipeline (the authorization ID if it had none)
+     * @return the capture outcome once settled, or null for an unknown order or one settled
+     *         long enough ago to be forgotten
+     */
+    public CompletableFuture<GatewayResponse> getCapture(String orderId) {
+        return captures.get(orderId);
+    }
+
+    /**
+     * Sets the callback receiving each order's final capture outcome, on the sending thread.
+     *
+     * @param listener receives the order ID and the capture response; null to remove
+     */
+    public void setResultListener(BiConsumer<String, GatewayResponse> listener) {
+        this.resultListener = listener;
+    }
+
+    /**
+     * Sends every queued capture now and returns when they are settled. Retries are still
+     * sent only once their backoff has passed, so this waits for them.
+     */
+    public void flush() {
+        boolean pending = true;
+        while (pending) {
+            pending = false;
+            for (Batch batch : batches.values()) {
+                List<PendingCapture> items = batch.drain();
+                if (!items.isEmpty()) {
+                    send(batch, items);
+                    pending = true;
+                }
+            }
+            if (!pending && !backingOff.isEmpty()) {
+                try {
+                    requeue(backingOff.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                requeueDue();
+                pending = true;
+            }
+        }
+    }
+
+    /**
+     * Stops the timer and settles whatever is still queued.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void send(Batch batch, List<PendingCapture> items) {
+        List<CaptureRequest> requests = new ArrayList<>(items.size());
+        for (PendingCapture item : items) {
+            requests.add(item.request);
+        }
+        batchesSent.incrementAndGet();
+        capturesSent.addAndGet(items.size());
+        List<GatewayResponse> responses = delegate.capture(batch.method, requests);
+
+        for (int i = 0; i < items.size(); i++) {
+            PendingCapture item = items.get(i);
+            GatewayResponse response = responses.get(i);
+            switch (response.getStatus()) {
+                case ERROR:
+                case THROTTLED:
+                case TIMED_OUT:
+                    if (++item.attempts < maxAttempts) {
+                        retried.incrementAndGet();
+                        backOff(item);
+                        continue;
+                    }
+                    failed.incrementAndGet();
+                    break;
+                case DECLINED:
+                    declined.incrementAndGet();
+                    break;
+                default:
+                    captured.incrementAndGet();
+            }
+            item.result.complete(response);
+            item.settledAt = System.currentTimeMillis();
+            settled.add(item);
+            settledCount.incrementAndGet();
+            BiConsumer<String, GatewayResponse> listener = resultListener;
+            if (listener != null) {
+                listener.accept(item.orderId, response);
+            }
+        }
+        pruneSettled(System.currentTimeMillis());
+    }
+
+    // Exponential backoff with equal jitter - half the ceiling plus a random part of the other
+    // half, so a provider recovering from an outage is not hit by every retry at once
+    private void backOff(PendingCapture item) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(item.attempts - 1, 16));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        item.retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        backingOff.add(item);
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::requeueDue, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void requeueDue() {
+        PendingCapture item;
+        while ((item = backingOff.poll()) != null) {
+            requeue(item);
+        }
+    }
+
+    private void requeue(PendingCapture item) {
+        batches.get(item.method).add(item);
+    }
+
+    // Forgets settled captures past the retention time, or the oldest beyond the cap
+    private void pruneSettled(long now) {
+        PendingCapture oldest;
+        while ((oldest = settled.peek()) != null
+                && (now - oldest.settledAt >= SETTLED_RETENTION_MILLIS || settledCount.get() > MAX_SETTLED)) {
+            if (settled.remove(oldest)) {
+                settledCount.decrementAndGet();
+                captures.remove(oldest.orderId, oldest.result);
+            }
+        }
+    }
+
+    public int getBatchSize() { return batchSize; }
+    public long getMaxDelayMillis() { return maxDelayMillis; }
+    public long getCapturedCount() { return captured.get(); }
+    public long getDeclinedCount() { return declined.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getBatchCount() { return batchesSent.get(); }
+    public int getTrackedCount() { return captures.size(); }
+
+    /**
+     * @return captures waiting in a batch or for a retry
+     */
+    public int getQueuedCount() {
+        int queued = backingOff.size();
+        for (Batch batch : batches.values()) {
+            queued += batch.size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return mean number of captures per request sent
+     */
+    public double getAverageBatchSize() {
+        long sent = batchesSent.get();
+        return sent == 0 ? 0 : (double) capturesSent.get() / sent;
+    }
+
+    /**
+     * @return one line with capture outcomes and batching efficiency
+     */
+    public String getSummary() {
+        return String.format("Settlement: %d captured, %d declined, %d failed, %d retried, %d queued"
+                        + " | %d batch request(s), %.1f captures/request",
+                captured.get(), declined.get(), failed.get(), retried.get(), getQueuedCount(),
+                batchesSent.get(), getAverageBatchSize());
+    }
+
+    /**
+     * Captures of one payment method waiting to be sent.
+     */
+    private final class Batch {
+        private final PaymentMethod method;
+        private List<PendingCapture> items = new ArrayList<>();
+        private ScheduledFuture<?> timer;
+
+        Batch(PaymentMethod method) {
+            this.method = method;
+        }
+
+        void add(PendingCapture item) {
+            List<PendingCapture> full = null;
+            synchronized (this) {
+                items.add(item);
+                if (items.size() >= batchSize) {
+                    full = take();
+                } else if (timer == null && !scheduler.isShutdown()) {
+                    timer = scheduler.schedule(this::sendDue, maxDelayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (full != null) {
+                List<PendingCapture> toSend = full;
+                if (!scheduler.isShutdown()) {
+                    scheduler.execute(() -> send(this, toSend));
+                } else {
+                    send(this, toSend);
+                }
+            }
+        }
+
+        private void sendDue() {
+            List<PendingCapture> due = drain();
+            if (!due.isEmpty()) {
+                send(this, due);
+            }
+        }
+
+        synchronized List<PendingCapture> drain() {
+            return items.isEmpty() ? new ArrayList<>() : take();
+        }
+
+        synchronized int size() {
+            return items.size();
+        }
+
+        // Caller holds the lock
+        private List<PendingCapture> take() {
+            List<PendingCapture> taken = items;
+            items = new ArrayList<>(batchSize);
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            return taken;
+        }
+    }
+
+    /**
+     * One order's capture on its way to the gateway; delayed until its retry is due.
+     */
+    private static final class PendingCapture implements Delayed {
+        private final String orderId;
+        private final PaymentMethod method;
+        private final CaptureRequest request;
+        private final CompletableFuture<GatewayResponse> result;
+        private int attempts;
+        private volatile long retryAt; // System.nanoTime()
+        private volatile long settledAt;
+
+        PendingCapture(String orderId, PaymentMethod method, CaptureRequest request,
+                       CompletableFuture<GatewayResponse> result) {
+            this.orderId = orderId;
+            this.method = method;
+            this.request = request;
+            this.result = result;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(retryAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.signum(retryAt - ((PendingCapture) other).retryAt);
+        }
+    }
+}
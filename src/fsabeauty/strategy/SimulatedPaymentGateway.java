@@ -0,0 +1,366 @@
+package fsabeauty.strategy;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-process stand-in for the payment providers.
+ * Each payment method has a {@link Profile}: a latency distribution given by its median and
+ * 99th percentile, rates of declines, gateway errors and stalls, and a request-per-second
+ * quota above which requests are throttled at once. Calls block for the sampled latency
+ * like a real round trip, so strategies, retries and timeouts can be exercised under
+ * realistic conditions without a network. Profiles can be swapped while running to
+ * simulate a provider degrading or recovering. Besides one-step charges the gateway supports
+ * authorizing first and capturing later in batches; outcomes are counted per item either way.
+ * Charges carrying an order ID are idempotent like a real provider's: a second charge for an
+ * order already charged is answered with the first charge's transaction and collects nothing.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+    private static final double Z_99 = 2.3263; // standard normal 99th percentile
+    private static final int REMEMBERED_ORDERS = 10_000;
+
+    private final AtomicReferenceArray<Profile> profiles = new AtomicReferenceArray<>(PaymentMethod.values().length);
+    private final AtomicReferenceArray<Quota> quotas = new AtomicReferenceArray<>(PaymentMethod.values().length);
+    private final AtomicLongArray[] outcomes = new AtomicLongArray[PaymentMethod.values().length];
+    private final AtomicLong[] batches = new AtomicLong[PaymentMethod.values().length];
+    private final AtomicLong transactionSequence = new AtomicLong();
+    private final ConcurrentHashMap<String, Double> authorizations = new ConcurrentHashMap<>();
+    private final AtomicLong duplicateCharges = new AtomicLong();
+    private final ConcurrentHashMap<String, Integer> ordersInFlight = new ConcurrentHashMap<>();
+    // Transaction of each recently charged order, oldest forgotten first
+    private final Map<String, String> chargedOrders = new LinkedHashMap<String, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > REMEMBERED_ORDERS;
+        }
+    };
+
+    /**
+     * Constructs a gateway with the default profile of every method.
+     */
+    public SimulatedPaymentGateway() {
+        this(new EnumMap<>(PaymentMethod.class));
+    }
+
+    /**
+     * Constructs a gateway.
+     *
+     * @param profiles behaviour per method; methods left out use {@link Profile#defaults(PaymentMethod)}
+     */
+    public SimulatedPaymentGateway(Map<PaymentMethod, Profile> profiles) {
+        for (PaymentMethod method : PaymentMethod.values()) {
+            outcomes[method.ordinal()] = new AtomicLongArray(GatewayResponse.Status.values().length);
+            batches[method.ordinal()] = new AtomicLong();
+            setProfile(method, profiles.getOrDefault(method, Profile.defaults(method)));
+        }
+    }
+
+    /**
+     * Replaces a method's behaviour, e.g. to make a provider slow down mid-test.
+     *
+     * @param method the payment method
+     * @param profile its new behaviour
+     */
+    public void setProfile(PaymentMethod method, Profile profile) {
+        profiles.set(method.ordinal(), profile);
+        quotas.set(method.ordinal(), new Quota(profile.requestsPerSecond));
+    }
+
+    /**
+     * @param method the payment method
+     * @return its current behaviour
+     */
+    public Profile getProfile(PaymentMethod method) {
+        return profiles.get(method.ordinal());
+    }
+
+    @Override
+    public GatewayResponse charge(PaymentMethod method, double amount, String reference) {
+        long start = System.nanoTime();
+        GatewayResponse.Status failure = roundTrip(method, start, 1);
+        if (failure != null) {
+            return record(method, failure, null, start);
+        }
+        if (rejectedByIssuer(method, amount)) {
+            return record(method, GatewayResponse.Status.DECLINED, null, start);
+        }
+        return record(method, GatewayResponse.Status.APPROVED, nextTransactionId("TX", method), start);
+    }
+
+    /**
+     * Charges at most once per order: when the order was already charged, the earlier
+     * transaction is returned and nothing is collected again.
+     */
+    @Override
+    public GatewayResponse charge(PaymentMethod method, double amount, String reference, String orderId) {
+        if (orderId == null) {
+            return charge(method, amount, reference);
+        }
+        ordersInFlight.merge(orderId, 1, Integer::sum);
+        try {
+            GatewayResponse response = charge(method, amount, reference);
+            if (!response.isApproved()) {
+                return response;
+            }
+            String earlier;
+            synchronized (chargedOrders) {
+                earlier = chargedOrders.putIfAbsent(orderId, response.getTransactionId());
+            }
+            if (earlier == null) {
+                return response;
+            }
+            duplicateCharges.incrementAndGet();
+            return new GatewayResponse(GatewayResponse.Status.APPROVED, earlier, response.getLatencyMicros());
+        } finally {
+            ordersInFlight.computeIfPresent(orderId, (order, requests) -> requests == 1 ? null : requests - 1);
+        }
+    }
+
+    /**
+     * Charged if a charge of the order was approved recently, unknown while one is still in
+     * progress, otherwise not charged.
+     */
+    @Override
+    public GatewayResponse.Status chargeStatus(String orderId) {
+        synchronized (chargedOrders) {
+            if (chargedOrders.containsKey(orderId)) {
+                return GatewayResponse.Status.APPROVED;
+            }
+        }
+        return ordersInFlight.containsKey(orderId) ? GatewayResponse.Status.TIMED_OUT : GatewayResponse.Status.DECLINED;
+    }
+
+    /**
+     * Reserves the amount; the approved response's transaction ID can be captured once,
+     * for at most the authorized amount.
+     */
+    @Override
+    public GatewayResponse authorize(PaymentMethod method, double amount, String reference) {
+        long start = System.nanoTime();
+        GatewayResponse.Status failure = roundTrip(method, start, 1);
+        if (failure != null) {
+            return record(method, failure, null, start);
+        }
+        if (rejectedByIssuer(method, amount)) {
+            return record(method, GatewayResponse.Status.DECLINED, null, start);
+        }
+        String authorizationId = nextTransactionId("AU", method);
+        authorizations.put(authorizationId, amount);
+        return record(method, GatewayResponse.Status.APPROVED, authorizationId, start);
+    }
+
+    /**
+     * Captures the whole batch in one request: one quota token and one round trip, a little
+     * slower per extra item. A gateway error fails every item; unknown, already captured or
+     * over-authorized items are declined individually.
+     */
+    @Override
+    public List<GatewayResponse> capture(PaymentMethod method, List<CaptureRequest> captures) {
+        long start = System.nanoTime();
+        batches[method.ordinal()].incrementAndGet();
+        GatewayResponse.Status failure = roundTrip(method, start, captures.size());
+        List<GatewayResponse> responses = new ArrayList<>(captures.size());
+        for (CaptureRequest capture : captures) {
+            if (failure != null) {
+                responses.add(record(method, failure, null, start));
+                continue;
+            }
+            Double authorized = authorizations.get(capture.getAuthorizationId());
+            if (authorized == null || capture.getAmount() > authorized + 1e-9
+                    || !authorizations.remove(capture.getAuthorizationId(), authorized)) {
+                responses.add(record(method, GatewayResponse.Status.DECLINED, null, start));
+            } else {
+                responses.add(record(method, GatewayResponse.Status.APPROVED, nextTransactionId("CP", method), start));
+            }
+        }
+        return responses;
+    }
+
+    // Quota check, sampled latency and gateway errors of one request; null when it got through
+    private GatewayResponse.Status roundTrip(PaymentMethod method, long start, int items) {
+        Profile profile = profiles.get(method.ordinal());
+        if (!quotas.get(method.ordinal()).tryAcquire(start)) {
+            return GatewayResponse.Status.THROTTLED;
+        }
+
+        Random random = ThreadLocalRandom.current();
+        long latencyMicros = profile.sampleLatencyMicros(random);
+        if (random.nextDouble() < profile.stallRate) {
+            // The provider accepted the connection but answers very late
+            latencyMicros = Math.max(latencyMicros, profile.p99Millis * 10_000L);
+        }
+        latencyMicros += latencyMicros * (items - 1) / 50; // batches cost ~2% more per extra item
+        try {
+            TimeUnit.MICROSECONDS.sleep(latencyMicros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return GatewayResponse.Status.ERROR;
+        }
+        return random.nextDouble() < profile.errorRate ? GatewayResponse.Status.ERROR : null;
+    }
+
+    private boolean rejectedByIssuer(PaymentMethod method, double amount) {
+        return amount <= 0 || ThreadLocalRandom.current().nextDouble() < profiles.get(method.ordinal()).declineRate;
+    }
+
+    private String nextTransactionId(String prefix, PaymentMethod method) {
+        return prefix + method.ordinal() + "-" + transactionSequence.incrementAndGet();
+    }
+
+    private GatewayResponse record(PaymentMethod method, GatewayResponse.Status status, String transactionId, long start) {
+        outcomes[method.ordinal()].incrementAndGet(status.ordinal());
+        return new GatewayResponse(status, transactionId, (System.nanoTime() - start) / 1000);
+    }
+
+    /**
+     * @param method the payment method
+     * @param status an outcome
+     * @return number of requests of the method that ended with the outcome
+     */
+    public long getCount(PaymentMethod method, GatewayResponse.Status status) {
+        return outcomes[method.ordinal()].get(status.ordinal());
+    }
+
+    /**
+     * @param method the payment method
+     * @return number of capture requests of the method, whatever their size
+     */
+    public long getCaptureBatchCount(PaymentMethod method) {
+        return batches[method.ordinal()].get();
+    }
+
+    /**
+     * @return number of charges answered with an earlier charge of the same order
+     */
+    public long getDuplicateChargeCount() {
+        return duplicateCharges.get();
+    }
+
+    /**
+     * @return number of approved authorizations not captured yet
+     */
+    public int getOpenAuthorizationCount() {
+        return authorizations.size();
+    }
+
+    /**
+     * @return one line per method with its request outcomes
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (PaymentMethod method : PaymentMethod.values()) {
+            summary.append(String.format("%-11s", method.getDisplayName()));
+            for (GatewayResponse.Status status : GatewayResponse.Status.values()) {
+                summary.append(' ').append(status.name().toLowerCase()).append('=').append(getCount(method, status));
+            }
+            summary.append(" capture-batches=").append(getCaptureBatchCount(method));
+            summary.append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Simulated behaviour of one payment method's provider.
+     */
+    public static final class Profile {
+        private final long p50Millis;
+        private final long p99Millis;
+        private final double errorRate;
+        private final double declineRate;
+        private final double stallRate;
+        private final int requestsPerSecond;
+        private final double sigma;
+
+        /**
+         * Constructs a profile. Latency follows a log-normal distribution through the two percentiles.
+         *
+         * @param p50Millis median latency
+         * @param p99Millis 99th percentile latency, at least the median
+         * @param errorRate share of requests failing with a gateway error
+         * @param declineRate share of requests declined by the issuer
+         * @param stallRate share of requests answered only after ten times the p99 latency
+         * @param requestsPerSecond quota before requests are throttled, 0 for none
+         */
+        public Profile(long p50Millis, long p99Millis, double errorRate, double declineRate,
+                       double stallRate, int requestsPerSecond) {
+            if (p50Millis < 0 || p99Millis < p50Millis || requestsPerSecond < 0
+                    || errorRate < 0 || declineRate < 0 || stallRate < 0 || errorRate + declineRate > 1) {
+                throw new IllegalArgumentException("Invalid gateway profile");
+            }
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.errorRate = errorRate;
+            this.declineRate = declineRate;
+            this.stallRate = stallRate;
+            this.requestsPerSecond = requestsPerSecond;
+            this.sigma = p50Millis == 0 ? 0 : Math.log((double) p99Millis / p50Millis) / Z_99;
+        }
+
+        /**
+         * Typical behaviour of each provider: wallets answer fastest, QR apps wait for the payer.
+         *
+         * @param method the payment method
+         * @return its default profile
+         */
+        public static Profile defaults(PaymentMethod method) {
+            switch (method) {
+                case APPLE_PAY:
+                    return new Profile(60, 250, 0.005, 0.01, 0.0, 500);
+                case QR:
+                    return new Profile(200, 1200, 0.01, 0.02, 0.001, 200);
+                case CREDIT_CARD:
+                default:
+                    return new Profile(120, 600, 0.01, 0.03, 0.001, 400);
+            }
+        }
+
+        long sampleLatencyMicros(Random random) {
+            double millis = p50Millis * Math.exp(sigma * random.nextGaussian());
+            return (long) (Math.min(millis, p99Millis * 20.0) * 1000);
+        }
+
+        public long getP50Millis() { return p50Millis; }
+        public long getP99Millis() { return p99Millis; }
+        public double getErrorRate() { return errorRate; }
+        public double getDeclineRate() { return declineRate; }
+        public double getStallRate() { return stallRate; }
+        public int getRequestsPerSecond() { return requestsPerSecond; }
+    }
+
+    /**
+     * Requests-per-second token bucket of one method.
+     */
+    private static final class Quota {
+        private final int perSecond;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        Quota(int perSecond) {
+            this.perSecond = perSecond;
+            this.tokens = perSecond;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            if (perSecond == 0) {
+                return true;
+            }
+            tokens = Math.min(perSecond, tokens + (now - refilledAt) * perSecond / 1e9);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
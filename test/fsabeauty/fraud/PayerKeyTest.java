@@ -0,0 +1,69 @@
+package fsabeauty.fraud;
+
+import fsabeauty.strategy.ApplePayPayment;
+import fsabeauty.strategy.PaymentCredentials;
+import fsabeauty.strategy.QRPayment;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks that velocity is counted per payer, not per device or payment app.
+ * Plain main-based test: {@code java fsabeauty.fraud.PayerKeyTest} throws an AssertionError on failure.
+ */
+public class PayerKeyTest {
+
+    public static void main(String[] args) {
+        twoQrPayersOnTheSameAppAreCountedApart();
+        twoApplePayPayersOnTheSameDeviceAreCountedApart();
+        samePayerKeepsItsKey();
+        System.out.println("PayerKeyTest passed");
+    }
+
+    static void twoQrPayersOnTheSameAppAreCountedApart() {
+        assertCountedApart(new QRPayment.Credentials("QR-ALICE-0001", "Kaspi Bank"),
+                new QRPayment.Credentials("QR-BOB-0002", "Kaspi Bank"));
+    }
+
+    static void twoApplePayPayersOnTheSameDeviceAreCountedApart() {
+        assertCountedApart(new ApplePayPayment.Credentials("tok_alice_8f3a", "iPhone"),
+                new ApplePayPayment.Credentials("tok_bob_51c9", "iPhone"));
+    }
+
+    static void samePayerKeepsItsKey() {
+        String first = new QRPayment.Credentials("QR-ALICE-0001", "Kaspi Bank").getPayerKey();
+        String again = new QRPayment.Credentials("QR-ALICE-0001", "Kaspi Bank").getPayerKey();
+        check(first.equals(again), "the same QR code must give the same payer key");
+        check(!first.contains("ALICE"), "the payer key must not reveal the QR code: " + first);
+    }
+
+    // Screens five payments of the first payer, then one of the second, at the same instant
+    private static void assertCountedApart(PaymentCredentials first, PaymentCredentials second) {
+        Map<String, Long> velocity = new ConcurrentHashMap<>();
+        FraudScorer scorer = new FraudScorer(1000, 2000);
+        scorer.addRule(FraudRule.of("probe", features -> {
+            velocity.put(features.getPayerKey(), features.getPaymentsLast10Minutes());
+            return 0;
+        }));
+        FraudScreen screen = new FraudScreen(scorer);
+        long now = 1_700_000_000_000L;
+
+        check(!first.getPayerKey().equals(second.getPayerKey()),
+                "payers sharing a " + first.getMethod() + " app or device must have different keys");
+        for (int i = 0; i < 5; i++) {
+            screen.screen(first.getPayerKey(), 20, Collections.singletonList("Lipstick"), now);
+        }
+        screen.screen(second.getPayerKey(), 20, Collections.singletonList("Lipstick"), now);
+
+        check(velocity.get(first.getPayerKey()) == 4, "first payer saw " + velocity.get(first.getPayerKey()));
+        check(velocity.get(second.getPayerKey()) == 0,
+                "second payer was counted with the first: " + velocity.get(second.getPayerKey()));
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package fsabeauty.notification;
+
+import fsabeauty.observer.Customer;
+import fsabeauty.observer.EventDispatcher;
+import fsabeauty.observer.Notification;
+import fsabeauty.observer.Product;
+import fsabeauty.observer.ProductEvent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that claimed units bound the restock waves.
+ * Plain main-based test: {@code java fsabeauty.notification.RestockWaitlistTest} throws an AssertionError on failure.
+ */
+public class RestockWaitlistTest {
+
+    public static void main(String[] args) {
+        claimingEveryUnitStopsTheWaves();
+        soldOutStartsANewCycle();
+        System.out.println("RestockWaitlistTest passed");
+    }
+
+    static void claimingEveryUnitStopsTheWaves() {
+        Fixture fixture = new Fixture(50);
+        fixture.product.setStock(5);
+        check(fixture.notified.get() == 10, "first wave should be 5 units x 2, was " + fixture.notified.get());
+
+        for (int i = 0; i < 5; i++) {
+            check(fixture.waitlist.claim(fixture.product, fixture.customers[i]), "reservation holder " + i + " may buy");
+        }
+        check(fixture.notified.get() == 10, "no wave may follow once all 5 units are claimed, notified "
+                + fixture.notified.get());
+        check(fixture.waitlist.getWaitingCount(fixture.product) == 40,
+                "40 should still wait, " + fixture.waitlist.getWaitingCount(fixture.product) + " do");
+    }
+
+    static void soldOutStartsANewCycle() {
+        Fixture fixture = new Fixture(50);
+        fixture.product.setStock(5);
+        for (int i = 0; i < 5; i++) {
+            fixture.waitlist.claim(fixture.product, fixture.customers[i]);
+        }
+        check(!fixture.waitlist.claim(fixture.product, fixture.customers[5]), "no unit is left to claim");
+        fixture.product.setStock(0);
+        fixture.product.setStock(1);
+        check(fixture.notified.get() == 12, "a new restock of 1 unit should release 2 more, notified "
+                + fixture.notified.get());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    // A sold-out product watched by some customers, waves counted instead of delivered
+    private static final class Fixture {
+        final Product product = new Product("WL-1", "Limited Lipstick", "FSA", 25.0, 0);
+        final Customer[] customers;
+        final AtomicInteger notified = new AtomicInteger();
+        final RestockWaitlist waitlist;
+
+        Fixture(int watchers) {
+            EventDispatcher counting = new EventDispatcher() {
+                @Override
+                public void dispatch(Product source, List<ProductEvent> events) {
+                }
+
+                @Override
+                public void deliver(List<Notification> notifications) {
+                    notified.addAndGet(notifications.size());
+                }
+            };
+            waitlist = new RestockWaitlist(RestockWaitlist.Mode.FIFO, 2.0, 60_000, counting, TimerWheel.shared());
+            customers = new Customer[watchers];
+            for (int i = 0; i < watchers; i++) {
+                customers[i] = new Customer("C" + i, "Customer " + i, "c" + i + "@example.com");
+                product.registerObserver(customers[i]);
+            }
+            product.setDispatcher(waitlist);
+        }
+    }
+}